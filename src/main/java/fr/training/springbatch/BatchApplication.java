@@ -9,6 +9,9 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 
 import fr.training.springbatch.job.controlbreakjob.ControlBreakJobConfig;
+import fr.training.springbatch.job.controlbreakjob.MultiLevelControlBreakJobConfig;
+import fr.training.springbatch.job.controlbreakjob.PartitionedControlBreakJobConfig;
+import fr.training.springbatch.job.exportjob.PartitionedExportJobConfig;
 import fr.training.springbatch.job.exportjob.SimpleExportJobConfig;
 import fr.training.springbatch.job.importjob.SimpleImportJobConfig;
 import fr.training.springbatch.job.purgejob.PurgeHistoryJob;
@@ -35,6 +38,21 @@ public class BatchApplication {
 		return new GenericApplicationContextFactory(SimpleExportJobConfig.class);
 	}
 
+	@Bean
+	public ApplicationContextFactory partitionedExportJobContextFactory() {
+		return new GenericApplicationContextFactory(PartitionedExportJobConfig.class);
+	}
+
+	@Bean
+	public ApplicationContextFactory multiLevelControlBreakJobContextFactory() {
+		return new GenericApplicationContextFactory(MultiLevelControlBreakJobConfig.class);
+	}
+
+	@Bean
+	public ApplicationContextFactory partitionedControlBreakJobContextFactory() {
+		return new GenericApplicationContextFactory(PartitionedControlBreakJobConfig.class);
+	}
+
 	@Bean
 	public ApplicationContextFactory simpleImportJobContextFactory() {
 		return new GenericApplicationContextFactory(SimpleImportJobConfig.class);
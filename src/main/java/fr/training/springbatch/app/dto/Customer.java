@@ -22,6 +22,9 @@ public class Customer implements Serializable {
 	// computed
 	private List<Transaction> transactions = new ArrayList<Transaction>();
 
+	// computed (compact alternative to transactions list)
+	private TransactionGroup transactionGroup;
+
 	// computed
 	private double balance;
 
@@ -127,6 +130,14 @@ public class Customer implements Serializable {
 		transactions.add(transaction);
 	}
 
+	public TransactionGroup getTransactionGroup() {
+		return transactionGroup;
+	}
+
+	public void setTransactionGroup(final TransactionGroup transactionGroup) {
+		this.transactionGroup = transactionGroup;
+	}
+
 	public double getBalance() {
 		return balance;
 	}
@@ -146,6 +157,7 @@ public class Customer implements Serializable {
 		.append(", state=").append(state) //
 		.append(", postCode=").append(postCode) //
 		.append(", transactions=").append(transactions) //
+		.append(", transactionGroup=").append(transactionGroup) //
 		.append(", balance=").append(balance) //
 		.append("]");
 		return builder.toString();
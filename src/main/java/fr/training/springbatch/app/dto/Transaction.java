@@ -1,10 +1,10 @@
 package fr.training.springbatch.app.dto;
 
 import java.io.Serializable;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 
+import fr.training.springbatch.tools.format.DateRenderer;
+
 public class Transaction implements Serializable {
 
 	private static final long serialVersionUID = 1L;
@@ -14,8 +14,6 @@ public class Transaction implements Serializable {
 	private LocalDate transactionDate;
 	private Double amount;
 
-	private final DateFormat formatter = new SimpleDateFormat("MM/dd/yyyy");
-
 	public Transaction() {
 
 	}
@@ -52,8 +50,12 @@ public class Transaction implements Serializable {
 		this.amount = amount;
 	}
 
+	/**
+	 * @return the transaction date in the MM/dd/yyyy format
+	 * @see DateRenderer
+	 */
 	public String getDateString() {
-		return formatter.format(transactionDate);
+		return DateRenderer.format(transactionDate);
 	}
 
 	@Override
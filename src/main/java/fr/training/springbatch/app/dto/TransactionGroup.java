@@ -0,0 +1,229 @@
+package fr.training.springbatch.app.dto;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Compact, columnar representation of the transactions of a customer.
+ *
+ * Transactions are not kept as objects but spread into parallel primitive
+ * arrays :
+ * <ul>
+ * <li>amounts in cents (rounded to the nearest cent)</li>
+ * <li>dates as epoch days</li>
+ * <li>numbers packed in a single char array</li>
+ * </ul>
+ * Null amounts, dates and numbers are kept as null (not as 0 or empty values),
+ * so a group renders as the list of its transactions.
+ *
+ * Useful for customers with large histories, when processors only need to
+ * aggregate the transactions.
+ */
+public class TransactionGroup implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/** Marker for a null transaction date */
+	private static final int NO_DATE = Integer.MIN_VALUE;
+
+	/** Marker for a null transaction amount */
+	private static final long NO_AMOUNT = Long.MIN_VALUE;
+
+	private final String customerNumber;
+
+	private int size;
+
+	private long[] amounts;
+
+	private int[] dates;
+
+	private int[] numberEnds;
+
+	private char[] numberChars;
+
+	private int numberLength;
+
+	private final BitSet nullNumbers = new BitSet();
+
+	public TransactionGroup(final String customerNumber) {
+		this(customerNumber, DEFAULT_CAPACITY);
+	}
+
+	public TransactionGroup(final String customerNumber, final int initialCapacity) {
+		this.customerNumber = customerNumber;
+		final int capacity = Math.max(1, initialCapacity);
+		amounts = new long[capacity];
+		dates = new int[capacity];
+		numberEnds = new int[capacity];
+		numberChars = new char[capacity * 8];
+	}
+
+	/**
+	 * Append a transaction to the group.
+	 *
+	 * @param transaction the transaction to add
+	 */
+	public void add(final Transaction transaction) {
+		add(transaction.getNumber(), transaction.getTransactionDate(), transaction.getAmount());
+	}
+
+	/**
+	 * Append a transaction to the group.
+	 *
+	 * @param number          transaction number (may be null)
+	 * @param transactionDate transaction date (may be null)
+	 * @param amount          transaction amount (may be null)
+	 * @throws IllegalArgumentException if the amount is not finite or too large
+	 *                                  to be stored in cents
+	 */
+	public void add(final String number, final LocalDate transactionDate, final Double amount) {
+		if (size == amounts.length) {
+			final int capacity = size + (size >> 1) + 1;
+			amounts = Arrays.copyOf(amounts, capacity);
+			dates = Arrays.copyOf(dates, capacity);
+			numberEnds = Arrays.copyOf(numberEnds, capacity);
+		}
+		amounts[size] = amount == null ? NO_AMOUNT : toCents(amount);
+		dates[size] = transactionDate == null ? NO_DATE : (int) transactionDate.toEpochDay();
+
+		final int length = number == null ? 0 : number.length();
+		if (numberLength + length > numberChars.length) {
+			numberChars = Arrays.copyOf(numberChars, Math.max(numberChars.length * 2, numberLength + length));
+		}
+		if (number != null) {
+			number.getChars(0, length, numberChars, numberLength);
+		} else {
+			nullNumbers.set(size);
+		}
+		numberLength += length;
+		numberEnds[size] = numberLength;
+		size++;
+	}
+
+	private static long toCents(final double amount) {
+		final double cents = amount * 100;
+		if (Double.isNaN(cents) || Math.abs(cents) >= Long.MAX_VALUE) {
+			throw new IllegalArgumentException("Amount out of range : " + amount);
+		}
+		return Math.round(cents);
+	}
+
+	public String getCustomerNumber() {
+		return customerNumber;
+	}
+
+	/**
+	 * @return the number of transactions in the group
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @param index transaction index
+	 * @return the transaction amount in cents, or {@link Long#MIN_VALUE} if null
+	 */
+	public long getAmountInCents(final int index) {
+		checkIndex(index);
+		return amounts[index];
+	}
+
+	/**
+	 * @param index transaction index
+	 * @return the transaction amount (may be null)
+	 */
+	public Double getAmount(final int index) {
+		final long cents = getAmountInCents(index);
+		return cents == NO_AMOUNT ? null : cents / 100.0;
+	}
+
+	/**
+	 * @param index transaction index
+	 * @return the transaction date as epoch day, or {@link Long#MIN_VALUE} if null
+	 */
+	public long getEpochDay(final int index) {
+		checkIndex(index);
+		return dates[index] == NO_DATE ? Long.MIN_VALUE : dates[index];
+	}
+
+	/**
+	 * @param index transaction index
+	 * @return the transaction date (may be null)
+	 */
+	public LocalDate getTransactionDate(final int index) {
+		checkIndex(index);
+		return dates[index] == NO_DATE ? null : LocalDate.ofEpochDay(dates[index]);
+	}
+
+	/**
+	 * @param index transaction index
+	 * @return the transaction number (may be null)
+	 */
+	public String getNumber(final int index) {
+		checkIndex(index);
+		if (nullNumbers.get(index)) {
+			return null;
+		}
+		final int start = index == 0 ? 0 : numberEnds[index - 1];
+		return new String(numberChars, start, numberEnds[index] - start);
+	}
+
+	/**
+	 * @return the sum of all amounts in cents (null amounts are ignored)
+	 */
+	public long getSumInCents() {
+		long sum = 0;
+		for (int i = 0; i < size; i++) {
+			if (amounts[i] != NO_AMOUNT) {
+				sum += amounts[i];
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * @return the sum of all amounts
+	 */
+	public double getBalance() {
+		return getSumInCents() / 100.0;
+	}
+
+	/**
+	 * Materialize a transaction of the group.
+	 *
+	 * @param index transaction index
+	 * @return a new {@link Transaction}
+	 */
+	public Transaction getTransaction(final int index) {
+		final Transaction transaction = new Transaction();
+		transaction.setCustomerNumber(customerNumber);
+		transaction.setNumber(getNumber(index));
+		transaction.setTransactionDate(getTransactionDate(index));
+		transaction.setAmount(getAmount(index));
+		return transaction;
+	}
+
+	private void checkIndex(final int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("TransactionGroup [customerNumber=").append(customerNumber) //
+		.append(", size=").append(size) //
+		.append(", sumInCents=").append(getSumInCents()).append("]");
+		return builder.toString();
+	}
+
+}
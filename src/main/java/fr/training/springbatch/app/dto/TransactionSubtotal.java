@@ -0,0 +1,59 @@
+package fr.training.springbatch.app.dto;
+
+/**
+ * Subtotal of the transactions of a customer for a period (a year, a month or
+ * all the periods when empty).
+ */
+public class TransactionSubtotal {
+
+	private int level;
+
+	private String customerNumber;
+
+	private String period;
+
+	private double balance;
+
+	public int getLevel() {
+		return level;
+	}
+
+	public void setLevel(final int level) {
+		this.level = level;
+	}
+
+	public String getCustomerNumber() {
+		return customerNumber;
+	}
+
+	public void setCustomerNumber(final String customerNumber) {
+		this.customerNumber = customerNumber;
+	}
+
+	public String getPeriod() {
+		return period;
+	}
+
+	public void setPeriod(final String period) {
+		this.period = period;
+	}
+
+	public double getBalance() {
+		return balance;
+	}
+
+	public void setBalance(final double balance) {
+		this.balance = balance;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("TransactionSubtotal [level=").append(level) //
+		.append(", customerNumber=").append(customerNumber) //
+		.append(", period=").append(period) //
+		.append(", balance=").append(balance).append("]");
+		return builder.toString();
+	}
+
+}
@@ -1,10 +1,16 @@
 package fr.training.springbatch.app.job;
 
+import java.util.function.Function;
+
+import javax.sql.DataSource;
+
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 
+import fr.training.springbatch.app.dto.Transaction;
+import fr.training.springbatch.tools.listener.IndexMaintenanceListener;
 import fr.training.springbatch.tools.listener.ItemCountListener;
 import fr.training.springbatch.tools.listener.JobReportListener;
 
@@ -14,6 +20,13 @@ import fr.training.springbatch.tools.listener.JobReportListener;
  */
 public abstract class AbstractJobConfiguration {
 
+	/** Covering index of the TRANSACTION table, as created by schema.sql */
+	private static final String TRANSACTION_INDEX = "transaction_customer_idx";
+
+	/** Business key of a transaction : customer number and transaction number */
+	protected static final Function<Transaction, String> TRANSACTION_KEY = transaction -> transaction
+			.getCustomerNumber() + ";" + transaction.getNumber();
+
 	@Autowired
 	protected JobBuilderFactory jobBuilderFactory;
 
@@ -42,4 +55,17 @@ public abstract class AbstractJobConfiguration {
 		listener.setLoggingInterval(50); // Log process item count every 50
 		return listener;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Drop the TRANSACTION index during a bulk load and build it once at the end
+	 * (the loaded transactions are appended : only worth it for big loads).
+	 */
+	protected static IndexMaintenanceListener transactionIndexListener(final DataSource dataSource) {
+		final IndexMaintenanceListener listener = new IndexMaintenanceListener();
+		listener.setDataSource(dataSource);
+		listener.setIndexName(TRANSACTION_INDEX);
+		listener.setCreateSql("CREATE INDEX IF NOT EXISTS " + TRANSACTION_INDEX
+				+ " ON transaction (customer_number, number, id, transaction_date, amount)");
+		return listener;
+	}
+}
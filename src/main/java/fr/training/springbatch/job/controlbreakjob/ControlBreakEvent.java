@@ -0,0 +1,85 @@
+package fr.training.springbatch.job.controlbreakjob;
+
+/**
+ * Event emitted by a {@link MultiLevelControlBreakReader}.
+ *
+ * For a group of level <code>n</code> (0 being the outermost level) the reader
+ * emits an {@link Type#OPEN} event, the events of its sub groups (or its
+ * {@link Type#ITEM} events for the innermost level), then a {@link Type#CLOSE}
+ * event.
+ *
+ * @param <T> the record type
+ */
+public final class ControlBreakEvent<T> {
+
+	public enum Type {
+		OPEN, ITEM, CLOSE
+	}
+
+	private final Type type;
+
+	private final int level;
+
+	private final Object key;
+
+	private final T item;
+
+	private ControlBreakEvent(final Type type, final int level, final Object key, final T item) {
+		this.type = type;
+		this.level = level;
+		this.key = key;
+		this.item = item;
+	}
+
+	/**
+	 * @param level the group level
+	 * @param key   the group key at this level
+	 * @param item  the first item of the group
+	 */
+	public static <T> ControlBreakEvent<T> open(final int level, final Object key, final T item) {
+		return new ControlBreakEvent<T>(Type.OPEN, level, key, item);
+	}
+
+	/**
+	 * @param level the depth of the break strategy
+	 * @param item  the item
+	 */
+	public static <T> ControlBreakEvent<T> item(final int level, final T item) {
+		return new ControlBreakEvent<T>(Type.ITEM, level, null, item);
+	}
+
+	/**
+	 * @param level the group level
+	 * @param key   the group key at this level
+	 * @param item  the last item of the group
+	 */
+	public static <T> ControlBreakEvent<T> close(final int level, final Object key, final T item) {
+		return new ControlBreakEvent<T>(Type.CLOSE, level, key, item);
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	public Object getKey() {
+		return key;
+	}
+
+	public T getItem() {
+		return item;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("ControlBreakEvent [type=").append(type) //
+		.append(", level=").append(level) //
+		.append(", key=").append(key) //
+		.append(", item=").append(item).append("]");
+		return builder.toString();
+	}
+}
@@ -14,16 +14,17 @@ import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.job.DefaultJobParametersValidator;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemStreamWriter;
 import org.springframework.batch.item.ItemWriter;
 import org.springframework.batch.item.file.FlatFileItemReader;
 import org.springframework.batch.item.file.FlatFileItemWriter;
+import org.springframework.batch.item.file.LineMapper;
 import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
-import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
 import org.springframework.batch.item.file.mapping.BeanWrapperFieldSetMapper;
+import org.springframework.batch.item.file.mapping.DefaultLineMapper;
+import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
-import org.springframework.core.convert.ConversionService;
-import org.springframework.core.convert.converter.Converter;
 import org.springframework.core.convert.support.DefaultConversionService;
 import org.springframework.core.io.FileSystemResource;
 
@@ -31,6 +32,9 @@ import fr.training.springbatch.app.dto.Customer;
 import fr.training.springbatch.app.dto.Transaction;
 import fr.training.springbatch.app.dto.TransactionSum;
 import fr.training.springbatch.app.job.AbstractJobConfiguration;
+import fr.training.springbatch.tools.compress.CompressedFlatFileItemWriter;
+import fr.training.springbatch.tools.compress.CompressedResource;
+import fr.training.springbatch.tools.compress.DelimitedFileItemWriterBuilder;
 
 /**
  * This job groups all transactions by customer number and exports result to csv
@@ -81,12 +85,7 @@ public class ControlBreakJobConfig extends AbstractJobConfiguration {
 
 		final ItemListPeekableItemReader<Transaction> groupReader = new ItemListPeekableItemReader<Transaction>();
 		groupReader.setDelegate(transactionReader);
-		groupReader.setBreakKeyStrategy(new BreakKeyStrategy<Transaction>() {
-			@Override
-			public boolean isSameGroup(final Transaction transaction1, final Transaction transaction2) {
-				return transaction1.getCustomerNumber().equals(transaction2.getCustomerNumber());
-			}
-		});
+		groupReader.setBreakKeyStrategy(breakKeyStrategy());
 		return groupReader;
 	}
 
@@ -97,42 +96,50 @@ public class ControlBreakJobConfig extends AbstractJobConfiguration {
 
 		return new FlatFileItemReaderBuilder<Transaction>() //
 				.name("transactionReader") //
-				.resource(new FileSystemResource(transactionFile)) //
-				.delimited() //
-				.delimiter(";") //
-				.names(new String[] { "customerNumber", "number", "transactionDate", "amount" }) //
+				.resource(CompressedResource.forPath(transactionFile)) //
+				.lineMapper(transactionLineMapper()) //
 				.linesToSkip(1) //
-				.fieldSetMapper(new BeanWrapperFieldSetMapper<Transaction>() {
-					{
-						setTargetType(Transaction.class);
-						setConversionService(createConversionService());
-					}
-				}).build();
+				.build();
+	}
+
+	/**
+	 * Customers are grouped on their number (also used by
+	 * {@link PartitionedControlBreakJobConfig}).
+	 */
+	static BreakKeyStrategy<Transaction> breakKeyStrategy() {
+		return KeyedBreakStrategy.by(Transaction::getCustomerNumber);
 	}
 
 	/**
-	 * Converter to parse local date
+	 * Map a line of the transaction file (also used by
+	 * {@link PartitionedControlBreakJobConfig}).
 	 */
-	public ConversionService createConversionService() {
+	static LineMapper<Transaction> transactionLineMapper() {
+		final DelimitedLineTokenizer tokenizer = new DelimitedLineTokenizer(";");
+		tokenizer.setNames(new String[] { "customerNumber", "number", "transactionDate", "amount" });
+
 		final DefaultConversionService conversionService = new DefaultConversionService();
-		DefaultConversionService.addDefaultConverters(conversionService);
-		conversionService.addConverter(new Converter<String, LocalDate>() {
-			@Override
-			public LocalDate convert(final String text) {
-				final DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE;
-				return LocalDate.parse(text, formatter);
-			}
-		});
-		return conversionService;
+		conversionService.addConverter(String.class, LocalDate.class,
+				text -> LocalDate.parse(text, DateTimeFormatter.ISO_LOCAL_DATE));
+
+		final BeanWrapperFieldSetMapper<Transaction> fieldSetMapper = new BeanWrapperFieldSetMapper<Transaction>();
+		fieldSetMapper.setTargetType(Transaction.class);
+		fieldSetMapper.setConversionService(conversionService);
+
+		final DefaultLineMapper<Transaction> lineMapper = new DefaultLineMapper<Transaction>();
+		lineMapper.setLineTokenizer(tokenizer);
+		lineMapper.setFieldSetMapper(fieldSetMapper);
+		return lineMapper;
 	}
 
 	/**
 	 * Processor that sum customer's transactions to compute his balance, fill and
-	 * return new TransactionSum objects.
+	 * return new TransactionSum objects (also used by
+	 * {@link PartitionedControlBreakJobConfig}).
 	 *
 	 * @return the processor
 	 */
-	private ItemProcessor<List<Transaction>, TransactionSum> processor() {
+	static ItemProcessor<List<Transaction>, TransactionSum> processor() {
 		return new ItemProcessor<List<Transaction>, TransactionSum>() {
 			@Override
 			public TransactionSum process(final List<Transaction> items) throws Exception {
@@ -148,18 +155,20 @@ public class ControlBreakJobConfig extends AbstractJobConfiguration {
 
 	/**
 	 * @param outputFile the injected output file job parameter
-	 * @return a {@link FlatFileItemWriter} bean
+	 * @return a {@link FlatFileItemWriter} bean, or a
+	 *         {@link CompressedFlatFileItemWriter} for a compressed output file
 	 */
 	@StepScope // Mandatory for using jobParameters
 	@Bean
-	public FlatFileItemWriter<TransactionSum> transactionSumWriter(
+	public ItemStreamWriter<TransactionSum> transactionSumWriter(
 			@Value("#{jobParameters['output-file']}") final String outputFile) {
 
-		return new FlatFileItemWriterBuilder<TransactionSum>().name("transactionSumWriter")
+		final String[] fields = new String[] { "customerNumber", "balance" };
+
+		return new DelimitedFileItemWriterBuilder<TransactionSum>().name("transactionSumWriter") //
 				.resource(new FileSystemResource(outputFile)) //
-				.delimited() //
 				.delimiter(";") //
-				.names(new String[] { "customerNumber", "balance" }) //
+				.names(fields) //
 				.build();
 
 	}
@@ -0,0 +1,233 @@
+package fr.training.springbatch.job.controlbreakjob;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.file.LineMapper;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+
+import fr.training.springbatch.tools.compress.CompressionCodec;
+import fr.training.springbatch.tools.partition.FileRangeResource;
+
+/**
+ * {@link Partitioner} that splits a sorted flat file into byte ranges of about
+ * the same size.
+ *
+ * Each split point is moved forward to the next line start, then to the next
+ * group boundary according to the {@link BreakKeyStrategy}, so that a group
+ * never straddles two partitions and each partition can be handled by a
+ * control break reader on its own.
+ *
+ * Each partition {@link ExecutionContext} contains the range in
+ * {@link #START_OFFSET} (inclusive) and {@link #END_OFFSET} (exclusive), to be
+ * read with a {@link FileRangeResource}. Header lines are excluded from the
+ * ranges.
+ *
+ * @param <T> the record type
+ */
+public class GroupBoundaryPartitioner<T> implements Partitioner, InitializingBean {
+
+	private static final Logger logger = LoggerFactory.getLogger(GroupBoundaryPartitioner.class);
+
+	public static final String START_OFFSET = "startOffset";
+
+	public static final String END_OFFSET = "endOffset";
+
+	public static final String PARTITION_INDEX = "partitionIndex";
+
+	private Resource resource;
+
+	private LineMapper<T> lineMapper;
+
+	private BreakKeyStrategy<T> breakKeyStrategy;
+
+	private int linesToSkip = 0;
+
+	private Charset encoding = StandardCharsets.UTF_8;
+
+	@Override
+	public Map<String, ExecutionContext> partition(final int gridSize) {
+		final List<Long> bounds = new ArrayList<Long>();
+		try {
+			final File file = resource.getFile();
+			final long size = file.length();
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				final LineReader header = new LineReader(channel, 0);
+				for (int i = 0; i < linesToSkip && header.readLine() != null; i++) {
+					// skip header lines
+				}
+				final long dataStart = header.position();
+				bounds.add(dataStart);
+
+				for (int i = 1; i < gridSize; i++) {
+					final long target = dataStart + (size - dataStart) * i / gridSize;
+					final long last = bounds.get(bounds.size() - 1);
+					if (target <= last) {
+						continue;
+					}
+					final long boundary = groupBoundary(channel, target);
+					if (boundary > last && boundary < size) {
+						bounds.add(boundary);
+					}
+				}
+				bounds.add(Math.max(size, dataStart));
+			}
+		} catch (final IOException e) {
+			throw new IllegalStateException("Unable to split " + resource, e);
+		}
+
+		final Map<String, ExecutionContext> partitions = new HashMap<String, ExecutionContext>();
+		for (int i = 0; i < bounds.size() - 1; i++) {
+			final ExecutionContext context = new ExecutionContext();
+			context.putLong(START_OFFSET, bounds.get(i));
+			context.putLong(END_OFFSET, bounds.get(i + 1));
+			context.putInt(PARTITION_INDEX, i);
+			partitions.put("partition" + i, context);
+		}
+		logger.info("{} split into {} partitions at offsets {}", resource, partitions.size(), bounds);
+		return partitions;
+	}
+
+	/**
+	 * @return the start of the first line, at or after the given position, whose
+	 *         item is not in the same group as the item of the previous line
+	 *         (or the file size if none)
+	 */
+	private long groupBoundary(final FileChannel channel, final long position) throws IOException {
+		final LineReader reader = new LineReader(channel, position - 1);
+		// terminate the current line (an empty line if position is a line start)
+		reader.readLine();
+
+		String line = reader.readLine();
+		if (line == null) {
+			return reader.position();
+		}
+		T previous = mapLine(line);
+		while (true) {
+			final long lineStart = reader.position();
+			line = reader.readLine();
+			if (line == null) {
+				return lineStart;
+			}
+			final T item = mapLine(line);
+			if (!breakKeyStrategy.isSameGroup(previous, item)) {
+				return lineStart;
+			}
+			previous = item;
+		}
+	}
+
+	private T mapLine(final String line) {
+		try {
+			return lineMapper.mapLine(line, 0);
+		} catch (final Exception e) {
+			throw new IllegalStateException("Unable to map line [" + line + "] of " + resource, e);
+		}
+	}
+
+	/**
+	 * Read lines from a position while keeping track of the byte offset.
+	 */
+	private class LineReader {
+
+		private final InputStream in;
+
+		private final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+
+		private long position;
+
+		LineReader(final FileChannel channel, final long position) throws IOException {
+			channel.position(position);
+			// the channel is closed by the partitioner, not by the stream
+			in = new BufferedInputStream(Channels.newInputStream(channel), 8192);
+			this.position = position;
+		}
+
+		/**
+		 * @return the next line without separator, null at end of file
+		 */
+		String readLine() throws IOException {
+			line.reset();
+			int b = in.read();
+			if (b < 0) {
+				return null;
+			}
+			while (b >= 0) {
+				position++;
+				if (b == '\n') {
+					break;
+				}
+				line.write(b);
+				b = in.read();
+			}
+			String text = new String(line.toByteArray(), encoding);
+			if (text.endsWith("\r")) {
+				text = text.substring(0, text.length() - 1);
+			}
+			return text;
+		}
+
+		long position() {
+			return position;
+		}
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(resource, "The resource must be set");
+		Assert.notNull(lineMapper, "A LineMapper must be provided");
+		Assert.notNull(breakKeyStrategy, "A BreakKeyStrategy must be provided");
+		Assert.isTrue(!CompressionCodec.forFilename(resource.getFilename()).isCompressed(),
+				"A compressed file can't be split in byte ranges");
+	}
+
+	/**
+	 * @param resource the sorted file to split
+	 */
+	public void setResource(final Resource resource) {
+		this.resource = resource;
+	}
+
+	/**
+	 * @param lineMapper maps a line to an item (to evaluate group boundaries)
+	 */
+	public void setLineMapper(final LineMapper<T> lineMapper) {
+		this.lineMapper = lineMapper;
+	}
+
+	public void setBreakKeyStrategy(final BreakKeyStrategy<T> breakKeyStrategy) {
+		this.breakKeyStrategy = breakKeyStrategy;
+	}
+
+	/**
+	 * @param linesToSkip number of header lines
+	 */
+	public void setLinesToSkip(final int linesToSkip) {
+		this.linesToSkip = linesToSkip;
+	}
+
+	/**
+	 * @param encoding the file charset (default UTF-8)
+	 */
+	public void setEncoding(final Charset encoding) {
+		this.encoding = encoding;
+	}
+}
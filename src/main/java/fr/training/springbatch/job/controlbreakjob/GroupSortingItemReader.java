@@ -0,0 +1,140 @@
+package fr.training.springbatch.job.controlbreakjob;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemReader;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.util.Assert;
+
+/**
+ * An {@link ItemReader} that sorts the items of each group returned by the
+ * delegate (ie an {@link ItemListPeekableItemReader}) and returns them one by
+ * one.
+ *
+ * It completes the sort of an input only sorted on its first level key (ie the
+ * customer) with the sub levels of a multi-level control break (ie the date) :
+ * the items of the current group are held in memory, so the groups must fit in
+ * memory.
+ *
+ * The delegate state is taken before each group is read : the state saved is
+ * the one before the current group, with the number of its items already
+ * returned. On restart, the group is read and sorted again and these items are
+ * skipped.
+ *
+ * @param <T> The class of the items to be processed
+ */
+public class GroupSortingItemReader<T> implements ItemStreamReader<T> {
+
+	private static final String GROUP_POSITION = "group.position";
+
+	private ItemStreamReader<? extends List<T>> delegate;
+
+	private Comparator<? super T> comparator;
+
+	private String name = GroupSortingItemReader.class.getSimpleName();
+
+	private List<T> group;
+
+	/** number of items of the group already returned */
+	private int position;
+
+	/** state of the delegate before the current group */
+	private ExecutionContext groupState;
+
+	@Override
+	public T read() throws Exception {
+		while (group == null || position == group.size()) {
+			final ExecutionContext state = new ExecutionContext();
+			delegate.update(state);
+			if (!readGroup()) {
+				return null;
+			}
+			groupState = state;
+		}
+		return group.get(position++);
+	}
+
+	private boolean readGroup() throws Exception {
+		final List<T> items = delegate.read();
+		if (items == null) {
+			group = null;
+			return false;
+		}
+		group = new ArrayList<T>(items);
+		group.sort(comparator);
+		position = 0;
+		return true;
+	}
+
+	/**
+	 * @param delegate the reader of the groups
+	 */
+	public void setDelegate(final ItemStreamReader<? extends List<T>> delegate) {
+		this.delegate = delegate;
+	}
+
+	/**
+	 * @param comparator the order of the items within a group
+	 */
+	public void setComparator(final Comparator<? super T> comparator) {
+		this.comparator = comparator;
+	}
+
+	/**
+	 * @param name the name used to prefix the keys saved in the
+	 *             {@link ExecutionContext}
+	 */
+	public void setName(final String name) {
+		this.name = name;
+	}
+
+	@Override
+	public void open(final ExecutionContext executionContext) throws ItemStreamException {
+		Assert.notNull(delegate, "The delegate must be set");
+		Assert.notNull(comparator, "A comparator must be provided");
+		group = null;
+		position = 0;
+		groupState = null;
+		delegate.open(executionContext);
+
+		final int skipCount = executionContext.getInt(name + "." + GROUP_POSITION, 0);
+		if (skipCount > 0) {
+			try {
+				final ExecutionContext state = new ExecutionContext();
+				delegate.update(state);
+				if (readGroup()) {
+					groupState = state;
+					position = Math.min(skipCount, group.size());
+				}
+			} catch (final Exception e) {
+				throw new ItemStreamException("Unable to skip the items already read", e);
+			}
+		}
+	}
+
+	@Override
+	public void update(final ExecutionContext executionContext) throws ItemStreamException {
+		if (groupState == null) {
+			delegate.update(executionContext);
+			executionContext.putInt(name + "." + GROUP_POSITION, 0);
+			return;
+		}
+		for (final Map.Entry<String, Object> entry : groupState.entrySet()) {
+			executionContext.put(entry.getKey(), entry.getValue());
+		}
+		executionContext.putInt(name + "." + GROUP_POSITION, position);
+	}
+
+	@Override
+	public void close() throws ItemStreamException {
+		group = null;
+		groupState = null;
+		delegate.close();
+	}
+
+}
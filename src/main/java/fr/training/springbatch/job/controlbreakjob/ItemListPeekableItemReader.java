@@ -1,21 +1,39 @@
 package fr.training.springbatch.job.controlbreakjob;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
 
 import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemReader;
 import org.springframework.batch.item.ItemStreamException;
 import org.springframework.batch.item.ItemStreamReader;
 import org.springframework.batch.item.ParseException;
 import org.springframework.batch.item.UnexpectedInputException;
-import org.springframework.batch.item.file.FlatFileItemReader;
-import org.springframework.batch.item.support.SingleItemPeekableItemReader;
+import org.springframework.util.Assert;
 
 /**
  * An {@link ItemReader} that delivers a list as its item, storing up objects
  * from the injected {@link ItemReader} that are part of the same group.
  *
  * Group membership must be defined using an injected {@link BreakKeyStrategy}.
+ * With a {@link KeyedBreakStrategy}, the keys of each item are extracted once
+ * and those of the first item of a group are compared with the next ones.
+ *
+ * Items are pulled from the delegate by blocks of {@link #setBufferSize(int)}
+ * items and each group is returned as a read only slice of the block (no copy).
+ * A block is never reused once a slice of it has been returned : the remaining
+ * items of an incomplete group are moved to a new block.
+ *
+ * As the delegate reads ahead of the returned groups, its state is taken (with
+ * {@link ItemStreamReader#update(ExecutionContext)}) before each block is
+ * read : the state of the block holding the first item not yet returned is
+ * saved, with the number of items of the block already returned. On restart,
+ * the delegate resumes from its own state and only these items are skipped
+ * (less than a block and a group).
  *
  * @param <T> The class of the items to be processed
  *
@@ -23,58 +41,255 @@ import org.springframework.batch.item.support.SingleItemPeekableItemReader;
  */
 public class ItemListPeekableItemReader<T> implements ItemStreamReader<List<T>> {
 
-	private SingleItemPeekableItemReader<T> delegate;
+	private static final String SKIP_COUNT = "skip.count";
+
+	private static final int DEFAULT_BUFFER_SIZE = 256;
+
+	private ItemStreamReader<T> delegate;
 
 	private BreakKeyStrategy<T> breakKeyStrategy;
 
+	/** the strategy when keyed, null otherwise */
+	private KeyedBreakStrategy<T, ?> keyedStrategy;
+
+	/** keys of the first item not yet returned, if extracted */
+	private KeyedBreakStrategy.Keys nextKeys;
+
+	private String name = ItemListPeekableItemReader.class.getSimpleName();
+
+	private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+	private Object[] buffer = new Object[0];
+
+	/** index of the first item not yet returned */
+	private int position;
+
+	/** number of items in the buffer */
+	private int limit;
+
+	private boolean exhausted;
+
+	/** number of items returned in groups */
+	private long readCount;
+
+	/** number of items read from the delegate */
+	private long delegateCount;
+
+	/** states of the delegate before the blocks holding items not yet returned */
+	private final Deque<DelegateState> states = new ArrayDeque<DelegateState>();
+
 	@Override
 	public List<T> read() throws UnexpectedInputException, ParseException, Exception {
 
-		final List<T> records = new ArrayList<T>();
-
-		final T item = delegate.read();
+		if (position == limit) {
+			fill(position);
+			if (limit == 0) {
+				return null;
+			}
+		}
 
-		if (item == null) {
-			return null;
+		int start = position;
+		final T first = item(start);
+		KeyedBreakStrategy.Keys firstKeys = nextKeys;
+		if (firstKeys == null && keyedStrategy != null) {
+			firstKeys = keyedStrategy.keysOf(first);
 		}
-		records.add(item);
+		nextKeys = null;
+		int end = start + 1;
 
 		while (true) {
-			final T possibleSameGroupItem = delegate.peek();
-			if (possibleSameGroupItem == null) {
-				return records;
+			if (end == limit) {
+				if (exhausted) {
+					break;
+				}
+				// Move the incomplete group at the beginning of a new block
+				fill(start);
+				end -= start;
+				start = 0;
+				if (end == limit) {
+					break;
+				}
 			}
+			if (keyedStrategy != null) {
+				final KeyedBreakStrategy.Keys keys = keyedStrategy.keysOf(item(end));
+				if (!keyedStrategy.isSameGroup(firstKeys, keys)) {
+					nextKeys = keys;
+					break;
+				}
+			} else if (!breakKeyStrategy.isSameGroup(first, item(end))) {
+				break;
+			}
+			end++;
+		}
+
+		position = end;
+		readCount += end - start;
+		return new Slice<T>(buffer, start, end);
+	}
+
+	@SuppressWarnings("unchecked")
+	private T item(final int index) {
+		return (T) buffer[index];
+	}
+
+	/**
+	 * Allocate a new block, starting with the items of the current block from the
+	 * given index, and fill it from the delegate.
+	 */
+	private void fill(final int from) throws Exception {
+		final int remaining = limit - from;
+		final Object[] block = new Object[remaining + bufferSize];
+		System.arraycopy(buffer, from, block, 0, remaining);
+		buffer = block;
+		position = 0;
+		limit = remaining;
 
-			if (breakKeyStrategy.isSameGroup(item, possibleSameGroupItem)) {
-				records.add(delegate.read());
+		if (!exhausted) {
+			final ExecutionContext state = new ExecutionContext();
+			delegate.update(state);
+			states.addLast(new DelegateState(delegateCount, state));
+		}
+		while (!exhausted && limit < block.length) {
+			final T item = delegate.read();
+			if (item == null) {
+				exhausted = true;
 			} else {
-				return records;
+				block[limit++] = item;
+				delegateCount++;
+			}
+		}
+	}
+
+	/**
+	 * State of the delegate before a block.
+	 */
+	private static final class DelegateState {
+
+		/** number of items read from the delegate before the block */
+		private final long count;
+
+		private final ExecutionContext executionContext;
+
+		DelegateState(final long count, final ExecutionContext executionContext) {
+			this.count = count;
+			this.executionContext = executionContext;
+		}
+	}
+
+	/**
+	 * Read only view on a part of a block.
+	 */
+	private static final class Slice<T> extends AbstractList<T> implements RandomAccess {
+
+		private final Object[] items;
+
+		private final int from;
+
+		private final int to;
+
+		Slice(final Object[] items, final int from, final int to) {
+			this.items = items;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public T get(final int index) {
+			if (index < 0 || index >= to - from) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
 			}
+			return (T) items[from + index];
+		}
+
+		@Override
+		public int size() {
+			return to - from;
 		}
 	}
 
-	public void setDelegate(final FlatFileItemReader<T> delegate) {
-		this.delegate = new SingleItemPeekableItemReader<T>();
-		this.delegate.setDelegate(delegate);
+	/**
+	 * @param delegate the reader of the (sorted) items
+	 */
+	public void setDelegate(final ItemStreamReader<T> delegate) {
+		this.delegate = delegate;
 	}
 
+	@SuppressWarnings("unchecked")
 	public void setBreakKeyStrategy(final BreakKeyStrategy<T> breakKeyStrategy) {
 		this.breakKeyStrategy = breakKeyStrategy;
+		keyedStrategy = breakKeyStrategy instanceof KeyedBreakStrategy ? (KeyedBreakStrategy<T, ?>) breakKeyStrategy
+				: null;
+	}
+
+	/**
+	 * @param name the name used to prefix the keys saved in the
+	 *             {@link ExecutionContext}
+	 */
+	public void setName(final String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @param bufferSize number of items read from the delegate at a time
+	 */
+	public void setBufferSize(final int bufferSize) {
+		Assert.isTrue(bufferSize > 0, "bufferSize must be greater than 0");
+		this.bufferSize = bufferSize;
 	}
 
 	@Override
 	public void close() throws ItemStreamException {
+		buffer = new Object[0];
+		position = 0;
+		limit = 0;
+		nextKeys = null;
 		delegate.close();
 	}
 
 	@Override
 	public void open(final ExecutionContext executionContext) throws ItemStreamException {
+		Assert.notNull(delegate, "The delegate must be set");
+		Assert.notNull(breakKeyStrategy, "A BreakKeyStrategy must be provided");
+
+		buffer = new Object[0];
+		position = 0;
+		limit = 0;
+		nextKeys = null;
+		exhausted = false;
+		readCount = 0;
+		delegateCount = 0;
+		states.clear();
+
+		// On restart, the delegate resumes at the block of the first item not
+		// returned : only the items of this block already returned are skipped
 		delegate.open(executionContext);
+
+		final long skipCount = executionContext.getLong(name + "." + SKIP_COUNT, 0L);
+		try {
+			for (long i = 0; i < skipCount && delegate.read() != null; i++) {
+				// skip
+			}
+		} catch (final Exception e) {
+			throw new ItemStreamException("Unable to skip the items already read", e);
+		}
 	}
 
 	@Override
 	public void update(final ExecutionContext executionContext) throws ItemStreamException {
-		delegate.update(executionContext);
+		// forget the states of the blocks already returned
+		DelegateState state = states.pollFirst();
+		while (!states.isEmpty() && states.peekFirst().count <= readCount) {
+			state = states.pollFirst();
+		}
+		if (state == null) {
+			return;
+		}
+		states.addFirst(state);
+		for (final Map.Entry<String, Object> entry : state.executionContext.entrySet()) {
+			executionContext.put(entry.getKey(), entry.getValue());
+		}
+		executionContext.putLong(name + "." + SKIP_COUNT, readCount - state.count);
 	}
 
-}
\ No newline at end of file
+}
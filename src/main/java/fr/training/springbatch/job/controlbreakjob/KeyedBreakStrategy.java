@@ -0,0 +1,181 @@
+package fr.training.springbatch.job.controlbreakjob;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+import org.springframework.util.Assert;
+
+/**
+ * {@link BreakKeyStrategy} comparing the keys computed by key extractors.
+ *
+ * The keys are extracted at each comparison and compared with equals, level by
+ * level, stopping at the first level that breaks : no item nor key is kept, so
+ * the items may be mutable (reused by the reader) and the strategy may be
+ * shared once built. The readers comparing an item several times (the first
+ * item of a group with each next one) rather extract its {@link Keys} once,
+ * compared by hash code first.
+ *
+ * Several levels of keys can be defined (ie customer then month) :
+ * {@link #isSameGroup(Object, Object)} compares every level and
+ * {@link #breakLevel(Object, Object)} tells which level breaks first.
+ *
+ * @param <T> the record type
+ * @param <K> the type of the first level key
+ */
+public class KeyedBreakStrategy<T, K> implements BreakKeyStrategy<T> {
+
+	private final List<Function<? super T, ?>> extractors = new ArrayList<Function<? super T, ?>>();
+
+	/**
+	 * @param keyExtractor the first level key extractor
+	 */
+	public KeyedBreakStrategy(final Function<? super T, ? extends K> keyExtractor) {
+		Assert.notNull(keyExtractor, "A key extractor must be provided");
+		extractors.add(keyExtractor);
+	}
+
+	private KeyedBreakStrategy(final List<Function<? super T, ?>> extractors) {
+		this.extractors.addAll(extractors);
+	}
+
+	/**
+	 * @param keyExtractor the first level key extractor
+	 * @return a new strategy
+	 */
+	public static <T, K> KeyedBreakStrategy<T, K> by(final Function<? super T, ? extends K> keyExtractor) {
+		return new KeyedBreakStrategy<T, K>(keyExtractor);
+	}
+
+	/**
+	 * Add a sub level.
+	 *
+	 * @param keyExtractor the sub level key extractor
+	 * @return this strategy
+	 */
+	public KeyedBreakStrategy<T, K> thenBy(final Function<? super T, ?> keyExtractor) {
+		Assert.notNull(keyExtractor, "A key extractor must be provided");
+		extractors.add(keyExtractor);
+		return this;
+	}
+
+	/**
+	 * @return the number of levels
+	 */
+	public int getDepth() {
+		return extractors.size();
+	}
+
+	/**
+	 * @param item an item
+	 * @return the first level key of the item
+	 */
+	@SuppressWarnings("unchecked")
+	public K getKey(final T item) {
+		return (K) extractors.get(0).apply(item);
+	}
+
+	/**
+	 * @param item  an item
+	 * @param level the level (0 for the first level)
+	 * @return the key of the item at this level
+	 */
+	public Object getKey(final T item, final int level) {
+		return extractors.get(level).apply(item);
+	}
+
+	/**
+	 * @param item an item
+	 * @return the keys of the item at every level
+	 */
+	public Keys keysOf(final T item) {
+		final Object[] keys = new Object[extractors.size()];
+		for (int level = 0; level < keys.length; level++) {
+			keys[level] = extractors.get(level).apply(item);
+		}
+		return new Keys(keys);
+	}
+
+	@Override
+	public boolean isSameGroup(final T item1, final T item2) {
+		return breakLevel(item1, item2) == extractors.size();
+	}
+
+	/**
+	 * @param keys1 the keys of an item
+	 * @param keys2 the keys of another item
+	 * @return true if both items are in the same group
+	 */
+	public boolean isSameGroup(final Keys keys1, final Keys keys2) {
+		return breakLevel(keys1, keys2) == extractors.size();
+	}
+
+	/**
+	 * @param previous an item
+	 * @param next     the following item
+	 * @return the first level whose key differs between both items, or
+	 *         {@link #getDepth()} if they are in the same group at every level
+	 */
+	public int breakLevel(final T previous, final T next) {
+		for (int level = 0; level < extractors.size(); level++) {
+			final Function<? super T, ?> extractor = extractors.get(level);
+			if (!Objects.equals(extractor.apply(previous), extractor.apply(next))) {
+				return level;
+			}
+		}
+		return extractors.size();
+	}
+
+	/**
+	 * @param previous the keys of an item
+	 * @param next     the keys of the following item
+	 * @return the first level whose key differs between both items, or
+	 *         {@link #getDepth()} if they are in the same group at every level
+	 */
+	public int breakLevel(final Keys previous, final Keys next) {
+		for (int level = 0; level < extractors.size(); level++) {
+			if (previous.hashes[level] != next.hashes[level]
+					|| !Objects.equals(previous.keys[level], next.keys[level])) {
+				return level;
+			}
+		}
+		return extractors.size();
+	}
+
+	/**
+	 * @param depth number of levels to compare
+	 * @return a strategy comparing only the first levels
+	 */
+	public KeyedBreakStrategy<T, K> atDepth(final int depth) {
+		Assert.isTrue(depth > 0 && depth <= extractors.size(), "depth must be between 1 and " + extractors.size());
+		return new KeyedBreakStrategy<T, K>(extractors.subList(0, depth));
+	}
+
+	/**
+	 * Keys of an item at every level (of the strategy which extracted them), with
+	 * their hash codes.
+	 */
+	public static final class Keys {
+
+		private final Object[] keys;
+
+		private final int[] hashes;
+
+		Keys(final Object[] keys) {
+			this.keys = keys;
+			hashes = new int[keys.length];
+			for (int level = 0; level < keys.length; level++) {
+				hashes[level] = Objects.hashCode(keys[level]);
+			}
+		}
+
+		/**
+		 * @param level the level (0 for the first level)
+		 * @return the key at this level
+		 */
+		public Object get(final int level) {
+			return keys[level];
+		}
+	}
+}
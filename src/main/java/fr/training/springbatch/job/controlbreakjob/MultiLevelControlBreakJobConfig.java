@@ -0,0 +1,165 @@
+package fr.training.springbatch.job.controlbreakjob;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Comparator;
+import java.time.format.DateTimeFormatter;
+
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.job.DefaultJobParametersValidator;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.file.FlatFileItemWriter;
+import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
+import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
+import org.springframework.batch.item.file.mapping.BeanWrapperFieldSetMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.core.io.FileSystemResource;
+
+import fr.training.springbatch.app.dto.Transaction;
+import fr.training.springbatch.app.dto.TransactionSubtotal;
+import fr.training.springbatch.app.job.AbstractJobConfiguration;
+import fr.training.springbatch.tools.compress.CompressedResource;
+
+/**
+ * This job computes the transaction subtotals by customer, year and month in a
+ * single pass over the transaction file.
+ *
+ * A {@link MultiLevelControlBreakReader} turns the transactions into nested
+ * open / item / close events and a {@link SubtotalProcessor} returns a
+ * subtotal line each time a group is closed (month, then year, then customer).
+ *
+ * The transaction file is sorted by customer only : the transactions of each
+ * customer are sorted by date by a {@link GroupSortingItemReader}.
+ *
+ * @author Desprez
+ */
+public class MultiLevelControlBreakJobConfig extends AbstractJobConfiguration {
+
+	private static final int DEPTH = 3;
+
+	@Value("${application.multilevel-controlbreak-step.chunksize:50}")
+	private int chunkSize;
+
+	@Bean
+	public Job multiLevelControlBreakJob(final Step multiLevelControlBreakStep /* injected by Spring */) {
+		return jobBuilderFactory.get("multilevel-controlbreak-job") //
+				.incrementer(new RunIdIncrementer()) // job can be launched as many times as desired
+				.validator(new DefaultJobParametersValidator(new String[] { "transaction-file", "output-file" },
+						new String[] {})) //
+				.start(multiLevelControlBreakStep) //
+				.listener(reportListener()) //
+				.build();
+	}
+
+	/**
+	 * @param multiLevelControlBreakReader the injected Transaction
+	 *                                     {@link MultiLevelControlBreakReader}
+	 * @param subtotalProcessor            the injected {@link SubtotalProcessor}
+	 * @param transactionSubtotalWriter    the injected TransactionSubtotal
+	 *                                     {@link ItemWriter}
+	 * @return a Step Bean
+	 */
+	@Bean
+	public Step multiLevelControlBreakStep(
+			final MultiLevelControlBreakReader<Transaction> multiLevelControlBreakReader,
+			final SubtotalProcessor subtotalProcessor,
+			final ItemWriter<TransactionSubtotal> transactionSubtotalWriter /* injected by Spring */) {
+
+		return stepBuilderFactory.get("multilevel-controlbreak-step") //
+				.<ControlBreakEvent<Transaction>, TransactionSubtotal>chunk(chunkSize) //
+				.reader(multiLevelControlBreakReader) //
+				.processor(subtotalProcessor) //
+				.writer(transactionSubtotalWriter) //
+				.stream(subtotalProcessor) // save running subtotals for restart
+				.listener(reportListener()) //
+				.build();
+	}
+
+	@Bean(destroyMethod = "")
+	public MultiLevelControlBreakReader<Transaction> multiLevelControlBreakReader(
+			final FlatFileItemReader<Transaction> transactionReader) {
+
+		final ItemListPeekableItemReader<Transaction> customerReader = new ItemListPeekableItemReader<Transaction>();
+		customerReader.setDelegate(transactionReader);
+		customerReader.setBreakKeyStrategy(KeyedBreakStrategy.by(Transaction::getCustomerNumber));
+
+		final GroupSortingItemReader<Transaction> sortedReader = new GroupSortingItemReader<Transaction>();
+		sortedReader.setDelegate(customerReader);
+		sortedReader.setComparator(Comparator.comparing(Transaction::getTransactionDate));
+
+		final MultiLevelControlBreakReader<Transaction> reader = new MultiLevelControlBreakReader<Transaction>();
+		reader.setDelegate(sortedReader);
+		reader.setBreakStrategy(KeyedBreakStrategy.by(Transaction::getCustomerNumber) //
+				.thenBy(t -> t.getTransactionDate().getYear()) //
+				.thenBy(t -> YearMonth.from(t.getTransactionDate())));
+		return reader;
+	}
+
+	@StepScope // one set of running subtotals per step execution
+	@Bean
+	public SubtotalProcessor subtotalProcessor() {
+		return new SubtotalProcessor(DEPTH);
+	}
+
+	@StepScope // Mandatory for using jobParameters
+	@Bean
+	public FlatFileItemReader<Transaction> transactionReader(
+			@Value("#{jobParameters['transaction-file']}") final String transactionFile /* injected by Spring */) {
+
+		return new FlatFileItemReaderBuilder<Transaction>() //
+				.name("transactionReader") //
+				.resource(CompressedResource.forPath(transactionFile)) //
+				.delimited() //
+				.delimiter(";") //
+				.names(new String[] { "customerNumber", "number", "transactionDate", "amount" }) //
+				.linesToSkip(1) //
+				.fieldSetMapper(new BeanWrapperFieldSetMapper<Transaction>() {
+					{
+						setTargetType(Transaction.class);
+						setConversionService(createConversionService());
+					}
+				}).build();
+	}
+
+	/**
+	 * Converter to parse local date
+	 */
+	public ConversionService createConversionService() {
+		final DefaultConversionService conversionService = new DefaultConversionService();
+		DefaultConversionService.addDefaultConverters(conversionService);
+		conversionService.addConverter(new Converter<String, LocalDate>() {
+			@Override
+			public LocalDate convert(final String text) {
+				final DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE;
+				return LocalDate.parse(text, formatter);
+			}
+		});
+		return conversionService;
+	}
+
+	/**
+	 * @param outputFile the injected output file job parameter
+	 * @return a {@link FlatFileItemWriter} bean
+	 */
+	@StepScope // Mandatory for using jobParameters
+	@Bean
+	public FlatFileItemWriter<TransactionSubtotal> transactionSubtotalWriter(
+			@Value("#{jobParameters['output-file']}") final String outputFile) {
+
+		return new FlatFileItemWriterBuilder<TransactionSubtotal>().name("transactionSubtotalWriter") //
+				.resource(new FileSystemResource(outputFile)) //
+				.delimited() //
+				.delimiter(";") //
+				.names(new String[] { "customerNumber", "period", "balance" }) //
+				.build();
+	}
+
+}
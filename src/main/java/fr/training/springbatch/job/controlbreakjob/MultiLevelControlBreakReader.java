@@ -0,0 +1,231 @@
+package fr.training.springbatch.job.controlbreakjob;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemReader;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.UnexpectedInputException;
+import org.springframework.util.Assert;
+
+/**
+ * An {@link ItemReader} that turns sorted items into a stream of nested
+ * {@link ControlBreakEvent} (open, item, close per level) according to a
+ * multi-level {@link KeyedBreakStrategy}, so that subtotals of every level can
+ * be computed in one pass.
+ *
+ * Only the current item, the next one and the events between them (at most
+ * twice the depth plus one) are held in memory. The keys of each item are
+ * extracted once, and kept with the current item for the next transition.
+ *
+ * The items must be sorted on every level of the strategy : an item whose key
+ * is lower than the key of the previous item at the break level (when the keys
+ * are {@link Comparable}) is rejected, as it would open a group already closed.
+ * A {@link GroupSortingItemReader} completes the sort of an input sorted on the
+ * first level only.
+ *
+ * The delegate state is taken before each item is read : the state saved is
+ * the one before the previous item, as both items of the current transition
+ * are needed to emit its events. On restart, the delegate resumes from this
+ * state, these two items are read again and the events of their transition
+ * already returned are skipped.
+ *
+ * @param <T> The class of the items to be processed
+ */
+public class MultiLevelControlBreakReader<T> implements ItemStreamReader<ControlBreakEvent<T>> {
+
+	private static final String PREVIOUS_READ = "previous.read";
+
+	private static final String EMITTED_COUNT = "emitted.count";
+
+	private ItemStreamReader<T> delegate;
+
+	private KeyedBreakStrategy<T, ?> breakStrategy;
+
+	private String name = MultiLevelControlBreakReader.class.getSimpleName();
+
+	private final Deque<ControlBreakEvent<T>> events = new ArrayDeque<ControlBreakEvent<T>>();
+
+	/** last item read from the delegate */
+	private T current;
+
+	/** keys of the current item */
+	private KeyedBreakStrategy.Keys currentKeys;
+
+	private boolean ended;
+
+	/** state of the delegate before the current item */
+	private ExecutionContext currentState;
+
+	/** state of the delegate before the previous item (the current transition) */
+	private ExecutionContext transitionState;
+
+	/** true when the current transition has a previous item */
+	private boolean previousRead;
+
+	/** number of events of the last transition already returned */
+	private int emittedCount;
+
+	@Override
+	public ControlBreakEvent<T> read() throws Exception {
+		while (events.isEmpty()) {
+			if (ended) {
+				return null;
+			}
+			final ExecutionContext state = new ExecutionContext();
+			delegate.update(state);
+			final T next = delegate.read();
+			transitionState = currentState;
+			currentState = state;
+			previousRead = current != null;
+			if (!previousRead) {
+				transitionState = state;
+			}
+			emittedCount = 0;
+			next(next);
+		}
+		emittedCount++;
+		return events.poll();
+	}
+
+	/**
+	 * Queue the events between the current item and the next one, which becomes
+	 * the current item.
+	 *
+	 * @param next the next item (null at the end)
+	 */
+	private void next(final T next) {
+		final KeyedBreakStrategy.Keys nextKeys = next == null ? null : breakStrategy.keysOf(next);
+		addTransition(current, currentKeys, next, nextKeys);
+		current = next;
+		currentKeys = nextKeys;
+		ended = next == null;
+	}
+
+	/**
+	 * Queue the events between two consecutive items : close the groups of the
+	 * previous item from the innermost level to the break level, then open the
+	 * groups of the next item from the break level.
+	 *
+	 * @param previous     the previous item (null at the start)
+	 * @param previousKeys the keys of the previous item
+	 * @param next         the next item (null at the end)
+	 * @param nextKeys     the keys of the next item
+	 */
+	private void addTransition(final T previous, final KeyedBreakStrategy.Keys previousKeys, final T next,
+			final KeyedBreakStrategy.Keys nextKeys) {
+		final int depth = breakStrategy.getDepth();
+		final int breakLevel = previous == null || next == null ? 0 : breakStrategy.breakLevel(previousKeys, nextKeys);
+		if (previous != null && next != null && breakLevel < depth) {
+			checkOrder(previousKeys.get(breakLevel), nextKeys.get(breakLevel), breakLevel);
+		}
+
+		if (previous != null) {
+			for (int level = depth - 1; level >= breakLevel; level--) {
+				events.add(ControlBreakEvent.close(level, previousKeys.get(level), previous));
+			}
+		}
+		if (next != null) {
+			for (int level = breakLevel; level < depth; level++) {
+				events.add(ControlBreakEvent.open(level, nextKeys.get(level), next));
+			}
+			events.add(ControlBreakEvent.item(depth, next));
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static void checkOrder(final Object previousKey, final Object nextKey, final int level) {
+		if (previousKey instanceof Comparable && nextKey != null
+				&& ((Comparable) previousKey).compareTo(nextKey) > 0) {
+			throw new UnexpectedInputException(
+					"Items not sorted at level " + level + " : " + nextKey + " after " + previousKey);
+		}
+	}
+
+	@Override
+	public void open(final ExecutionContext executionContext) throws ItemStreamException {
+		Assert.notNull(delegate, "The delegate must be set");
+		Assert.notNull(breakStrategy, "A KeyedBreakStrategy must be provided");
+
+		events.clear();
+		current = null;
+		currentKeys = null;
+		ended = false;
+		currentState = null;
+		transitionState = null;
+		emittedCount = 0;
+
+		// On restart, the delegate resumes before the items of the transition
+		delegate.open(executionContext);
+
+		if (executionContext.containsKey(name + "." + EMITTED_COUNT)) {
+			try {
+				transitionState = new ExecutionContext();
+				delegate.update(transitionState);
+				previousRead = Boolean.TRUE.equals(executionContext.get(name + "." + PREVIOUS_READ));
+				if (previousRead) {
+					current = delegate.read();
+					currentKeys = current == null ? null : breakStrategy.keysOf(current);
+					currentState = new ExecutionContext();
+					delegate.update(currentState);
+				} else {
+					currentState = transitionState;
+				}
+				next(delegate.read());
+			} catch (final Exception e) {
+				throw new ItemStreamException("Unable to read again the items of the last transition", e);
+			}
+			emittedCount = executionContext.getInt(name + "." + EMITTED_COUNT);
+			for (int i = 0; i < emittedCount; i++) {
+				events.poll();
+			}
+		}
+	}
+
+	@Override
+	public void update(final ExecutionContext executionContext) throws ItemStreamException {
+		if (transitionState == null) {
+			return;
+		}
+		for (final Map.Entry<String, Object> entry : transitionState.entrySet()) {
+			executionContext.put(entry.getKey(), entry.getValue());
+		}
+		executionContext.put(name + "." + PREVIOUS_READ, previousRead);
+		executionContext.putInt(name + "." + EMITTED_COUNT, emittedCount);
+	}
+
+	@Override
+	public void close() throws ItemStreamException {
+		events.clear();
+		current = null;
+		currentKeys = null;
+		currentState = null;
+		transitionState = null;
+		delegate.close();
+	}
+
+	/**
+	 * @param delegate the reader of the (sorted) items
+	 */
+	public void setDelegate(final ItemStreamReader<T> delegate) {
+		this.delegate = delegate;
+	}
+
+	/**
+	 * @param breakStrategy the multi-level break strategy
+	 */
+	public void setBreakStrategy(final KeyedBreakStrategy<T, ?> breakStrategy) {
+		this.breakStrategy = breakStrategy;
+	}
+
+	/**
+	 * @param name the name used to prefix the keys saved in the
+	 *             {@link ExecutionContext}
+	 */
+	public void setName(final String name) {
+		this.name = name;
+	}
+}
@@ -0,0 +1,192 @@
+package fr.training.springbatch.job.controlbreakjob;
+
+import java.io.File;
+import java.util.List;
+
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.job.DefaultJobParametersValidator;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.file.FlatFileItemWriter;
+import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
+import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+
+import fr.training.springbatch.app.dto.Transaction;
+import fr.training.springbatch.app.dto.TransactionSum;
+import fr.training.springbatch.app.job.AbstractJobConfiguration;
+import fr.training.springbatch.tools.partition.FileRangeResource;
+import fr.training.springbatch.tools.tasklet.FileMergeTasklet;
+
+/**
+ * Same result as {@link ControlBreakJobConfig} but the sorted transaction file
+ * is split in byte ranges by a {@link GroupBoundaryPartitioner}, each split
+ * point being moved to the next customer boundary.
+ *
+ * Each partition is grouped by its own {@link ItemListPeekableItemReader} and
+ * written into a part file concurrently, then a {@link FileMergeTasklet}
+ * concatenates the part files (in partition order) into the final file.
+ *
+ * @author Desprez
+ */
+public class PartitionedControlBreakJobConfig extends AbstractJobConfiguration {
+
+	@Value("${application.partitioned-controlbreak-step.chunksize:15}")
+	private int chunkSize;
+
+	@Value("${application.partitioned-controlbreak-step.grid-size:4}")
+	private int gridSize;
+
+	@Autowired
+	private JobExplorer jobExplorer;
+
+	@Bean
+	public Job partitionedControlBreakJob(final Step partitionedControlBreakStep, final Step controlBreakMergeStep) {
+		return jobBuilderFactory.get("partitioned-controlbreak-job") //
+				.incrementer(new RunIdIncrementer()) // job can be launched as many times as desired
+				.validator(new DefaultJobParametersValidator(new String[] { "transaction-file", "output-file" },
+						new String[] {})) //
+				.start(partitionedControlBreakStep) //
+				.next(controlBreakMergeStep) //
+				.listener(reportListener()) //
+				.build();
+	}
+
+	/**
+	 * Manager step : split the file and run one worker step per partition.
+	 */
+	@Bean
+	public Step partitionedControlBreakStep(final GroupBoundaryPartitioner<Transaction> controlBreakPartitioner,
+			final Step controlBreakPartitionStep) {
+		return stepBuilderFactory.get("partitioned-controlbreak-step") //
+				.partitioner("controlbreak-partition-step", controlBreakPartitioner) //
+				.step(controlBreakPartitionStep) //
+				.gridSize(gridSize) //
+				.taskExecutor(controlBreakTaskExecutor()) //
+				.build();
+	}
+
+	/**
+	 * Worker step : group the transactions of one byte range into a part file.
+	 */
+	@Bean
+	public Step controlBreakPartitionStep(final ItemListPeekableItemReader<Transaction> partitionControlBreakReader,
+			final FlatFileItemWriter<TransactionSum> partitionTransactionSumWriter) {
+		return stepBuilderFactory.get("controlbreak-partition-step") //
+				.<List<Transaction>, TransactionSum>chunk(chunkSize) //
+				.reader(partitionControlBreakReader) //
+				.processor(ControlBreakJobConfig.processor()) //
+				.writer(partitionTransactionSumWriter) //
+				.listener(progressListener()) //
+				.build();
+	}
+
+	@Bean
+	public Step controlBreakMergeStep(final FileMergeTasklet controlBreakMergeTasklet) {
+		return stepBuilderFactory.get("controlbreak-merge-step") //
+				.tasklet(controlBreakMergeTasklet) //
+				.build();
+	}
+
+	@StepScope // Mandatory for using jobParameters
+	@Bean
+	public GroupBoundaryPartitioner<Transaction> controlBreakPartitioner(
+			@Value("#{jobParameters['transaction-file']}") final String transactionFile) {
+
+		final GroupBoundaryPartitioner<Transaction> partitioner = new GroupBoundaryPartitioner<Transaction>();
+		partitioner.setResource(new FileSystemResource(transactionFile));
+		partitioner.setLineMapper(ControlBreakJobConfig.transactionLineMapper());
+		partitioner.setBreakKeyStrategy(ControlBreakJobConfig.breakKeyStrategy());
+		partitioner.setLinesToSkip(1);
+		return partitioner;
+	}
+
+	/**
+	 * One thread per partition, bounded by the grid size.
+	 */
+	@Bean
+	public TaskExecutor controlBreakTaskExecutor() {
+		final SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor("controlbreak_partition");
+		taskExecutor.setConcurrencyLimit(gridSize);
+		return taskExecutor;
+	}
+
+	/**
+	 * Step scoped : each partition needs its own peekable reader.
+	 */
+	@StepScope
+	@Bean(destroyMethod = "")
+	public ItemListPeekableItemReader<Transaction> partitionControlBreakReader(
+			final FlatFileItemReader<Transaction> partitionTransactionReader) {
+
+		final ItemListPeekableItemReader<Transaction> groupReader = new ItemListPeekableItemReader<Transaction>();
+		groupReader.setDelegate(partitionTransactionReader);
+		groupReader.setBreakKeyStrategy(ControlBreakJobConfig.breakKeyStrategy());
+		return groupReader;
+	}
+
+	/**
+	 * Read the byte range of the partition (header excluded).
+	 *
+	 * @param transactionFile the injected transaction file job parameter
+	 * @param startOffset     first byte of the partition
+	 * @param endOffset       end (exclusive) of the partition
+	 */
+	@StepScope // Mandatory for using stepExecutionContext
+	@Bean
+	public FlatFileItemReader<Transaction> partitionTransactionReader(
+			@Value("#{jobParameters['transaction-file']}") final String transactionFile,
+			@Value("#{stepExecutionContext['startOffset']}") final Long startOffset,
+			@Value("#{stepExecutionContext['endOffset']}") final Long endOffset) {
+
+		return new FlatFileItemReaderBuilder<Transaction>() //
+				.name("partitionTransactionReader") //
+				.resource(new FileRangeResource(new File(transactionFile), startOffset, endOffset)) //
+				.lineMapper(ControlBreakJobConfig.transactionLineMapper()) //
+				.build();
+	}
+
+	/**
+	 * Write the partition part file.
+	 *
+	 * @param outputFile     the injected output file job parameter
+	 * @param partitionIndex the partition index
+	 */
+	@StepScope // Mandatory for using stepExecutionContext
+	@Bean
+	public FlatFileItemWriter<TransactionSum> partitionTransactionSumWriter(
+			@Value("#{jobParameters['output-file']}") final String outputFile,
+			@Value("#{stepExecutionContext['partitionIndex']}") final Integer partitionIndex) {
+
+		final File partFile = FileMergeTasklet.partFile(new File(outputFile), partitionIndex);
+
+		return new FlatFileItemWriterBuilder<TransactionSum>() //
+				.name("partitionTransactionSumWriter") //
+				.resource(new FileSystemResource(partFile)) //
+				.delimited() //
+				.delimiter(";") //
+				.names(new String[] { "customerNumber", "balance" }) //
+				.build();
+	}
+
+	@StepScope // Mandatory for using jobParameters
+	@Bean
+	public FileMergeTasklet controlBreakMergeTasklet(
+			@Value("#{jobParameters['output-file']}") final String outputFile) {
+
+		final FileMergeTasklet tasklet = new FileMergeTasklet();
+		tasklet.setOutput(new FileSystemResource(outputFile));
+		tasklet.setJobExplorer(jobExplorer);
+		tasklet.setPartitionStepName("controlbreak-partition-step");
+		return tasklet;
+	}
+
+}
@@ -0,0 +1,86 @@
+package fr.training.springbatch.job.controlbreakjob;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamException;
+
+import fr.training.springbatch.app.dto.Transaction;
+import fr.training.springbatch.app.dto.TransactionSubtotal;
+
+/**
+ * Compute the transaction subtotals of every level from the
+ * {@link ControlBreakEvent} of a {@link MultiLevelControlBreakReader} : a
+ * {@link TransactionSubtotal} is returned when a group is closed, other events
+ * are filtered.
+ *
+ * One running sum (in cents) is kept per level. The sums of the groups still
+ * open are saved in the {@link ExecutionContext} for restart : this processor
+ * must be registered as a stream of the step, and be step scoped so that each
+ * step execution starts from its own subtotals.
+ */
+public class SubtotalProcessor
+implements ItemProcessor<ControlBreakEvent<Transaction>, TransactionSubtotal>, ItemStream {
+
+	private static final String SUBTOTAL = "subtotal.";
+
+	private final long[] sums;
+
+	private String name = SubtotalProcessor.class.getSimpleName();
+
+	/**
+	 * @param depth number of levels of the break strategy
+	 */
+	public SubtotalProcessor(final int depth) {
+		sums = new long[depth];
+	}
+
+	@Override
+	public TransactionSubtotal process(final ControlBreakEvent<Transaction> event) {
+		switch (event.getType()) {
+		case OPEN:
+			sums[event.getLevel()] = 0;
+			return null;
+		case ITEM:
+			final long cents = Math.round(event.getItem().getAmount() * 100);
+			for (int level = 0; level < sums.length; level++) {
+				sums[level] += cents;
+			}
+			return null;
+		default:
+			final TransactionSubtotal subtotal = new TransactionSubtotal();
+			subtotal.setLevel(event.getLevel());
+			subtotal.setCustomerNumber(event.getItem().getCustomerNumber());
+			subtotal.setPeriod(event.getLevel() == 0 ? "" : String.valueOf(event.getKey()));
+			subtotal.setBalance(sums[event.getLevel()] / 100.0);
+			return subtotal;
+		}
+	}
+
+	@Override
+	public void open(final ExecutionContext executionContext) throws ItemStreamException {
+		for (int level = 0; level < sums.length; level++) {
+			sums[level] = executionContext.getLong(name + "." + SUBTOTAL + level, 0L);
+		}
+	}
+
+	@Override
+	public void update(final ExecutionContext executionContext) throws ItemStreamException {
+		for (int level = 0; level < sums.length; level++) {
+			executionContext.putLong(name + "." + SUBTOTAL + level, sums[level]);
+		}
+	}
+
+	@Override
+	public void close() throws ItemStreamException {
+		// nothing to release
+	}
+
+	/**
+	 * @param name the name used to prefix the keys saved in the
+	 *             {@link ExecutionContext}
+	 */
+	public void setName(final String name) {
+		this.name = name;
+	}
+}
@@ -0,0 +1,225 @@
+package fr.training.springbatch.job.exportjob;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.job.DefaultJobParametersValidator;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.item.database.JdbcPagingItemReader;
+import org.springframework.batch.item.database.Order;
+import org.springframework.batch.item.database.builder.JdbcPagingItemReaderBuilder;
+import org.springframework.batch.item.file.FlatFileItemWriter;
+import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.util.StringUtils;
+
+import fr.training.springbatch.app.dto.Transaction;
+import fr.training.springbatch.app.job.AbstractJobConfiguration;
+import fr.training.springbatch.tools.partition.KeyRangePartitioner;
+import fr.training.springbatch.tools.tasklet.FileMergeTasklet;
+
+/**
+ * Same export as {@link SimpleExportJobConfig} but the Transaction table is
+ * split by customer number ranges using a {@link KeyRangePartitioner}.
+ *
+ * Each partition reads its range and writes its own part file concurrently,
+ * then a {@link FileMergeTasklet} concatenates the part files into the final
+ * file, with the header written only once.
+ *
+ * @author Desprez
+ */
+public class PartitionedExportJobConfig extends AbstractJobConfiguration {
+
+	private static final Logger logger = LoggerFactory.getLogger(PartitionedExportJobConfig.class);
+
+	private static final String FILENAME = "partitioned-export.csv";
+
+	private static final String HEADER = "customerNumber;number;transactionDate;amount";
+
+	@Value("${application.partitioned-export-step.chunksize:10}")
+	private int chunkSize;
+
+	@Value("${application.partitioned-export-step.pagesize:100}")
+	private int pageSize;
+
+	@Value("${application.partitioned-export-step.grid-size:4}")
+	private int gridSize;
+
+	@Autowired
+	public DataSource dataSource;
+
+	@Autowired
+	private JobExplorer jobExplorer;
+
+	@Bean
+	public Job partitionedExportJob(final Step partitionedExportStep, final Step mergeStep) {
+		return jobBuilderFactory.get("partitioned-export-job") //
+				.validator(new DefaultJobParametersValidator(new String[] { "output-dir" }, new String[] {}))
+				.incrementer(new RunIdIncrementer()) //
+				.start(partitionedExportStep) //
+				.next(mergeStep) //
+				.listener(reportListener()) //
+				.build();
+	}
+
+	/**
+	 * Manager step : split the table and run one worker step per partition.
+	 */
+	@Bean
+	public Step partitionedExportStep(final Step exportPartitionStep) {
+		return stepBuilderFactory.get("partitioned-export-step") //
+				.partitioner("export-partition-step", exportPartitioner()) //
+				.step(exportPartitionStep) //
+				.gridSize(gridSize) //
+				.taskExecutor(exportTaskExecutor()) //
+				.build();
+	}
+
+	/**
+	 * Worker step : export one customer number range into a part file.
+	 */
+	@Bean
+	public Step exportPartitionStep(final JdbcPagingItemReader<Transaction> partitionExportReader,
+			final FlatFileItemWriter<Transaction> partitionExportWriter) {
+		return stepBuilderFactory.get("export-partition-step") //
+				.<Transaction, Transaction>chunk(chunkSize) //
+				.reader(partitionExportReader) //
+				.writer(partitionExportWriter) //
+				.listener(progressListener()) //
+				.build();
+	}
+
+	@Bean
+	public Step mergeStep(final FileMergeTasklet mergeTasklet) {
+		return stepBuilderFactory.get("merge-step") //
+				.tasklet(mergeTasklet) //
+				.build();
+	}
+
+	@Bean
+	public KeyRangePartitioner exportPartitioner() {
+		final KeyRangePartitioner partitioner = new KeyRangePartitioner();
+		partitioner.setDataSource(dataSource);
+		partitioner.setTable("Transaction");
+		partitioner.setColumn("customer_number");
+		return partitioner;
+	}
+
+	/**
+	 * One thread per partition, bounded by the grid size (and so the number of
+	 * DB connections used at the same time).
+	 */
+	@Bean
+	public TaskExecutor exportTaskExecutor() {
+		final SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor("export_partition");
+		taskExecutor.setConcurrencyLimit(gridSize);
+		return taskExecutor;
+	}
+
+	/**
+	 * Keyset paging reader restricted to the customer number range of the
+	 * partition.
+	 *
+	 * @param minKey first customer number of the partition
+	 * @param maxKey last customer number of the partition
+	 */
+	@StepScope // Mandatory for using stepExecutionContext
+	@Bean
+	public JdbcPagingItemReader<Transaction> partitionExportReader(
+			@Value("#{stepExecutionContext['minKey']}") final String minKey,
+			@Value("#{stepExecutionContext['maxKey']}") final String maxKey) {
+
+		final Map<String, Order> sortKeys = new LinkedHashMap<String, Order>();
+		sortKeys.put("customer_number", Order.ASCENDING);
+		sortKeys.put("number", Order.ASCENDING);
+		sortKeys.put("id", Order.ASCENDING);
+
+		final JdbcPagingItemReaderBuilder<Transaction> builder = new JdbcPagingItemReaderBuilder<Transaction>() //
+				.name("partitionExportReader") //
+				.dataSource(dataSource) //
+				.selectClause("SELECT customer_number, number, amount, transaction_date, id") //
+				.fromClause("FROM Transaction") //
+				.sortKeys(sortKeys) //
+				.pageSize(pageSize) //
+				.fetchSize(pageSize) //
+				.rowMapper(new BeanPropertyRowMapper<>(Transaction.class));
+
+		if (minKey != null) {
+			final Map<String, Object> parameters = new HashMap<String, Object>();
+			parameters.put(KeyRangePartitioner.MIN_KEY, minKey);
+			parameters.put(KeyRangePartitioner.MAX_KEY, maxKey);
+			builder.whereClause("customer_number >= :minKey AND customer_number <= :maxKey") //
+			.parameterValues(parameters);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Write the partition part file (without header).
+	 *
+	 * @param outputdir      the output directory job parameter
+	 * @param runId          the job run id
+	 * @param partitionIndex the partition index
+	 */
+	@StepScope // Mandatory for using stepExecutionContext
+	@Bean
+	public FlatFileItemWriter<Transaction> partitionExportWriter(
+			@Value("#{jobParameters['output-dir']}") final String outputdir,
+			@Value("#{jobParameters['run.id']}") final Long runId,
+			@Value("#{stepExecutionContext['partitionIndex']}") final Integer partitionIndex) {
+
+		final File partFile = FileMergeTasklet.partFile(outputFile(outputdir, runId), partitionIndex);
+
+		return new FlatFileItemWriterBuilder<Transaction>() //
+				.name("partitionExportWriter") //
+				.resource(new FileSystemResource(partFile)) //
+				.delimited() //
+				.delimiter(";") //
+				.names("customerNumber", "number", "transactionDate", "amount") //
+				.build();
+	}
+
+	@StepScope // Mandatory for using jobParameters
+	@Bean
+	public FileMergeTasklet mergeTasklet(@Value("#{jobParameters['output-dir']}") final String outputdir,
+			@Value("#{jobParameters['run.id']}") final Long runId) {
+
+		final File file = outputFile(outputdir, runId);
+		logger.info("fileName={}", file.getAbsoluteFile());
+
+		final Resource output = new FileSystemResource(file);
+		final FileMergeTasklet tasklet = new FileMergeTasklet();
+		tasklet.setOutput(output);
+		tasklet.setHeader(HEADER);
+		tasklet.setJobExplorer(jobExplorer);
+		tasklet.setPartitionStepName("export-partition-step");
+		return tasklet;
+	}
+
+	/**
+	 * Get an unique filename according to a file name and a job unique run
+	 * identifier.
+	 */
+	private File outputFile(final String outputdir, final Long runId) {
+		final String baseFilename = StringUtils.stripFilenameExtension(FILENAME);
+		final String extension = StringUtils.getFilenameExtension(FILENAME);
+		return new File(new File(outputdir), String.format("%s-%s.%s", baseFilename, runId, extension));
+	}
+}
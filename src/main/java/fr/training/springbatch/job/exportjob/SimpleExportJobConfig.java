@@ -3,6 +3,8 @@ package fr.training.springbatch.job.exportjob;
 import java.io.File;
 import java.io.IOException;
 import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.sql.DataSource;
 
@@ -14,11 +16,11 @@ import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.job.DefaultJobParametersValidator;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.item.ItemProcessor;
-import org.springframework.batch.item.database.JdbcCursorItemReader;
-import org.springframework.batch.item.database.builder.JdbcCursorItemReaderBuilder;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.item.database.JdbcPagingItemReader;
+import org.springframework.batch.item.database.Order;
+import org.springframework.batch.item.database.builder.JdbcPagingItemReaderBuilder;
 import org.springframework.batch.item.file.FlatFileHeaderCallback;
-import org.springframework.batch.item.file.FlatFileItemWriter;
-import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -29,6 +31,8 @@ import org.springframework.util.StringUtils;
 
 import fr.training.springbatch.app.dto.Transaction;
 import fr.training.springbatch.app.job.AbstractJobConfiguration;
+import fr.training.springbatch.tools.compress.CompressionCodec;
+import fr.training.springbatch.tools.compress.DelimitedFileItemWriterBuilder;
 
 /**
  *
@@ -42,6 +46,13 @@ public class SimpleExportJobConfig extends AbstractJobConfiguration {
 	@Value("${application.simple-export-step.chunksize:10}")
 	private int chunkSize;
 
+	@Value("${application.simple-export-step.pagesize:100}")
+	private int pageSize;
+
+	/** Output compression : none or gzip */
+	@Value("${application.simple-export-step.compression:none}")
+	private String compression;
+
 	@Autowired
 	public DataSource dataSource;
 
@@ -57,9 +68,10 @@ public class SimpleExportJobConfig extends AbstractJobConfiguration {
 	}
 
 	@Bean
-	public Step exportStep(final FlatFileItemWriter<Transaction> exportWriter) {
+	public Step exportStep(final JdbcPagingItemReader<Transaction> simpleExportReader,
+			final ItemStreamWriter<Transaction> exportWriter) {
 		return stepBuilderFactory.get("simple-export-step").<Transaction, Transaction>chunk(chunkSize) //
-				.reader(simpleExportReader()) //
+				.reader(simpleExportReader) //
 				.processor(simpleExportProcessor()) //
 				.writer(exportWriter) //
 				.listener(progressListener()) //
@@ -69,14 +81,29 @@ public class SimpleExportJobConfig extends AbstractJobConfiguration {
 	/**
 	 * ItemReader is an abstract representation of how data is provided as input to
 	 * a Step. When the inputs are exhausted, the ItemReader returns null.
+	 *
+	 * Keyset paging reader : each page is read with a new query starting after
+	 * the last (customer_number, number, id) key of the previous page. The id
+	 * makes the key unique : rows sharing the other columns would otherwise be
+	 * skipped at a page boundary. The nullable transaction_date is not part of
+	 * the key (a NULL never compares greater than the last key).
 	 */
 	@Bean
-	public JdbcCursorItemReader<Transaction> simpleExportReader() {
+	public JdbcPagingItemReader<Transaction> simpleExportReader() {
 
-		return new JdbcCursorItemReaderBuilder<Transaction>() //
+		final Map<String, Order> sortKeys = new LinkedHashMap<String, Order>();
+		sortKeys.put("customer_number", Order.ASCENDING);
+		sortKeys.put("number", Order.ASCENDING);
+		sortKeys.put("id", Order.ASCENDING);
+
+		return new JdbcPagingItemReaderBuilder<Transaction>() //
 				.name("simpleExportReader") //
 				.dataSource(dataSource) //
-				.sql("SELECT customer_number, number, amount, transaction_date FROM Transaction") //
+				.selectClause("SELECT customer_number, number, amount, transaction_date, id") //
+				.fromClause("FROM Transaction") //
+				.sortKeys(sortKeys) //
+				.pageSize(pageSize) //
+				.fetchSize(pageSize) //
 				.rowMapper(new BeanPropertyRowMapper<>(Transaction.class)) //
 				.build();
 	}
@@ -106,23 +133,30 @@ public class SimpleExportJobConfig extends AbstractJobConfiguration {
 	 * @param incrementalFilename spring injected resource
 	 */
 	@Bean
-	public FlatFileItemWriter<Transaction> simpleExportWriter(final Resource incrementalFilename) {
+	public ItemStreamWriter<Transaction> simpleExportWriter(final Resource incrementalFilename) {
+
+		final String[] fields = new String[] { "customerNumber", "number", "transactionDate", "amount" };
+		final FlatFileHeaderCallback headerCallback = new FlatFileHeaderCallback() {
+			@Override
+			public void writeHeader(final Writer writer) throws IOException {
+				writer.write("customerNumber;number;transactionDate;amount");
+			}
+		};
 
-		return new FlatFileItemWriterBuilder<Transaction>() //
+		return new DelimitedFileItemWriterBuilder<Transaction>() //
 				.name("simpleExportWriter") //
 				.resource(incrementalFilename) //
-				.delimited() //
+				.codec(compressionCodec()) //
 				.delimiter(";") //
-				.names("customerNumber", "number", "transactionDate", "amount") //
-				.headerCallback(new FlatFileHeaderCallback() {
-					@Override
-					public void writeHeader(final Writer writer) throws IOException {
-						writer.write("customerNumber;number;transactionDate;amount");
-					}
-				}) //
+				.names(fields) //
+				.headerCallback(headerCallback) //
 				.build();
 	}
 
+	private CompressionCodec compressionCodec() {
+		return CompressionCodec.valueOf(compression.trim().toUpperCase());
+	}
+
 	/**
 	 * Get an unique filename resource according to a file name and a job unique run
 	 * identifier.
@@ -142,7 +176,8 @@ public class SimpleExportJobConfig extends AbstractJobConfiguration {
 		final String extension = StringUtils.getFilenameExtension(FILENAME);
 
 		final File dir = new File(outputdir);
-		final String name = String.format("%s-%s.%s", baseFilename, runId, extension);
+		final String name = String.format("%s-%s.%s%s", baseFilename, runId, extension,
+				compressionCodec().getExtension());
 		final File file = new File(dir, name);
 
 		logger.info("fileName={}", file.getAbsoluteFile());
@@ -12,6 +12,7 @@ import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.job.DefaultJobParametersValidator;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
 import org.springframework.batch.core.step.tasklet.Tasklet;
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.batch.item.ItemReader;
@@ -20,7 +21,9 @@ import org.springframework.batch.item.database.BeanPropertyItemSqlParameterSourc
 import org.springframework.batch.item.database.JdbcBatchItemWriter;
 import org.springframework.batch.item.database.builder.JdbcBatchItemWriterBuilder;
 import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.file.FlatFileItemWriter;
 import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
+import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
 import org.springframework.batch.item.file.mapping.BeanWrapperFieldSetMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -29,9 +32,12 @@ import org.springframework.core.convert.ConversionService;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.core.convert.support.DefaultConversionService;
 import org.springframework.core.io.FileSystemResource;
+import org.springframework.util.Assert;
 
 import fr.training.springbatch.app.dto.Transaction;
 import fr.training.springbatch.app.job.AbstractJobConfiguration;
+import fr.training.springbatch.tools.compress.CompressedResource;
+import fr.training.springbatch.tools.dedup.DuplicateFilterItemWriter;
 import fr.training.springbatch.tools.listener.ItemCountListener;
 import fr.training.springbatch.tools.tasklet.JdbcTasklet;
 
@@ -45,6 +51,18 @@ public class SimpleImportJobConfig extends AbstractJobConfiguration {
 	@Value("${application.simple-import-step.chunksize:10}")
 	private int chunkSize;
 
+	@Value("${application.simple-import-step.rebuild-index:true}")
+	private boolean rebuildIndex;
+
+	@Value("${application.simple-import-step.expected-keys:100000}")
+	private int expectedKeys;
+
+	@Value("${application.simple-import-step.verify-duplicates:false}")
+	private boolean verifyDuplicates;
+
+	@Value("${application.simple-import-step.duplicate-file:transaction-duplicate.csv}")
+	private String defaultDuplicateFile;
+
 	@Autowired
 	private DataSource dataSource;
 
@@ -80,15 +98,18 @@ public class SimpleImportJobConfig extends AbstractJobConfiguration {
 
 	@Bean
 	public Step importStep(final ItemReader<Transaction> importReader, //
-			final ItemWriter<Transaction> importWriter) {
+			final DuplicateFilterItemWriter<Transaction> duplicateFilterWriter) {
 
-		return stepBuilderFactory.get("simple-import-step") //
+		final SimpleStepBuilder<Transaction, Transaction> builder = stepBuilderFactory.get("simple-import-step") //
 				.<Transaction, Transaction>chunk(chunkSize) //
 				.reader(importReader) //
 				.processor(importProcessor()) //
-				.writer(importWriter) //
-				.listener(progressListener()) //
-				.build();
+				.writer(duplicateFilterWriter);
+		builder.listener(progressListener());
+		if (rebuildIndex) {
+			builder.listener(transactionIndexListener(dataSource));
+		}
+		return builder.build();
 	}
 
 	/**
@@ -126,7 +147,7 @@ public class SimpleImportJobConfig extends AbstractJobConfiguration {
 
 		return new FlatFileItemReaderBuilder<Transaction>() //
 				.name("simpleImportReader") //
-				.resource(new FileSystemResource(inputFile)) //
+				.resource(CompressedResource.forPath(inputFile)) //
 				.delimited() //
 				.delimiter(";") //
 				.names(new String[] { "customerNumber", "number", "transactionDate", "amount" }) //
@@ -139,6 +160,56 @@ public class SimpleImportJobConfig extends AbstractJobConfiguration {
 				}).build();
 	}
 
+	/**
+	 * Insert the first occurrence of each (customer number, transaction number)
+	 * and write the next ones to the duplicate file. The suspected duplicates
+	 * can be checked in the table (only this file is in it), where the keys
+	 * already imported are reloaded from on restart.
+	 *
+	 * The verification needs the index of the key during the load, so it is
+	 * rejected with rebuild-index (the index is dropped until the end of the
+	 * step, each query would scan the table).
+	 */
+	@Bean(destroyMethod = "") // the step closes it, its duplicateItemWriter is step scoped
+	public DuplicateFilterItemWriter<Transaction> duplicateFilterWriter(
+			final JdbcBatchItemWriter<Transaction> importWriter,
+			final ItemWriter<Transaction> duplicateItemWriter) {
+		Assert.state(!(verifyDuplicates && rebuildIndex),
+				"verify-duplicates needs the index of the table : it cannot be used with rebuild-index");
+		final DuplicateFilterItemWriter<Transaction> writer = new DuplicateFilterItemWriter<Transaction>();
+		writer.setDelegate(importWriter);
+		writer.setRejectWriter(duplicateItemWriter);
+		writer.setKeyExtractor(TRANSACTION_KEY);
+		writer.setExpectedKeys(expectedKeys);
+		writer.setDataSource(dataSource);
+		writer.setRestartSql("SELECT customer_number || ';' || number FROM Transaction");
+		if (verifyDuplicates) {
+			writer.setVerifySql(
+					"SELECT COUNT(*) FROM Transaction WHERE customer_number = :customerNumber AND number = :number");
+		}
+		return writer;
+	}
+
+	/**
+	 * @param duplicateFile the duplicate file (default
+	 *                      application.simple-import-step.duplicate-file)
+	 */
+	@StepScope // Mandatory for using jobParameters
+	@Bean
+	public FlatFileItemWriter<Transaction> duplicateItemWriter(
+			@Value("#{jobParameters['duplicate-file']}") final String duplicateFile) {
+
+		return new FlatFileItemWriterBuilder<Transaction>() //
+				.name("duplicateItemWriter") //
+				.resource(new FileSystemResource(duplicateFile != null ? duplicateFile : defaultDuplicateFile)) //
+				.headerCallback(writer -> writer.write("customer#;transaction#;date;amount")) //
+				.delimited() //
+				.delimiter(";") //
+				.names(new String[] { "customerNumber", "number", "transactionDate", "amount" }) //
+				.shouldDeleteIfEmpty(true) //
+				.build();
+	}
+
 	@Bean
 	public JdbcBatchItemWriter<Transaction> importWriter() {
 
@@ -1,8 +1,11 @@
 package fr.training.springbatch.job.purgejob;
 
+import java.io.File;
+
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.jdbc.core.JdbcTemplate;
 
@@ -10,13 +13,20 @@ import fr.training.springbatch.app.job.AbstractJobConfiguration;
 import fr.training.springbatch.tools.tasklet.RemoveSpringBatchHistoryTasklet;
 
 /**
- *
+ * Remove the Spring Batch history, archived by month in compressed files when
+ * an archive directory is configured.
  */
 public class PurgeHistoryJob extends AbstractJobConfiguration {
 
 	@Autowired
 	private JdbcTemplate jdbcTemplate;
 
+	@Value("${application.purgehistorystep.batch-size:1000}")
+	private int batchSize;
+
+	@Value("${application.purgehistorystep.archive-directory:}")
+	private String archiveDirectory;
+
 	@Bean
 	public Job job() {
 
@@ -25,6 +35,10 @@ public class PurgeHistoryJob extends AbstractJobConfiguration {
 					{
 						setHistoricRetentionMonth(1);
 						setJdbcTemplate(jdbcTemplate);
+						setBatchSize(batchSize);
+						if (!archiveDirectory.isEmpty()) {
+							setArchiveDirectory(new File(archiveDirectory));
+						}
 					}
 				}).build();
 
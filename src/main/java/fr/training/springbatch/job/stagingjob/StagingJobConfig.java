@@ -2,14 +2,24 @@ package fr.training.springbatch.job.stagingjob;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import javax.sql.DataSource;
 
+import org.springframework.batch.core.ChunkListener;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecutionListener;
 import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.job.DefaultJobParametersValidator;
+import org.springframework.batch.core.explore.JobExplorer;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.step.builder.PartitionStepBuilder;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.batch.item.ItemReader;
 import org.springframework.batch.item.ItemWriter;
@@ -18,15 +28,16 @@ import org.springframework.batch.item.database.builder.JdbcBatchItemWriterBuilde
 import org.springframework.batch.item.database.support.DataFieldMaxValueIncrementerFactory;
 import org.springframework.batch.item.database.support.DefaultDataFieldMaxValueIncrementerFactory;
 import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.file.FlatFileItemWriter;
 import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
+import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
 import org.springframework.batch.item.file.mapping.BeanWrapperFieldSetMapper;
-import org.springframework.batch.item.validator.SpringValidator;
-import org.springframework.batch.item.validator.ValidatingItemProcessor;
 import org.springframework.batch.support.DatabaseType;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.core.convert.ConversionService;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.core.convert.support.DefaultConversionService;
@@ -35,60 +46,287 @@ import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.jdbc.support.MetaDataAccessException;
 import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import fr.training.springbatch.app.dto.Transaction;
 import fr.training.springbatch.app.job.AbstractJobConfiguration;
+import fr.training.springbatch.tools.async.AsyncItemProcessor;
+import fr.training.springbatch.tools.async.AsyncStepSupport;
+import fr.training.springbatch.tools.compress.CompressedResource;
+import fr.training.springbatch.tools.dedup.DuplicateFilterItemWriter;
 import fr.training.springbatch.tools.listener.ItemCountListener;
+import fr.training.springbatch.tools.partition.PartitionChannel;
+import fr.training.springbatch.tools.partition.PartitionWorker;
+import fr.training.springbatch.tools.partition.QueuePartitionChannel;
+import fr.training.springbatch.tools.partition.RemotePartitionHandler;
 import fr.training.springbatch.tools.staging.ProcessIndicatorItemWrapper;
+import fr.training.springbatch.tools.staging.StagingCleanupTasklet;
 import fr.training.springbatch.tools.staging.StagingItemProcessor;
 import fr.training.springbatch.tools.staging.StagingItemReader;
 import fr.training.springbatch.tools.staging.StagingItemWriter;
+import fr.training.springbatch.tools.staging.StagingPartitionListener;
+import fr.training.springbatch.tools.staging.StagingQueueItemReader;
+import fr.training.springbatch.tools.staging.StagingRangePartitioner;
+import fr.training.springbatch.tools.staging.StagingSchemaInitializer;
+import fr.training.springbatch.tools.validation.RejectRoutingItemWriter;
+import fr.training.springbatch.tools.validation.RejectingValidationProcessor;
+import fr.training.springbatch.tools.validation.ValidationErrorCounter;
+import fr.training.springbatch.tools.validation.ValidationResult;
 
 /**
- *
+ * Load a file in a table through the BATCH_STAGING table (process indicator
+ * pattern), then remove the staging rows of the job.
  */
 public class StagingJobConfig extends AbstractJobConfiguration {
 
 	@Autowired
 	public DataSource dataSource;
 
+	@Value("${application.staging-step.chunksize:2}")
+	private int stagingChunkSize;
+
+	@Value("${application.staging-step.workers:0}")
+	private int validationWorkers;
+
+	@Value("${application.staging-step.max-error-rate:1}")
+	private double maxErrorRate;
+
+	@Value("${application.staging-step.min-item-count:100}")
+	private long minItemCount;
+
+	@Value("${application.staging-step.expected-keys:100000}")
+	private int expectedKeys;
+
+	@Value("${application.staging-step.reject-file:transaction-reject.csv}")
+	private String defaultRejectFile;
+
+	@Value("${application.cleanup-step.batch-size:1000}")
+	private int cleanupBatchSize;
+
+	@Value("${application.cleanup-step.partitioned:false}")
+	private boolean partitioned;
+
+	@Value("${application.staging-job.initialize-schema:true}")
+	private boolean initializeSchema;
+
+	@Value("${application.loading-step.rebuild-index:false}")
+	private boolean rebuildIndex;
+
+	@Value("${application.loading-step.queue:false}")
+	private boolean queue;
+
+	@Value("${application.loading-step.grid-size:0}")
+	private int gridSize;
+
+	@Value("${application.loading-step.workers:2}")
+	private int workers;
+
+	@Value("${application.loading-step.poll-interval:1000}")
+	private long pollInterval;
+
+	@Value("${application.loading-step.timeout:3600000}")
+	private long timeout;
+
+	@Autowired
+	private JobExplorer jobExplorer;
+
+	@Autowired
+	private JobRepository jobRepository;
+
 	@Bean
-	public Job stagingJob(final Step stagingStep, final Step loadingStep) {
+	public Job stagingJob(final Step stagingStep, final Step loadingStep, final Step cleanupStep) {
 		return jobBuilderFactory.get("staging-job") //
 				.incrementer(new RunIdIncrementer()) //
 				.validator(new DefaultJobParametersValidator(new String[] { "input-file" }, new String[] {})) //
 				.start(stagingStep) //
 				.next(loadingStep) //
+				.next(cleanupStep) //
 				.listener(reportListener()) //
 				.build();
 	}
 
+	/**
+	 * Validate the transactions and write them to the staging table. The invalid
+	 * ones are written to the reject file with their error codes, the step fails
+	 * only when the error rate exceeds the threshold. With workers, the items of
+	 * a chunk are validated concurrently (see {@link AsyncItemProcessor}).
+	 */
 	@Bean
-	public Step stagingStep(final ValidatingItemProcessor<Transaction> validatingProcessor, //
-			final ItemWriter<Transaction> stagingItemWriter, final ItemReader<Transaction> fileItemReader) {
+	public Step stagingStep(final RejectingValidationProcessor<Transaction> validationProcessor,
+			final ValidationErrorCounter validationErrorCounter, final TransactionValidator transactionValidator,
+			final StagingItemWriter<Transaction> stagingItemWriter,
+			final DuplicateFilterItemWriter<Transaction> duplicateFilterWriter,
+			final ItemWriter<ValidationResult<Transaction>> rejectItemWriter,
+			final ItemReader<Transaction> fileItemReader, final ObjectProvider<TaskExecutor> validationTaskExecutor) {
 
-		return stepBuilderFactory.get("staging-step") //
-				.<Transaction, Transaction>chunk(2) //
-				.reader(fileItemReader) //
-				.processor(validatingProcessor)//
-				.writer(stagingItemWriter) //
-				.listener(progressListener()) //
+		final RejectRoutingItemWriter<Transaction> routingWriter = new RejectRoutingItemWriter<Transaction>();
+		routingWriter.setDelegate(duplicateFilterWriter);
+		routingWriter.setRejectWriter(rejectItemWriter);
+		routingWriter.setErrorCounter(validationErrorCounter);
+
+		final SimpleStepBuilder<Transaction, ?> builder = AsyncStepSupport.chunk(
+				stepBuilderFactory.get("staging-step"), stagingChunkSize, validationProcessor, routingWriter, //
+				validationWorkers > 0 ? validationTaskExecutor.getObject() : null) //
+				.reader(fileItemReader);
+		// wrapped : not registered by the builder
+		builder.listener((StepExecutionListener) stagingItemWriter);
+		builder.listener((StepExecutionListener) duplicateFilterWriter);
+		builder.listener((StepExecutionListener) validationErrorCounter);
+		builder.listener((ChunkListener) validationErrorCounter);
+		builder.stream(validationErrorCounter);
+		builder.listener(transactionValidator); // compile the rules at step start
+		builder.listener(progressListener());
+		if (partitioned) {
+			builder.listener(stagingPartitionListener());
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Remove the staging rows of the job once loaded.
+	 *
+	 * @return a Step bean
+	 */
+	@Bean
+	public Step cleanupStep() {
+		return stepBuilderFactory.get("cleanup-step") //
+				.tasklet(stagingCleanupTasklet()) //
 				.build();
 	}
 
 	@Bean
-	public Step loadingStep(final ItemWriter<? super Transaction> transactionWriter) {
+	public StagingCleanupTasklet stagingCleanupTasklet() {
+		final StagingCleanupTasklet tasklet = new StagingCleanupTasklet();
+		tasklet.setDataSource(dataSource);
+		tasklet.setBatchSize(cleanupBatchSize);
+		tasklet.setPartitioned(partitioned);
+		return tasklet;
+	}
 
-		return stepBuilderFactory.get("loading-step") //
+	/**
+	 * Create the staging table if needed and check its index at startup.
+	 */
+	@Bean
+	public StagingSchemaInitializer stagingSchemaInitializer() {
+		final StagingSchemaInitializer initializer = new StagingSchemaInitializer();
+		initializer.setDataSource(dataSource);
+		initializer.setInitializeSchema(initializeSchema);
+		initializer.setPartitioned(partitioned);
+		return initializer;
+	}
+
+	/**
+	 * Create the partition of the job (partitioned layout only).
+	 */
+	private StagingPartitionListener stagingPartitionListener() {
+		final StagingPartitionListener listener = new StagingPartitionListener();
+		listener.setDataSource(dataSource);
+		return listener;
+	}
+
+	/**
+	 * Load the staging rows of the job in the TRANSACTION table : with threads of
+	 * this JVM, or when a grid size is set, as a manager step sending ID ranges to
+	 * the {@link PartitionWorker}s listening on the partition channel. In queue
+	 * mode, the threads claim the rows with a {@link StagingQueueItemReader}
+	 * (other processes may consume the same rows).
+	 */
+	@Bean
+	public Step loadingStep(final ItemWriter<? super Transaction> transactionWriter,
+			final Partitioner stagingPartitioner, final RemotePartitionHandler stagingPartitionHandler,
+			final StagingQueueItemReader<Transaction> stagingQueueReader) {
+
+		if (gridSize > 0) {
+			final PartitionStepBuilder partitionBuilder = stepBuilderFactory.get("loading-step") //
+					.partitioner("loading-partition-step", stagingPartitioner) //
+					.partitionHandler(stagingPartitionHandler);
+			if (rebuildIndex) {
+				partitionBuilder.listener(transactionIndexListener(dataSource));
+			}
+			return partitionBuilder.build();
+		}
+
+		final SimpleStepBuilder<ProcessIndicatorItemWrapper<Transaction>, Transaction> builder = stepBuilderFactory
+				.get("loading-step") //
+				.<ProcessIndicatorItemWrapper<Transaction>, Transaction>chunk(2) //
+				.reader(queue ? stagingQueueReader : stagingReader()) //
+				.processor(stagingProcessor(queue))//
+				.writer(transactionWriter);
+		builder.taskExecutor(taskExecutor());
+		builder.listener(progressListener());
+		if (rebuildIndex) {
+			builder.listener(transactionIndexListener(dataSource));
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Worker step : load one ID range of the staging rows.
+	 */
+	@Bean
+	public Step loadingPartitionStep(final ItemWriter<? super Transaction> transactionWriter,
+			final StagingItemReader<Transaction> stagingPartitionReader) {
+		return stepBuilderFactory.get("loading-partition-step") //
 				.<ProcessIndicatorItemWrapper<Transaction>, Transaction>chunk(2) //
-				.reader(stagingReader()) //
-				.processor(stagingProcessor())//
+				.reader(stagingPartitionReader) //
+				.processor(stagingProcessor()) //
 				.writer(transactionWriter) //
-				.taskExecutor(taskExecutor()) //
 				.listener(progressListener()) //
 				.build();
 	}
 
+	/**
+	 * Split the staging rows of the job into ID ranges.
+	 *
+	 * @param jobId the job instance id
+	 */
+	@StepScope // Mandatory for using stepExecution
+	@Bean
+	public StagingRangePartitioner stagingPartitioner(@Value("#{stepExecution.jobExecution.jobId}") final Long jobId) {
+		final StagingRangePartitioner partitioner = new StagingRangePartitioner();
+		partitioner.setDataSource(dataSource);
+		partitioner.setJobId(jobId);
+		return partitioner;
+	}
+
+	@Bean
+	public RemotePartitionHandler stagingPartitionHandler(final PartitionChannel stagingPartitionChannel) {
+		final RemotePartitionHandler handler = new RemotePartitionHandler();
+		handler.setChannel(stagingPartitionChannel);
+		handler.setJobExplorer(jobExplorer);
+		handler.setStepName("loading-partition-step");
+		handler.setGridSize(gridSize);
+		handler.setPollInterval(pollInterval);
+		handler.setTimeout(timeout);
+		return handler;
+	}
+
+	/**
+	 * In-process channel : replace it by a channel on a broker queue to spread
+	 * the partitions over the batch nodes sharing the database.
+	 */
+	@Bean
+	public PartitionChannel stagingPartitionChannel() {
+		return new QueuePartitionChannel();
+	}
+
+	/**
+	 * Consumers of the partitions on this node (started only when the loading
+	 * step is partitioned).
+	 */
+	@Bean
+	public PartitionWorker stagingPartitionWorker(final PartitionChannel stagingPartitionChannel,
+			final Step loadingPartitionStep) {
+		final PartitionWorker worker = new PartitionWorker();
+		worker.setChannel(stagingPartitionChannel);
+		worker.setJobExplorer(jobExplorer);
+		worker.setJobRepository(jobRepository);
+		worker.setSteps(Collections.singletonList(loadingPartitionStep));
+		worker.setConcurrency(Math.max(1, workers));
+		worker.setAutoStartup(gridSize > 0 && workers > 0);
+		return worker;
+	}
+
 	/**
 	 * Used for logging step progression
 	 */
@@ -103,8 +341,17 @@ public class StagingJobConfig extends AbstractJobConfiguration {
 
 	@Bean
 	public ItemProcessor<? super ProcessIndicatorItemWrapper<Transaction>, ? extends Transaction> stagingProcessor() {
+		return stagingProcessor(false);
+	}
+
+	/**
+	 * @param claimed true if the rows are read by the
+	 *                {@link StagingQueueItemReader}
+	 */
+	private StagingItemProcessor<Transaction> stagingProcessor(final boolean claimed) {
 		final StagingItemProcessor<Transaction> itemProcessor = new StagingItemProcessor<Transaction>();
 		itemProcessor.setDataSource(dataSource);
+		itemProcessor.setClaimed(claimed);
 		return itemProcessor;
 	}
 
@@ -115,7 +362,7 @@ public class StagingJobConfig extends AbstractJobConfiguration {
 
 		return new FlatFileItemReaderBuilder<Transaction>() //
 				.name("simpleImportReader") //
-				.resource(new FileSystemResource(inputFile)) //
+				.resource(CompressedResource.forPath(inputFile)) //
 				.delimited() //
 				.delimiter(";") //
 				.names(new String[] { "customerNumber", "number", "transactionDate", "amount" }) //
@@ -144,18 +391,81 @@ public class StagingJobConfig extends AbstractJobConfiguration {
 		return conversionService;
 	}
 
-	@Bean("fixedValidator")
-	public SpringValidator<Transaction> getSpringValidator() {
-		final SpringValidator<Transaction> validator = new SpringValidator<Transaction>();
-		validator.setValidator(new TransactionValidator());
-		return validator;
+	@Bean
+	public RejectingValidationProcessor<Transaction> validationProcessor(
+			final TransactionValidator transactionValidator) {
+		final RejectingValidationProcessor<Transaction> processor = new RejectingValidationProcessor<Transaction>();
+		processor.setValidator(transactionValidator);
+		return processor;
 	}
 
-	@Bean("processor")
-	public ValidatingItemProcessor<Transaction> validatingProcessor(
-			@Qualifier("fixedValidator") final SpringValidator<Transaction> fixedValidator) {
-		final ValidatingItemProcessor<Transaction> processor = new ValidatingItemProcessor<Transaction>(fixedValidator);
-		return processor;
+	@Bean
+	public TransactionValidator transactionValidator() {
+		return new TransactionValidator();
+	}
+
+	@Bean
+	public ValidationErrorCounter validationErrorCounter() {
+		final ValidationErrorCounter counter = new ValidationErrorCounter();
+		counter.setMaxErrorRate(maxErrorRate);
+		counter.setMinItemCount(minItemCount);
+		return counter;
+	}
+
+	/**
+	 * The invalid transactions, followed by the codes of the broken rules.
+	 *
+	 * @param rejectFile the reject file (default application.staging-step.reject-file)
+	 */
+	@StepScope // Mandatory for using jobParameters
+	@Bean
+	public FlatFileItemWriter<ValidationResult<Transaction>> rejectItemWriter(
+			@Value("#{jobParameters['reject-file']}") final String rejectFile) {
+
+		return new FlatFileItemWriterBuilder<ValidationResult<Transaction>>() //
+				.name("rejectItemWriter") //
+				.resource(new FileSystemResource(rejectFile != null ? rejectFile : defaultRejectFile)) //
+				.headerCallback(writer -> writer.write("customer#;transaction#;date;amount;errors")) //
+				.lineAggregator(result -> {
+					final Transaction transaction = result.getItem();
+					return String.join(";", transaction.getCustomerNumber(), transaction.getNumber(),
+							String.valueOf(transaction.getTransactionDate()), String.valueOf(transaction.getAmount()),
+							String.join(",", result.getErrorCodes()));
+				}) //
+				.shouldDeleteIfEmpty(true) //
+				.build();
+	}
+
+	/**
+	 * Stage the first occurrence of each (customer number, transaction number),
+	 * the next ones are rejected with the "duplicate" error code. The hashes are
+	 * neither verified nor reloaded on restart : the staged keys are not in the
+	 * TRANSACTION table yet.
+	 */
+	@Bean(destroyMethod = "") // the step closes it, its rejectItemWriter is step scoped
+	public DuplicateFilterItemWriter<Transaction> duplicateFilterWriter(
+			final StagingItemWriter<Transaction> stagingItemWriter,
+			final ItemWriter<ValidationResult<Transaction>> rejectItemWriter) {
+		final DuplicateFilterItemWriter<Transaction> writer = new DuplicateFilterItemWriter<Transaction>();
+		writer.setDelegate(stagingItemWriter);
+		writer.setRejectWriter(duplicates -> {
+			final List<ValidationResult<Transaction>> rejects = new ArrayList<ValidationResult<Transaction>>();
+			duplicates.forEach(duplicate -> rejects
+					.add(new ValidationResult<Transaction>(duplicate, Collections.singletonList("duplicate"))));
+			rejectItemWriter.write(rejects);
+		});
+		writer.setKeyExtractor(TRANSACTION_KEY);
+		writer.setExpectedKeys(expectedKeys);
+		return writer;
+	}
+
+	/**
+	 * Validation workers of the staging step.
+	 */
+	@Lazy // only with workers
+	@Bean
+	public ThreadPoolTaskExecutor validationTaskExecutor() {
+		return AsyncStepSupport.workers(validationWorkers, "validation_worker");
 	}
 
 	@Bean
@@ -196,4 +506,33 @@ public class StagingJobConfig extends AbstractJobConfiguration {
 		return reader;
 	}
 
+	/**
+	 * Work queue reader, claiming the rows by chunk.
+	 */
+	@Bean
+	public StagingQueueItemReader<Transaction> stagingQueueReader() {
+		final StagingQueueItemReader<Transaction> reader = new StagingQueueItemReader<Transaction>();
+		reader.setDataSource(dataSource);
+		reader.setClaimSize(2);
+		return reader;
+	}
+
+	/**
+	 * Reader restricted to the ID range of the partition.
+	 *
+	 * @param minId first ID of the partition
+	 * @param maxId last ID of the partition
+	 */
+	@StepScope // Mandatory for using stepExecutionContext
+	@Bean
+	public StagingItemReader<Transaction> stagingPartitionReader(
+			@Value("#{stepExecutionContext['minId']}") final Long minId,
+			@Value("#{stepExecutionContext['maxId']}") final Long maxId) {
+		final StagingItemReader<Transaction> reader = new StagingItemReader<Transaction>();
+		reader.setDataSource(dataSource);
+		reader.setMinId(minId);
+		reader.setMaxId(maxId);
+		return reader;
+	}
+
 }
@@ -2,26 +2,21 @@ package fr.training.springbatch.job.stagingjob;
 
 import java.time.LocalDate;
 
-import org.springframework.validation.Errors;
-import org.springframework.validation.Validator;
-
 import fr.training.springbatch.app.dto.Transaction;
+import fr.training.springbatch.tools.validation.ValidationRules;
 
-public class TransactionValidator implements Validator {
-
-	@Override
-	public boolean supports(final Class<?> clazz) {
-		return clazz.equals(Transaction.class);
-	}
+/**
+ * Transaction validation rules. The current date is captured when the rules
+ * are compiled, i.e. at the start of the step.
+ */
+public class TransactionValidator extends ValidationRules<Transaction> {
 
-	@Override
-	public void validate(final Object target, final Errors errors) {
-		final Transaction transaction = (Transaction) target;
-		if (transaction.getNumber().length() != 8) {
-			errors.rejectValue("number", "number_length");
-		}
-		if (transaction.getTransactionDate().isAfter(LocalDate.now())) {
-			errors.rejectValue("transactionDate", "transactionDate_future");
-		}
+	public TransactionValidator() {
+		super(Transaction.class);
+		rule("number", "number_length", () -> transaction -> transaction.getNumber().length() != 8);
+		rule("transactionDate", "transactionDate_future", () -> {
+			final LocalDate today = LocalDate.now();
+			return transaction -> transaction.getTransactionDate().isAfter(today);
+		});
 	}
-}
\ No newline at end of file
+}
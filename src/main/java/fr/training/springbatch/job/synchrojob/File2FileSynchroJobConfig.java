@@ -1,38 +1,46 @@
 package fr.training.springbatch.job.synchrojob;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.job.DefaultJobParametersValidator;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
-import org.springframework.batch.item.ItemProcessor;
 import org.springframework.batch.item.ItemReader;
+import org.springframework.batch.item.ItemStreamWriter;
 import org.springframework.batch.item.ItemWriter;
 import org.springframework.batch.item.file.FlatFileItemReader;
 import org.springframework.batch.item.file.FlatFileItemWriter;
 import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
-import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
 import org.springframework.batch.item.file.mapping.BeanWrapperFieldSetMapper;
+import org.springframework.batch.item.support.CompositeItemWriter;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.core.convert.ConversionService;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.core.convert.support.DefaultConversionService;
 import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import fr.training.springbatch.app.dto.Customer;
 import fr.training.springbatch.app.dto.Transaction;
 import fr.training.springbatch.app.job.AbstractJobConfiguration;
 import fr.training.springbatch.job.synchrojob.component.CustomerAccumulator;
+import fr.training.springbatch.job.synchrojob.component.CustomerBalanceProcessor;
 import fr.training.springbatch.job.synchrojob.component.MasterDetailReader;
+import fr.training.springbatch.job.synchrojob.component.MultiLineCustomerItemWriter;
 import fr.training.springbatch.job.synchrojob.component.TransactionAccumulator;
+import fr.training.springbatch.tools.async.AsyncItemProcessor;
+import fr.training.springbatch.tools.async.AsyncStepSupport;
+import fr.training.springbatch.tools.compress.CompressedFlatFileItemWriter;
+import fr.training.springbatch.tools.compress.CompressedResource;
+import fr.training.springbatch.tools.compress.DelimitedFileItemWriterBuilder;
 import fr.training.springbatch.tools.synchro.ItemAccumulator;
 
 /**
@@ -50,11 +58,18 @@ import fr.training.springbatch.tools.synchro.ItemAccumulator;
  */
 public class File2FileSynchroJobConfig extends AbstractJobConfiguration {
 
-	private static final Logger logger = LoggerFactory.getLogger(File2FileSynchroJobConfig.class);
-
 	@Value("${application.file2filesynchro-step.chunksize:10}")
 	private int chunkSize;
 
+	@Value("${application.file2filesynchro-step.compact-details:false}")
+	private boolean compactDetails;
+
+	@Value("${application.file2filesynchro-step.spill-threshold:0}")
+	private int spillThreshold;
+
+	@Value("${application.file2filesynchro-step.workers:0}")
+	private int workers;
+
 	/**
 	 * @param file2FileSynchroStep the injected Step bean
 	 * @return the job bean
@@ -71,23 +86,37 @@ public class File2FileSynchroJobConfig extends AbstractJobConfiguration {
 	}
 
 	/**
-	 * @param masterDetailReader the injected {@link MasterDetailReader}
-	 * @param customerWriter     the injected Customer ItemWriter
+	 * With workers, the customers read sequentially are processed concurrently
+	 * and written back in the reading order (see {@link AsyncItemProcessor}).
+	 *
+	 * @param masterDetailReader  the injected {@link MasterDetailReader}
+	 * @param customerWriter      the injected Customer ItemWriter
+	 * @param synchroTaskExecutor the workers executor (created with workers only)
 	 * @return a Step Bean
 	 */
 	@Bean
 	public Step file2FileSynchroStep(final MasterDetailReader masterDetailReader,
-			final ItemWriter<Customer> customerWriter) {
+			final ItemWriter<Customer> customerWriter, final ObjectProvider<TaskExecutor> synchroTaskExecutor) {
 
-		return stepBuilderFactory.get("file2filesynchro-step") //
-				.<Customer, Customer>chunk(chunkSize) //
+		return AsyncStepSupport.chunk(stepBuilderFactory.get("file2filesynchro-step"), chunkSize, //
+				new CustomerBalanceProcessor(), customerWriter, //
+				workers > 0 ? synchroTaskExecutor.getObject() : null) //
 				.reader(masterDetailReader) //
-				.processor(processor()) //
-				.writer(customerWriter) //
 				.listener(reportListener()) //
 				.build();
 	}
 
+	/**
+	 * Fixed pool of workers for the processing of the customers.
+	 *
+	 * @return a {@link ThreadPoolTaskExecutor} bean
+	 */
+	@Lazy // only with workers
+	@Bean
+	public ThreadPoolTaskExecutor synchroTaskExecutor() {
+		return AsyncStepSupport.workers(workers, "synchro_worker");
+	}
+
 	/**
 	 * Delegate pattern reader
 	 *
@@ -101,7 +130,10 @@ public class File2FileSynchroJobConfig extends AbstractJobConfiguration {
 
 		final MasterDetailReader masterDetailReader = new MasterDetailReader();
 		masterDetailReader.setMasterAccumulator(new CustomerAccumulator(customerReader));
-		masterDetailReader.setDetailAccumulator(new TransactionAccumulator(transactionReader));
+		final TransactionAccumulator detailAccumulator = new TransactionAccumulator(transactionReader);
+		detailAccumulator.setSpillThreshold(spillThreshold);
+		masterDetailReader.setDetailAccumulator(detailAccumulator);
+		masterDetailReader.setCompactDetails(compactDetails);
 
 		return masterDetailReader;
 	}
@@ -117,7 +149,7 @@ public class File2FileSynchroJobConfig extends AbstractJobConfiguration {
 
 		return new FlatFileItemReaderBuilder<Customer>() //
 				.name("customerReader") //
-				.resource(new FileSystemResource(customerFile)) //
+				.resource(CompressedResource.forPath(customerFile)) //
 				.delimited() //
 				.delimiter(";") //
 				.names(new String[] { "number", "firstName", "lastName", "address", "city", "state", "postCode" }) //
@@ -133,7 +165,7 @@ public class File2FileSynchroJobConfig extends AbstractJobConfiguration {
 
 		return new FlatFileItemReaderBuilder<Transaction>() //
 				.name("transactionReader") //
-				.resource(new FileSystemResource(transactionFile)) //
+				.resource(CompressedResource.forPath(transactionFile)) //
 				.delimited() //
 				.delimiter(";") //
 				.names(new String[] { "customerNumber", "number", "transactionDate", "amount" }) //
@@ -146,23 +178,6 @@ public class File2FileSynchroJobConfig extends AbstractJobConfiguration {
 				}).build();
 	}
 
-	/**
-	 * Processor that sum customer's transactions to compute his balance.
-	 *
-	 * @return the processor
-	 */
-	private ItemProcessor<Customer, Customer> processor() {
-		return new ItemProcessor<Customer, Customer>() {
-			@Override
-			public Customer process(final Customer customer) {
-				final double sum = customer.getTransactions().stream().mapToDouble(x -> x.getAmount()).sum();
-				customer.setBalance(new BigDecimal(sum).setScale(2, RoundingMode.HALF_UP).doubleValue());
-				logger.debug(customer.toString());
-				return customer;
-			}
-		};
-	}
-
 	/**
 	 * Converter to parse local date
 	 */
@@ -181,19 +196,39 @@ public class File2FileSynchroJobConfig extends AbstractJobConfiguration {
 
 	/**
 	 * @param outputFile the injected output file job parameter
-	 * @return a {@link FlatFileItemWriter} bean
+	 * @param detailFile the injected (optional) detail file job parameter : the
+	 *                   customers and their transactions are also written there
+	 *                   by a {@link MultiLineCustomerItemWriter}
+	 * @return a {@link FlatFileItemWriter} bean, or a
+	 *         {@link CompressedFlatFileItemWriter} for a compressed output file
 	 */
 	@StepScope // Mandatory for using jobParameters
 	@Bean
-	public FlatFileItemWriter<Customer> customerWriter(
-			@Value("#{jobParameters['output-file']}") final String outputFile) {
+	public ItemStreamWriter<Customer> customerWriter(@Value("#{jobParameters['output-file']}") final String outputFile,
+			@Value("#{jobParameters['detail-file']}") final String detailFile) {
+
+		final ItemStreamWriter<Customer> balanceWriter = balanceWriter(outputFile);
+		if (detailFile == null) {
+			return balanceWriter;
+		}
+		final MultiLineCustomerItemWriter detailWriter = new MultiLineCustomerItemWriter();
+		detailWriter.setName("detailWriter");
+		detailWriter.setResource(new FileSystemResource(detailFile));
+
+		final CompositeItemWriter<Customer> writer = new CompositeItemWriter<Customer>();
+		writer.setDelegates(Arrays.<ItemWriter<? super Customer>>asList(balanceWriter, detailWriter));
+		return writer;
+	}
+
+	private ItemStreamWriter<Customer> balanceWriter(final String outputFile) {
 
-		return new FlatFileItemWriterBuilder<Customer>().name("customerWriter")
+		final String[] fields = new String[] { "number", "firstName", "lastName", "address", "city", "state", "postCode",
+				"balance" };
+
+		return new DelimitedFileItemWriterBuilder<Customer>().name("customerWriter") //
 				.resource(new FileSystemResource(outputFile)) //
-				.delimited() //
 				.delimiter(";") //
-				.names(new String[] { "number", "firstName", "lastName", "address", "city", "state", "postCode",
-				"balance" })
+				.names(fields) //
 				.build();
 
 	}
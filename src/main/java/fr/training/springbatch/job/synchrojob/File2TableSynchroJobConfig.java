@@ -1,22 +1,23 @@
 package fr.training.springbatch.job.synchrojob;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.sql.DataSource;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.job.DefaultJobParametersValidator;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
-import org.springframework.batch.item.ItemProcessor;
 import org.springframework.batch.item.ItemReader;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemStreamWriter;
 import org.springframework.batch.item.ItemWriter;
-import org.springframework.batch.item.database.JdbcCursorItemReader;
-import org.springframework.batch.item.database.builder.JdbcCursorItemReaderBuilder;
+import org.springframework.batch.item.database.JdbcPagingItemReader;
+import org.springframework.batch.item.database.Order;
+import org.springframework.batch.item.database.builder.JdbcPagingItemReaderBuilder;
 import org.springframework.batch.item.file.FlatFileItemReader;
 import org.springframework.batch.item.file.FlatFileItemWriter;
 import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
@@ -26,14 +27,26 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.core.io.FileSystemResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.util.Assert;
 
 import fr.training.springbatch.app.dto.Customer;
 import fr.training.springbatch.app.dto.Transaction;
 import fr.training.springbatch.app.job.AbstractJobConfiguration;
 import fr.training.springbatch.job.synchrojob.component.CustomerAccumulator;
+import fr.training.springbatch.job.synchrojob.component.CustomerBalanceProcessor;
+import fr.training.springbatch.job.synchrojob.component.CustomerBalanceReaderFactory;
 import fr.training.springbatch.job.synchrojob.component.MasterDetailReader;
 import fr.training.springbatch.job.synchrojob.component.TransactionAccumulator;
+import fr.training.springbatch.tools.compress.CompressedFlatFileItemWriter;
+import fr.training.springbatch.tools.compress.CompressedResource;
+import fr.training.springbatch.tools.compress.DelimitedFileItemWriterBuilder;
+import fr.training.springbatch.tools.synchro.BloomFilter;
 import fr.training.springbatch.tools.synchro.ItemAccumulator;
+import fr.training.springbatch.tools.synchro.SynchroPlanner;
+import fr.training.springbatch.tools.synchro.SynchroPlanner.Plan;
+import fr.training.springbatch.tools.synchro.SynchroPlanner.Source;
 
 /**
  * Using {@link ItemAccumulator} & {@link MasterDetailReader} to "synchronize" 1
@@ -46,15 +59,34 @@ import fr.training.springbatch.tools.synchro.ItemAccumulator;
  * Datas from the detail file (transaction) are stored in the item (customer)
  * returned by the "Master" reader.
  *
+ * When both sides are tables (no file job parameter), the synchronization is
+ * pushed down to the database (see {@link SynchroPlanner}).
+ *
+ * Transactions of customers absent from the file can be routed to an optional
+ * reject file (reject-file job parameter).
+ *
  * @author Desprez
  */
 public class File2TableSynchroJobConfig extends AbstractJobConfiguration {
 
-	private static final Logger logger = LoggerFactory.getLogger(File2TableSynchroJobConfig.class);
-
 	@Value("${application.file2tablesynchro-step.chunksize:10}")
 	private int chunkSize;
 
+	@Value("${application.file2tablesynchro-step.compact-details:false}")
+	private boolean compactDetails;
+
+	@Value("${application.file2tablesynchro-step.pagesize:100}")
+	private int pageSize;
+
+	@Value("${application.file2tablesynchro-step.push-down:true}")
+	private boolean pushDown;
+
+	@Value("${application.file2tablesynchro-step.key-filter:false}")
+	private boolean keyFilter;
+
+	@Value("${application.file2tablesynchro-step.spill-threshold:0}")
+	private int spillThreshold;
+
 	@Autowired
 	private DataSource dataSource;
 
@@ -66,44 +98,113 @@ public class File2TableSynchroJobConfig extends AbstractJobConfiguration {
 	public Job file2TableSynchroJob(final Step file2TableSynchroStep) {
 		return jobBuilderFactory.get("file2tablesynchro-job") //
 				.incrementer(new RunIdIncrementer()) // job can be launched as many times as desired
-				.validator(new DefaultJobParametersValidator(new String[] { "customer-file", "output-file" },
-						new String[] {})) //
+				.validator(new DefaultJobParametersValidator(new String[] { "output-file" }, new String[] {})) //
 				.start(file2TableSynchroStep) //
 				.listener(reportListener()) //
 				.build();
 	}
 
+	/**
+	 * @param synchroReader  the injected Customer reader bean
+	 * @param customerWriter the injected Customer ItemWriter
+	 * @return a Step bean
+	 */
 	@Bean
-	public Step file2TableSynchroStep(final MasterDetailReader masterDetailReader,
+	public Step file2TableSynchroStep(final ItemStreamReader<Customer> synchroReader,
 			final ItemWriter<? super Customer> customerWriter /* injected by Spring */) {
 
 		return stepBuilderFactory.get("file2tablesynchro-step") //
 				.<Customer, Customer>chunk(chunkSize) //
-				.reader(masterDetailReader) //
-				.processor(processor()) //
+				.reader(synchroReader) //
+				.processor(new CustomerBalanceProcessor()) //
 				.writer(customerWriter) //
 				.listener(reportListener()) //
 				.build();
 	}
 
 	/**
-	 * Delegate pattern reader
+	 * Reader chosen by the {@link SynchroPlanner} : without customer file, the
+	 * customers are read from the CUSTOMER table and the synchronization is pushed
+	 * down to the database as a single query.
 	 *
+	 * @param customerFile       the injected customer file job parameter (optional)
+	 * @param masterDetailReader the injected streaming {@link MasterDetailReader}
+	 * @return a pushed down reader (see {@link CustomerBalanceReaderFactory}) or
+	 *         the {@link MasterDetailReader}
+	 */
+	@StepScope // Mandatory for using jobParameters
+	@Bean(destroyMethod = "")
+	public ItemStreamReader<Customer> synchroReader(
+			@Value("#{jobParameters['customer-file']}") final String customerFile,
+			final MasterDetailReader masterDetailReader) {
+
+		final SynchroPlanner planner = new SynchroPlanner();
+		planner.setPushDownEnabled(pushDown);
+		final Source master = customerFile == null ? Source.table(dataSource, "CUSTOMER") : Source.file(customerFile);
+
+		if (planner.plan(master, Source.table(dataSource, "TRANSACTION")) == Plan.PUSH_DOWN) {
+			return CustomerBalanceReaderFactory.create("customerBalanceReader", dataSource, pageSize);
+		}
+		Assert.notNull(customerFile, "The customer-file job parameter is required when push down is disabled");
+		return masterDetailReader;
+	}
+
+	/**
+	 * Delegate pattern reader.
+	 *
+	 * With the key filter, a pre-pass loads the customer numbers of the
+	 * TRANSACTION table in a {@link BloomFilter} so the customers without
+	 * transaction are not looked up. With a reject file, the orphan transactions
+	 * (unknown customer) are written to it.
+	 *
+	 * @param rejectFile        the injected reject file job parameter (optional)
 	 * @param customerReader    the injected Customer {@link ItemReader} bean
 	 * @param transactionReader the injected Transaction {@link ItemReader} bean
 	 * @return a {@link MasterDetailReader} bean
 	 */
+	@StepScope // Mandatory for using jobParameters
 	@Bean(destroyMethod = "")
-	public MasterDetailReader masterDetailReader(final ItemReader<Customer> customerReader,
-			final ItemReader<Transaction> transactionReader) {
+	public MasterDetailReader masterDetailReader(@Value("#{jobParameters['reject-file']}") final String rejectFile,
+			final ItemReader<Customer> customerReader, final ItemReader<Transaction> transactionReader) {
+
+		final TransactionAccumulator detailAccumulator = new TransactionAccumulator(transactionReader);
+		detailAccumulator.setSpillThreshold(spillThreshold);
+		if (keyFilter) {
+			detailAccumulator.setKeyFilterLoader(this::transactionKeyFilter);
+		}
 
 		final MasterDetailReader masterDetailReader = new MasterDetailReader();
 		masterDetailReader.setMasterAccumulator(new CustomerAccumulator(customerReader));
-		masterDetailReader.setDetailAccumulator(new TransactionAccumulator(transactionReader));
+		masterDetailReader.setDetailAccumulator(detailAccumulator);
+		masterDetailReader.setCompactDetails(compactDetails);
 
+		if (rejectFile != null) {
+			detailAccumulator.setOrphanWriter(new FlatFileItemWriterBuilder<Transaction>().name("orphanWriter") //
+					.resource(new FileSystemResource(rejectFile)) //
+					.delimited() //
+					.delimiter(";") //
+					.names(new String[] { "customerNumber", "number", "transactionDate", "amount" }) //
+					.build());
+			masterDetailReader.setDrainOrphans(true);
+		}
 		return masterDetailReader;
 	}
 
+	/**
+	 * Pre-pass loading the distinct customer numbers of the TRANSACTION table.
+	 *
+	 * @return a {@link BloomFilter} of the customer numbers
+	 */
+	private BloomFilter transactionKeyFilter() {
+		final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		final Long count = jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT CUSTOMER_NUMBER) FROM TRANSACTION",
+				Long.class);
+		final BloomFilter filter = new BloomFilter(count == null ? 0 : count);
+		jdbcTemplate.query("SELECT DISTINCT CUSTOMER_NUMBER FROM TRANSACTION",
+				(RowCallbackHandler) rs -> filter.put(rs.getString(1)));
+		return filter;
+	}
+
 	/**
 	 * @param customerFile the injected customer file job parameter
 	 * @return a {@link FlatFileItemReader} bean
@@ -115,7 +216,7 @@ public class File2TableSynchroJobConfig extends AbstractJobConfiguration {
 
 		return new FlatFileItemReaderBuilder<Customer>() //
 				.name("customerReader") //
-				.resource(new FileSystemResource(customerFile)) //
+				.resource(CompressedResource.forPath(customerFile)) //
 				.delimited() //
 				.delimiter(";") //
 				.names(new String[] { "number", "firstName", "lastName", "address", "city", "state", "postCode" }) //
@@ -128,57 +229,59 @@ public class File2TableSynchroJobConfig extends AbstractJobConfiguration {
 	}
 
 	/**
-	 * @return a {@link JdbcCursorItemReader} bean
+	 * Keyset ("seek method") paging reader on the composite (CUSTOMER_NUMBER,
+	 * NUMBER) key. Keyset paging needs a unique, not null sort key : as the
+	 * transaction number may be reused by a customer, the ID is added as tie
+	 * breaker (without it, rows sharing the other columns would be skipped at a
+	 * page boundary or on restart). The sort keys and the selected columns are
+	 * those of the transaction_customer_idx covering index : each page is
+	 * streamed in index order, without sort.
+	 *
+	 * @return a {@link JdbcPagingItemReader} bean
 	 */
 	@Bean
-	public JdbcCursorItemReader<Transaction> transactionReader() {
+	public JdbcPagingItemReader<Transaction> transactionReader() {
+
+		final Map<String, Order> sortKeys = new LinkedHashMap<String, Order>();
+		sortKeys.put("CUSTOMER_NUMBER", Order.ASCENDING);
+		sortKeys.put("NUMBER", Order.ASCENDING);
+		sortKeys.put("ID", Order.ASCENDING);
 
-		return new JdbcCursorItemReaderBuilder<Transaction>() //
+		return new JdbcPagingItemReaderBuilder<Transaction>() //
 				.dataSource(dataSource) //
 				.name("transactionReader") //
-				.sql("SELECT * FROM TRANSACTION ORDER BY CUSTOMER_NUMBER") //
+				.selectClause("SELECT CUSTOMER_NUMBER, NUMBER, ID, TRANSACTION_DATE, AMOUNT") //
+				.fromClause("FROM TRANSACTION") //
+				.sortKeys(sortKeys) //
+				.pageSize(pageSize) //
+				.fetchSize(pageSize) //
 				.rowMapper((rs, rowNum) -> {
 					final Transaction transaction = new Transaction();
 					transaction.setCustomerNumber(rs.getString("CUSTOMER_NUMBER"));
 					transaction.setNumber(rs.getString("NUMBER"));
-					transaction.setTransactionDate(rs.getDate("TRANSACTION_DATE").toLocalDate());
-					transaction.setAmount(rs.getDouble("AMOUNT"));
+					transaction.setTransactionDate(rs.getObject("TRANSACTION_DATE", LocalDate.class));
+					transaction.setAmount(rs.getObject("AMOUNT", Double.class));
 					return transaction;
 				}).build();
 	}
 
-	/**
-	 * Processor that sum customer's transactions to compute his balance.
-	 *
-	 * @return the processor
-	 */
-	private ItemProcessor<Customer, Customer> processor() {
-		return new ItemProcessor<Customer, Customer>() {
-			@Override
-			public Customer process(final Customer customer) {
-				final double sum = customer.getTransactions().stream().mapToDouble(x -> x.getAmount()).sum();
-				customer.setBalance(new BigDecimal(sum).setScale(2, RoundingMode.HALF_UP).doubleValue());
-				logger.debug(customer.toString());
-				return customer;
-			}
-		};
-	}
-
 	/**
 	 * @param outputFile the injected output file job parameter
-	 * @return a {@link FlatFileItemWriter} bean
+	 * @return a {@link FlatFileItemWriter} bean, or a
+	 *         {@link CompressedFlatFileItemWriter} for a compressed output file
 	 */
 	@StepScope // Mandatory for using jobParameters
 	@Bean
-	public FlatFileItemWriter<Customer> customerWriter(
+	public ItemStreamWriter<Customer> customerWriter(
 			@Value("#{jobParameters['output-file']}") final String outputFile) {
 
-		return new FlatFileItemWriterBuilder<Customer>().name("customerWriter")
+		final String[] fields = new String[] { "number", "firstName", "lastName", "address", "city", "state", "postCode",
+				"balance" };
+
+		return new DelimitedFileItemWriterBuilder<Customer>().name("customerWriter") //
 				.resource(new FileSystemResource(outputFile)) //
-				.delimited() //
 				.delimiter(";") //
-				.names(new String[] { "number", "firstName", "lastName", "address", "city", "state", "postCode",
-				"balance" })
+				.names(fields) //
 				.build();
 
 	}
@@ -14,11 +14,11 @@ import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.job.DefaultJobParametersValidator;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemStreamWriter;
 import org.springframework.batch.item.ItemWriter;
 import org.springframework.batch.item.file.FlatFileItemReader;
 import org.springframework.batch.item.file.FlatFileItemWriter;
 import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
-import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
 import org.springframework.batch.item.file.mapping.BeanWrapperFieldSetMapper;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -32,6 +32,9 @@ import fr.training.springbatch.app.dto.TransactionSum;
 import fr.training.springbatch.app.job.AbstractJobConfiguration;
 import fr.training.springbatch.job.synchrojob.component.GroupReader;
 import fr.training.springbatch.job.synchrojob.component.TransactionAccumulator;
+import fr.training.springbatch.tools.compress.CompressedFlatFileItemWriter;
+import fr.training.springbatch.tools.compress.CompressedResource;
+import fr.training.springbatch.tools.compress.DelimitedFileItemWriterBuilder;
 import fr.training.springbatch.tools.synchro.ItemAccumulator;
 
 /**
@@ -47,6 +50,9 @@ public class GroupingRecordsJobConfig extends AbstractJobConfiguration {
 	@Value("${application.groupingrecord-step.chunksize:10}")
 	private int chunkSize;
 
+	@Value("${application.groupingrecord-step.spill-threshold:0}")
+	private int spillThreshold;
+
 	/**
 	 * @param groupingRecordStep the injected Step bean
 	 * @return the job bean
@@ -90,7 +96,9 @@ public class GroupingRecordsJobConfig extends AbstractJobConfiguration {
 	public GroupReader<Transaction, String> groupReader(final FlatFileItemReader<Transaction> transactionReader) {
 
 		final GroupReader<Transaction, String> groupReader = new GroupReader<Transaction, String>();
-		groupReader.setAccumulator(new TransactionAccumulator(transactionReader));
+		final TransactionAccumulator accumulator = new TransactionAccumulator(transactionReader);
+		accumulator.setSpillThreshold(spillThreshold);
+		groupReader.setAccumulator(accumulator);
 
 		return groupReader;
 	}
@@ -106,7 +114,7 @@ public class GroupingRecordsJobConfig extends AbstractJobConfiguration {
 
 		return new FlatFileItemReaderBuilder<Transaction>() //
 				.name("transactionReader") //
-				.resource(new FileSystemResource(transactionFile)) //
+				.resource(CompressedResource.forPath(transactionFile)) //
 				.delimited() //
 				.delimiter(";") //
 				.names(new String[] { "customerNumber", "number", "transactionDate", "amount" }) //
@@ -157,18 +165,20 @@ public class GroupingRecordsJobConfig extends AbstractJobConfiguration {
 
 	/**
 	 * @param outputFile the injected output file job parameter
-	 * @return a TransactionSum {@link FlatFileItemReader} bean
+	 * @return a {@link FlatFileItemWriter} bean, or a
+	 *         {@link CompressedFlatFileItemWriter} for a compressed output file
 	 */
 	@StepScope // Mandatory for using jobParameters
 	@Bean
-	public FlatFileItemWriter<TransactionSum> transactionSumWriter(
+	public ItemStreamWriter<TransactionSum> transactionSumWriter(
 			@Value("#{jobParameters['output-file']}") final String outputFile) {
 
-		return new FlatFileItemWriterBuilder<TransactionSum>().name("transactionSumWriter")
+		final String[] fields = new String[] { "customerNumber", "balance" };
+
+		return new DelimitedFileItemWriterBuilder<TransactionSum>().name("transactionSumWriter") //
 				.resource(new FileSystemResource(outputFile)) //
-				.delimited() //
 				.delimiter(";") //
-				.names(new String[] { "customerNumber", "balance" }) //
+				.names(fields) //
 				.build();
 	}
 
@@ -7,11 +7,11 @@ import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.job.DefaultJobParametersValidator;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.item.ItemStreamWriter;
 import org.springframework.batch.item.ItemWriter;
 import org.springframework.batch.item.database.JdbcCursorItemReader;
 import org.springframework.batch.item.database.builder.JdbcCursorItemReaderBuilder;
 import org.springframework.batch.item.file.FlatFileItemWriter;
-import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -19,6 +19,8 @@ import org.springframework.core.io.FileSystemResource;
 
 import fr.training.springbatch.app.dto.Customer;
 import fr.training.springbatch.app.job.AbstractJobConfiguration;
+import fr.training.springbatch.tools.compress.CompressedFlatFileItemWriter;
+import fr.training.springbatch.tools.compress.DelimitedFileItemWriterBuilder;
 
 /**
  * Synchronize 2 tables with full SQL implementation and produce a csv result
@@ -84,19 +86,21 @@ public class SQLJoinSynchroJobConfig extends AbstractJobConfiguration {
 
 	/**
 	 * @param outputFile the injected output file job parameter
-	 * @return a {@link FlatFileItemWriter} bean
+	 * @return a {@link FlatFileItemWriter} bean, or a
+	 *         {@link CompressedFlatFileItemWriter} for a compressed output file
 	 */
 	@StepScope // Mandatory for using jobParameters
 	@Bean
-	public FlatFileItemWriter<Customer> customerWriter(
+	public ItemStreamWriter<Customer> customerWriter(
 			@Value("#{jobParameters['output-file']}") final String outputFile) {
 
-		return new FlatFileItemWriterBuilder<Customer>().name("customerWriter")
+		final String[] fields = new String[] { "number", "firstName", "lastName", "address", "city", "state", "postCode",
+				"balance" };
+
+		return new DelimitedFileItemWriterBuilder<Customer>().name("customerWriter") //
 				.resource(new FileSystemResource(outputFile)) //
-				.delimited() //
 				.delimiter(";") //
-				.names(new String[] { "number", "firstName", "lastName", "address", "city", "state", "postCode",
-				"balance" })
+				.names(fields) //
 				.build();
 
 	}
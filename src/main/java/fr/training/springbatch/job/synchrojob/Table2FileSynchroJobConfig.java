@@ -1,28 +1,26 @@
 package fr.training.springbatch.job.synchrojob;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.Collections;
 
 import javax.sql.DataSource;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.job.DefaultJobParametersValidator;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
-import org.springframework.batch.item.ItemProcessor;
 import org.springframework.batch.item.ItemReader;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemStreamWriter;
 import org.springframework.batch.item.ItemWriter;
-import org.springframework.batch.item.database.JdbcCursorItemReader;
-import org.springframework.batch.item.database.builder.JdbcCursorItemReaderBuilder;
+import org.springframework.batch.item.database.JdbcPagingItemReader;
+import org.springframework.batch.item.database.Order;
+import org.springframework.batch.item.database.builder.JdbcPagingItemReaderBuilder;
 import org.springframework.batch.item.file.FlatFileItemReader;
 import org.springframework.batch.item.file.FlatFileItemWriter;
 import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
-import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
 import org.springframework.batch.item.file.mapping.BeanWrapperFieldSetMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -31,14 +29,23 @@ import org.springframework.core.convert.ConversionService;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.core.convert.support.DefaultConversionService;
 import org.springframework.core.io.FileSystemResource;
+import org.springframework.util.Assert;
 
 import fr.training.springbatch.app.dto.Customer;
 import fr.training.springbatch.app.dto.Transaction;
 import fr.training.springbatch.app.job.AbstractJobConfiguration;
 import fr.training.springbatch.job.synchrojob.component.CustomerAccumulator;
+import fr.training.springbatch.job.synchrojob.component.CustomerBalanceProcessor;
+import fr.training.springbatch.job.synchrojob.component.CustomerBalanceReaderFactory;
 import fr.training.springbatch.job.synchrojob.component.MasterDetailReader;
 import fr.training.springbatch.job.synchrojob.component.TransactionAccumulator;
+import fr.training.springbatch.tools.compress.CompressedFlatFileItemWriter;
+import fr.training.springbatch.tools.compress.CompressedResource;
+import fr.training.springbatch.tools.compress.DelimitedFileItemWriterBuilder;
 import fr.training.springbatch.tools.synchro.ItemAccumulator;
+import fr.training.springbatch.tools.synchro.SynchroPlanner;
+import fr.training.springbatch.tools.synchro.SynchroPlanner.Plan;
+import fr.training.springbatch.tools.synchro.SynchroPlanner.Source;
 
 /**
  * Using {@link ItemAccumulator} & {@link MasterDetailReader} to "synchronize" 1
@@ -51,15 +58,28 @@ import fr.training.springbatch.tools.synchro.ItemAccumulator;
  * Datas from the detail file (transaction) are stored in the item (customer)
  * returned by the "Master" reader.
  *
+ * When both sides are tables (no file job parameter), the synchronization is
+ * pushed down to the database (see {@link SynchroPlanner}).
+ *
  * @author Desprez
  */
 public class Table2FileSynchroJobConfig extends AbstractJobConfiguration {
 
-	private static final Logger logger = LoggerFactory.getLogger(Table2FileSynchroJobConfig.class);
-
 	@Value("${application.table2filesynchro-step.chunksize:10}")
 	private int chunkSize;
 
+	@Value("${application.table2filesynchro-step.compact-details:false}")
+	private boolean compactDetails;
+
+	@Value("${application.table2filesynchro-step.pagesize:100}")
+	private int pageSize;
+
+	@Value("${application.table2filesynchro-step.push-down:true}")
+	private boolean pushDown;
+
+	@Value("${application.table2filesynchro-step.spill-threshold:0}")
+	private int spillThreshold;
+
 	@Autowired
 	private DataSource dataSource;
 
@@ -71,31 +91,58 @@ public class Table2FileSynchroJobConfig extends AbstractJobConfiguration {
 	public Job table2FileSynchroJob(final Step table2FileSynchroStep /* injected by Spring */) {
 		return jobBuilderFactory.get("table2filesynchro-job") //
 				.incrementer(new RunIdIncrementer()) // job can be launched as many times as desired
-				.validator(new DefaultJobParametersValidator(new String[] { "transaction-file", "output-file" },
-						new String[] {})) //
+				.validator(new DefaultJobParametersValidator(new String[] { "output-file" }, new String[] {})) //
 				.start(table2FileSynchroStep) //
 				.listener(reportListener()) //
 				.build();
 	}
 
 	/**
-	 * @param masterDetailReader the injected {@link MasterDetailReader} bean
-	 * @param customerWriter     the injected {@link FlatFileItemWriter} bean
+	 * @param synchroReader  the injected Customer reader bean
+	 * @param customerWriter the injected {@link FlatFileItemWriter} bean
 	 * @return a Step bean
 	 */
 	@Bean
-	public Step table2FileSynchroStep(final MasterDetailReader masterDetailReader,
+	public Step table2FileSynchroStep(final ItemStreamReader<Customer> synchroReader,
 			final ItemWriter<Customer> customerWriter /* injected by Spring */) {
 
 		return stepBuilderFactory.get("table2filesynchro-step") //
 				.<Customer, Customer>chunk(chunkSize) //
-				.reader(masterDetailReader) //
-				.processor(processor()) //
+				.reader(synchroReader) //
+				.processor(new CustomerBalanceProcessor()) //
 				.writer(customerWriter) //
 				.listener(reportListener()) //
 				.build();
 	}
 
+	/**
+	 * Reader chosen by the {@link SynchroPlanner} : without transaction file, the
+	 * transactions are read from the TRANSACTION table and the synchronization is
+	 * pushed down to the database as a single query.
+	 *
+	 * @param transactionFile    the injected transaction file job parameter (optional)
+	 * @param masterDetailReader the injected streaming {@link MasterDetailReader}
+	 * @return a pushed down reader (see {@link CustomerBalanceReaderFactory}) or
+	 *         the {@link MasterDetailReader}
+	 */
+	@StepScope // Mandatory for using jobParameters
+	@Bean(destroyMethod = "")
+	public ItemStreamReader<Customer> synchroReader(
+			@Value("#{jobParameters['transaction-file']}") final String transactionFile,
+			final MasterDetailReader masterDetailReader) {
+
+		final SynchroPlanner planner = new SynchroPlanner();
+		planner.setPushDownEnabled(pushDown);
+		final Source detail = transactionFile == null ? Source.table(dataSource, "TRANSACTION")
+				: Source.file(transactionFile);
+
+		if (planner.plan(Source.table(dataSource, "CUSTOMER"), detail) == Plan.PUSH_DOWN) {
+			return CustomerBalanceReaderFactory.create("customerBalanceReader", dataSource, pageSize);
+		}
+		Assert.notNull(transactionFile, "The transaction-file job parameter is required when push down is disabled");
+		return masterDetailReader;
+	}
+
 	/**
 	 * Delegate pattern reader
 	 *
@@ -109,21 +156,33 @@ public class Table2FileSynchroJobConfig extends AbstractJobConfiguration {
 
 		final MasterDetailReader masterDetailReader = new MasterDetailReader();
 		masterDetailReader.setMasterAccumulator(new CustomerAccumulator(customerReader));
-		masterDetailReader.setDetailAccumulator(new TransactionAccumulator(transactionReader));
+		final TransactionAccumulator detailAccumulator = new TransactionAccumulator(transactionReader);
+		detailAccumulator.setSpillThreshold(spillThreshold);
+		masterDetailReader.setDetailAccumulator(detailAccumulator);
+		masterDetailReader.setCompactDetails(compactDetails);
 
 		return masterDetailReader;
 	}
 
 	/**
-	 * @return a {@link JdbcCursorItemReader} bean
+	 * Keyset ("seek method") paging reader : each page is read with a new query
+	 * starting after the last key of the previous page, so no cursor nor
+	 * connection is held between chunks. On restart, reading resumes after the
+	 * last committed key.
+	 *
+	 * @return a {@link JdbcPagingItemReader} bean
 	 */
 	@Bean
-	public JdbcCursorItemReader<Customer> customerReader() {
+	public JdbcPagingItemReader<Customer> customerReader() {
 
-		return new JdbcCursorItemReaderBuilder<Customer>() //
+		return new JdbcPagingItemReaderBuilder<Customer>() //
 				.dataSource(dataSource) //
 				.name("customerReader") //
-				.sql("SELECT * FROM CUSTOMER ORDER BY NUMBER") //
+				.selectClause("SELECT NUMBER, ADDRESS, CITY, FIRST_NAME, LAST_NAME, POST_CODE, STATE") //
+				.fromClause("FROM CUSTOMER") //
+				.sortKeys(Collections.singletonMap("NUMBER", Order.ASCENDING)) //
+				.pageSize(pageSize) //
+				.fetchSize(pageSize) //
 				.rowMapper((rs, rowNum) -> {
 					final Customer customer = new Customer();
 					customer.setNumber(rs.getString("NUMBER"));
@@ -148,7 +207,7 @@ public class Table2FileSynchroJobConfig extends AbstractJobConfiguration {
 
 		return new FlatFileItemReaderBuilder<Transaction>() //
 				.name("transactionReader") //
-				.resource(new FileSystemResource(transactionFile)) //
+				.resource(CompressedResource.forPath(transactionFile)) //
 				.delimited() //
 				.delimiter(";") //
 				.names(new String[] { "customerNumber", "number", "transactionDate", "amount" }) //
@@ -161,38 +220,23 @@ public class Table2FileSynchroJobConfig extends AbstractJobConfiguration {
 				}).build();
 	}
 
-	/**
-	 * Processor that sum customer's transactions to compute his balance.
-	 *
-	 * @return the processor
-	 */
-	private ItemProcessor<Customer, Customer> processor() {
-		return new ItemProcessor<Customer, Customer>() {
-			@Override
-			public Customer process(final Customer customer) {
-				final double sum = customer.getTransactions().stream().mapToDouble(x -> x.getAmount()).sum();
-				customer.setBalance(new BigDecimal(sum).setScale(2, RoundingMode.HALF_UP).doubleValue());
-				logger.debug(customer.toString());
-				return customer;
-			}
-		};
-	}
-
 	/**
 	 * @param outputFile the injected output file job parameter
-	 * @return a {@link FlatFileItemWriter} bean
+	 * @return a {@link FlatFileItemWriter} bean, or a
+	 *         {@link CompressedFlatFileItemWriter} for a compressed output file
 	 */
 	@StepScope // Mandatory for using jobParameters
 	@Bean
-	public FlatFileItemWriter<Customer> customerWriter(
+	public ItemStreamWriter<Customer> customerWriter(
 			@Value("#{jobParameters['output-file']}") final String outputFile) {
 
-		return new FlatFileItemWriterBuilder<Customer>().name("customerWriter")
+		final String[] fields = new String[] { "number", "firstName", "lastName", "address", "city", "state", "postCode",
+				"balance" };
+
+		return new DelimitedFileItemWriterBuilder<Customer>().name("customerWriter") //
 				.resource(new FileSystemResource(outputFile)) //
-				.delimited() //
 				.delimiter(";") //
-				.names(new String[] { "number", "firstName", "lastName", "address", "city", "state", "postCode",
-				"balance" })
+				.names(fields) //
 				.build();
 
 	}
@@ -0,0 +1,40 @@
+package fr.training.springbatch.job.synchrojob.component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Objects;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.ItemProcessor;
+
+import fr.training.springbatch.app.dto.Customer;
+import fr.training.springbatch.app.dto.Transaction;
+import fr.training.springbatch.app.dto.TransactionGroup;
+
+/**
+ * Processor that sum customer's transactions to compute his balance.
+ *
+ * The transactions are either a {@link TransactionGroup} (compact details) or
+ * a list. A customer without both already has his balance, computed by the
+ * database (pushed down plan). As in the database sum, null amounts are
+ * ignored.
+ */
+public class CustomerBalanceProcessor implements ItemProcessor<Customer, Customer> {
+
+	private static final Logger logger = LoggerFactory.getLogger(CustomerBalanceProcessor.class);
+
+	@Override
+	public Customer process(final Customer customer) {
+		if (customer.getTransactionGroup() != null) {
+			customer.setBalance(customer.getTransactionGroup().getBalance());
+		} else if (customer.getTransactions() != null) {
+			final double sum = customer.getTransactions().stream().map(Transaction::getAmount) //
+					.filter(Objects::nonNull).mapToDouble(Double::doubleValue).sum();
+			customer.setBalance(new BigDecimal(sum).setScale(2, RoundingMode.HALF_UP).doubleValue());
+		}
+		logger.debug(customer.toString());
+		return customer;
+	}
+
+}
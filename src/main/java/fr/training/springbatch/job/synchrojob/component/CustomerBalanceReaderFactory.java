@@ -0,0 +1,68 @@
+package fr.training.springbatch.job.synchrojob.component;
+
+import java.util.Collections;
+
+import javax.sql.DataSource;
+
+import org.springframework.batch.item.database.JdbcPagingItemReader;
+import org.springframework.batch.item.database.Order;
+import org.springframework.batch.item.database.builder.JdbcPagingItemReaderBuilder;
+
+import fr.training.springbatch.app.dto.Customer;
+
+/**
+ * Factory of the pushed down version of the customer / transaction
+ * synchronization : the balance of each customer is computed by the database,
+ * read with a keyset paging reader on the customer number.
+ *
+ * The transactions of the returned customers are not loaded (null).
+ */
+public final class CustomerBalanceReaderFactory {
+
+	/**
+	 * The balance is computed by a correlated sub query rather than a
+	 * <code>LEFT JOIN ... GROUP BY</code> : each page then only aggregates the
+	 * transactions of its own customers.
+	 */
+	private static final String SELECT_CLAUSE = "SELECT c.NUMBER, c.ADDRESS, c.CITY, c.FIRST_NAME, c.LAST_NAME, "
+			+ "c.POST_CODE, c.STATE, "
+			+ "(SELECT ROUND(SUM(t.AMOUNT), 2) FROM TRANSACTION t WHERE t.CUSTOMER_NUMBER = c.NUMBER) AS BALANCE";
+
+	private static final String FROM_CLAUSE = "FROM CUSTOMER c";
+
+	private CustomerBalanceReaderFactory() {
+	}
+
+	/**
+	 * @param name       the reader name (used as execution context prefix)
+	 * @param dataSource the datasource holding both tables
+	 * @param pageSize   the page size
+	 * @return a {@link JdbcPagingItemReader} returning customers with their
+	 *         balance
+	 */
+	public static JdbcPagingItemReader<Customer> create(final String name, final DataSource dataSource,
+			final int pageSize) {
+
+		return new JdbcPagingItemReaderBuilder<Customer>() //
+				.dataSource(dataSource) //
+				.name(name) //
+				.selectClause(SELECT_CLAUSE) //
+				.fromClause(FROM_CLAUSE) //
+				.sortKeys(Collections.singletonMap("NUMBER", Order.ASCENDING)) //
+				.pageSize(pageSize) //
+				.fetchSize(pageSize) //
+				.rowMapper((rs, rowNum) -> {
+					final Customer customer = new Customer();
+					customer.setNumber(rs.getString("NUMBER"));
+					customer.setAddress(rs.getString("ADDRESS"));
+					customer.setCity(rs.getString("CITY"));
+					customer.setFirstName(rs.getString("FIRST_NAME"));
+					customer.setLastName(rs.getString("LAST_NAME"));
+					customer.setPostCode(rs.getString("POST_CODE"));
+					customer.setState(rs.getString("STATE"));
+					customer.setBalance(rs.getDouble("BALANCE"));
+					customer.setTransactions(null);
+					return customer;
+				}).build();
+	}
+}
@@ -11,33 +11,56 @@ import org.springframework.batch.item.UnexpectedInputException;
 
 import fr.training.springbatch.app.dto.Customer;
 import fr.training.springbatch.app.dto.Transaction;
+import fr.training.springbatch.app.dto.TransactionGroup;
 
 /**
  * Read the Customer and Transaction records for a key and wrap them in a
  * Customer object.
+ *
+ * In compact mode, the transactions are stored in a {@link TransactionGroup}
+ * instead of a list of {@link Transaction} (up to the spill threshold of the
+ * detail accumulator).
+ *
+ * When orphans are drained, the transactions left once the customers are
+ * exhausted are read as orphans of the detail accumulator.
  */
 public class MasterDetailReader implements ItemStreamReader<Customer> {
 
 	private CustomerAccumulator masterAccumulator;
 	private TransactionAccumulator detailAccumulator;
 
+	private boolean compactDetails = false;
+
+	private boolean drainOrphans = false;
+
+	private boolean drained;
+
 	@Override
 	public Customer read() throws Exception, UnexpectedInputException, ParseException, NonTransientResourceException {
 		final List<Customer> items = masterAccumulator.readNextItems();
 		if (items == null || items.size() == 0) {
+			if (drainOrphans && !drained) {
+				detailAccumulator.readRemainingOrphans();
+				drained = true;
+			}
 			return null;
 		}
 
 		final Customer customer = items.get(0);
 
 		final String key = masterAccumulator.getKey(customer);
-		final List<Transaction> details = detailAccumulator.readNextItems(key);
-
-		return new Customer(customer, details);
+		if (compactDetails) {
+			detailAccumulator.readNextGroup(key, customer);
+		} else {
+			final List<Transaction> details = detailAccumulator.readNextItems(key);
+			customer.setTransactions(details);
+		}
+		return customer;
 	}
 
 	@Override
 	public void open(final ExecutionContext executionContext) throws ItemStreamException {
+		drained = false;
 		masterAccumulator.open(executionContext);
 		detailAccumulator.open(executionContext);
 	}
@@ -61,4 +84,19 @@ public class MasterDetailReader implements ItemStreamReader<Customer> {
 	public void setDetailAccumulator(final TransactionAccumulator detailAccumulator) {
 		this.detailAccumulator = detailAccumulator;
 	}
+
+	/**
+	 * @param compactDetails true to store details in a {@link TransactionGroup}
+	 */
+	public void setCompactDetails(final boolean compactDetails) {
+		this.compactDetails = compactDetails;
+	}
+
+	/**
+	 * @param drainOrphans true to read the remaining details as orphans at the
+	 *                     end of the master
+	 */
+	public void setDrainOrphans(final boolean drainOrphans) {
+		this.drainOrphans = drainOrphans;
+	}
 }
\ No newline at end of file
@@ -1,58 +1,334 @@
 package fr.training.springbatch.job.synchrojob.component;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import org.springframework.batch.item.ExecutionContext;
 import org.springframework.batch.item.ItemStream;
 import org.springframework.batch.item.ItemStreamException;
 import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.WriterNotOpenException;
 import org.springframework.batch.item.file.FlatFileItemWriter;
+import org.springframework.core.io.Resource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
 
 import fr.training.springbatch.app.dto.Customer;
 import fr.training.springbatch.app.dto.Transaction;
+import fr.training.springbatch.app.dto.TransactionGroup;
+import fr.training.springbatch.tools.format.DateRenderer;
 
+/**
+ * Write each {@link Customer} as several comma separated lines (customer,
+ * address and one line per transaction, from the transactions list or the
+ * compact {@link TransactionGroup}).
+ *
+ * Fields are appended straight into a reusable {@link StringBuilder}, encoded
+ * into a pooled {@link ByteBuffer} and flushed to a {@link FileChannel}: no
+ * intermediate String is built per line.
+ *
+ * Restart semantics are the same as {@link FlatFileItemWriter}: the file
+ * position is saved in the {@link ExecutionContext} on update and the file is
+ * truncated back to it on restart. When a transaction is active, bytes written
+ * by a rolled back chunk are truncated as well.
+ */
 public class MultiLineCustomerItemWriter implements ItemWriter<Customer>, ItemStream {
 
-	private FlatFileItemWriter<String> delegate;
+	private static final String RESTART_DATA_NAME = "current.count";
+
+	private static final char DELIMITER = ',';
+
+	private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	private Resource resource;
+
+	private String name = MultiLineCustomerItemWriter.class.getSimpleName();
+
+	private Charset encoding = StandardCharsets.UTF_8;
+
+	private String lineSeparator = System.lineSeparator();
+
+	private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+	private boolean forceSync = false;
+
+	private FileChannel channel;
+
+	private CharsetEncoder encoder;
+
+	private final StringBuilder line = new StringBuilder(128);
+
+	private char[] chars;
+
+	private CharBuffer charBuffer;
+
+	private ByteBuffer byteBuffer;
+
+	/** File position at the end of the last committed chunk */
+	private long committedPosition;
+
+	private boolean synchronizationRegistered = false;
 
 	@Override
 	public void write(final List<? extends Customer> items) throws Exception {
-		final List<String> lines = new ArrayList<>();
+		if (channel == null) {
+			throw new WriterNotOpenException("Writer must be open before it can be written to");
+		}
+		registerSynchronization();
 
 		for (final Customer c : items) {
-			lines.add(joinString(c.getNumber(), "C", c.getFirstName(), c.getLastName()));
-			lines.add(joinString(c.getNumber(), "A", c.getAddress(), c.getCity(), c.getPostCode(), c.getState()));
+			line.append(c.getNumber()).append(DELIMITER).append('C') //
+			.append(DELIMITER).append(c.getFirstName()) //
+			.append(DELIMITER).append(c.getLastName());
+			endLine();
 
-			for (final Transaction t : c.getTransactions()) {
-				lines.add(joinString(c.getNumber(), "T", t.getNumber(), t.getDateString(), t.getAmount().toString()));
+			line.append(c.getNumber()).append(DELIMITER).append('A') //
+			.append(DELIMITER).append(c.getAddress()) //
+			.append(DELIMITER).append(c.getCity()) //
+			.append(DELIMITER).append(c.getPostCode()) //
+			.append(DELIMITER).append(c.getState());
+			endLine();
+
+			final TransactionGroup group = c.getTransactionGroup();
+			if (group != null) {
+				for (int i = 0; i < group.size(); i++) {
+					appendTransaction(c.getNumber(), group.getNumber(i), group.getTransactionDate(i),
+							group.getAmount(i));
+				}
+			} else {
+				for (final Transaction t : c.getTransactions()) {
+					appendTransaction(c.getNumber(), t.getNumber(), t.getTransactionDate(), t.getAmount());
+				}
 			}
 		}
-		delegate.write(lines);
+		flushBytes();
+
+		if (!synchronizationRegistered) {
+			// No transaction : every write is considered as committed
+			committedPosition = channel.position();
+		}
 	}
 
-	private String joinString(final String... tokens) {
-		return Stream.of(tokens).map(n -> n.toString()).collect(Collectors.joining(","));
+	/**
+	 * Append a transaction line (the date and the amount are left empty when
+	 * null).
+	 */
+	private void appendTransaction(final String customerNumber, final String number, final LocalDate date,
+			final Double amount) throws IOException {
+		line.append(customerNumber).append(DELIMITER).append('T') //
+		.append(DELIMITER).append(number) //
+		.append(DELIMITER);
+		DateRenderer.appendTo(date, line);
+		line.append(DELIMITER);
+		if (amount != null) {
+			line.append(amount.doubleValue());
+		}
+		endLine();
 	}
 
-	public void setDelegate(final FlatFileItemWriter<String> delegate) {
-		this.delegate = delegate;
+	/**
+	 * Terminate the current line and encode it in the byte buffer.
+	 */
+	private void endLine() throws IOException {
+		line.append(lineSeparator);
+
+		int start = 0;
+		final int length = line.length();
+		while (start < length) {
+			// the chars not consumed by the previous pass (a high surrogate split at
+			// the end of the buffer) are kept before the next ones
+			charBuffer.compact();
+			final int count = Math.min(charBuffer.remaining(), length - start);
+			line.getChars(start, start + count, chars, charBuffer.position());
+			charBuffer.position(charBuffer.position() + count);
+			charBuffer.flip();
+			encode();
+			start += count;
+		}
+		line.setLength(0);
 	}
 
-	@Override
-	public void close() throws ItemStreamException {
-		delegate.close();
+	private void encode() throws IOException {
+		while (true) {
+			final CoderResult result = encoder.encode(charBuffer, byteBuffer, false);
+			if (result.isOverflow()) {
+				flushBytes();
+			} else if (result.isUnderflow()) {
+				return;
+			} else {
+				result.throwException();
+			}
+		}
+	}
+
+	private void flushBytes() throws IOException {
+		byteBuffer.flip();
+		while (byteBuffer.hasRemaining()) {
+			channel.write(byteBuffer);
+		}
+		byteBuffer.clear();
+	}
+
+	/**
+	 * Register a synchronization (once per transaction) to keep track of the
+	 * committed position and to truncate the file on rollback.
+	 */
+	private void registerSynchronization() {
+		if (synchronizationRegistered || !TransactionSynchronizationManager.isSynchronizationActive()) {
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+			@Override
+			public void beforeCommit(final boolean readOnly) {
+				if (forceSync) {
+					try {
+						channel.force(false);
+					} catch (final IOException e) {
+						throw new ItemStreamException("Unable to force sync of " + resource, e);
+					}
+				}
+			}
+
+			@Override
+			public void afterCompletion(final int status) {
+				synchronizationRegistered = false;
+				try {
+					if (status == TransactionSynchronization.STATUS_COMMITTED) {
+						committedPosition = channel.position();
+					} else {
+						channel.truncate(committedPosition);
+						channel.position(committedPosition);
+					}
+				} catch (final IOException e) {
+					throw new ItemStreamException("Unable to restore position of " + resource, e);
+				}
+			}
+		});
+		synchronizationRegistered = true;
 	}
 
 	@Override
 	public void open(final ExecutionContext executionContext) throws ItemStreamException {
-		delegate.open(executionContext);
+		Assert.notNull(resource, "The resource must be set");
+
+		final String key = getExecutionContextKey(RESTART_DATA_NAME);
+		final long restartPosition = executionContext.containsKey(key) ? executionContext.getLong(key) : 0L;
+
+		try {
+			final File file = resource.getFile();
+			final File parent = file.getAbsoluteFile().getParentFile();
+			if (parent != null && !parent.exists()) {
+				parent.mkdirs();
+			}
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			if (channel.size() < restartPosition) {
+				throw new ItemStreamException("Current file size is smaller than size at last commit");
+			}
+			channel.truncate(restartPosition);
+			channel.position(restartPosition);
+		} catch (final IOException e) {
+			throw new ItemStreamException("Unable to open file " + resource, e);
+		}
+		committedPosition = restartPosition;
+
+		encoder = encoding.newEncoder() //
+				.onMalformedInput(CodingErrorAction.REPORT) //
+				.onUnmappableCharacter(CodingErrorAction.REPORT);
+		chars = new char[bufferSize];
+		charBuffer = CharBuffer.wrap(chars);
+		charBuffer.limit(0);
+		byteBuffer = ByteBuffer.allocateDirect((int) Math.ceil(bufferSize * encoder.maxBytesPerChar()));
 	}
 
 	@Override
 	public void update(final ExecutionContext executionContext) throws ItemStreamException {
-		delegate.update(executionContext);
+		if (channel == null) {
+			return;
+		}
+		try {
+			executionContext.putLong(getExecutionContextKey(RESTART_DATA_NAME), channel.position());
+		} catch (final IOException e) {
+			throw new ItemStreamException("Unable to get position of " + resource, e);
+		}
+	}
+
+	@Override
+	public void close() throws ItemStreamException {
+		if (channel == null) {
+			return;
+		}
+		try {
+			channel.close();
+		} catch (final IOException e) {
+			throw new ItemStreamException("Unable to close file " + resource, e);
+		} finally {
+			channel = null;
+			byteBuffer = null;
+			charBuffer = null;
+			chars = null;
+		}
+	}
+
+	private String getExecutionContextKey(final String key) {
+		return name + "." + key;
+	}
+
+	/**
+	 * @param resource the output file
+	 */
+	public void setResource(final Resource resource) {
+		this.resource = resource;
+	}
+
+	/**
+	 * @param name the name used to prefix the keys saved in the
+	 *             {@link ExecutionContext}
+	 */
+	public void setName(final String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @param encoding the output charset (default UTF-8)
+	 */
+	public void setEncoding(final Charset encoding) {
+		this.encoding = encoding;
+	}
+
+	/**
+	 * @param lineSeparator the line separator (default system line separator)
+	 */
+	public void setLineSeparator(final String lineSeparator) {
+		this.lineSeparator = lineSeparator;
+	}
+
+	/**
+	 * @param bufferSize size (in chars) of the pooled encoding buffers (at least
+	 *                   2, for a surrogate pair)
+	 */
+	public void setBufferSize(final int bufferSize) {
+		Assert.isTrue(bufferSize > 1, "bufferSize must be greater than 1");
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * @param forceSync true to force a sync to disk before each commit
+	 */
+	public void setForceSync(final boolean forceSync) {
+		this.forceSync = forceSync;
 	}
-}
\ No newline at end of file
+}
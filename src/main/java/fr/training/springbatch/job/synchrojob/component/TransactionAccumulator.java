@@ -1,14 +1,20 @@
 package fr.training.springbatch.job.synchrojob.component;
 
+import java.util.List;
+import java.util.function.Consumer;
+
 import org.springframework.batch.item.ItemReader;
 
+import fr.training.springbatch.app.dto.Customer;
 import fr.training.springbatch.app.dto.Transaction;
+import fr.training.springbatch.app.dto.TransactionGroup;
 import fr.training.springbatch.tools.synchro.ItemAccumulator;
 
 public class TransactionAccumulator extends ItemAccumulator<Transaction, String> {
 
 	public TransactionAccumulator(final ItemReader<Transaction> reader) {
 		super(reader);
+		setItemCodec(new TransactionCodec());
 	}
 
 	@Override
@@ -16,4 +22,57 @@ public class TransactionAccumulator extends ItemAccumulator<Transaction, String>
 		return item.getCustomerNumber();
 	}
 
+	/**
+	 * Read the transactions of a customer into a compact {@link TransactionGroup}
+	 * without keeping the {@link Transaction} objects.
+	 *
+	 * The group keeps all the transactions on the heap : beyond the spill
+	 * threshold (when set), they are moved to a spilled group, set as the
+	 * transactions list of the customer instead.
+	 *
+	 * @param key      the customer number
+	 * @param customer the customer receiving the group (empty if the customer has
+	 *                 no transaction) or the list
+	 * @throws Exception
+	 */
+	public void readNextGroup(final String key, final Customer customer) throws Exception {
+		final CompactGroup group = new CompactGroup(key);
+		readNextItems(key, group);
+		if (group.spilled != null) {
+			customer.setTransactions(group.spilled);
+		} else {
+			customer.setTransactionGroup(group.compact);
+		}
+	}
+
+	/**
+	 * Consumer filling a {@link TransactionGroup} up to the spill threshold, then
+	 * a spilled group.
+	 */
+	private final class CompactGroup implements Consumer<Transaction> {
+
+		private final TransactionGroup compact;
+
+		private List<Transaction> spilled;
+
+		CompactGroup(final String key) {
+			compact = new TransactionGroup(key);
+		}
+
+		@Override
+		public void accept(final Transaction transaction) {
+			if (spilled != null) {
+				spilled.add(transaction);
+			} else if (getSpillThreshold() > 0 && compact.size() == getSpillThreshold()) {
+				spilled = newGroup();
+				for (int i = 0; i < compact.size(); i++) {
+					spilled.add(compact.getTransaction(i));
+				}
+				spilled.add(transaction);
+			} else {
+				compact.add(transaction);
+			}
+		}
+	}
+
 }
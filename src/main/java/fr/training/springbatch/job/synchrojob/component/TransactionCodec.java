@@ -0,0 +1,68 @@
+package fr.training.springbatch.job.synchrojob.component;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDate;
+
+import fr.training.springbatch.app.dto.Transaction;
+import fr.training.springbatch.tools.synchro.ItemCodec;
+
+/**
+ * Compact binary encoding of a {@link Transaction} (date as epoch day).
+ *
+ * A leading byte flags the fields present : null fields are not written.
+ */
+public class TransactionCodec implements ItemCodec<Transaction> {
+
+	private static final int CUSTOMER_NUMBER = 1;
+
+	private static final int NUMBER = 2;
+
+	private static final int TRANSACTION_DATE = 4;
+
+	private static final int AMOUNT = 8;
+
+	@Override
+	public void write(final Transaction item, final DataOutput out) throws IOException {
+		int present = 0;
+		present |= item.getCustomerNumber() != null ? CUSTOMER_NUMBER : 0;
+		present |= item.getNumber() != null ? NUMBER : 0;
+		present |= item.getTransactionDate() != null ? TRANSACTION_DATE : 0;
+		present |= item.getAmount() != null ? AMOUNT : 0;
+		out.writeByte(present);
+
+		if ((present & CUSTOMER_NUMBER) != 0) {
+			out.writeUTF(item.getCustomerNumber());
+		}
+		if ((present & NUMBER) != 0) {
+			out.writeUTF(item.getNumber());
+		}
+		if ((present & TRANSACTION_DATE) != 0) {
+			out.writeLong(item.getTransactionDate().toEpochDay());
+		}
+		if ((present & AMOUNT) != 0) {
+			out.writeDouble(item.getAmount());
+		}
+	}
+
+	@Override
+	public Transaction read(final DataInput in) throws IOException {
+		final int present = in.readByte();
+		final Transaction transaction = new Transaction();
+		if ((present & CUSTOMER_NUMBER) != 0) {
+			transaction.setCustomerNumber(in.readUTF());
+		}
+		if ((present & NUMBER) != 0) {
+			transaction.setNumber(in.readUTF());
+		}
+		if ((present & TRANSACTION_DATE) != 0) {
+			transaction.setTransactionDate(LocalDate.ofEpochDay(in.readLong()));
+		}
+		if ((present & AMOUNT) != 0) {
+			transaction.setAmount(in.readDouble());
+		}
+		return transaction;
+	}
+
+}
@@ -0,0 +1,85 @@
+package fr.training.springbatch.tools.async;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.util.Assert;
+
+/**
+ * {@link ItemProcessor} submitting the processing of each item to a
+ * {@link TaskExecutor} and returning a {@link Future} of the result, to be
+ * unwrapped (in the reading order) by an {@link AsyncItemWriter}.
+ *
+ * The reader stays sequential while the delegate processor runs concurrently.
+ * The concurrency is per chunk : the step reads the whole chunk before
+ * processing it, so at most the items of one chunk are in flight, and the
+ * writer waits for all of them before the next chunk is read (the reading does
+ * not overlap the processing).
+ *
+ * The step execution is registered in the worker threads so the step scoped
+ * beans can be used by the delegate.
+ *
+ * @param <I> the input item type
+ * @param <O> the output item type
+ */
+public class AsyncItemProcessor<I, O> implements ItemProcessor<I, Future<O>>, InitializingBean {
+
+	private ItemProcessor<I, O> delegate;
+
+	private TaskExecutor taskExecutor;
+
+	@Override
+	public Future<O> process(final I item) throws Exception {
+		final StepExecution stepExecution = getStepExecution();
+		final FutureTask<O> task = new FutureTask<O>(new Callable<O>() {
+			@Override
+			public O call() throws Exception {
+				if (stepExecution != null) {
+					StepSynchronizationManager.register(stepExecution);
+				}
+				try {
+					return delegate.process(item);
+				} finally {
+					if (stepExecution != null) {
+						StepSynchronizationManager.close();
+					}
+				}
+			}
+		});
+		taskExecutor.execute(task);
+		return task;
+	}
+
+	private StepExecution getStepExecution() {
+		final StepContext context = StepSynchronizationManager.getContext();
+		return context == null ? null : context.getStepExecution();
+	}
+
+	/**
+	 * @param delegate the processor run by the workers
+	 */
+	public void setDelegate(final ItemProcessor<I, O> delegate) {
+		this.delegate = delegate;
+	}
+
+	/**
+	 * @param taskExecutor the executor of the workers
+	 */
+	public void setTaskExecutor(final TaskExecutor taskExecutor) {
+		this.taskExecutor = taskExecutor;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(delegate, "The delegate must be set");
+		Assert.notNull(taskExecutor, "The taskExecutor must be set");
+	}
+
+}
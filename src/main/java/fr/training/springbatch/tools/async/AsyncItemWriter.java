@@ -0,0 +1,83 @@
+package fr.training.springbatch.tools.async;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+/**
+ * {@link ItemWriter} waiting for the {@link Future}s returned by an
+ * {@link AsyncItemProcessor} and writing their results to the delegate in the
+ * order of the chunk, i.e. the reading order.
+ *
+ * Null results are filtered. A processing failure is rethrown so the chunk is
+ * rolled back as with a synchronous processor.
+ *
+ * @param <T> the item type
+ */
+public class AsyncItemWriter<T> implements ItemStreamWriter<Future<T>>, InitializingBean {
+
+	private ItemWriter<T> delegate;
+
+	@Override
+	public void write(final List<? extends Future<T>> items) throws Exception {
+		final List<T> results = new ArrayList<T>(items.size());
+		for (final Future<T> future : items) {
+			try {
+				final T result = future.get();
+				if (result != null) {
+					results.add(result);
+				}
+			} catch (final ExecutionException e) {
+				final Throwable cause = e.getCause();
+				if (cause instanceof Exception) {
+					throw (Exception) cause;
+				}
+				throw e;
+			}
+		}
+		delegate.write(results);
+	}
+
+	@Override
+	public void open(final ExecutionContext executionContext) throws ItemStreamException {
+		if (delegate instanceof ItemStream) {
+			((ItemStream) delegate).open(executionContext);
+		}
+	}
+
+	@Override
+	public void update(final ExecutionContext executionContext) throws ItemStreamException {
+		if (delegate instanceof ItemStream) {
+			((ItemStream) delegate).update(executionContext);
+		}
+	}
+
+	@Override
+	public void close() throws ItemStreamException {
+		if (delegate instanceof ItemStream) {
+			((ItemStream) delegate).close();
+		}
+	}
+
+	/**
+	 * @param delegate the writer of the results
+	 */
+	public void setDelegate(final ItemWriter<T> delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(delegate, "The delegate must be set");
+	}
+
+}
@@ -0,0 +1,68 @@
+package fr.training.springbatch.tools.async;
+
+import java.util.concurrent.Future;
+
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.Assert;
+
+/**
+ * Chunk oriented steps whose items are processed either by the reading thread
+ * or by workers (an {@link AsyncItemProcessor} followed by an
+ * {@link AsyncItemWriter}) : only the processor and the writer differ, the rest
+ * of the step is built once by the caller.
+ */
+public final class AsyncStepSupport {
+
+	private AsyncStepSupport() {
+	}
+
+	/**
+	 * @param stepBuilder the builder of the step
+	 * @param chunkSize   the commit interval
+	 * @param processor   the processor of the items
+	 * @param writer      the writer of the processed items
+	 * @param workers     the executor of the processor, or null to process the
+	 *                    items in the reading thread
+	 * @return the chunk builder, with the processor and the writer set
+	 */
+	public static <I, O> SimpleStepBuilder<I, ?> chunk(final StepBuilder stepBuilder, final int chunkSize,
+			final ItemProcessor<I, O> processor, final ItemWriter<O> writer, final TaskExecutor workers) {
+
+		if (workers == null) {
+			return stepBuilder.<I, O>chunk(chunkSize) //
+					.processor(processor) //
+					.writer(writer);
+		}
+
+		final AsyncItemProcessor<I, O> asyncProcessor = new AsyncItemProcessor<I, O>();
+		asyncProcessor.setDelegate(processor);
+		asyncProcessor.setTaskExecutor(workers);
+
+		final AsyncItemWriter<O> asyncWriter = new AsyncItemWriter<O>();
+		asyncWriter.setDelegate(writer);
+
+		return stepBuilder.<I, Future<O>>chunk(chunkSize) //
+				.processor(asyncProcessor) //
+				.writer(asyncWriter);
+	}
+
+	/**
+	 * @param workers          number of workers
+	 * @param threadNamePrefix prefix of the names of the worker threads
+	 * @return a fixed pool of workers
+	 */
+	public static ThreadPoolTaskExecutor workers(final int workers, final String threadNamePrefix) {
+		Assert.isTrue(workers > 0, "workers must be greater than 0");
+		final ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+		taskExecutor.setCorePoolSize(workers);
+		taskExecutor.setMaxPoolSize(workers);
+		taskExecutor.setThreadNamePrefix(threadNamePrefix);
+		return taskExecutor;
+	}
+
+}
@@ -0,0 +1,458 @@
+package fr.training.springbatch.tools.compress;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.WriterNotOpenException;
+import org.springframework.batch.item.file.FlatFileHeaderCallback;
+import org.springframework.batch.item.file.FlatFileItemWriter;
+import org.springframework.batch.item.file.transform.LineAggregator;
+import org.springframework.batch.item.support.AbstractItemStreamItemWriter;
+import org.springframework.core.io.Resource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+/**
+ * Flat file writer compressing its output with a {@link CompressionCodec}.
+ *
+ * When the state is saved (default), a compressed member is finished at each
+ * commit (concatenated GZIP members form a valid GZIP file), so the file
+ * position saved with a chunk is a valid restart point: restart and rollback
+ * semantics are the same as {@link FlatFileItemWriter}, the file being
+ * truncated back to the last committed position. The members are as large as
+ * the commit interval : use a large one for a good compression ratio.
+ *
+ * When asynchronous compression is enabled (default), formatted blocks are
+ * compressed on a dedicated thread : {@link #write(List)} only queues them, the
+ * compression of a chunk being awaited when its member is finished, by
+ * {@link #update(ExecutionContext)} or before the commit. Without saved state,
+ * the whole file is a single member finished by {@link #close()} : a chunk is
+ * then compressed while the next ones are read and processed, but the writer
+ * is not restartable and a rolled back chunk is not removed from the file (as
+ * a non transactional {@link FlatFileItemWriter}).
+ */
+public class CompressedFlatFileItemWriter<T> extends AbstractItemStreamItemWriter<T> {
+
+	private static final String RESTART_DATA_NAME = "current.count";
+
+	private static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+	/** Compression tasks queued at most (back-pressure on the writing thread) */
+	private static final int MAX_PENDING_TASKS = 16;
+
+	private Resource resource;
+
+	private LineAggregator<T> lineAggregator;
+
+	private FlatFileHeaderCallback headerCallback;
+
+	private CompressionCodec codec;
+
+	private Charset encoding = StandardCharsets.UTF_8;
+
+	private String lineSeparator = System.lineSeparator();
+
+	private int blockSize = DEFAULT_BLOCK_SIZE;
+
+	private boolean asyncCompression = true;
+
+	private boolean saveState = true;
+
+	private FileChannel channel;
+
+	private OutputStream channelStream;
+
+	private ExecutorService compressor;
+
+	/** Compressed member being written, only used by the compression tasks */
+	private OutputStream member;
+
+	/** True when a member is started (its tasks may still be queued) */
+	private boolean memberStarted = false;
+
+	private final Deque<Future<?>> pending = new ArrayDeque<Future<?>>();
+
+	/** File position at the end of the last committed chunk */
+	private long committedPosition;
+
+	private boolean synchronizationRegistered = false;
+
+	public CompressedFlatFileItemWriter() {
+		setName(CompressedFlatFileItemWriter.class.getSimpleName());
+	}
+
+	@Override
+	public void write(final List<? extends T> items) throws Exception {
+		if (channel == null) {
+			throw new WriterNotOpenException("Writer must be open before it can be written to");
+		}
+		registerSynchronization();
+
+		final ByteArrayOutputStream block = new ByteArrayOutputStream(blockSize);
+		boolean queued = false;
+		try {
+			if (!memberStarted) {
+				submit(() -> member = codec.compress(channelStream));
+				memberStarted = true;
+			}
+			for (final T item : items) {
+				block.write((lineAggregator.aggregate(item) + lineSeparator).getBytes(encoding));
+				if (block.size() >= blockSize) {
+					submitBlock(block.toByteArray());
+					block.reset();
+				}
+			}
+			submitBlock(block.toByteArray());
+			queued = true;
+		} finally {
+			if (!queued) {
+				discardMember();
+			}
+		}
+	}
+
+	/**
+	 * Finish the current member and wait for the end of its compression : the
+	 * file position is then a restart point.
+	 */
+	private void finishMember() throws IOException, InterruptedException {
+		if (memberStarted) {
+			memberStarted = false;
+			submit(() -> {
+				codec.finish(member);
+				member = null;
+			});
+		}
+		while (!pending.isEmpty()) {
+			await(pending.removeFirst());
+		}
+	}
+
+	/**
+	 * Skip the compression tasks not yet run and release the current member,
+	 * after a failure or a rollback.
+	 */
+	private void discardMember() {
+		cancelPending();
+		memberStarted = false;
+		if (member != null) {
+			codec.discard(member);
+			member = null;
+		}
+	}
+
+	private interface IOTask {
+		void run() throws IOException;
+	}
+
+	private void submitBlock(final byte[] bytes) throws IOException {
+		if (bytes.length > 0) {
+			submit(() -> member.write(bytes));
+		}
+	}
+
+	/**
+	 * Run a task on the compression thread, or inline if asynchronous compression
+	 * is disabled. Tasks are run in submission order. The failures of the tasks
+	 * already run are reported, and the writing thread waits when
+	 * {@link #MAX_PENDING_TASKS} tasks are queued.
+	 */
+	private void submit(final IOTask task) throws IOException {
+		if (compressor == null) {
+			task.run();
+			return;
+		}
+		try {
+			while (!pending.isEmpty() && (pending.size() >= MAX_PENDING_TASKS || pending.peekFirst().isDone())) {
+				await(pending.removeFirst());
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ItemStreamException("Interrupted while compressing output to " + resource, e);
+		}
+		pending.addLast(compressor.submit(() -> {
+			task.run();
+			return null;
+		}));
+	}
+
+	private void await(final Future<?> future) throws IOException, InterruptedException {
+		try {
+			future.get();
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new ItemStreamException("Unable to compress output to " + resource, e.getCause());
+		}
+	}
+
+	/**
+	 * Skip the tasks not yet run after a failure, and wait for the end of the
+	 * running one : nothing must be written once the chunk is truncated. The
+	 * running task is not interrupted, as an interrupt would close the file
+	 * channel.
+	 */
+	private void cancelPending() {
+		boolean interrupted = false;
+		for (final Future<?> future : pending) {
+			if (!future.cancel(false)) {
+				try {
+					future.get();
+				} catch (final ExecutionException e) {
+					// the chunk is discarded anyway
+				} catch (final InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		pending.clear();
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Register a synchronization (once per transaction) to finish the member
+	 * before the commit, keep track of the committed position and truncate the
+	 * file on rollback. Nothing is registered when the state is not saved.
+	 */
+	private void registerSynchronization() {
+		if (!saveState || synchronizationRegistered || !TransactionSynchronizationManager.isSynchronizationActive()) {
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+			@Override
+			public void beforeCommit(final boolean readOnly) {
+				// already done by update if the writer is registered as a stream
+				flush();
+			}
+
+			@Override
+			public void afterCompletion(final int status) {
+				synchronizationRegistered = false;
+				try {
+					if (status == TransactionSynchronization.STATUS_COMMITTED) {
+						committedPosition = channel.position();
+					} else {
+						discardMember();
+						channel.truncate(committedPosition);
+						channel.position(committedPosition);
+					}
+				} catch (final IOException e) {
+					throw new ItemStreamException("Unable to restore position of " + resource, e);
+				}
+			}
+		});
+		synchronizationRegistered = true;
+	}
+
+	@Override
+	public void open(final ExecutionContext executionContext) throws ItemStreamException {
+		super.open(executionContext);
+		Assert.notNull(resource, "The resource must be set");
+		Assert.notNull(lineAggregator, "A LineAggregator must be provided");
+		if (codec == null) {
+			codec = CompressionCodec.forFilename(resource.getFilename());
+		}
+
+		final String key = getExecutionContextKey(RESTART_DATA_NAME);
+		final long restartPosition = executionContext.containsKey(key) ? executionContext.getLong(key) : 0L;
+
+		try {
+			final File file = resource.getFile();
+			final File parent = file.getAbsoluteFile().getParentFile();
+			if (parent != null && !parent.exists()) {
+				parent.mkdirs();
+			}
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			if (channel.size() < restartPosition) {
+				throw new ItemStreamException("Current file size is smaller than size at last commit");
+			}
+			channel.truncate(restartPosition);
+			channel.position(restartPosition);
+			channelStream = Channels.newOutputStream(channel);
+
+			if (restartPosition == 0 && headerCallback != null) {
+				final StringWriter header = new StringWriter();
+				headerCallback.writeHeader(header);
+				header.write(lineSeparator);
+				final OutputStream out = codec.compress(channelStream);
+				try {
+					out.write(header.toString().getBytes(encoding));
+					codec.finish(out);
+				} finally {
+					codec.discard(out);
+				}
+			}
+			committedPosition = channel.position();
+		} catch (final IOException e) {
+			throw new ItemStreamException("Unable to open file " + resource, e);
+		}
+
+		if (asyncCompression) {
+			compressor = Executors.newSingleThreadExecutor(runnable -> {
+				final Thread thread = new Thread(runnable, "compress-" + resource.getFilename());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Finish the current member (when the state is saved) and save the file
+	 * position, a restart point once the chunk is committed.
+	 */
+	@Override
+	public void update(final ExecutionContext executionContext) throws ItemStreamException {
+		super.update(executionContext);
+		if (channel == null || !saveState) {
+			return;
+		}
+		flush();
+		try {
+			if (!synchronizationRegistered) {
+				// No transaction : every write is considered as committed
+				committedPosition = channel.position();
+			}
+			executionContext.putLong(getExecutionContextKey(RESTART_DATA_NAME), channel.position());
+		} catch (final IOException e) {
+			throw new ItemStreamException("Unable to get position of " + resource, e);
+		}
+	}
+
+	private void flush() throws ItemStreamException {
+		try {
+			finishMember();
+		} catch (final IOException e) {
+			discardMember();
+			throw new ItemStreamException("Unable to compress output to " + resource, e);
+		} catch (final InterruptedException e) {
+			discardMember();
+			Thread.currentThread().interrupt();
+			throw new ItemStreamException("Interrupted while compressing output to " + resource, e);
+		}
+	}
+
+	/**
+	 * Finish the last member (the only one when the state is not saved) and
+	 * close the file.
+	 */
+	@Override
+	public void close() throws ItemStreamException {
+		super.close();
+		try {
+			if (channel != null) {
+				flush();
+			}
+		} finally {
+			if (compressor != null) {
+				compressor.shutdownNow();
+				compressor = null;
+			}
+			closeChannel();
+		}
+	}
+
+	private void closeChannel() {
+		if (channel == null) {
+			return;
+		}
+		try {
+			channel.close();
+		} catch (final IOException e) {
+			throw new ItemStreamException("Unable to close file " + resource, e);
+		} finally {
+			channel = null;
+			channelStream = null;
+			member = null;
+		}
+	}
+
+	/**
+	 * @param resource the output file
+	 */
+	public void setResource(final Resource resource) {
+		this.resource = resource;
+	}
+
+	/**
+	 * @param lineAggregator converts an item to a line
+	 */
+	public void setLineAggregator(final LineAggregator<T> lineAggregator) {
+		this.lineAggregator = lineAggregator;
+	}
+
+	/**
+	 * @param headerCallback written once at the beginning of the file
+	 */
+	public void setHeaderCallback(final FlatFileHeaderCallback headerCallback) {
+		this.headerCallback = headerCallback;
+	}
+
+	/**
+	 * @param codec the compression codec (default : chosen from the file
+	 *              extension)
+	 */
+	public void setCodec(final CompressionCodec codec) {
+		this.codec = codec;
+	}
+
+	/**
+	 * @param encoding the output charset (default UTF-8)
+	 */
+	public void setEncoding(final Charset encoding) {
+		this.encoding = encoding;
+	}
+
+	/**
+	 * @param lineSeparator the line separator (default system line separator)
+	 */
+	public void setLineSeparator(final String lineSeparator) {
+		this.lineSeparator = lineSeparator;
+	}
+
+	/**
+	 * @param blockSize size (in bytes) of the blocks handed to the compressor
+	 */
+	public void setBlockSize(final int blockSize) {
+		Assert.isTrue(blockSize > 0, "blockSize must be greater than 0");
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * @param saveState false to write the file as a single member, compressed
+	 *                  while the next chunks are read, without restart nor
+	 *                  rollback (default true)
+	 */
+	public void setSaveState(final boolean saveState) {
+		this.saveState = saveState;
+	}
+
+	/**
+	 * @param asyncCompression false to compress on the writing thread
+	 */
+	public void setAsyncCompression(final boolean asyncCompression) {
+		this.asyncCompression = asyncCompression;
+	}
+}
@@ -0,0 +1,108 @@
+package fr.training.springbatch.tools.compress;
+
+import org.springframework.batch.item.file.FlatFileHeaderCallback;
+import org.springframework.batch.item.file.transform.BeanWrapperFieldExtractor;
+import org.springframework.batch.item.file.transform.DelimitedLineAggregator;
+import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
+import org.springframework.batch.item.file.transform.LineAggregator;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+
+/**
+ * Builder for {@link CompressedFlatFileItemWriter}, following the
+ * FlatFileItemWriterBuilder conventions.
+ */
+public class CompressedFlatFileItemWriterBuilder<T> {
+
+	private String name;
+
+	private Resource resource;
+
+	private LineAggregator<T> lineAggregator;
+
+	private String delimiter = DelimitedLineTokenizer.DELIMITER_COMMA;
+
+	private String[] names;
+
+	private FlatFileHeaderCallback headerCallback;
+
+	private CompressionCodec codec;
+
+	private boolean asyncCompression = true;
+
+	private boolean saveState = true;
+
+	public CompressedFlatFileItemWriterBuilder<T> name(final String name) {
+		this.name = name;
+		return this;
+	}
+
+	public CompressedFlatFileItemWriterBuilder<T> resource(final Resource resource) {
+		this.resource = resource;
+		return this;
+	}
+
+	public CompressedFlatFileItemWriterBuilder<T> lineAggregator(final LineAggregator<T> lineAggregator) {
+		this.lineAggregator = lineAggregator;
+		return this;
+	}
+
+	/**
+	 * Use a {@link DelimitedLineAggregator} on the given bean properties.
+	 */
+	public CompressedFlatFileItemWriterBuilder<T> delimiter(final String delimiter) {
+		this.delimiter = delimiter;
+		return this;
+	}
+
+	public CompressedFlatFileItemWriterBuilder<T> names(final String... names) {
+		this.names = names;
+		return this;
+	}
+
+	public CompressedFlatFileItemWriterBuilder<T> headerCallback(final FlatFileHeaderCallback headerCallback) {
+		this.headerCallback = headerCallback;
+		return this;
+	}
+
+	public CompressedFlatFileItemWriterBuilder<T> codec(final CompressionCodec codec) {
+		this.codec = codec;
+		return this;
+	}
+
+	public CompressedFlatFileItemWriterBuilder<T> asyncCompression(final boolean asyncCompression) {
+		this.asyncCompression = asyncCompression;
+		return this;
+	}
+
+	public CompressedFlatFileItemWriterBuilder<T> saveState(final boolean saveState) {
+		this.saveState = saveState;
+		return this;
+	}
+
+	public CompressedFlatFileItemWriter<T> build() {
+		Assert.hasText(name, "A name is required");
+		Assert.notNull(resource, "A resource is required");
+		Assert.isTrue(lineAggregator != null || names != null, "A LineAggregator or field names are required");
+
+		final CompressedFlatFileItemWriter<T> writer = new CompressedFlatFileItemWriter<T>();
+		writer.setName(name);
+		writer.setResource(resource);
+		writer.setHeaderCallback(headerCallback);
+		writer.setCodec(codec);
+		writer.setAsyncCompression(asyncCompression);
+		writer.setSaveState(saveState);
+
+		if (lineAggregator != null) {
+			writer.setLineAggregator(lineAggregator);
+		} else {
+			final BeanWrapperFieldExtractor<T> fieldExtractor = new BeanWrapperFieldExtractor<T>();
+			fieldExtractor.setNames(names);
+			final DelimitedLineAggregator<T> aggregator = new DelimitedLineAggregator<T>();
+			aggregator.setDelimiter(delimiter);
+			aggregator.setFieldExtractor(fieldExtractor);
+			writer.setLineAggregator(aggregator);
+		}
+		return writer;
+	}
+}
@@ -0,0 +1,60 @@
+package fr.training.springbatch.tools.compress;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+/**
+ * {@link FileSystemResource} whose content is decompressed on the fly by the
+ * {@link CompressionCodec} matching the file extension.
+ *
+ * Decompression runs on a separate thread (see {@link ReadAheadInputStream}).
+ * Readers such as FlatFileItemReader stay restartable as they restart by
+ * skipping the lines already read.
+ */
+public class CompressedResource extends FileSystemResource {
+
+	private static final int BLOCK_SIZE = 64 * 1024;
+
+	private static final int READ_AHEAD_BLOCKS = 4;
+
+	private final CompressionCodec codec;
+
+	public CompressedResource(final File file, final CompressionCodec codec) {
+		super(file);
+		this.codec = codec;
+	}
+
+	/**
+	 * Get a resource for a file path, decompressed according to its extension.
+	 *
+	 * @param path the file path
+	 * @return a {@link CompressedResource} or a plain {@link FileSystemResource}
+	 */
+	public static Resource forPath(final String path) {
+		final CompressionCodec codec = CompressionCodec.forFilename(path);
+		if (!codec.isCompressed()) {
+			return new FileSystemResource(path);
+		}
+		return new CompressedResource(new File(path), codec);
+	}
+
+	@Override
+	public InputStream getInputStream() throws IOException {
+		final InputStream in = codec.decompress(new BufferedInputStream(super.getInputStream(), BLOCK_SIZE));
+		return new ReadAheadInputStream(in, BLOCK_SIZE, READ_AHEAD_BLOCKS, "decompress-" + getFilename());
+	}
+
+	public CompressionCodec getCodec() {
+		return codec;
+	}
+
+	@Override
+	public String getDescription() {
+		return codec.name() + " compressed " + super.getDescription();
+	}
+}
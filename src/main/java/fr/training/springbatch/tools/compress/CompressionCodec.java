@@ -0,0 +1,157 @@
+package fr.training.springbatch.tools.compress;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streaming compression codecs, selected from the file extension.
+ *
+ * Only the codecs available in the JDK are provided. Other codecs (zstd, lz4)
+ * can be added as new constants wrapping the streams of their libraries.
+ */
+public enum CompressionCodec {
+
+	NONE("") {
+		@Override
+		public InputStream decompress(final InputStream in) {
+			return in;
+		}
+
+		@Override
+		public OutputStream compress(final OutputStream out) {
+			return out;
+		}
+	},
+
+	/**
+	 * GZIP : concatenated members form a valid stream, so each member can be
+	 * used as a restartable block.
+	 */
+	GZIP(".gz") {
+		@Override
+		public InputStream decompress(final InputStream in) throws IOException {
+			return new GZIPInputStream(in, BUFFER_SIZE);
+		}
+
+		@Override
+		public OutputStream compress(final OutputStream out) throws IOException {
+			return new GzipMember(out);
+		}
+
+		@Override
+		public void finish(final OutputStream out) throws IOException {
+			out.close();
+		}
+
+		@Override
+		public void discard(final OutputStream out) {
+			((GzipMember) out).end();
+		}
+	};
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final String extension;
+
+	CompressionCodec(final String extension) {
+		this.extension = extension;
+	}
+
+	/**
+	 * @param in compressed stream
+	 * @return the decompressed stream
+	 * @throws IOException
+	 */
+	public abstract InputStream decompress(InputStream in) throws IOException;
+
+	/**
+	 * Start a new compressed block. The native memory of the compressor is held
+	 * until the block is finished or discarded.
+	 *
+	 * @param out target stream (will not be closed)
+	 * @return the compressing stream
+	 * @throws IOException
+	 */
+	public abstract OutputStream compress(OutputStream out) throws IOException;
+
+	/**
+	 * Terminate a compressed block without closing the target stream, and
+	 * release the compressor.
+	 *
+	 * @param out stream returned by {@link #compress(OutputStream)}
+	 * @throws IOException
+	 */
+	public void finish(final OutputStream out) throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Release the compressor of a block that won't be finished (failed write).
+	 * Does nothing if the block is already finished.
+	 *
+	 * @param out stream returned by {@link #compress(OutputStream)}
+	 */
+	public void discard(final OutputStream out) {
+		// nothing to release
+	}
+
+	public String getExtension() {
+		return extension;
+	}
+
+	public boolean isCompressed() {
+		return this != NONE;
+	}
+
+	/**
+	 * @param filename a file name or path
+	 * @return the codec matching the file extension, {@link #NONE} if none
+	 */
+	public static CompressionCodec forFilename(final String filename) {
+		if (filename != null) {
+			for (final CompressionCodec codec : values()) {
+				if (codec.isCompressed() && filename.endsWith(codec.extension)) {
+					return codec;
+				}
+			}
+		}
+		return NONE;
+	}
+
+	/**
+	 * GZIP member whose {@link #close()} finishes the member and ends its
+	 * Deflater (the native zlib memory is freed at once, not when the stream is
+	 * garbage collected) without closing the target stream.
+	 */
+	private static final class GzipMember extends GZIPOutputStream {
+
+		private boolean ended = false;
+
+		GzipMember(final OutputStream out) throws IOException {
+			super(out, BUFFER_SIZE);
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (ended) {
+				return;
+			}
+			try {
+				finish();
+				flush();
+			} finally {
+				end();
+			}
+		}
+
+		void end() {
+			if (!ended) {
+				ended = true;
+				def.end();
+			}
+		}
+	}
+}
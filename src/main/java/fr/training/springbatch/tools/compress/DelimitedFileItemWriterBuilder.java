@@ -0,0 +1,99 @@
+package fr.training.springbatch.tools.compress;
+
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.item.file.FlatFileHeaderCallback;
+import org.springframework.batch.item.file.FlatFileItemWriter;
+import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
+import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+
+/**
+ * Builder of a delimited flat file writer : a {@link FlatFileItemWriter}, or a
+ * {@link CompressedFlatFileItemWriter} when the file extension (or the given
+ * codec) asks for compression.
+ */
+public class DelimitedFileItemWriterBuilder<T> {
+
+	private String name;
+
+	private Resource resource;
+
+	private String delimiter = DelimitedLineTokenizer.DELIMITER_COMMA;
+
+	private String[] names;
+
+	private FlatFileHeaderCallback headerCallback;
+
+	private CompressionCodec codec;
+
+	private boolean saveState = true;
+
+	public DelimitedFileItemWriterBuilder<T> name(final String name) {
+		this.name = name;
+		return this;
+	}
+
+	public DelimitedFileItemWriterBuilder<T> resource(final Resource resource) {
+		this.resource = resource;
+		return this;
+	}
+
+	public DelimitedFileItemWriterBuilder<T> delimiter(final String delimiter) {
+		this.delimiter = delimiter;
+		return this;
+	}
+
+	public DelimitedFileItemWriterBuilder<T> names(final String... names) {
+		this.names = names;
+		return this;
+	}
+
+	public DelimitedFileItemWriterBuilder<T> headerCallback(final FlatFileHeaderCallback headerCallback) {
+		this.headerCallback = headerCallback;
+		return this;
+	}
+
+	/**
+	 * @param codec the compression codec (default : chosen from the file
+	 *              extension)
+	 */
+	public DelimitedFileItemWriterBuilder<T> codec(final CompressionCodec codec) {
+		this.codec = codec;
+		return this;
+	}
+
+	/**
+	 * @param saveState false for a non restartable writer (a compressed file is
+	 *                  then written as a single member, compressed while the
+	 *                  next chunks are read)
+	 */
+	public DelimitedFileItemWriterBuilder<T> saveState(final boolean saveState) {
+		this.saveState = saveState;
+		return this;
+	}
+
+	public ItemStreamWriter<T> build() {
+		Assert.notNull(resource, "A resource is required");
+		final CompressionCodec selected = codec != null ? codec : CompressionCodec.forFilename(resource.getFilename());
+
+		if (selected.isCompressed()) {
+			return new CompressedFlatFileItemWriterBuilder<T>().name(name) //
+					.resource(resource) //
+					.codec(selected) //
+					.delimiter(delimiter) //
+					.names(names) //
+					.headerCallback(headerCallback) //
+					.saveState(saveState) //
+					.build();
+		}
+		return new FlatFileItemWriterBuilder<T>().name(name) //
+				.resource(resource) //
+				.delimited() //
+				.delimiter(delimiter) //
+				.names(names) //
+				.headerCallback(headerCallback) //
+				.saveState(saveState) //
+				.build();
+	}
+}
@@ -0,0 +1,148 @@
+package fr.training.springbatch.tools.compress;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * {@link InputStream} that reads its source (typically a decompressing stream)
+ * on a dedicated thread, a bounded number of blocks ahead of the consumer.
+ *
+ * Decompression so overlaps with the parsing and processing of the items.
+ *
+ * A failure of the source (any exception or error) is queued behind the blocks
+ * already read and rethrown to the consumer, as an IOException.
+ */
+public class ReadAheadInputStream extends InputStream {
+
+	private static final byte[] EOF = new byte[0];
+
+	private final BlockingQueue<Object> blocks;
+
+	private final Thread producer;
+
+	private byte[] current;
+
+	private int position;
+
+	private boolean eof = false;
+
+	private IOException failure;
+
+	/**
+	 * @param source     the source stream, closed when fully read
+	 * @param blockSize  size of the blocks read ahead
+	 * @param depth      maximum number of blocks read ahead
+	 * @param threadName name of the reading thread
+	 */
+	public ReadAheadInputStream(final InputStream source, final int blockSize, final int depth,
+			final String threadName) {
+		blocks = new ArrayBlockingQueue<Object>(depth);
+		producer = new Thread(() -> {
+			try (InputStream in = source) {
+				while (true) {
+					final byte[] block = new byte[blockSize];
+					final int count = readBlock(in, block);
+					if (count <= 0) {
+						break;
+					}
+					blocks.put(count == blockSize ? block : Arrays.copyOf(block, count));
+				}
+				blocks.put(EOF);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (final Throwable e) {
+				try {
+					// blocks until the consumer makes room (or closes the stream)
+					blocks.put(e);
+				} catch (final InterruptedException ie) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, threadName);
+		producer.setDaemon(true);
+		producer.start();
+	}
+
+	private static int readBlock(final InputStream in, final byte[] block) throws IOException {
+		int count = 0;
+		while (count < block.length) {
+			final int read = in.read(block, count, block.length - count);
+			if (read < 0) {
+				break;
+			}
+			count += read;
+		}
+		return count;
+	}
+
+	/**
+	 * @return false if the end of the stream is reached
+	 */
+	private boolean nextBlock() throws IOException {
+		if (failure != null) {
+			throw failure;
+		}
+		if (eof) {
+			return false;
+		}
+		if (current != null && position < current.length) {
+			return true;
+		}
+		final Object block;
+		try {
+			block = blocks.take();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading ahead", e);
+		}
+		if (block instanceof Throwable) {
+			failure = block instanceof IOException ? (IOException) block
+					: new IOException("Read ahead failed", (Throwable) block);
+			throw failure;
+		}
+		current = (byte[]) block;
+		position = 0;
+		if (current == EOF) {
+			eof = true;
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!nextBlock()) {
+			return -1;
+		}
+		return current[position++] & 0xFF;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!nextBlock()) {
+			return -1;
+		}
+		final int count = Math.min(len, current.length - position);
+		System.arraycopy(current, position, b, off, count);
+		position += count;
+		return count;
+	}
+
+	@Override
+	public int available() {
+		return current == null || eof ? 0 : current.length - position;
+	}
+
+	@Override
+	public void close() {
+		eof = true;
+		producer.interrupt();
+		blocks.clear();
+	}
+}
@@ -0,0 +1,283 @@
+package fr.training.springbatch.tools.dedup;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+/**
+ * {@link ItemWriter} removing the items whose key has already been written in
+ * the step : the first occurrence is written to the delegate, the next ones to
+ * the reject writer.
+ *
+ * Only the 64-bit hash of each key is kept, in a {@link LongHashSet} (about 8
+ * to 16 bytes per key whatever the key size). Two different keys with the
+ * same hash would be taken for duplicates : with 100M keys, the probability of
+ * one such collision is about 1/4000. When it matters, set a verification
+ * query : an item whose hash is already known is then rejected only if its key
+ * is really in the current chunk or in the target table. The query is only run
+ * for the suspected duplicates, but it needs an index of the key in the target
+ * table while the step writes : without it, each query scans the table.
+ *
+ * The items must be written in the reading order (single-threaded step, or
+ * behind an AsyncItemWriter). The hashes added by a chunk are removed when its
+ * transaction is rolled back, so a retried chunk is not taken for duplicates.
+ * A restarted step reloads the keys already written with the restart query
+ * when there is one, otherwise it only knows the keys it writes itself.
+ *
+ * @param <T> the item type
+ */
+public class DuplicateFilterItemWriter<T>
+implements ItemStreamWriter<T>, StepExecutionListener, InitializingBean {
+
+	private static final Logger logger = LoggerFactory.getLogger(DuplicateFilterItemWriter.class);
+
+	/** Key of the number of duplicates in the step execution context */
+	public static final String DUPLICATE_COUNT = "duplicateCount";
+
+	private static final int DEFAULT_EXPECTED_KEYS = 100_000;
+
+	private ItemWriter<? super T> delegate;
+
+	private ItemWriter<? super T> rejectWriter;
+
+	private Function<? super T, ? extends CharSequence> keyExtractor;
+
+	private NamedParameterJdbcTemplate jdbcTemplate;
+
+	private String verifySql;
+
+	private String restartSql;
+
+	private int expectedKeys = DEFAULT_EXPECTED_KEYS;
+
+	private LongHashSet hashes;
+
+	private long duplicateCount;
+
+	@Override
+	public void write(final List<? extends T> items) throws Exception {
+		final List<T> uniques = new ArrayList<T>(items.size());
+		final List<T> duplicates = new ArrayList<T>();
+		// exact keys of the chunk, not yet in the table (verification only)
+		final Set<String> chunkKeys = verifySql != null ? new HashSet<String>() : null;
+		final ChunkHashes chunk = new ChunkHashes(items.size());
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(chunk);
+		}
+
+		for (final T item : items) {
+			final CharSequence key = keyExtractor.apply(item);
+			final long hash = LongHashSet.hash(key);
+			final boolean known = !hashes.add(hash);
+			if (!known) {
+				chunk.added[chunk.addedCount++] = hash;
+			}
+			if (!known || verifySql != null && !isDuplicate(item, key, chunkKeys)) {
+				uniques.add(item);
+				if (chunkKeys != null) {
+					chunkKeys.add(key.toString());
+				}
+			} else {
+				duplicates.add(item);
+			}
+		}
+
+		duplicateCount += duplicates.size();
+		chunk.duplicateCount = duplicates.size();
+
+		if (!uniques.isEmpty()) {
+			delegate.write(uniques);
+		}
+		if (!duplicates.isEmpty()) {
+			rejectWriter.write(duplicates);
+		}
+	}
+
+	/**
+	 * Hashes and duplicates of a chunk, forgotten if its transaction is rolled
+	 * back.
+	 */
+	private class ChunkHashes extends TransactionSynchronizationAdapter {
+
+		private final long[] added;
+
+		private int addedCount;
+
+		private int duplicateCount;
+
+		ChunkHashes(final int size) {
+			added = new long[size];
+		}
+
+		@Override
+		public void afterCompletion(final int status) {
+			if (status == TransactionSynchronization.STATUS_COMMITTED || hashes == null) {
+				return;
+			}
+			for (int i = 0; i < addedCount; i++) {
+				hashes.remove(added[i]);
+			}
+			DuplicateFilterItemWriter.this.duplicateCount -= duplicateCount;
+		}
+	}
+
+	/**
+	 * Exact check of an item whose hash is already known.
+	 */
+	private boolean isDuplicate(final T item, final CharSequence key, final Set<String> chunkKeys) {
+		if (chunkKeys.contains(key.toString())) {
+			return true;
+		}
+		final Integer count = jdbcTemplate.queryForObject(verifySql, new BeanPropertySqlParameterSource(item),
+				Integer.class);
+		if (count == null || count == 0) {
+			logger.info("Hash collision on key {}", key);
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public void beforeStep(final StepExecution stepExecution) {
+		hashes = new LongHashSet(expectedKeys);
+		duplicateCount = 0;
+	}
+
+	@Nullable
+	@Override
+	public ExitStatus afterStep(final StepExecution stepExecution) {
+		stepExecution.getExecutionContext().putLong(DUPLICATE_COUNT, duplicateCount);
+		if (duplicateCount > 0) {
+			logger.warn("{} : {} duplicates rejected out of {} keys", stepExecution.getStepName(), duplicateCount,
+					hashes.size());
+		}
+		hashes = null; // release the memory
+		return null;
+	}
+
+	@Override
+	public void open(final ExecutionContext executionContext) throws ItemStreamException {
+		if (executionContext.containsKey(DUPLICATE_COUNT)) {
+			// restart
+			duplicateCount = executionContext.getLong(DUPLICATE_COUNT);
+			if (restartSql != null) {
+				jdbcTemplate.getJdbcTemplate().query(restartSql, rs -> {
+					hashes.add(LongHashSet.hash(rs.getString(1)));
+				});
+				logger.info("{} keys already written reloaded", hashes.size());
+			}
+		}
+		if (delegate instanceof ItemStream) {
+			((ItemStream) delegate).open(executionContext);
+		}
+		if (rejectWriter instanceof ItemStream) {
+			((ItemStream) rejectWriter).open(executionContext);
+		}
+	}
+
+	@Override
+	public void update(final ExecutionContext executionContext) throws ItemStreamException {
+		executionContext.putLong(DUPLICATE_COUNT, duplicateCount);
+		if (delegate instanceof ItemStream) {
+			((ItemStream) delegate).update(executionContext);
+		}
+		if (rejectWriter instanceof ItemStream) {
+			((ItemStream) rejectWriter).update(executionContext);
+		}
+	}
+
+	@Override
+	public void close() throws ItemStreamException {
+		if (delegate instanceof ItemStream) {
+			((ItemStream) delegate).close();
+		}
+		if (rejectWriter instanceof ItemStream) {
+			((ItemStream) rejectWriter).close();
+		}
+	}
+
+	/**
+	 * @param delegate the writer of the first occurrence of each key
+	 */
+	public void setDelegate(final ItemWriter<? super T> delegate) {
+		this.delegate = delegate;
+	}
+
+	/**
+	 * @param rejectWriter the writer of the duplicates
+	 */
+	public void setRejectWriter(final ItemWriter<? super T> rejectWriter) {
+		this.rejectWriter = rejectWriter;
+	}
+
+	/**
+	 * @param keyExtractor the key of an item (the fields of a composite key
+	 *                     joined with a separator)
+	 */
+	public void setKeyExtractor(final Function<? super T, ? extends CharSequence> keyExtractor) {
+		this.keyExtractor = keyExtractor;
+	}
+
+	public void setDataSource(final DataSource dataSource) {
+		jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+	}
+
+	/**
+	 * @param verifySql query counting the rows of the key of an item in the
+	 *                  target table, with named parameters taken from the item
+	 *                  properties (default none : the hashes are trusted)
+	 */
+	public void setVerifySql(final String verifySql) {
+		this.verifySql = verifySql;
+	}
+
+	/**
+	 * @param restartSql query returning the keys already written by a failed
+	 *                   execution of the step, as built by the key extractor, to
+	 *                   reload their hashes on restart (default none)
+	 */
+	public void setRestartSql(final String restartSql) {
+		this.restartSql = restartSql;
+	}
+
+	/**
+	 * @param expectedKeys the expected number of distinct keys, to size the set
+	 *                     of hashes once (default 100000)
+	 */
+	public void setExpectedKeys(final int expectedKeys) {
+		this.expectedKeys = expectedKeys;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(delegate, "The delegate must be set");
+		Assert.notNull(rejectWriter, "The rejectWriter must be set");
+		Assert.notNull(keyExtractor, "The keyExtractor must be set");
+		Assert.isTrue(verifySql == null && restartSql == null || jdbcTemplate != null,
+				"A DataSource is needed to verify the duplicates or reload the keys");
+	}
+
+}
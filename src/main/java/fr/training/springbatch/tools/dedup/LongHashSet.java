@@ -0,0 +1,191 @@
+package fr.training.springbatch.tools.dedup;
+
+import java.util.Arrays;
+
+import org.springframework.util.Assert;
+
+/**
+ * Set of 64-bit hashes stored in a single long array (open addressing with
+ * linear probing) : 8 bytes per slot, no boxing and no entry object, so 100M
+ * keys fit in about 1 GB where a HashSet of String would need several times
+ * more.
+ *
+ * The table doubles when it is more than 3/4 full, up to
+ * {@link #setMaxCapacity(int)} slots : above, {@link #add(long)} fails instead
+ * of growing the memory without limit. 0 marks an empty slot, so the hash 0 is
+ * stored as 1 (one more collision among 2^64 values). A removal shifts back
+ * the following values of its cluster, so no tombstone is needed.
+ *
+ * Not thread-safe.
+ */
+public class LongHashSet {
+
+	private static final int MAX_CAPACITY = 1 << 30;
+
+	private static final long EMPTY = 0L;
+
+	private long[] slots;
+
+	private int mask;
+
+	private int size;
+
+	private int maxCapacity = MAX_CAPACITY;
+
+	/**
+	 * @param expectedSize the expected number of hashes (sizes the table once)
+	 */
+	public LongHashSet(final int expectedSize) {
+		Assert.isTrue(expectedSize >= 0, "expectedSize must not be negative");
+		allocate(capacityFor(expectedSize));
+	}
+
+	private static int capacityFor(final int expectedSize) {
+		final long minCapacity = Math.max(16L, expectedSize * 4L / 3 + 1);
+		return (int) Math.min(MAX_CAPACITY, Long.highestOneBit(minCapacity - 1) << 1);
+	}
+
+	private void allocate(final int capacity) {
+		slots = new long[capacity];
+		mask = capacity - 1;
+	}
+
+	/**
+	 * @param hash the hash to add
+	 * @return true if the hash was not in the set
+	 */
+	public boolean add(final long hash) {
+		final long value = hash == EMPTY ? 1L : hash;
+		int index = (int) mix(value) & mask;
+		while (slots[index] != EMPTY) {
+			if (slots[index] == value) {
+				return false;
+			}
+			index = index + 1 & mask;
+		}
+		slots[index] = value;
+		if (++size > slots.length / 4 * 3) {
+			grow();
+		}
+		return true;
+	}
+
+	/**
+	 * @param hash the hash to look for
+	 * @return true if the hash has been added
+	 */
+	public boolean contains(final long hash) {
+		final long value = hash == EMPTY ? 1L : hash;
+		int index = (int) mix(value) & mask;
+		while (slots[index] != EMPTY) {
+			if (slots[index] == value) {
+				return true;
+			}
+			index = index + 1 & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * @param hash the hash to remove
+	 * @return true if the hash was in the set
+	 */
+	public boolean remove(final long hash) {
+		final long value = hash == EMPTY ? 1L : hash;
+		int index = (int) mix(value) & mask;
+		while (slots[index] != value) {
+			if (slots[index] == EMPTY) {
+				return false;
+			}
+			index = index + 1 & mask;
+		}
+		// shift back the next values of the cluster that may fill the hole, so
+		// that no empty slot stops their probing
+		int hole = index;
+		for (int next = hole + 1 & mask; slots[next] != EMPTY; next = next + 1 & mask) {
+			final int home = (int) mix(slots[next]) & mask;
+			if ((next - home & mask) >= (next - hole & mask)) {
+				slots[hole] = slots[next];
+				hole = next;
+			}
+		}
+		slots[hole] = EMPTY;
+		size--;
+		return true;
+	}
+
+	private void grow() {
+		Assert.state(slots.length < maxCapacity,
+				"LongHashSet full : " + size + " hashes, max capacity " + maxCapacity + " slots");
+		final long[] old = slots;
+		allocate(old.length << 1);
+		for (final long value : old) {
+			if (value != EMPTY) {
+				int index = (int) mix(value) & mask;
+				while (slots[index] != EMPTY) {
+					index = index + 1 & mask;
+				}
+				slots[index] = value;
+			}
+		}
+	}
+
+	/**
+	 * Spread the bits of the hash on the slot index (murmur3 finalizer), in case
+	 * the low bits of the hashes are not uniform.
+	 */
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * 64-bit hash of a key (FNV-1a on the chars, then the murmur3 finalizer).
+	 *
+	 * @param key the key, e.g. the fields of a composite key with a separator
+	 * @return the hash of the key
+	 */
+	public static long hash(final CharSequence key) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			h ^= key.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		return mix(h);
+	}
+
+	/**
+	 * Remove all the hashes (the capacity is kept).
+	 */
+	public void clear() {
+		Arrays.fill(slots, EMPTY);
+		size = 0;
+	}
+
+	/**
+	 * @return the number of hashes in the set
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of slots (8 bytes each)
+	 */
+	public int capacity() {
+		return slots.length;
+	}
+
+	/**
+	 * @param maxCapacity the maximum number of slots (power of 2, default 2^30)
+	 */
+	public void setMaxCapacity(final int maxCapacity) {
+		Assert.isTrue(maxCapacity > 0 && Integer.bitCount(maxCapacity) == 1, "maxCapacity must be a power of 2");
+		this.maxCapacity = maxCapacity;
+	}
+
+}
@@ -0,0 +1,108 @@
+package fr.training.springbatch.tools.format;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Thread-safe, allocation free renderer of {@link LocalDate} in the
+ * <code>MM/dd/yyyy</code> format.
+ *
+ * Two-digits values are precomputed once, so rendering a date only copies 10
+ * chars into the caller-supplied buffer.
+ */
+public final class DateRenderer {
+
+	/** Length of a rendered date */
+	public static final int LENGTH = 10;
+
+	private static final char SEPARATOR = '/';
+
+	/** Fallback for years that do not fit on 4 digits */
+	private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+
+	private static final char[] TENS = new char[100];
+
+	private static final char[] UNITS = new char[100];
+
+	static {
+		for (int i = 0; i < 100; i++) {
+			TENS[i] = (char) ('0' + i / 10);
+			UNITS[i] = (char) ('0' + i % 10);
+		}
+	}
+
+	private DateRenderer() {
+		// static methods only
+	}
+
+	/**
+	 * Render the date into the buffer at the given offset.
+	 *
+	 * @param date   the date to render
+	 * @param buffer the target buffer (at least {@link #LENGTH} chars from offset)
+	 * @param offset the start position in the buffer
+	 * @return the position following the last written char
+	 */
+	public static int render(final LocalDate date, final char[] buffer, final int offset) {
+		final int year = date.getYear();
+		if (year < 0 || year > 9999) {
+			final String text = FORMATTER.format(date);
+			text.getChars(0, text.length(), buffer, offset);
+			return offset + text.length();
+		}
+		int pos = offset;
+		pos = putTwoDigits(date.getMonthValue(), buffer, pos);
+		buffer[pos++] = SEPARATOR;
+		pos = putTwoDigits(date.getDayOfMonth(), buffer, pos);
+		buffer[pos++] = SEPARATOR;
+		pos = putTwoDigits(year / 100, buffer, pos);
+		return putTwoDigits(year % 100, buffer, pos);
+	}
+
+	/**
+	 * Append the rendered date to the buffer.
+	 *
+	 * @param date   the date to render (nothing is appended if null)
+	 * @param buffer the target buffer
+	 * @return the buffer
+	 */
+	public static StringBuilder appendTo(final LocalDate date, final StringBuilder buffer) {
+		if (date == null) {
+			return buffer;
+		}
+		final int year = date.getYear();
+		if (year < 0 || year > 9999) {
+			return buffer.append(FORMATTER.format(date));
+		}
+		appendTwoDigits(date.getMonthValue(), buffer).append(SEPARATOR);
+		appendTwoDigits(date.getDayOfMonth(), buffer).append(SEPARATOR);
+		appendTwoDigits(year / 100, buffer);
+		return appendTwoDigits(year % 100, buffer);
+	}
+
+	/**
+	 * @param date the date to render
+	 * @return the rendered date, or null if the date is null
+	 */
+	public static String format(final LocalDate date) {
+		if (date == null) {
+			return null;
+		}
+		if (date.getYear() < 0 || date.getYear() > 9999) {
+			return FORMATTER.format(date);
+		}
+		final char[] buffer = new char[LENGTH];
+		render(date, buffer, 0);
+		return new String(buffer);
+	}
+
+	private static int putTwoDigits(final int value, final char[] buffer, final int pos) {
+		buffer[pos] = TENS[value];
+		buffer[pos + 1] = UNITS[value];
+		return pos + 2;
+	}
+
+	private static StringBuilder appendTwoDigits(final int value, final StringBuilder buffer) {
+		return buffer.append(TENS[value]).append(UNITS[value]);
+	}
+}
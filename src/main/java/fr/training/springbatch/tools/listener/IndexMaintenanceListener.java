@@ -0,0 +1,76 @@
+package fr.training.springbatch.tools.listener;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+/**
+ * Drop an index before a bulk load step and build it again once the step is
+ * over (whatever its status, so the readers of the table never lose it for
+ * long).
+ *
+ * Building the index once, on the loaded table, is cheaper than maintaining it
+ * row by row during the load. For an incremental load on a big table, leave
+ * the index in place instead.
+ */
+public class IndexMaintenanceListener implements StepExecutionListener, InitializingBean {
+
+	private static final Logger logger = LoggerFactory.getLogger(IndexMaintenanceListener.class);
+
+	private JdbcTemplate jdbcTemplate;
+
+	private String indexName;
+
+	private String createSql;
+
+	@Override
+	public void beforeStep(final StepExecution stepExecution) {
+		jdbcTemplate.execute("DROP INDEX IF EXISTS " + indexName);
+		logger.info("Index {} dropped before {}", indexName, stepExecution.getStepName());
+	}
+
+	@Nullable
+	@Override
+	public ExitStatus afterStep(final StepExecution stepExecution) {
+		final long start = System.currentTimeMillis();
+		jdbcTemplate.execute(createSql);
+		logger.info("Index {} built after {} in {} ms", indexName, stepExecution.getStepName(),
+				System.currentTimeMillis() - start);
+		return null;
+	}
+
+	public void setDataSource(final DataSource dataSource) {
+		jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	/**
+	 * @param indexName the name of the index to drop
+	 */
+	public void setIndexName(final String indexName) {
+		this.indexName = indexName;
+	}
+
+	/**
+	 * @param createSql the statement creating the index (CREATE INDEX IF NOT
+	 *                  EXISTS ...)
+	 */
+	public void setCreateSql(final String createSql) {
+		this.createSql = createSql;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(jdbcTemplate, "You must provide a DataSource.");
+		Assert.hasText(indexName, "indexName must be set");
+		Assert.hasText(createSql, "createSql must be set");
+	}
+
+}
@@ -0,0 +1,95 @@
+package fr.training.springbatch.tools.partition;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.springframework.core.io.FileSystemResource;
+
+/**
+ * {@link FileSystemResource} restricted to a byte range [start, end) of a file,
+ * so that a FlatFileItemReader can read one partition of a file.
+ *
+ * The range bounds must be line starts.
+ */
+public class FileRangeResource extends FileSystemResource {
+
+	private final long start;
+
+	private final long end;
+
+	/**
+	 * @param file  the whole file
+	 * @param start first byte of the range (inclusive)
+	 * @param end   last byte of the range (exclusive)
+	 */
+	public FileRangeResource(final File file, final long start, final long end) {
+		super(file);
+		this.start = start;
+		this.end = end;
+	}
+
+	@Override
+	public InputStream getInputStream() throws IOException {
+		final FileChannel channel = FileChannel.open(getFile().toPath(), StandardOpenOption.READ);
+		channel.position(start);
+		return new RangeInputStream(Channels.newInputStream(channel), end - start);
+	}
+
+	@Override
+	public long contentLength() {
+		return end - start;
+	}
+
+	@Override
+	public String getDescription() {
+		return super.getDescription() + " [" + start + ", " + end + ")";
+	}
+
+	/**
+	 * Stream stopping after a given number of bytes.
+	 */
+	private static class RangeInputStream extends InputStream {
+
+		private final InputStream in;
+
+		private long remaining;
+
+		RangeInputStream(final InputStream in, final long length) {
+			this.in = in;
+			remaining = length;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			final int b = in.read();
+			if (b >= 0) {
+				remaining--;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			final int count = in.read(b, off, (int) Math.min(len, remaining));
+			if (count > 0) {
+				remaining -= count;
+			}
+			return count;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package fr.training.springbatch.tools.partition;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.Assert;
+
+/**
+ * {@link Partitioner} that splits the distinct values of a (sortable) key
+ * column into contiguous ranges holding about the same number of keys.
+ *
+ * Each partition {@link ExecutionContext} contains the inclusive bounds of its
+ * range in {@link #MIN_KEY} and {@link #MAX_KEY} so that a step scoped reader
+ * can restrict its query with :
+ *
+ * <pre>
+ * WHERE key_column &gt;= :minKey AND key_column &lt;= :maxKey
+ * </pre>
+ *
+ * Ranges never share a key value, so all the rows of a key are handled by the
+ * same partition. When the table is empty, one partition without bounds is
+ * returned.
+ */
+public class KeyRangePartitioner implements Partitioner, InitializingBean {
+
+	private static final Logger logger = LoggerFactory.getLogger(KeyRangePartitioner.class);
+
+	public static final String MIN_KEY = "minKey";
+
+	public static final String MAX_KEY = "maxKey";
+
+	public static final String PARTITION_INDEX = "partitionIndex";
+
+	private static final String PARTITION_PREFIX = "partition";
+
+	private JdbcOperations jdbcTemplate;
+
+	private String table;
+
+	private String column;
+
+	@Override
+	public Map<String, ExecutionContext> partition(final int gridSize) {
+		final Map<String, ExecutionContext> partitions = new HashMap<String, ExecutionContext>();
+
+		final Long count = jdbcTemplate.queryForObject(
+				String.format("SELECT COUNT(DISTINCT %s) FROM %s", column, table), Long.class);
+		if (count == null || count == 0) {
+			final ExecutionContext context = new ExecutionContext();
+			context.putInt(PARTITION_INDEX, 0);
+			partitions.put(PARTITION_PREFIX + 0, context);
+			return partitions;
+		}
+
+		final long keysPerPartition = (count + gridSize - 1) / gridSize;
+
+		// Only the key column is streamed, the bounds are captured on the fly
+		final long[] position = { 0 };
+		final ExecutionContext[] current = { null };
+		final String[] lastKey = { null };
+
+		jdbcTemplate.query(String.format("SELECT DISTINCT %s FROM %s ORDER BY %s", column, table, column), rs -> {
+			final String key = rs.getString(1);
+			if (position[0] % keysPerPartition == 0) {
+				if (current[0] != null) {
+					current[0].putString(MAX_KEY, lastKey[0]);
+				}
+				final int index = partitions.size();
+				current[0] = new ExecutionContext();
+				current[0].putInt(PARTITION_INDEX, index);
+				current[0].putString(MIN_KEY, key);
+				partitions.put(PARTITION_PREFIX + index, current[0]);
+			}
+			lastKey[0] = key;
+			position[0]++;
+		});
+		current[0].putString(MAX_KEY, lastKey[0]);
+
+		logger.info("{} keys of {}.{} split into {} partitions", count, table, column, partitions.size());
+		return partitions;
+	}
+
+	public void setDataSource(final DataSource dataSource) {
+		jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	public void setJdbcTemplate(final JdbcOperations jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	/**
+	 * @param table the table to split
+	 */
+	public void setTable(final String table) {
+		this.table = table;
+	}
+
+	/**
+	 * @param column the key column (must be sortable)
+	 */
+	public void setColumn(final String column) {
+		this.column = column;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(jdbcTemplate, "Either jdbcTemplate or dataSource must be set");
+		Assert.hasText(table, "table must be set");
+		Assert.hasText(column, "column must be set");
+	}
+
+}
@@ -0,0 +1,29 @@
+package fr.training.springbatch.tools.partition;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point to point channel between the {@link RemotePartitionHandler} of the
+ * manager step and the {@link PartitionWorker}s : each request must be
+ * received by one worker only.
+ *
+ * {@link QueuePartitionChannel} is an in-process implementation (tests, single
+ * node). To spread the partitions over several nodes sharing the job
+ * repository, implement it over a message broker queue (JMS, AMQP...).
+ */
+public interface PartitionChannel {
+
+	/**
+	 * @param request the request to deliver to one worker
+	 */
+	void send(PartitionRequest request);
+
+	/**
+	 * @param timeout the maximum time to wait for a request
+	 * @param unit    the unit of the timeout
+	 * @return the next request, or null if none arrived before the timeout
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	PartitionRequest receive(long timeout, TimeUnit unit) throws InterruptedException;
+
+}
@@ -0,0 +1,49 @@
+package fr.training.springbatch.tools.partition;
+
+import java.io.Serializable;
+
+/**
+ * Message sent by the {@link RemotePartitionHandler} to the
+ * {@link PartitionWorker}s : the worker step execution to run, already saved
+ * in the shared job repository.
+ */
+public class PartitionRequest implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String stepName;
+
+	private final Long jobExecutionId;
+
+	private final Long stepExecutionId;
+
+	/**
+	 * @param stepName        the name of the worker step
+	 * @param jobExecutionId  the job execution id
+	 * @param stepExecutionId the worker step execution id
+	 */
+	public PartitionRequest(final String stepName, final Long jobExecutionId, final Long stepExecutionId) {
+		this.stepName = stepName;
+		this.jobExecutionId = jobExecutionId;
+		this.stepExecutionId = stepExecutionId;
+	}
+
+	public String getStepName() {
+		return stepName;
+	}
+
+	public Long getJobExecutionId() {
+		return jobExecutionId;
+	}
+
+	public Long getStepExecutionId() {
+		return stepExecutionId;
+	}
+
+	@Override
+	public String toString() {
+		return "PartitionRequest [stepName=" + stepName + ", jobExecutionId=" + jobExecutionId
+				+ ", stepExecutionId=" + stepExecutionId + "]";
+	}
+
+}
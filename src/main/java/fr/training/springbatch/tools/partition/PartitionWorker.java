@@ -0,0 +1,245 @@
+package fr.training.springbatch.tools.partition;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobInterruptedException;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.util.Assert;
+
+/**
+ * Consumer of the {@link PartitionRequest}s sent by a
+ * {@link RemotePartitionHandler} : each request is a worker step execution,
+ * read from the shared job repository and executed by the worker step of the
+ * same name.
+ *
+ * The worker is started with the application context and listens to the
+ * {@link PartitionChannel} with {@link #setConcurrency(int)} consumers, so a
+ * node only has to declare the worker steps and the channel to take its share
+ * of the partitions.
+ *
+ * A step execution the worker step cannot run to its end (unknown step, error
+ * out of the step) is saved as failed, so that the manager does not wait for
+ * it.
+ */
+public class PartitionWorker implements SmartLifecycle, InitializingBean {
+
+	private static final Logger logger = LoggerFactory.getLogger(PartitionWorker.class);
+
+	private static final long DEFAULT_RECEIVE_TIMEOUT = 1000L;
+
+	private PartitionChannel channel;
+
+	private JobExplorer jobExplorer;
+
+	private JobRepository jobRepository;
+
+	private final Map<String, Step> steps = new HashMap<String, Step>();
+
+	private TaskExecutor taskExecutor;
+
+	private int concurrency = 1;
+
+	private long receiveTimeout = DEFAULT_RECEIVE_TIMEOUT;
+
+	private boolean autoStartup = true;
+
+	private volatile boolean running = false;
+
+	private CountDownLatch consumers;
+
+	@Override
+	public void start() {
+		if (running) {
+			return;
+		}
+		running = true;
+		consumers = new CountDownLatch(concurrency);
+		for (int i = 0; i < concurrency; i++) {
+			taskExecutor.execute(this::consume);
+		}
+		logger.info("{} partition consumers started for {}", concurrency, steps.keySet());
+	}
+
+	private void consume() {
+		try {
+			while (running) {
+				final PartitionRequest request = channel.receive(receiveTimeout, TimeUnit.MILLISECONDS);
+				if (request != null) {
+					handle(request);
+				}
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			consumers.countDown();
+		}
+	}
+
+	/**
+	 * Execute the worker step execution of the request (the step saves its status
+	 * in the job repository, where the manager looks for it).
+	 */
+	protected void handle(final PartitionRequest request) {
+		final Step step = steps.get(request.getStepName());
+		final StepExecution stepExecution = jobExplorer.getStepExecution(request.getJobExecutionId(),
+				request.getStepExecutionId());
+		if (stepExecution == null) {
+			logger.error("Unable to handle {} : unknown step execution", request);
+			return;
+		}
+		if (step == null) {
+			logger.error("Unable to handle {} : unknown step", request);
+			fail(stepExecution, new IllegalStateException("No worker step named " + request.getStepName()));
+			return;
+		}
+		logger.debug("Executing {}", request);
+		try {
+			step.execute(stepExecution);
+		} catch (final JobInterruptedException e) {
+			stepExecution.setStatus(BatchStatus.STOPPED);
+			stepExecution.setExitStatus(ExitStatus.STOPPED.addExitDescription(e));
+			save(stepExecution);
+		} catch (final Throwable e) {
+			logger.error("Partition " + request + " failed", e);
+			fail(stepExecution, e);
+		}
+	}
+
+	private void fail(final StepExecution stepExecution, final Throwable e) {
+		stepExecution.addFailureException(e);
+		stepExecution.setStatus(BatchStatus.FAILED);
+		stepExecution.setExitStatus(ExitStatus.FAILED.addExitDescription(e));
+		save(stepExecution);
+	}
+
+	/**
+	 * Save the final status of a step execution left running by the worker step.
+	 */
+	private void save(final StepExecution stepExecution) {
+		stepExecution.setEndTime(new Date());
+		try {
+			jobRepository.update(stepExecution);
+		} catch (final RuntimeException e) {
+			logger.error("Unable to save the status of " + stepExecution, e);
+		}
+	}
+
+	@Override
+	public void stop() {
+		running = false;
+		if (consumers == null) {
+			return;
+		}
+		try {
+			// wait for the partitions being executed
+			consumers.await();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public boolean isAutoStartup() {
+		return autoStartup;
+	}
+
+	/**
+	 * @param channel the channel on which the partitions are received
+	 */
+	public void setChannel(final PartitionChannel channel) {
+		this.channel = channel;
+	}
+
+	/**
+	 * @param jobExplorer the explorer of the job repository shared with the
+	 *                    manager
+	 */
+	public void setJobExplorer(final JobExplorer jobExplorer) {
+		this.jobExplorer = jobExplorer;
+	}
+
+	/**
+	 * @param jobRepository the job repository shared with the manager, where the
+	 *                      failures out of the worker steps are saved
+	 */
+	public void setJobRepository(final JobRepository jobRepository) {
+		this.jobRepository = jobRepository;
+	}
+
+	/**
+	 * @param steps the worker steps, found by name
+	 */
+	public void setSteps(final List<Step> steps) {
+		for (final Step step : steps) {
+			this.steps.put(step.getName(), step);
+		}
+	}
+
+	/**
+	 * @param taskExecutor the executor of the consumers (default one new thread
+	 *                     per consumer)
+	 */
+	public void setTaskExecutor(final TaskExecutor taskExecutor) {
+		this.taskExecutor = taskExecutor;
+	}
+
+	/**
+	 * @param concurrency the number of partitions executed at the same time by
+	 *                    this node
+	 */
+	public void setConcurrency(final int concurrency) {
+		this.concurrency = concurrency;
+	}
+
+	/**
+	 * @param receiveTimeout the maximum time (ms) a consumer waits for a request
+	 *                       before checking if the worker is stopped
+	 */
+	public void setReceiveTimeout(final long receiveTimeout) {
+		this.receiveTimeout = receiveTimeout;
+	}
+
+	/**
+	 * @param autoStartup false for a node that does not execute the partitions
+	 *                    (default true)
+	 */
+	public void setAutoStartup(final boolean autoStartup) {
+		this.autoStartup = autoStartup;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(channel, "channel must be set");
+		Assert.notNull(jobExplorer, "jobExplorer must be set");
+		Assert.notNull(jobRepository, "jobRepository must be set");
+		Assert.notEmpty(steps, "steps must be set");
+		Assert.isTrue(concurrency > 0, "concurrency must be greater than 0");
+		if (taskExecutor == null) {
+			final SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("partition_worker");
+			executor.setDaemon(true);
+			taskExecutor = executor;
+		}
+	}
+
+}
@@ -0,0 +1,32 @@
+package fr.training.springbatch.tools.partition;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process {@link PartitionChannel} : a stand-in broker for the tests and for
+ * a single node, where the manager and the workers share the same queue.
+ */
+public class QueuePartitionChannel implements PartitionChannel {
+
+	private final BlockingQueue<PartitionRequest> queue = new LinkedBlockingQueue<PartitionRequest>();
+
+	@Override
+	public void send(final PartitionRequest request) {
+		queue.add(request);
+	}
+
+	@Override
+	public PartitionRequest receive(final long timeout, final TimeUnit unit) throws InterruptedException {
+		return queue.poll(timeout, unit);
+	}
+
+	/**
+	 * @return the number of requests waiting for a worker
+	 */
+	public int size() {
+		return queue.size();
+	}
+
+}
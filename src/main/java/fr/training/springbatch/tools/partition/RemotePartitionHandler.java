@@ -0,0 +1,141 @@
+package fr.training.springbatch.tools.partition;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.partition.PartitionHandler;
+import org.springframework.batch.core.partition.support.AbstractPartitionHandler;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+/**
+ * {@link PartitionHandler} of a manager step whose partitions are executed by
+ * remote {@link PartitionWorker}s.
+ *
+ * The worker step executions are saved in the job repository by the manager
+ * step, then one {@link PartitionRequest} per partition is sent on the
+ * {@link PartitionChannel}. The handler does not wait for replies : it polls
+ * the job repository (shared by all the nodes) until each worker step
+ * execution is over, so a worker node may fail without blocking the channel.
+ */
+public class RemotePartitionHandler extends AbstractPartitionHandler implements InitializingBean {
+
+	private static final Logger logger = LoggerFactory.getLogger(RemotePartitionHandler.class);
+
+	private static final long DEFAULT_POLL_INTERVAL = 1000L;
+
+	private static final long DEFAULT_TIMEOUT = 3_600_000L;
+
+	private PartitionChannel channel;
+
+	private JobExplorer jobExplorer;
+
+	private String stepName;
+
+	private long pollInterval = DEFAULT_POLL_INTERVAL;
+
+	private long timeout = DEFAULT_TIMEOUT;
+
+	@Override
+	protected Set<StepExecution> doHandle(final StepExecution managerStepExecution,
+			final Set<StepExecution> partitionStepExecutions) throws Exception {
+
+		for (final StepExecution stepExecution : partitionStepExecutions) {
+			channel.send(new PartitionRequest(stepName, stepExecution.getJobExecutionId(), stepExecution.getId()));
+		}
+		logger.info("{} partitions of {} sent to the workers", partitionStepExecutions.size(), stepName);
+
+		final long start = System.currentTimeMillis();
+		final Set<StepExecution> running = new HashSet<StepExecution>(partitionStepExecutions);
+		while (!running.isEmpty()) {
+			if (System.currentTimeMillis() - start > timeout) {
+				throw new IllegalStateException(running.size() + " partitions of " + stepName
+						+ " still running after " + timeout + " ms");
+			}
+			Thread.sleep(pollInterval);
+			for (final StepExecution stepExecution : new HashSet<StepExecution>(running)) {
+				final StepExecution current = jobExplorer.getStepExecution(stepExecution.getJobExecutionId(),
+						stepExecution.getId());
+				if (current != null && !current.getStatus().isRunning()) {
+					running.remove(stepExecution);
+					refresh(stepExecution, current);
+				}
+			}
+		}
+		return partitionStepExecutions;
+	}
+
+	/**
+	 * Copy the state saved by the worker to the step execution held by the job
+	 * execution of the manager (aggregated and reported at the end of the job).
+	 */
+	private void refresh(final StepExecution stepExecution, final StepExecution current) {
+		stepExecution.setStatus(current.getStatus());
+		stepExecution.setExitStatus(current.getExitStatus());
+		stepExecution.setReadCount(current.getReadCount());
+		stepExecution.setWriteCount(current.getWriteCount());
+		stepExecution.setFilterCount(current.getFilterCount());
+		stepExecution.setCommitCount(current.getCommitCount());
+		stepExecution.setRollbackCount(current.getRollbackCount());
+		stepExecution.setReadSkipCount(current.getReadSkipCount());
+		stepExecution.setProcessSkipCount(current.getProcessSkipCount());
+		stepExecution.setWriteSkipCount(current.getWriteSkipCount());
+		stepExecution.setStartTime(current.getStartTime());
+		stepExecution.setEndTime(current.getEndTime());
+		stepExecution.setLastUpdated(current.getLastUpdated());
+		stepExecution.setExecutionContext(current.getExecutionContext());
+		stepExecution.setVersion(current.getVersion());
+	}
+
+	/**
+	 * @param channel the channel on which the partitions are sent
+	 */
+	public void setChannel(final PartitionChannel channel) {
+		this.channel = channel;
+	}
+
+	/**
+	 * @param jobExplorer the explorer of the job repository shared with the
+	 *                    workers
+	 */
+	public void setJobExplorer(final JobExplorer jobExplorer) {
+		this.jobExplorer = jobExplorer;
+	}
+
+	/**
+	 * @param stepName the name of the worker step
+	 */
+	public void setStepName(final String stepName) {
+		this.stepName = stepName;
+	}
+
+	/**
+	 * @param pollInterval the interval (ms) between two checks of the worker step
+	 *                     executions
+	 */
+	public void setPollInterval(final long pollInterval) {
+		this.pollInterval = pollInterval;
+	}
+
+	/**
+	 * @param timeout the maximum time (ms) to wait for the workers, for instance
+	 *                when no node consumes the channel (default 1 hour)
+	 */
+	public void setTimeout(final long timeout) {
+		this.timeout = timeout;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(channel, "channel must be set");
+		Assert.notNull(jobExplorer, "jobExplorer must be set");
+		Assert.hasText(stepName, "stepName must be set");
+		Assert.isTrue(pollInterval > 0, "pollInterval must be greater than 0");
+		Assert.isTrue(timeout > 0, "timeout must be greater than 0");
+	}
+
+}
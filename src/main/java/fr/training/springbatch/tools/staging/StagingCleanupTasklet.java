@@ -0,0 +1,100 @@
+package fr.training.springbatch.tools.staging;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.util.Assert;
+
+/**
+ * Remove the staging rows of the job once they have been processed.
+ *
+ * By default the processed rows of the job are deleted by batches of ids (each
+ * batch is a tasklet iteration, committed in its own transaction), so the
+ * staging table stays small without long locks. With the partitioned layout
+ * (see {@link StagingPartitionListener}), the partition of the job is dropped
+ * instead, whatever its size.
+ *
+ * @see StagingItemWriter
+ * @see StagingItemProcessor
+ */
+public class StagingCleanupTasklet implements Tasklet, InitializingBean {
+
+	private static final Logger logger = LoggerFactory.getLogger(StagingCleanupTasklet.class);
+
+	private static final int DEFAULT_BATCH_SIZE = 1000;
+
+	private JdbcTemplate jdbcTemplate;
+
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	private boolean partitioned = false;
+
+	@Override
+	public RepeatStatus execute(final StepContribution contribution, final ChunkContext chunkContext) {
+		final long jobId = chunkContext.getStepContext().getStepExecution().getJobExecution().getJobId();
+
+		if (partitioned) {
+			jdbcTemplate.execute("DROP TABLE IF EXISTS " + StagingPartitionListener.getPartitionName(jobId));
+			logger.info("Staging partition of job {} dropped", jobId);
+			return RepeatStatus.FINISHED;
+		}
+
+		final List<Long> ids = jdbcTemplate.query(con -> {
+			final PreparedStatement ps = con.prepareStatement(
+					"SELECT ID FROM BATCH_STAGING WHERE JOB_ID=? AND PROCESSED=? ORDER BY ID");
+			ps.setMaxRows(batchSize);
+			ps.setLong(1, jobId);
+			ps.setString(2, StagingItemWriter.DONE);
+			return ps;
+		}, (rs, rowNum) -> rs.getLong(1));
+
+		if (ids.isEmpty()) {
+			logger.info("{} processed staging rows of job {} deleted", contribution.getStepExecution().getWriteCount(),
+					jobId);
+			return RepeatStatus.FINISHED;
+		}
+
+		final int count = new NamedParameterJdbcTemplate(jdbcTemplate)
+				.update("DELETE FROM BATCH_STAGING WHERE ID IN (:ids)", new MapSqlParameterSource("ids", ids));
+		contribution.incrementWriteCount(count);
+		return RepeatStatus.CONTINUABLE;
+	}
+
+	public void setDataSource(final DataSource dataSource) {
+		jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	/**
+	 * @param batchSize number of rows deleted per transaction
+	 */
+	public void setBatchSize(final int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @param partitioned true to drop the partition of the job (the staging table
+	 *                    must be partitioned by job id)
+	 */
+	public void setPartitioned(final boolean partitioned) {
+		this.partitioned = partitioned;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(jdbcTemplate, "You must provide a DataSource.");
+		Assert.isTrue(batchSize > 0, "batchSize must be greater than 0");
+	}
+
+}
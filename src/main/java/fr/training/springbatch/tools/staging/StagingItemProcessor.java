@@ -26,6 +26,8 @@ public class StagingItemProcessor<T> implements ItemProcessor<ProcessIndicatorIt
 
 	private JdbcOperations jdbcTemplate;
 
+	private boolean claimed = false;
+
 	public void setJdbcTemplate(final JdbcOperations jdbcTemplate) {
 		this.jdbcTemplate = jdbcTemplate;
 	}
@@ -34,6 +36,15 @@ public class StagingItemProcessor<T> implements ItemProcessor<ProcessIndicatorIt
 		this.jdbcTemplate = new JdbcTemplate(dataSource);
 	}
 
+	/**
+	 * @param claimed true when the rows are read by a
+	 *                {@link StagingQueueItemReader} (marked IN_PROGRESS instead of
+	 *                NEW)
+	 */
+	public void setClaimed(final boolean claimed) {
+		this.claimed = claimed;
+	}
+
 	@Override
 	public void afterPropertiesSet() throws Exception {
 		Assert.notNull(jdbcTemplate, "Either jdbcTemplate or dataSource must be set");
@@ -48,7 +59,7 @@ public class StagingItemProcessor<T> implements ItemProcessor<ProcessIndicatorIt
 	public T process(final ProcessIndicatorItemWrapper<T> wrapper) throws Exception {
 
 		final int count = jdbcTemplate.update("UPDATE BATCH_STAGING SET PROCESSED=? WHERE ID=? AND PROCESSED=?",
-				StagingItemWriter.DONE, wrapper.getId(), StagingItemWriter.NEW);
+				StagingItemWriter.DONE, wrapper.getId(), claimed ? StagingItemWriter.IN_PROGRESS : StagingItemWriter.NEW);
 		if (count != 1) {
 			throw new OptimisticLockingFailureException("The staging record with ID=" + wrapper.getId()
 			+ " was updated concurrently when trying to mark as complete (updated " + count + " records.");
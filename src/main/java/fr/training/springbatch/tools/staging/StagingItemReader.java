@@ -44,10 +44,29 @@ implements ItemReader<ProcessIndicatorItemWrapper<T>>, StepExecutionListener, In
 
 	private JdbcOperations jdbcTemplate;
 
+	private Long minId;
+
+	private Long maxId;
+
 	public void setDataSource(final DataSource dataSource) {
 		jdbcTemplate = new JdbcTemplate(dataSource);
 	}
 
+	/**
+	 * @param minId the first ID of the range to read (partitioned step, see
+	 *              {@link StagingRangePartitioner})
+	 */
+	public void setMinId(final Long minId) {
+		this.minId = minId;
+	}
+
+	/**
+	 * @param maxId the last ID of the range to read
+	 */
+	public void setMaxId(final Long maxId) {
+		this.maxId = maxId;
+	}
+
 	@Override
 	public void destroy() throws Exception {
 		initialized = false;
@@ -63,18 +82,26 @@ implements ItemReader<ProcessIndicatorItemWrapper<T>>, StepExecutionListener, In
 
 		synchronized (lock) {
 
+			final RowMapper<Long> keyMapper = new RowMapper<Long>() {
+				@Override
+				public Long mapRow(final ResultSet rs, final int rowNum) throws SQLException {
+					return rs.getLong(1);
+				}
+			};
+
+			if (minId != null && maxId != null) {
+				return jdbcTemplate.query(
+
+						"SELECT ID FROM BATCH_STAGING WHERE JOB_ID=? AND PROCESSED=? AND ID BETWEEN ? AND ? ORDER BY ID",
+
+						keyMapper, stepExecution.getJobExecution().getJobId(), StagingItemWriter.NEW, minId, maxId);
+			}
+
 			return jdbcTemplate.query(
 
 					"SELECT ID FROM BATCH_STAGING WHERE JOB_ID=? AND PROCESSED=? ORDER BY ID",
 
-					new RowMapper<Long>() {
-						@Override
-						public Long mapRow(final ResultSet rs, final int rowNum) throws SQLException {
-							return rs.getLong(1);
-						}
-					},
-
-					stepExecution.getJobExecution().getJobId(), StagingItemWriter.NEW);
+					keyMapper, stepExecution.getJobExecution().getJobId(), StagingItemWriter.NEW);
 		}
 
 	}
@@ -113,6 +140,11 @@ implements ItemReader<ProcessIndicatorItemWrapper<T>>, StepExecutionListener, In
 	@Nullable
 	@Override
 	public ExitStatus afterStep(final StepExecution stepExecution) {
+		// the keys of the next job execution are retrieved again
+		synchronized (lock) {
+			initialized = false;
+			keys = null;
+		}
 		return null;
 	}
 
@@ -24,6 +24,9 @@ public class StagingItemWriter<T> extends JdbcDaoSupport implements StepExecutio
 
 	protected static final String NEW = "N";
 
+	/** Claimed by a {@link StagingQueueItemReader}, never committed */
+	protected static final String IN_PROGRESS = "I";
+
 	protected static final String DONE = "Y";
 
 	private DataFieldMaxValueIncrementer incrementer;
@@ -0,0 +1,54 @@
+package fr.training.springbatch.tools.staging;
+
+import javax.sql.DataSource;
+
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.Nullable;
+
+/**
+ * Create the partition of the job in the BATCH_STAGING table before the staging
+ * step, for the partitioned layout where the table is declared (PostgreSQL)
+ * with :
+ *
+ * <pre>
+ * CREATE TABLE batch_staging (...) PARTITION BY LIST (job_id);
+ * </pre>
+ *
+ * The whole staging data of a job can then be removed by dropping its partition
+ * (see {@link StagingCleanupTasklet}).
+ */
+public class StagingPartitionListener implements StepExecutionListener {
+
+	private static final String PARTITION_PREFIX = "BATCH_STAGING_";
+
+	private JdbcTemplate jdbcTemplate;
+
+	public void setDataSource(final DataSource dataSource) {
+		jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	@Override
+	public void beforeStep(final StepExecution stepExecution) {
+		final long jobId = stepExecution.getJobExecution().getJobId();
+		jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + getPartitionName(jobId)
+				+ " PARTITION OF BATCH_STAGING FOR VALUES IN (" + jobId + ")");
+	}
+
+	@Nullable
+	@Override
+	public ExitStatus afterStep(final StepExecution stepExecution) {
+		return null;
+	}
+
+	/**
+	 * @param jobId the job instance id
+	 * @return the name of the partition of the job
+	 */
+	public static String getPartitionName(final long jobId) {
+		return PARTITION_PREFIX + jobId;
+	}
+
+}
@@ -0,0 +1,207 @@
+package fr.training.springbatch.tools.staging;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.ItemReader;
+import org.springframework.batch.support.DatabaseType;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+import org.springframework.util.SerializationUtils;
+
+/**
+ * Thread-safe database {@link ItemReader} consuming the BATCH_STAGING table of
+ * the job as a work queue : any number of readers (threads of a step, or steps
+ * of other processes) can drain the same rows without sharing any state.
+ *
+ * Each chunk transaction claims a batch of rows and marks them IN_PROGRESS in
+ * the same transaction : with <code>SELECT ... FOR UPDATE SKIP LOCKED</code>
+ * (PostgreSQL, MySQL) the rows claimed by the other consumers are skipped
+ * without waiting. On the other databases, each row is claimed by an update
+ * conditioned on its NEW status, so it is claimed once at most.
+ *
+ * The claimed rows are marked as DONE by the {@link StagingItemProcessor}
+ * (with {@link StagingItemProcessor#setClaimed(boolean)}) ; the ones not read
+ * when the chunk commits are given back (NEW). If the chunk rolls back, so does
+ * the claim : no row is ever left IN_PROGRESS, and a restart needs no state.
+ *
+ * @see StagingItemReader
+ */
+public class StagingQueueItemReader<T>
+implements ItemReader<ProcessIndicatorItemWrapper<T>>, StepExecutionListener, InitializingBean {
+
+	private static final Logger logger = LoggerFactory.getLogger(StagingQueueItemReader.class);
+
+	private static final int DEFAULT_CLAIM_SIZE = 10;
+
+	private JdbcTemplate jdbcTemplate;
+
+	private Boolean skipLocked;
+
+	private int claimSize = DEFAULT_CLAIM_SIZE;
+
+	private volatile Long jobId;
+
+	@Nullable
+	@Override
+	public ProcessIndicatorItemWrapper<T> read() {
+		Assert.state(TransactionSynchronizationManager.isSynchronizationActive(),
+				"The staging rows must be claimed in a transaction");
+
+		@SuppressWarnings("unchecked")
+		Deque<ProcessIndicatorItemWrapper<T>> claimed = (Deque<ProcessIndicatorItemWrapper<T>>) TransactionSynchronizationManager
+		.getResource(this);
+		if (claimed == null) {
+			claimed = new ArrayDeque<ProcessIndicatorItemWrapper<T>>(claimSize);
+			bind(claimed);
+		}
+		if (claimed.isEmpty()) {
+			claimed.addAll(claim());
+		}
+		return claimed.poll();
+	}
+
+	/**
+	 * Bind the rows claimed by the current transaction to it, and give back the
+	 * rows not read before its commit.
+	 */
+	private void bind(final Deque<ProcessIndicatorItemWrapper<T>> claimed) {
+		TransactionSynchronizationManager.bindResource(this, claimed);
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+			@Override
+			public void beforeCommit(final boolean readOnly) {
+				if (claimed.isEmpty()) {
+					return;
+				}
+				final List<Long> ids = new ArrayList<Long>(claimed.size());
+				claimed.forEach(wrapper -> ids.add(wrapper.getId()));
+				new NamedParameterJdbcTemplate(jdbcTemplate).update(
+						"UPDATE BATCH_STAGING SET PROCESSED=:new WHERE ID IN (:ids) AND PROCESSED=:inProgress",
+						new MapSqlParameterSource("ids", ids) //
+						.addValue("new", StagingItemWriter.NEW) //
+						.addValue("inProgress", StagingItemWriter.IN_PROGRESS));
+				claimed.clear();
+			}
+
+			@Override
+			public void afterCompletion(final int status) {
+				TransactionSynchronizationManager.unbindResourceIfPossible(StagingQueueItemReader.this);
+			}
+		});
+	}
+
+	/**
+	 * @return the rows claimed by the current transaction, empty when there is no
+	 *         NEW row left
+	 */
+	private List<ProcessIndicatorItemWrapper<T>> claim() {
+		if (skipLocked) {
+			final List<ProcessIndicatorItemWrapper<T>> claimed = jdbcTemplate.query(
+					"SELECT ID, VALUE FROM BATCH_STAGING WHERE JOB_ID=? AND PROCESSED=? ORDER BY ID LIMIT ? FOR UPDATE SKIP LOCKED",
+					(rs, rowNum) -> wrap(rs.getLong(1), rs.getBytes(2)), jobId, StagingItemWriter.NEW, claimSize);
+			if (!claimed.isEmpty()) {
+				final List<Long> ids = new ArrayList<Long>(claimed.size());
+				claimed.forEach(wrapper -> ids.add(wrapper.getId()));
+				new NamedParameterJdbcTemplate(jdbcTemplate).update(
+						"UPDATE BATCH_STAGING SET PROCESSED=:inProgress WHERE ID IN (:ids)",
+						new MapSqlParameterSource("ids", ids) //
+						.addValue("inProgress", StagingItemWriter.IN_PROGRESS));
+			}
+			return claimed;
+		}
+
+		while (true) {
+			final List<Long> candidates = jdbcTemplate.query(con -> {
+				final PreparedStatement ps = con.prepareStatement(
+						"SELECT ID FROM BATCH_STAGING WHERE JOB_ID=? AND PROCESSED=? ORDER BY ID");
+				ps.setMaxRows(claimSize);
+				ps.setLong(1, jobId);
+				ps.setString(2, StagingItemWriter.NEW);
+				return ps;
+			}, (rs, rowNum) -> rs.getLong(1));
+			if (candidates.isEmpty()) {
+				return new ArrayList<ProcessIndicatorItemWrapper<T>>();
+			}
+
+			final List<Long> ids = new ArrayList<Long>(candidates.size());
+			for (final Long id : candidates) {
+				// claimed by another consumer in the meantime if no row is updated
+				if (jdbcTemplate.update("UPDATE BATCH_STAGING SET PROCESSED=? WHERE ID=? AND PROCESSED=?",
+						StagingItemWriter.IN_PROGRESS, id, StagingItemWriter.NEW) == 1) {
+					ids.add(id);
+				}
+			}
+			if (!ids.isEmpty()) {
+				return new NamedParameterJdbcTemplate(jdbcTemplate).query(
+						"SELECT ID, VALUE FROM BATCH_STAGING WHERE ID IN (:ids) ORDER BY ID",
+						new MapSqlParameterSource("ids", ids), (rs, rowNum) -> wrap(rs.getLong(1), rs.getBytes(2)));
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private ProcessIndicatorItemWrapper<T> wrap(final long id, final byte[] value) {
+		return new ProcessIndicatorItemWrapper<T>(id, (T) SerializationUtils.deserialize(value));
+	}
+
+	@Override
+	public void beforeStep(final StepExecution stepExecution) {
+		jobId = stepExecution.getJobExecution().getJobId();
+		logger.info("Consuming the staging rows of job {} ({})", jobId,
+				skipLocked ? "SKIP LOCKED" : "conditional update");
+	}
+
+	@Nullable
+	@Override
+	public ExitStatus afterStep(final StepExecution stepExecution) {
+		return null;
+	}
+
+	public void setDataSource(final DataSource dataSource) {
+		jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	/**
+	 * @param skipLocked true to claim the rows with SELECT ... FOR UPDATE SKIP
+	 *                   LOCKED (default : according to the database type)
+	 */
+	public void setSkipLocked(final boolean skipLocked) {
+		this.skipLocked = skipLocked;
+	}
+
+	/**
+	 * @param claimSize the number of rows claimed at once (the commit interval of
+	 *                  the step is a good value)
+	 */
+	public void setClaimSize(final int claimSize) {
+		this.claimSize = claimSize;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(jdbcTemplate, "You must provide a DataSource.");
+		Assert.isTrue(claimSize > 0, "claimSize must be greater than 0");
+		if (skipLocked == null) {
+			final DatabaseType databaseType = DatabaseType.fromMetaData(jdbcTemplate.getDataSource());
+			skipLocked = databaseType == DatabaseType.POSTGRES || databaseType == DatabaseType.MYSQL;
+		}
+	}
+
+}
@@ -0,0 +1,83 @@
+package fr.training.springbatch.tools.staging;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.Assert;
+
+/**
+ * {@link Partitioner} splitting the BATCH_STAGING rows of a job still to be
+ * processed into contiguous ID ranges holding about the same number of rows.
+ *
+ * Each partition {@link ExecutionContext} contains the inclusive bounds of its
+ * range in {@link #MIN_ID} and {@link #MAX_ID}, to be given to the
+ * {@link StagingItemReader} of the worker step. The ranges are computed by a
+ * single query (NTILE over the (JOB_ID, PROCESSED, ID) index), only the bounds
+ * are returned. When there is nothing to process, one partition without bounds
+ * is returned.
+ */
+public class StagingRangePartitioner implements Partitioner, InitializingBean {
+
+	private static final Logger logger = LoggerFactory.getLogger(StagingRangePartitioner.class);
+
+	public static final String MIN_ID = "minId";
+
+	public static final String MAX_ID = "maxId";
+
+	private static final String PARTITION_PREFIX = "partition";
+
+	private JdbcTemplate jdbcTemplate;
+
+	private Long jobId;
+
+	@Override
+	public Map<String, ExecutionContext> partition(final int gridSize) {
+		Assert.isTrue(gridSize > 0, "gridSize must be greater than 0");
+		final Map<String, ExecutionContext> partitions = new HashMap<String, ExecutionContext>();
+
+		// One statement : the rows staged meanwhile are either in a range or ignored
+		final long[] count = { 0 };
+		jdbcTemplate.query("SELECT MIN(ID), MAX(ID), COUNT(*) FROM (SELECT ID, NTILE(" + gridSize
+				+ ") OVER (ORDER BY ID) AS TILE FROM BATCH_STAGING WHERE JOB_ID=? AND PROCESSED=?) RANGES "
+				+ "GROUP BY TILE ORDER BY TILE", rs -> {
+					final ExecutionContext range = new ExecutionContext();
+					range.putLong(MIN_ID, rs.getLong(1));
+					range.putLong(MAX_ID, rs.getLong(2));
+					partitions.put(PARTITION_PREFIX + partitions.size(), range);
+					count[0] += rs.getLong(3);
+				}, jobId, StagingItemWriter.NEW);
+
+		if (partitions.isEmpty()) {
+			partitions.put(PARTITION_PREFIX + 0, new ExecutionContext());
+			return partitions;
+		}
+		logger.info("{} staging rows of job {} split into {} partitions", count[0], jobId, partitions.size());
+		return partitions;
+	}
+
+	public void setDataSource(final DataSource dataSource) {
+		jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	/**
+	 * @param jobId the job instance id of the staging rows
+	 */
+	public void setJobId(final Long jobId) {
+		this.jobId = jobId;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(jdbcTemplate, "You must provide a DataSource.");
+		Assert.notNull(jobId, "jobId must be set");
+	}
+
+}
@@ -0,0 +1,131 @@
+package fr.training.springbatch.tools.staging;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.util.Assert;
+
+/**
+ * Create (if needed) the BATCH_STAGING table, its sequence and its index, then
+ * check at startup that the table is indexed on (JOB_ID, PROCESSED, ID).
+ *
+ * Without this index, each {@link StagingItemReader} (and each batch of the
+ * {@link StagingCleanupTasklet}) scans the whole table to find the keys of its
+ * job, so the staging steps slow down as the table grows. When the schema is
+ * managed outside of the application ({@link #setInitializeSchema(boolean)}
+ * false), a missing index fails the startup instead of the jobs.
+ */
+public class StagingSchemaInitializer implements InitializingBean {
+
+	private static final Logger logger = LoggerFactory.getLogger(StagingSchemaInitializer.class);
+
+	private static final String TABLE_NAME = "BATCH_STAGING";
+
+	/** Leading columns of the index used by the key retrieval queries */
+	private static final List<String> INDEX_COLUMNS = Arrays.asList("JOB_ID", "PROCESSED", "ID");
+
+	private static final String SCRIPT = "fr/training/springbatch/tools/staging/schema-staging.sql";
+
+	private static final String PARTITIONED_SCRIPT = "fr/training/springbatch/tools/staging/schema-staging-partitioned.sql";
+
+	private DataSource dataSource;
+
+	private boolean initializeSchema = true;
+
+	private boolean partitioned = false;
+
+	private Resource script;
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(dataSource, "You must provide a DataSource.");
+		if (initializeSchema) {
+			final Resource resource = script != null ? script
+					: new ClassPathResource(partitioned ? PARTITIONED_SCRIPT : SCRIPT);
+			DatabasePopulatorUtils.execute(new ResourceDatabasePopulator(resource), dataSource);
+		}
+		final String index = findIndex();
+		if (index == null) {
+			throw new IllegalStateException("Table " + TABLE_NAME + " has no index on " + INDEX_COLUMNS
+					+ " : each staging step would scan the whole table (see " + SCRIPT + ")");
+		}
+		logger.info("Staging keys of {} retrieved through index {}", TABLE_NAME, index);
+	}
+
+	/**
+	 * @return the name of an index whose leading columns are
+	 *         {@link #INDEX_COLUMNS}, null if there is none
+	 */
+	private String findIndex() throws MetaDataAccessException {
+		return (String) JdbcUtils.extractDatabaseMetaData(dataSource, (final DatabaseMetaData metaData) -> {
+			final String table = metaData.storesLowerCaseIdentifiers() ? TABLE_NAME.toLowerCase(Locale.ROOT)
+					: TABLE_NAME;
+			// index name -> columns by ordinal position
+			final Map<String, Map<Short, String>> indexes = new TreeMap<String, Map<Short, String>>();
+			try (ResultSet rs = metaData.getIndexInfo(null, null, table, false, true)) {
+				while (rs.next()) {
+					final String name = rs.getString("INDEX_NAME");
+					final String column = rs.getString("COLUMN_NAME");
+					if (name != null && column != null) {
+						indexes.computeIfAbsent(name, k -> new TreeMap<Short, String>())
+						.put(rs.getShort("ORDINAL_POSITION"), column.toUpperCase(Locale.ROOT));
+					}
+				}
+			}
+			for (final Map.Entry<String, Map<Short, String>> index : indexes.entrySet()) {
+				final List<String> columns = new ArrayList<String>(index.getValue().values());
+				if (columns.size() >= INDEX_COLUMNS.size()
+						&& columns.subList(0, INDEX_COLUMNS.size()).equals(INDEX_COLUMNS)) {
+					return index.getKey();
+				}
+			}
+			return null;
+		});
+	}
+
+	public void setDataSource(final DataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	/**
+	 * @param initializeSchema false when the staging schema is managed outside of
+	 *                         the application (it is still verified)
+	 */
+	public void setInitializeSchema(final boolean initializeSchema) {
+		this.initializeSchema = initializeSchema;
+	}
+
+	/**
+	 * @param partitioned true to create the table partitioned by job id
+	 *                    (PostgreSQL, see {@link StagingPartitionListener})
+	 */
+	public void setPartitioned(final boolean partitioned) {
+		this.partitioned = partitioned;
+	}
+
+	/**
+	 * @param script the script creating the staging schema, instead of the one
+	 *               shipped for the layout
+	 */
+	public void setScript(final Resource script) {
+		this.script = script;
+	}
+
+}
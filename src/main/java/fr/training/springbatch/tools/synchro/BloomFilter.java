@@ -0,0 +1,120 @@
+package fr.training.springbatch.tools.synchro;
+
+import java.io.Serializable;
+
+import org.springframework.util.Assert;
+
+/**
+ * Compact probabilistic set of keys : {@link #mightContain(Object)} never
+ * returns false for a key that has been {@link #put(Object)}, but may return
+ * true for a key that has not (with a probability close to the false positive
+ * probability given at construction).
+ *
+ * The bits are stored in a long array and the k bit indexes of a key are
+ * derived from its hashCode by double hashing, so only the JDK is needed.
+ */
+public class BloomFilter implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final double DEFAULT_FPP = 0.01;
+
+	private final long[] bits;
+
+	private final long bitCount;
+
+	private final int hashCount;
+
+	private long insertions;
+
+	/**
+	 * @param expectedInsertions the expected number of keys
+	 * @param fpp                the desired false positive probability (between
+	 *                           0 and 1 exclusive)
+	 */
+	public BloomFilter(final long expectedInsertions, final double fpp) {
+		Assert.isTrue(fpp > 0 && fpp < 1, "fpp must be between 0 and 1 exclusive");
+		final long n = Math.max(1, expectedInsertions);
+		final long m = Math.max(64, (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2))));
+		bits = new long[(int) ((m + 63) >>> 6)];
+		bitCount = (long) bits.length << 6;
+		hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+	}
+
+	/**
+	 * @param expectedInsertions the expected number of keys
+	 */
+	public BloomFilter(final long expectedInsertions) {
+		this(expectedInsertions, DEFAULT_FPP);
+	}
+
+	/**
+	 * @param key the key to add
+	 */
+	public void put(final Object key) {
+		final long hash = mix(key.hashCode());
+		final int h1 = (int) hash;
+		final int h2 = (int) (hash >>> 32);
+		for (int i = 1; i <= hashCount; i++) {
+			final long index = indexOf(h1 + i * h2);
+			bits[(int) (index >>> 6)] |= 1L << index;
+		}
+		insertions++;
+	}
+
+	/**
+	 * @param key the key to check
+	 * @return false if the key has never been added, true if it might have been
+	 */
+	public boolean mightContain(final Object key) {
+		final long hash = mix(key.hashCode());
+		final int h1 = (int) hash;
+		final int h2 = (int) (hash >>> 32);
+		for (int i = 1; i <= hashCount; i++) {
+			final long index = indexOf(h1 + i * h2);
+			if ((bits[(int) (index >>> 6)] & 1L << index) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private long indexOf(final int combinedHash) {
+		return (combinedHash & Integer.MAX_VALUE) % bitCount;
+	}
+
+	/**
+	 * Spread the bits of the hashCode on a long (murmur3 finalizer).
+	 */
+	private static long mix(final int hashCode) {
+		long h = hashCode;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * @return the number of keys added
+	 */
+	public long getInsertions() {
+		return insertions;
+	}
+
+	/**
+	 * @return the size of the filter in bits
+	 */
+	public long getBitCount() {
+		return bitCount;
+	}
+
+	/**
+	 * @return the number of bits set per key
+	 */
+	public int getHashCount() {
+		return hashCount;
+	}
+
+}
@@ -1,12 +1,19 @@
 package fr.training.springbatch.tools.synchro;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.batch.item.ExecutionContext;
 import org.springframework.batch.item.ItemReader;
 import org.springframework.batch.item.ItemStream;
 import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemWriter;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.util.Assert;
 
@@ -14,6 +21,31 @@ import org.springframework.util.Assert;
  * Methods for finding and reading items from an ItemReader and accumulating
  * them according to a key value.
  *
+ * Optionally :
+ * <ul>
+ * <li>a {@link BloomFilter} of the keys present in the input, built by a
+ * pre-pass when the accumulator is opened, lets the lookups for keys known to
+ * be absent return immediately;</li>
+ * <li>the items skipped while reading forward (keys never asked for, i.e.
+ * orphans) are counted and routed to an orphan {@link ItemWriter}. They are
+ * buffered and written on the next update (i.e. with the chunk), or when the
+ * buffer is full.</li>
+ * <li>with an {@link ItemCodec} and a spill threshold, the groups are
+ * {@link SpillableList}s keeping only the threshold on the heap. The spill
+ * files are released on the first update following the read (i.e. once the
+ * chunk holding the groups is committed) : a group is returned only once, it
+ * is never cached for a later lookup of the same key.</li>
+ * </ul>
+ *
+ * Restart : the reader has always read one item ahead, so its current state is
+ * past the group boundary. When the reader is an {@link ItemStream}, its state
+ * is taken (with {@link ItemStream#update(ExecutionContext)}) before each read
+ * : the state taken before the look ahead item is saved, with the key of this
+ * item. On restart, the reader resumes from this state and the look ahead item
+ * is read again (and its key checked), so the reading resumes exactly at the
+ * last committed group boundary. A reader without state is read again from the
+ * beginning and the items of the committed groups are skipped.
+ *
  * @param <T> The class of the items to be processed
  * @param <K> The class of the key value of the items being processed. Used for
  *        positioning the reader to a particular place in the input
@@ -21,10 +53,47 @@ import org.springframework.util.Assert;
  */
 public abstract class ItemAccumulator<T, K> implements ItemStream, InitializingBean {
 
+	private static final Logger logger = LoggerFactory.getLogger(ItemAccumulator.class);
+
+	private static final String GROUP_START = "group.start";
+
+	private static final String CURRENT_KEY = "current.key";
+
+	private static final String ORPHAN_COUNT = "orphan.count";
+
+	private static final String SKIPPED_LOOKUPS = "skipped.lookups";
+
+	private static final int DEFAULT_ORPHAN_BUFFER_SIZE = 1000;
+
 	private ItemReader<T> reader;
 
+	private String name = getClass().getSimpleName();
+
+	/** Number of items read from the reader, the look ahead item included */
+	private long readCount;
+
+	/** State of the reader before the last item read (the look ahead item) */
+	private final ExecutionContext readerState = new ExecutionContext();
+
 	private T lastItem;
-	private List<T> lastItemList;
+
+	private Supplier<BloomFilter> keyFilterLoader;
+	private BloomFilter keyFilter;
+
+	private ItemWriter<? super T> orphanWriter;
+
+	private int orphanBufferSize = DEFAULT_ORPHAN_BUFFER_SIZE;
+
+	private final List<T> orphans = new ArrayList<T>();
+
+	private long orphanCount;
+	private long skippedLookups;
+
+	private ItemCodec<T> itemCodec;
+	private int spillThreshold;
+	private File spillDirectory;
+
+	private final List<SpillableList<T>> spilledGroups = new ArrayList<SpillableList<T>>();
 
 	public ItemAccumulator(final ItemReader<T> reader) {
 		super();
@@ -80,7 +149,8 @@ public abstract class ItemAccumulator<T, K> implements ItemStream, InitializingB
 		T secondRecord = lastItem;
 
 		while (secondRecord != null && checkPositionKey(secondRecord, key)) {
-			secondRecord = reader.read();
+			orphan(secondRecord);
+			secondRecord = doRead();
 		}
 
 		return secondRecord;
@@ -98,36 +168,69 @@ public abstract class ItemAccumulator<T, K> implements ItemStream, InitializingB
 	@SuppressWarnings("unchecked")
 	public List<T> readNextItems(final K key) throws Exception {
 
+		if (isKnownAbsent(key)) {
+			return new ArrayList<T>(0);
+		}
+
 		// If haven't read first record yet, then do that now.
 		if (lastItem == null) {
-			lastItem = reader.read();
+			lastItem = doRead();
 		} else if (((Comparable<K>) getKey(lastItem)).compareTo(key) > 0) {
 			return new ArrayList<T>(0);
 		}
 
-		// does last read list match requested key ?
-		if (lastItem != null && lastItemList != null && !lastItemList.isEmpty()
-				&& checkEqualKey(lastItemList.get(0), key)) {
-			return lastItemList;
-		}
-
 		// Look for first item for key
 		lastItem = readNextItem(key);
 
-		if (lastItem != null) {
+		if (lastItem == null) {
+			return new ArrayList<T>(0);
+		}
 
-			lastItemList = new ArrayList<T>();
+		final List<T> items = newGroup();
+		while (lastItem != null && checkEqualKey(lastItem, key)) {
+			items.add(lastItem);
+			// Read next item. On EOF, data will be null.
+			lastItem = doRead();
+		}
+		return items;
+	}
 
-			while (lastItem != null && checkEqualKey(lastItem, key)) {
-				lastItemList.add(lastItem);
-				// Read next item. On EOF, data will be null.
-				lastItem = reader.read();
-			}
-		} else {
-			lastItemList = new ArrayList<T>(0);
+	/**
+	 * Read the items for a particular key, if any exist, and pass them to the
+	 * consumer instead of accumulating them in a list.
+	 * <p/>
+	 * The reader will be positioned on the first record for the next key.
+	 *
+	 * @param key
+	 * @param consumer consumer of the items matching the key
+	 * @return the number of items for the key
+	 * @throws Exception
+	 */
+	@SuppressWarnings("unchecked")
+	public int readNextItems(final K key, final Consumer<? super T> consumer) throws Exception {
+
+		if (isKnownAbsent(key)) {
+			return 0;
 		}
 
-		return lastItemList;
+		// If haven't read first record yet, then do that now.
+		if (lastItem == null) {
+			lastItem = doRead();
+		} else if (((Comparable<K>) getKey(lastItem)).compareTo(key) > 0) {
+			return 0;
+		}
+
+		// Look for first item for key
+		lastItem = readNextItem(key);
+
+		int count = 0;
+		while (lastItem != null && checkEqualKey(lastItem, key)) {
+			consumer.accept(lastItem);
+			count++;
+			// Read next item. On EOF, data will be null.
+			lastItem = doRead();
+		}
+		return count;
 	}
 
 	/**
@@ -143,7 +246,7 @@ public abstract class ItemAccumulator<T, K> implements ItemStream, InitializingB
 
 		// If haven't read first record yet, then do that now.
 		if (lastItem == null) {
-			lastItem = reader.read();
+			lastItem = doRead();
 		}
 
 		if (lastItem != null) {
@@ -174,49 +277,285 @@ public abstract class ItemAccumulator<T, K> implements ItemStream, InitializingB
 
 		// If haven't read first record yet, then do that now.
 		if (lastItem == null) {
-			lastItem = reader.read();
+			lastItem = doRead();
 		}
 
 		final K lastKey = lastItem == null ? null : getKey(lastItem);
 
-		lastItemList = new ArrayList<T>();
+		final List<T> items = newGroup();
 
 		// Haven't reached EOF for the data,
 		// so look for more data for the current key
 		while (lastItem != null && checkEqualKey(lastItem, lastKey)) {
-			lastItemList.add(lastItem);
+			items.add(lastItem);
 			// Read next record. On EOF, data will be null.
-			lastItem = reader.read();
+			lastItem = doRead();
+		}
+
+		return items;
+	}
+
+	/**
+	 * @return a new group : a {@link SpillableList} (released on the next update)
+	 *         when spilling is set, else an {@link ArrayList}
+	 */
+	protected List<T> newGroup() {
+		if (itemCodec == null || spillThreshold <= 0) {
+			return new ArrayList<T>();
 		}
+		final SpillableList<T> group = new SpillableList<T>(itemCodec, spillThreshold, spillDirectory);
+		spilledGroups.add(group);
+		return group;
+	}
+
+	/**
+	 * @return the number of items of a group kept on the heap before spilling to
+	 *         disk (0 when the groups never spill)
+	 */
+	protected int getSpillThreshold() {
+		return itemCodec == null ? 0 : spillThreshold;
+	}
+
+	/**
+	 * Delete the spill files of the groups read so far.
+	 */
+	private void releaseSpilledGroups() {
+		for (final SpillableList<T> group : spilledGroups) {
+			group.close();
+		}
+		spilledGroups.clear();
+	}
 
-		return lastItemList;
+	/**
+	 * Read the remaining items : as no key will be asked for anymore, they are
+	 * all orphans.
+	 *
+	 * @return the number of orphans read
+	 * @throws Exception
+	 */
+	public long readRemainingOrphans() throws Exception {
+		long count = 0;
+		if (lastItem == null) {
+			lastItem = doRead();
+		}
+		while (lastItem != null) {
+			orphan(lastItem);
+			count++;
+			lastItem = doRead();
+		}
+		return count;
+	}
+
+	private T doRead() throws Exception {
+		if (reader instanceof ItemStream) {
+			((ItemStream) reader).update(readerState);
+		}
+		final T item = reader.read();
+		if (item != null) {
+			readCount++;
+		}
+		return item;
+	}
+
+	/**
+	 * @param key the key looked up
+	 * @return true if the key filter proves that no item exists for the key
+	 */
+	private boolean isKnownAbsent(final K key) {
+		if (keyFilter == null || keyFilter.mightContain(key)) {
+			return false;
+		}
+		skippedLookups++;
+		return true;
+	}
+
+	private void orphan(final T item) throws Exception {
+		orphanCount++;
+		if (orphanWriter != null) {
+			orphans.add(item);
+			if (orphans.size() >= orphanBufferSize) {
+				writeOrphans();
+			}
+		}
+	}
+
+	private void writeOrphans() throws Exception {
+		if (!orphans.isEmpty()) {
+			orphanWriter.write(new ArrayList<T>(orphans));
+			orphans.clear();
+		}
 	}
 
 	@Override
 	public void open(final ExecutionContext executionContext) throws ItemStreamException {
+		orphanCount = executionContext.getLong(getExecutionContextKey(ORPHAN_COUNT), 0L);
+		skippedLookups = executionContext.getLong(getExecutionContextKey(SKIPPED_LOOKUPS), 0L);
+		orphans.clear();
+		if (keyFilterLoader != null) {
+			keyFilter = keyFilterLoader.get();
+			logger.info("Key filter loaded : {} keys, {} bits, {} hash functions", keyFilter.getInsertions(),
+					keyFilter.getBitCount(), keyFilter.getHashCount());
+		}
+		lastItem = null;
+		readCount = 0;
+
+		// The reader resumes before the look ahead item
 		if (reader instanceof ItemStream) {
 			((ItemStream) reader).open(executionContext);
 		}
+		if (orphanWriter instanceof ItemStream) {
+			((ItemStream) orphanWriter).open(executionContext);
+		}
+
+		final long groupStart = reader instanceof ItemStream ? 0L
+				: executionContext.getLong(getExecutionContextKey(GROUP_START), 0L);
+		try {
+			while (readCount < groupStart && doRead() != null) {
+				// reader without state : skip the items of the committed groups
+			}
+			final String currentKey = executionContext.containsKey(getExecutionContextKey(CURRENT_KEY))
+					? executionContext.getString(getExecutionContextKey(CURRENT_KEY))
+					: null;
+			if (currentKey != null) {
+				lastItem = doRead();
+				if (lastItem == null || !currentKey.equals(String.valueOf(getKey(lastItem)))) {
+					throw new ItemStreamException(
+							"Input has changed since the last run : expected key " + currentKey + " on restart");
+				}
+			}
+		} catch (final ItemStreamException e) {
+			throw e;
+		} catch (final Exception e) {
+			throw new ItemStreamException("Unable to skip the items already read", e);
+		}
 	}
 
 	@Override
 	public void update(final ExecutionContext executionContext) throws ItemStreamException {
-		if (reader instanceof ItemStream) {
+		releaseSpilledGroups();
+		if (orphanWriter != null) {
+			try {
+				writeOrphans();
+			} catch (final Exception e) {
+				throw new ItemStreamException("Unable to write the orphan items", e);
+			}
+		}
+		executionContext.putLong(getExecutionContextKey(ORPHAN_COUNT), orphanCount);
+		executionContext.putLong(getExecutionContextKey(SKIPPED_LOOKUPS), skippedLookups);
+		if (!(reader instanceof ItemStream)) {
+			executionContext.putLong(getExecutionContextKey(GROUP_START), lastItem == null ? readCount : readCount - 1);
+		} else if (lastItem != null) {
+			for (final Map.Entry<String, Object> entry : readerState.entrySet()) {
+				executionContext.put(entry.getKey(), entry.getValue());
+			}
+		} else {
 			((ItemStream) reader).update(executionContext);
 		}
+		if (lastItem != null) {
+			executionContext.putString(getExecutionContextKey(CURRENT_KEY), String.valueOf(getKey(lastItem)));
+		} else {
+			executionContext.remove(getExecutionContextKey(CURRENT_KEY));
+		}
+		if (orphanWriter instanceof ItemStream) {
+			((ItemStream) orphanWriter).update(executionContext);
+		}
 	}
 
 	@Override
 	public void close() throws ItemStreamException {
+		if (keyFilter != null || orphanWriter != null) {
+			logger.info("{} orphan items, {} lookups skipped by the key filter", orphanCount, skippedLookups);
+		}
+		keyFilter = null;
+		orphans.clear();
+		releaseSpilledGroups();
 		if (reader instanceof ItemStream) {
 			((ItemStream) reader).close();
 		}
+		if (orphanWriter instanceof ItemStream) {
+			((ItemStream) orphanWriter).close();
+		}
+	}
+
+	private String getExecutionContextKey(final String key) {
+		return name + "." + key;
 	}
 
 	public void setReader(final ItemReader<T> reader) {
 		this.reader = reader;
 	}
 
+	/**
+	 * @param name the name used to prefix the keys saved in the
+	 *             {@link ExecutionContext} (default class simple name)
+	 */
+	public void setName(final String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @param keyFilterLoader pre-pass building the {@link BloomFilter} of the
+	 *                        keys present in the input, called on open
+	 */
+	public void setKeyFilterLoader(final Supplier<BloomFilter> keyFilterLoader) {
+		this.keyFilterLoader = keyFilterLoader;
+	}
+
+	/**
+	 * @param itemCodec codec of the items spilled to disk
+	 */
+	public void setItemCodec(final ItemCodec<T> itemCodec) {
+		this.itemCodec = itemCodec;
+	}
+
+	/**
+	 * @param spillThreshold number of items of a group kept on the heap before
+	 *                       spilling to disk (0 to never spill)
+	 */
+	public void setSpillThreshold(final int spillThreshold) {
+		this.spillThreshold = spillThreshold;
+	}
+
+	/**
+	 * @param spillDirectory directory of the spill files (default temporary
+	 *                       directory)
+	 */
+	public void setSpillDirectory(final File spillDirectory) {
+		this.spillDirectory = spillDirectory;
+	}
+
+	/**
+	 * @param orphanWriter writer of the orphan items (items whose key is never
+	 *                     looked up)
+	 */
+	public void setOrphanWriter(final ItemWriter<? super T> orphanWriter) {
+		this.orphanWriter = orphanWriter;
+	}
+
+	/**
+	 * @param orphanBufferSize number of orphan items buffered before they are
+	 *                         written (default 1000)
+	 */
+	public void setOrphanBufferSize(final int orphanBufferSize) {
+		Assert.isTrue(orphanBufferSize > 0, "orphanBufferSize must be greater than 0");
+		this.orphanBufferSize = orphanBufferSize;
+	}
+
+	/**
+	 * @return the number of orphan items read by the step (restarts included)
+	 */
+	public long getOrphanCount() {
+		return orphanCount;
+	}
+
+	/**
+	 * @return the number of lookups skipped thanks to the key filter (restarts
+	 *         included)
+	 */
+	public long getSkippedLookups() {
+		return skippedLookups;
+	}
+
 	@Override
 	public void afterPropertiesSet() throws Exception {
 		Assert.notNull(reader, "reader must be set");
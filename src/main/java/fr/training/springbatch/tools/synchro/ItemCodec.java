@@ -0,0 +1,29 @@
+package fr.training.springbatch.tools.synchro;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary encoding of the items spilled to disk by a {@link SpillableList}.
+ *
+ * @param <T> the class of the items
+ */
+public interface ItemCodec<T> {
+
+	/**
+	 * @param item the item to encode
+	 * @param out  the output
+	 * @throws IOException
+	 */
+	void write(T item, DataOutput out) throws IOException;
+
+	/**
+	 * @param in the input, positioned on an item written by
+	 *           {@link #write(Object, DataOutput)}
+	 * @return the decoded item
+	 * @throws IOException
+	 */
+	T read(DataInput in) throws IOException;
+
+}
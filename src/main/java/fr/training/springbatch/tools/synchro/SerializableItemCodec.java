@@ -0,0 +1,43 @@
+package fr.training.springbatch.tools.synchro;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * {@link ItemCodec} using the java serialization : works for any
+ * {@link Serializable} item but each item carries its class descriptor, prefer
+ * a dedicated codec for large groups.
+ *
+ * @param <T> the class of the items
+ */
+public class SerializableItemCodec<T extends Serializable> implements ItemCodec<T> {
+
+	@Override
+	public void write(final T item, final DataOutput out) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+			oos.writeObject(item);
+		}
+		out.writeInt(bytes.size());
+		out.write(bytes.toByteArray());
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T read(final DataInput in) throws IOException {
+		final byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+			return (T) ois.readObject();
+		} catch (final ClassNotFoundException e) {
+			throw new IOException("Unable to read spilled item", e);
+		}
+	}
+
+}
@@ -0,0 +1,330 @@
+package fr.training.springbatch.tools.synchro;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.springframework.util.Assert;
+
+/**
+ * Append only list keeping its first items on the heap and spilling the
+ * following ones to a temporary file.
+ *
+ * Spilled items are encoded by an {@link ItemCodec} (each record is prefixed by
+ * its length) and read back lazily through a memory mapped window of the file,
+ * so a group of any size only costs the in-heap threshold plus the window.
+ *
+ * Spilled items are decoded on each access : iterating is sequential, and
+ * {@link #get(int)} is efficient for increasing indexes only. The temporary
+ * file is deleted by {@link #close()}, after which the spilled items are no
+ * longer readable.
+ *
+ * A mapped window is unmapped by the garbage collector once it is no longer
+ * referenced (no view of it being in use), as the JDK offers no supported way
+ * to unmap it explicitly : until then, it holds the disk space of the deleted
+ * file.
+ *
+ * @param <T> the class of the items
+ */
+public class SpillableList<T> extends AbstractList<T> implements Closeable {
+
+	private static final int DEFAULT_WINDOW_SIZE = 8 * 1024 * 1024;
+
+	private final ItemCodec<T> codec;
+
+	private final int threshold;
+
+	private final File directory;
+
+	private final int windowSize;
+
+	private final List<T> heap;
+
+	private int spilledCount;
+
+	private File file;
+
+	private FileChannel channel;
+
+	private DataOutputStream out;
+
+	/** Record being encoded, to know its length before writing it */
+	private ByteArrayOutputStream record;
+
+	private DataOutputStream recordOut;
+
+	/** Bytes written (flushed or not) to the file */
+	private long written;
+
+	private boolean dirty;
+
+	private boolean closed;
+
+	private MappedByteBuffer window;
+
+	private long windowStart;
+
+	/** Cursor used by {@link #get(int)} */
+	private final Cursor cursor = new Cursor();
+
+	/**
+	 * @param codec     codec of the spilled items
+	 * @param threshold number of items kept on the heap
+	 * @param directory directory of the temporary file (null for the default
+	 *                  temporary directory)
+	 */
+	public SpillableList(final ItemCodec<T> codec, final int threshold, final File directory) {
+		this(codec, threshold, directory, DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * @param codec      codec of the spilled items
+	 * @param threshold  number of items kept on the heap
+	 * @param directory  directory of the temporary file (null for the default
+	 *                   temporary directory)
+	 * @param windowSize size in bytes of the memory mapped window
+	 */
+	public SpillableList(final ItemCodec<T> codec, final int threshold, final File directory,
+			final int windowSize) {
+		Assert.notNull(codec, "codec must be set");
+		Assert.isTrue(threshold >= 0, "threshold must be positive");
+		Assert.isTrue(windowSize > 0, "windowSize must be greater than 0");
+		this.codec = codec;
+		this.threshold = threshold;
+		this.directory = directory;
+		this.windowSize = windowSize;
+		heap = new ArrayList<T>(Math.min(threshold, 16));
+	}
+
+	@Override
+	public boolean add(final T item) {
+		if (heap.size() < threshold) {
+			return heap.add(item);
+		}
+		Assert.state(!closed, "The list is closed");
+		try {
+			if (out == null) {
+				openSpillFile();
+			}
+			record.reset();
+			codec.write(item, recordOut);
+			recordOut.flush();
+			out.writeInt(record.size());
+			record.writeTo(out);
+			written += 4 + record.size();
+			dirty = true;
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Unable to spill item to " + file, e);
+		}
+		spilledCount++;
+		modCount++;
+		return true;
+	}
+
+	private void openSpillFile() throws IOException {
+		file = File.createTempFile("group-", ".spill", directory);
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+		out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+		record = new ByteArrayOutputStream(256);
+		recordOut = new DataOutputStream(record);
+	}
+
+	@Override
+	public T get(final int index) {
+		if (index < heap.size()) {
+			return heap.get(index);
+		}
+		final int spilledIndex = index - heap.size();
+		if (spilledIndex >= spilledCount) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		if (spilledIndex < cursor.index) {
+			cursor.index = 0;
+			cursor.offset = 0;
+		}
+		while (cursor.index < spilledIndex) {
+			skip(cursor);
+		}
+		return next(cursor);
+	}
+
+	@Override
+	public int size() {
+		return heap.size() + spilledCount;
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+
+			private final Cursor position = new Cursor();
+
+			private int heapIndex;
+
+			private final int expectedModCount = modCount;
+
+			@Override
+			public boolean hasNext() {
+				return heapIndex < heap.size() || position.index < spilledCount;
+			}
+
+			@Override
+			public T next() {
+				if (modCount != expectedModCount) {
+					throw new ConcurrentModificationException();
+				}
+				if (heapIndex < heap.size()) {
+					return heap.get(heapIndex++);
+				}
+				if (position.index >= spilledCount) {
+					throw new NoSuchElementException();
+				}
+				return SpillableList.this.next(position);
+			}
+		};
+	}
+
+	/**
+	 * @return true if some items have been spilled to disk
+	 */
+	public boolean isSpilled() {
+		return spilledCount > 0;
+	}
+
+	/**
+	 * @return the number of items spilled to disk
+	 */
+	public int getSpilledCount() {
+		return spilledCount;
+	}
+
+	private T next(final Cursor position) {
+		final ByteBuffer buffer = recordAt(position);
+		try {
+			return codec.read(new DataInputStream(new ByteBufferInputStream(buffer)));
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Unable to read spilled item from " + file, e);
+		}
+	}
+
+	private void skip(final Cursor position) {
+		recordAt(position);
+	}
+
+	/**
+	 * @return a view of the record at the cursor position, the cursor being moved
+	 *         to the next record
+	 */
+	private ByteBuffer recordAt(final Cursor position) {
+		Assert.state(!closed, "The list is closed");
+		final int length = mapped(position.offset, 4).getInt((int) (position.offset - windowStart));
+		final ByteBuffer view = mapped(position.offset + 4, length).duplicate();
+		view.position((int) (position.offset + 4 - windowStart));
+		view.limit(view.position() + length);
+		position.offset += 4 + length;
+		position.index++;
+		return view;
+	}
+
+	/**
+	 * @return the mapped window, moved if needed to cover the given bytes
+	 */
+	private MappedByteBuffer mapped(final long offset, final int length) {
+		if (window != null && offset >= windowStart && offset + length <= windowStart + window.limit()) {
+			return window;
+		}
+		try {
+			if (dirty) {
+				out.flush();
+				dirty = false;
+			}
+			final long size = Math.min(Math.max(windowSize, length), written - offset);
+			window = null;
+			window = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+			windowStart = offset;
+			return window;
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Unable to map " + file, e);
+		}
+	}
+
+	/**
+	 * Release the temporary file.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		window = null;
+		if (channel == null) {
+			return;
+		}
+		try {
+			channel.close();
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Unable to close " + file, e);
+		} finally {
+			if (!file.delete()) {
+				// still mapped (windows platforms) : retry at the end of the JVM
+				file.deleteOnExit();
+			}
+		}
+	}
+
+	private static class Cursor {
+		private int index;
+		private long offset;
+	}
+
+	/**
+	 * InputStream reading a {@link ByteBuffer} without copying it.
+	 */
+	private static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(final ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(final byte[] bytes, final int off, final int len) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			final int count = Math.min(len, buffer.remaining());
+			buffer.get(bytes, off, count);
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+
+}
@@ -0,0 +1,101 @@
+package fr.training.springbatch.tools.synchro;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Choose how a master / detail synchronization is executed.
+ *
+ * When both sides are tables of the same {@link DataSource}, the join and the
+ * aggregation can be pushed down to the database as a single query
+ * ({@link Plan#PUSH_DOWN}). Otherwise both sides are streamed and merged in Java
+ * by an {@link ItemAccumulator} based reader ({@link Plan#STREAMING}).
+ */
+public class SynchroPlanner {
+
+	private static final Logger logger = LoggerFactory.getLogger(SynchroPlanner.class);
+
+	public enum Plan {
+		PUSH_DOWN, STREAMING
+	}
+
+	/**
+	 * One side (master or detail) of a synchronization.
+	 */
+	public static final class Source {
+
+		private final DataSource dataSource;
+
+		private final String name;
+
+		private Source(final DataSource dataSource, final String name) {
+			this.dataSource = dataSource;
+			this.name = name;
+		}
+
+		/**
+		 * @param dataSource the datasource holding the table
+		 * @param table      the table name
+		 */
+		public static Source table(final DataSource dataSource, final String table) {
+			return new Source(dataSource, table);
+		}
+
+		/**
+		 * @param path the flat file path
+		 */
+		public static Source file(final String path) {
+			return new Source(null, path);
+		}
+
+		public boolean isTable() {
+			return dataSource != null;
+		}
+
+		@Override
+		public String toString() {
+			return (isTable() ? "table " : "file ") + name;
+		}
+	}
+
+	private boolean pushDownEnabled = true;
+
+	/**
+	 * @param master the master side
+	 * @param detail the detail side
+	 * @return the execution plan
+	 */
+	public Plan plan(final Source master, final Source detail) {
+		final Plan plan;
+		if (pushDownEnabled && master.isTable() && detail.isTable()
+				&& unwrap(master.dataSource) == unwrap(detail.dataSource)) {
+			plan = Plan.PUSH_DOWN;
+		} else {
+			plan = Plan.STREAMING;
+		}
+		logger.info("Synchronization of {} with {} : {}", master, detail, plan);
+		return plan;
+	}
+
+	private static DataSource unwrap(final DataSource dataSource) {
+		DataSource target = dataSource;
+		while (target instanceof DelegatingDataSource) {
+			final DataSource delegate = ((DelegatingDataSource) target).getTargetDataSource();
+			if (delegate == null) {
+				break;
+			}
+			target = delegate;
+		}
+		return target;
+	}
+
+	/**
+	 * @param pushDownEnabled false to always stream both sides (default true)
+	 */
+	public void setPushDownEnabled(final boolean pushDownEnabled) {
+		this.pushDownEnabled = pushDownEnabled;
+	}
+}
@@ -0,0 +1,297 @@
+package fr.training.springbatch.tools.tasklet;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.util.StringUtils;
+
+import fr.training.springbatch.tools.compress.CompressionCodec;
+
+/**
+ * Archive the Spring Batch metadata of a page of job executions before they are
+ * deleted by the {@link RemoveSpringBatchHistoryTasklet}.
+ *
+ * The rows are streamed from the result sets to one gzip file per month of
+ * creation of the job execution (batch-history-yyyy-MM.csv.gz). Each line
+ * starts with the table name ; each page is appended as a new gzip member,
+ * preceded by a header line per table, so the files stay append-only and can be
+ * read by any gzip tool.
+ *
+ * The size of each file is saved in the step {@link ExecutionContext}
+ * (committed with the deletion of the page) : on restart, the rows archived by
+ * a page that was not committed are truncated.
+ */
+public class BatchHistoryArchiver {
+
+	private static final String FILE_PREFIX = "batch-history-";
+
+	private static final String FILE_SUFFIX = ".csv" + CompressionCodec.GZIP.getExtension();
+
+	private static final String SIZE_KEY = "archive.%s.size";
+
+	private static final char DELIMITER = ';';
+
+	private static final String ARCHIVE_KEY = "ARCHIVE_KEY";
+
+	private static final String SQL_SELECT_JOB_EXECUTION_MONTHS = "SELECT JOB_EXECUTION_ID, JOB_INSTANCE_ID, CREATE_TIME FROM %PREFIX%JOB_EXECUTION WHERE JOB_EXECUTION_ID IN (:ids)";
+
+	/**
+	 * Archived tables, with the query selecting the job execution id (or the job
+	 * instance id) as ARCHIVE_KEY followed by the archived columns.
+	 */
+	private static final Map<String, String> TABLES = new LinkedHashMap<String, String>();
+	static {
+		TABLES.put("JOB_INSTANCE", "SELECT I.JOB_INSTANCE_ID AS ARCHIVE_KEY, I.* FROM %PREFIX%JOB_INSTANCE I WHERE I.JOB_INSTANCE_ID IN (:instanceIds) AND NOT EXISTS (SELECT 1 FROM %PREFIX%JOB_EXECUTION E WHERE E.JOB_INSTANCE_ID = I.JOB_INSTANCE_ID AND E.JOB_EXECUTION_ID NOT IN (:ids)) ORDER BY I.JOB_INSTANCE_ID");
+		TABLES.put("JOB_EXECUTION", "SELECT E.JOB_EXECUTION_ID AS ARCHIVE_KEY, E.* FROM %PREFIX%JOB_EXECUTION E WHERE E.JOB_EXECUTION_ID IN (:ids) ORDER BY E.JOB_EXECUTION_ID");
+		TABLES.put("JOB_EXECUTION_PARAMS", "SELECT P.JOB_EXECUTION_ID AS ARCHIVE_KEY, P.* FROM %PREFIX%JOB_EXECUTION_PARAMS P WHERE P.JOB_EXECUTION_ID IN (:ids) ORDER BY P.JOB_EXECUTION_ID");
+		TABLES.put("JOB_EXECUTION_CONTEXT", "SELECT C.JOB_EXECUTION_ID AS ARCHIVE_KEY, C.* FROM %PREFIX%JOB_EXECUTION_CONTEXT C WHERE C.JOB_EXECUTION_ID IN (:ids) ORDER BY C.JOB_EXECUTION_ID");
+		TABLES.put("STEP_EXECUTION", "SELECT S.JOB_EXECUTION_ID AS ARCHIVE_KEY, S.* FROM %PREFIX%STEP_EXECUTION S WHERE S.JOB_EXECUTION_ID IN (:ids) ORDER BY S.STEP_EXECUTION_ID");
+		TABLES.put("STEP_EXECUTION_CONTEXT", "SELECT S.JOB_EXECUTION_ID AS ARCHIVE_KEY, C.* FROM %PREFIX%STEP_EXECUTION_CONTEXT C JOIN %PREFIX%STEP_EXECUTION S ON S.STEP_EXECUTION_ID = C.STEP_EXECUTION_ID WHERE S.JOB_EXECUTION_ID IN (:ids) ORDER BY C.STEP_EXECUTION_ID");
+	}
+
+	private final NamedParameterJdbcTemplate jdbcTemplate;
+
+	private final String tablePrefix;
+
+	private final File directory;
+
+	/** Files already checked against the execution context by this execution */
+	private final Set<String> checkedMonths = new HashSet<String>();
+
+	/**
+	 * @param jdbcTemplate the template on the Spring Batch metadata tables
+	 * @param tablePrefix  the Spring Batch tables prefix
+	 * @param directory    the archive directory
+	 */
+	public BatchHistoryArchiver(final NamedParameterJdbcTemplate jdbcTemplate, final String tablePrefix,
+			final File directory) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.tablePrefix = tablePrefix;
+		this.directory = directory;
+	}
+
+	/**
+	 * Archive the job executions, and the rows depending on them, in the monthly
+	 * files.
+	 *
+	 * @param jobExecutionIds the ids of the job executions to archive
+	 * @param instanceIds     the ids of their job instances
+	 * @param context         the step execution context
+	 * @return the number of archived rows
+	 */
+	public int archive(final List<Long> jobExecutionIds, final List<Long> instanceIds,
+			final ExecutionContext context) {
+
+		final Map<Long, String> executionMonths = new HashMap<Long, String>();
+		final Map<Long, String> instanceMonths = new HashMap<Long, String>();
+		final MapSqlParameterSource params = new MapSqlParameterSource("ids", jobExecutionIds) //
+				.addValue("instanceIds", instanceIds);
+
+		jdbcTemplate.query(getQuery(SQL_SELECT_JOB_EXECUTION_MONTHS), params, rs -> {
+			final String month = YearMonth.from(rs.getTimestamp("CREATE_TIME").toLocalDateTime()).toString();
+			executionMonths.put(rs.getLong("JOB_EXECUTION_ID"), month);
+			instanceMonths.merge(rs.getLong("JOB_INSTANCE_ID"), month, (a, b) -> a.compareTo(b) > 0 ? a : b);
+		});
+
+		final Map<String, Writer> writers = new HashMap<String, Writer>();
+		int rowCount = 0;
+		try {
+			for (final Map.Entry<String, String> table : TABLES.entrySet()) {
+				if (instanceIds.isEmpty() && "JOB_INSTANCE".equals(table.getKey())) {
+					continue;
+				}
+				final Map<Long, String> months = "JOB_INSTANCE".equals(table.getKey()) ? instanceMonths
+						: executionMonths;
+				final TableArchiver archiver = new TableArchiver(table.getKey(), months, writers, context);
+				jdbcTemplate.query(getQuery(table.getValue()), params, archiver);
+				rowCount += archiver.rowCount;
+			}
+		} catch (final RuntimeException e) {
+			// the page will be rolled back : keep the sizes of the last commit
+			closeQuietly(writers);
+			throw e;
+		}
+		close(writers, context);
+		return rowCount;
+	}
+
+	/**
+	 * Stream the rows of a table to the monthly files.
+	 */
+	private class TableArchiver implements RowCallbackHandler {
+
+		private final String table;
+
+		private final Map<Long, String> months;
+
+		private final Map<String, Writer> writers;
+
+		private final ExecutionContext context;
+
+		private final Set<String> headerWritten = new HashSet<String>();
+
+		private final StringBuilder line = new StringBuilder(256);
+
+		private int rowCount;
+
+		TableArchiver(final String table, final Map<Long, String> months, final Map<String, Writer> writers,
+				final ExecutionContext context) {
+			this.table = table;
+			this.months = months;
+			this.writers = writers;
+			this.context = context;
+		}
+
+		@Override
+		public void processRow(final ResultSet rs) throws SQLException {
+			final ResultSetMetaData metaData = rs.getMetaData();
+			final String month = months.get(rs.getLong(ARCHIVE_KEY));
+			try {
+				final Writer writer = writer(month, writers, context);
+				if (headerWritten.add(month)) {
+					line.setLength(0);
+					line.append('#').append(table);
+					for (int i = 2; i <= metaData.getColumnCount(); i++) {
+						line.append(DELIMITER).append(metaData.getColumnLabel(i));
+					}
+					writer.write(line.append('\n').toString());
+				}
+				line.setLength(0);
+				line.append(table);
+				for (int i = 2; i <= metaData.getColumnCount(); i++) {
+					line.append(DELIMITER);
+					appendValue(rs.getString(i));
+				}
+				writer.write(line.append('\n').toString());
+			} catch (final IOException e) {
+				throw new ItemStreamException("Unable to archive the " + table + " rows", e);
+			}
+			rowCount++;
+		}
+
+		/**
+		 * Append a value, quoted when it contains a delimiter, a quote or a line
+		 * break (execution contexts are JSON).
+		 */
+		private void appendValue(final String value) {
+			if (value == null) {
+				return;
+			}
+			boolean quote = false;
+			for (int i = 0; i < value.length() && !quote; i++) {
+				final char c = value.charAt(i);
+				quote = c == DELIMITER || c == '"' || c == '\n' || c == '\r';
+			}
+			if (!quote) {
+				line.append(value);
+				return;
+			}
+			line.append('"');
+			for (int i = 0; i < value.length(); i++) {
+				final char c = value.charAt(i);
+				if (c == '"') {
+					line.append('"');
+				}
+				line.append(c);
+			}
+			line.append('"');
+		}
+	}
+
+	/**
+	 * @return the writer of a new gzip member appended to the monthly file
+	 */
+	private Writer writer(final String month, final Map<String, Writer> writers, final ExecutionContext context)
+			throws IOException {
+		Writer writer = writers.get(month);
+		if (writer == null) {
+			final File file = getFile(month);
+			if (checkedMonths.add(month)) {
+				final String sizeKey = String.format(SIZE_KEY, month);
+				if (context.containsKey(sizeKey)) {
+					truncate(file, context.getLong(sizeKey));
+				} else {
+					// size before the first page of this execution
+					directory.mkdirs();
+					context.putLong(sizeKey, file.length());
+				}
+			}
+			writer = new BufferedWriter(new OutputStreamWriter(
+					CompressionCodec.GZIP.compress(new FileOutputStream(file, true)), StandardCharsets.UTF_8),
+					64 * 1024);
+			writers.put(month, writer);
+		}
+		return writer;
+	}
+
+	/**
+	 * Remove the rows archived by a page which has not been committed.
+	 */
+	private void truncate(final File file, final long committedSize) throws IOException {
+		if (!file.exists()) {
+			directory.mkdirs();
+			return;
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+			if (channel.size() > committedSize) {
+				channel.truncate(committedSize);
+			}
+		}
+	}
+
+	private void close(final Map<String, Writer> writers, final ExecutionContext context) {
+		IOException failure = null;
+		for (final Map.Entry<String, Writer> writer : writers.entrySet()) {
+			try {
+				writer.getValue().close();
+				context.putLong(String.format(SIZE_KEY, writer.getKey()), getFile(writer.getKey()).length());
+			} catch (final IOException e) {
+				failure = e;
+			}
+		}
+		if (failure != null) {
+			throw new ItemStreamException("Unable to close the archive files", failure);
+		}
+	}
+
+	private void closeQuietly(final Map<String, Writer> writers) {
+		for (final Writer writer : writers.values()) {
+			try {
+				writer.close();
+			} catch (final IOException e) {
+				// already failing
+			}
+		}
+	}
+
+	private File getFile(final String month) {
+		return new File(directory, FILE_PREFIX + month + FILE_SUFFIX);
+	}
+
+	private String getQuery(final String base) {
+		return StringUtils.replace(base, "%PREFIX%", tablePrefix);
+	}
+
+}
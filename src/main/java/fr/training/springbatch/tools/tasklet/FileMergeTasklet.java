@@ -0,0 +1,217 @@
+package fr.training.springbatch.tools.tasklet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+
+/**
+ * Tasklet used to concatenate the part files written by the partitions of a
+ * step into a single output file.
+ *
+ * Part files are named after the output file (see {@link #partFile(File, int)})
+ * and are concatenated in partition order with {@link FileChannel#transferTo},
+ * so that the content is copied by the OS without going through the heap. An
+ * optional header is written once at the beginning of the output file.
+ *
+ * The parts to merge are those of the partition step executions of the job
+ * instance (restarts included), found by the {@link JobExplorer} : stale part
+ * files left in the directory by another run are ignored. The write count of
+ * the tasklet is the number of items (lines) written by these partitions.
+ */
+public class FileMergeTasklet implements Tasklet, InitializingBean {
+
+	private static final Logger logger = LoggerFactory.getLogger(FileMergeTasklet.class);
+
+	private static final String PART_SUFFIX = ".part-";
+
+	/** Key of the partition index in the partition step execution context */
+	public static final String PARTITION_INDEX = "partitionIndex";
+
+	private Resource output;
+
+	private JobExplorer jobExplorer;
+
+	private String partitionStepName;
+
+	private String header;
+
+	private Charset encoding = StandardCharsets.UTF_8;
+
+	private String lineSeparator = System.lineSeparator();
+
+	private boolean deleteParts = true;
+
+	/**
+	 * Get the part file of a partition for an output file.
+	 *
+	 * @param output the final output file
+	 * @param index  the partition index
+	 * @return the part file
+	 */
+	public static File partFile(final File output, final int index) {
+		return new File(output.getAbsoluteFile().getParentFile(),
+				String.format("%s%s%05d", output.getName(), PART_SUFFIX, index));
+	}
+
+	@Override
+	public RepeatStatus execute(final StepContribution contribution, final ChunkContext chunkContext)
+			throws Exception {
+
+		final File target = output.getFile();
+		final Map<Integer, Long> partitions = findPartitions(
+				chunkContext.getStepContext().getStepExecution().getJobExecution().getJobInstance());
+		final File[] parts = new File[partitions.size()];
+		long itemCount = 0;
+		int i = 0;
+		for (final Map.Entry<Integer, Long> partition : partitions.entrySet()) {
+			parts[i] = partFile(target, partition.getKey());
+			Assert.state(parts[i].isFile(), "Missing part file " + parts[i]);
+			itemCount += partition.getValue();
+			i++;
+		}
+
+		long size = 0;
+		try (FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+
+			if (header != null) {
+				final ByteBuffer buffer = ByteBuffer.wrap((header + lineSeparator).getBytes(encoding));
+				while (buffer.hasRemaining()) {
+					out.write(buffer);
+				}
+			}
+
+			for (final File part : parts) {
+				size += transfer(part, out);
+			}
+		}
+
+		if (deleteParts) {
+			for (final File part : parts) {
+				if (!part.delete()) {
+					logger.warn("Unable to delete part file {}", part);
+				}
+			}
+		}
+		logger.info("{} part files ({} lines, {} bytes) merged into {}", parts.length, itemCount, size, target);
+		contribution.incrementWriteCount((int) itemCount);
+		return RepeatStatus.FINISHED;
+	}
+
+	private long transfer(final File part, final FileChannel out) throws IOException {
+		try (FileChannel in = FileChannel.open(part.toPath(), StandardOpenOption.READ)) {
+			final long size = in.size();
+			long position = 0;
+			// transferTo may copy less bytes than requested
+			while (position < size) {
+				position += in.transferTo(position, size - position, out);
+			}
+			return size;
+		}
+	}
+
+	/**
+	 * @return the write count of each partition by partition index (all the
+	 *         executions of a restarted partition append to the same part file)
+	 */
+	private Map<Integer, Long> findPartitions(final JobInstance jobInstance) {
+		final String prefix = partitionStepName + ":";
+		final Map<String, StepExecution> lastExecutions = new HashMap<String, StepExecution>();
+		final Map<String, Long> writeCounts = new HashMap<String, Long>();
+		for (final JobExecution jobExecution : jobExplorer.getJobExecutions(jobInstance)) {
+			for (final StepExecution stepExecution : jobExecution.getStepExecutions()) {
+				final String name = stepExecution.getStepName();
+				if (name.startsWith(prefix)) {
+					writeCounts.merge(name, (long) stepExecution.getWriteCount(), Long::sum);
+					final StepExecution last = lastExecutions.get(name);
+					if (last == null || last.getId() < stepExecution.getId()) {
+						lastExecutions.put(name, stepExecution);
+					}
+				}
+			}
+		}
+
+		// partition index order
+		final Map<Integer, Long> partitions = new TreeMap<Integer, Long>();
+		for (final StepExecution stepExecution : lastExecutions.values()) {
+			Assert.state(stepExecution.getStatus() == BatchStatus.COMPLETED,
+					"Partition " + stepExecution.getStepName() + " is not completed");
+			partitions.put(stepExecution.getExecutionContext().getInt(PARTITION_INDEX),
+					writeCounts.get(stepExecution.getStepName()));
+		}
+		return partitions;
+	}
+
+	/**
+	 * @param output the final output file
+	 */
+	public void setOutput(final Resource output) {
+		this.output = output;
+	}
+
+	/**
+	 * @param jobExplorer the explorer of the partition step executions
+	 */
+	public void setJobExplorer(final JobExplorer jobExplorer) {
+		this.jobExplorer = jobExplorer;
+	}
+
+	/**
+	 * @param partitionStepName the name of the worker step of the partitions
+	 */
+	public void setPartitionStepName(final String partitionStepName) {
+		this.partitionStepName = partitionStepName;
+	}
+
+	/**
+	 * @param header the header line written once (without line separator)
+	 */
+	public void setHeader(final String header) {
+		this.header = header;
+	}
+
+	public void setEncoding(final Charset encoding) {
+		this.encoding = encoding;
+	}
+
+	public void setLineSeparator(final String lineSeparator) {
+		this.lineSeparator = lineSeparator;
+	}
+
+	/**
+	 * @param deleteParts true (default) to delete the part files once merged
+	 */
+	public void setDeleteParts(final boolean deleteParts) {
+		this.deleteParts = deleteParts;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(output, "The output resource must be set");
+		Assert.notNull(jobExplorer, "The jobExplorer must be set");
+		Assert.hasText(partitionStepName, "The partitionStepName must be set");
+	}
+
+}
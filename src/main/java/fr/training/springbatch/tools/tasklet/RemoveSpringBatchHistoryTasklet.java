@@ -1,19 +1,29 @@
 package fr.training.springbatch.tools.tasklet;
 
+import java.io.File;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.lang3.time.DateUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
 import org.springframework.batch.core.repository.dao.AbstractJdbcBatchMetadataDao;
 import org.springframework.batch.core.scope.context.ChunkContext;
 import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
 import org.springframework.batch.repeat.RepeatStatus;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
@@ -27,6 +37,18 @@ import org.springframework.util.StringUtils;
  * Spring Batch tables prefix could be customized by the {@link #setTablePrefix(String)}<br>
  * Thanks to Giovanni Dalloglio for his initial SQL statements.
  * </p>
+ * <p>
+ * With a batch size (see {@link #setBatchSize(int)}), the expired JOB_EXECUTION_IDs are collected
+ * by keyset pages of this size and the rows of each page are deleted table by table with
+ * <code>IN</code> lists on the indexed ids : each page is a tasklet iteration, hence committed in
+ * its own transaction, instead of six table wide deletes in a single one. The last purged id, the
+ * retention date and the deleted rows per table are kept in the step {@link ExecutionContext} so a
+ * failed purge resumes where it stopped. The throughput (rows/s) of each table is logged.
+ * </p>
+ * <p>
+ * With an archive directory (see {@link #setArchiveDirectory(File)}), the rows of each page are
+ * first streamed to compressed monthly files by a {@link BatchHistoryArchiver}.
+ * </p>
  * 
  * @see https://jira.springsource.org/browse/BATCH-1747
  * @author arey
@@ -44,6 +66,32 @@ public class RemoveSpringBatchHistoryTasklet implements Tasklet, InitializingBea
     private static final String  SQL_DELETE_BATCH_JOB_EXECUTION          = "DELETE FROM %PREFIX%JOB_EXECUTION where CREATE_TIME < ?";
     private static final String  SQL_DELETE_BATCH_JOB_INSTANCE           = "DELETE FROM %PREFIX%JOB_INSTANCE WHERE JOB_INSTANCE_ID NOT IN (SELECT JOB_INSTANCE_ID FROM %PREFIX%JOB_EXECUTION)";
 
+    /**
+     * SQL statements of the batched purge, by page of JOB_EXECUTION_IDs.
+     */
+    private static final String  SQL_SELECT_EXPIRED_JOB_EXECUTION_IDS    = "SELECT JOB_EXECUTION_ID FROM %PREFIX%JOB_EXECUTION WHERE CREATE_TIME < ? AND JOB_EXECUTION_ID > ? ORDER BY JOB_EXECUTION_ID";
+    private static final String  SQL_SELECT_JOB_INSTANCE_IDS             = "SELECT DISTINCT JOB_INSTANCE_ID FROM %PREFIX%JOB_EXECUTION WHERE JOB_EXECUTION_ID IN (:ids)";
+    private static final String  SQL_DELETE_BATCH_STEP_EXECUTION_CONTEXT_BY_IDS = "DELETE FROM %PREFIX%STEP_EXECUTION_CONTEXT WHERE STEP_EXECUTION_ID IN (SELECT STEP_EXECUTION_ID FROM %PREFIX%STEP_EXECUTION WHERE JOB_EXECUTION_ID IN (:ids))";
+    private static final String  SQL_DELETE_BATCH_STEP_EXECUTION_BY_IDS  = "DELETE FROM %PREFIX%STEP_EXECUTION WHERE JOB_EXECUTION_ID IN (:ids)";
+    private static final String  SQL_DELETE_BATCH_JOB_EXECUTION_CONTEXT_BY_IDS = "DELETE FROM %PREFIX%JOB_EXECUTION_CONTEXT WHERE JOB_EXECUTION_ID IN (:ids)";
+    private static final String  SQL_DELETE_BATCH_JOB_EXECUTION_PARAMS_BY_IDS = "DELETE FROM %PREFIX%JOB_EXECUTION_PARAMS WHERE JOB_EXECUTION_ID IN (:ids)";
+    private static final String  SQL_DELETE_BATCH_JOB_EXECUTION_BY_IDS   = "DELETE FROM %PREFIX%JOB_EXECUTION WHERE JOB_EXECUTION_ID IN (:ids)";
+    private static final String  SQL_DELETE_BATCH_JOB_INSTANCE_BY_IDS    = "DELETE FROM %PREFIX%JOB_INSTANCE WHERE JOB_INSTANCE_ID IN (:ids) AND NOT EXISTS (SELECT 1 FROM %PREFIX%JOB_EXECUTION E WHERE E.JOB_INSTANCE_ID = %PREFIX%JOB_INSTANCE.JOB_INSTANCE_ID)";
+
+    /**
+     * Keys of the batched purge state saved in the step execution context.
+     */
+    private static final String  LAST_JOB_EXECUTION_ID_KEY               = "purge.last.id";
+    private static final String  RETENTION_DATE_KEY                      = "purge.before";
+    private static final String  ROW_COUNT_KEY                           = "purge.%s.count";
+    private static final String  ELAPSED_KEY                             = "purge.%s.elapsed";
+
+    /**
+     * Purged tables, in the deletion order.
+     */
+    private static final String[] TABLES = { "STEP_EXECUTION_CONTEXT", "STEP_EXECUTION", "JOB_EXECUTION_CONTEXT",
+            "JOB_EXECUTION_PARAMS", "JOB_EXECUTION", "JOB_INSTANCE" };
+
     /**
      * Default value for the table prefix property.
      */
@@ -60,10 +108,27 @@ public class RemoveSpringBatchHistoryTasklet implements Tasklet, InitializingBea
 
     private JdbcTemplate         jdbcTemplate;
 
+    /**
+     * Number of job executions purged per transaction (0 : single transaction purge).
+     */
+    private int                  batchSize;
+
+    /**
+     * Directory of the monthly archive files (null : no archive).
+     */
+    private File                 archiveDirectory;
+
+    private BatchHistoryArchiver archiver;
+
+    private Long                 archiverStepExecutionId;
+
     private static final Logger  LOG                                     = LoggerFactory.getLogger(RemoveSpringBatchHistoryTasklet.class);
 
     @Override
     public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) {
+        if (batchSize > 0) {
+            return executeBatch(contribution, chunkContext.getStepContext().getStepExecution());
+        }
         int totalCount = 0;
         Date date = DateUtils.addMonths(new Date(), -historicRetentionMonth);
         DateFormat df = new SimpleDateFormat();
@@ -98,6 +163,101 @@ public class RemoveSpringBatchHistoryTasklet implements Tasklet, InitializingBea
         return RepeatStatus.FINISHED;
     }
 
+    /**
+     * Purge the next page of expired job executions.
+     *
+     * @return {@link RepeatStatus#CONTINUABLE} until no expired job execution is left
+     */
+    protected RepeatStatus executeBatch(StepContribution contribution, StepExecution stepExecution) {
+        ExecutionContext context = stepExecution.getExecutionContext();
+        if (!context.containsKey(RETENTION_DATE_KEY)) {
+            Date date = DateUtils.addMonths(new Date(), -historicRetentionMonth);
+            LOG.info("Remove the Spring Batch history before the {} by batch of {} job executions",
+                    new SimpleDateFormat().format(date), batchSize);
+            context.putLong(RETENTION_DATE_KEY, date.getTime());
+        }
+        Date date = new Date(context.getLong(RETENTION_DATE_KEY));
+        long lastId = context.getLong(LAST_JOB_EXECUTION_ID_KEY, -1L);
+
+        List<Long> ids = jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(getQuery(SQL_SELECT_EXPIRED_JOB_EXECUTION_IDS));
+            ps.setMaxRows(batchSize);
+            ps.setFetchSize(batchSize);
+            ps.setTimestamp(1, new Timestamp(date.getTime()));
+            ps.setLong(2, lastId);
+            return ps;
+        }, (rs, rowNum) -> rs.getLong(1));
+
+        if (ids.isEmpty()) {
+            report(context);
+            return RepeatStatus.FINISHED;
+        }
+
+        NamedParameterJdbcTemplate namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", ids);
+        List<Long> instanceIds = namedJdbcTemplate.queryForList(getQuery(SQL_SELECT_JOB_INSTANCE_IDS), params,
+                Long.class);
+
+        Map<String, String> deletes = new LinkedHashMap<>();
+        deletes.put("STEP_EXECUTION_CONTEXT", SQL_DELETE_BATCH_STEP_EXECUTION_CONTEXT_BY_IDS);
+        deletes.put("STEP_EXECUTION", SQL_DELETE_BATCH_STEP_EXECUTION_BY_IDS);
+        deletes.put("JOB_EXECUTION_CONTEXT", SQL_DELETE_BATCH_JOB_EXECUTION_CONTEXT_BY_IDS);
+        deletes.put("JOB_EXECUTION_PARAMS", SQL_DELETE_BATCH_JOB_EXECUTION_PARAMS_BY_IDS);
+        deletes.put("JOB_EXECUTION", SQL_DELETE_BATCH_JOB_EXECUTION_BY_IDS);
+
+        if (archiveDirectory != null) {
+            if (archiver == null || !stepExecution.getId().equals(archiverStepExecutionId)) {
+                archiver = new BatchHistoryArchiver(namedJdbcTemplate, tablePrefix, archiveDirectory);
+                archiverStepExecutionId = stepExecution.getId();
+            }
+            int archived = archiver.archive(ids, instanceIds, context);
+            LOG.debug("Archived {} rows in {}", archived, archiveDirectory);
+        }
+
+        int totalCount = 0;
+        for (Map.Entry<String, String> delete : deletes.entrySet()) {
+            totalCount += delete(context, delete.getKey(), namedJdbcTemplate, delete.getValue(), params);
+        }
+        if (!instanceIds.isEmpty()) {
+            totalCount += delete(context, "JOB_INSTANCE", namedJdbcTemplate, SQL_DELETE_BATCH_JOB_INSTANCE_BY_IDS,
+                    new MapSqlParameterSource("ids", instanceIds));
+        }
+        contribution.incrementWriteCount(totalCount);
+
+        // committed with the deletions by the tasklet step
+        context.putLong(LAST_JOB_EXECUTION_ID_KEY, ids.get(ids.size() - 1));
+        LOG.info("Purged {} job executions up to JOB_EXECUTION_ID {} : {} rows", ids.size(),
+                ids.get(ids.size() - 1), totalCount);
+        return RepeatStatus.CONTINUABLE;
+    }
+
+    private int delete(ExecutionContext context, String table, NamedParameterJdbcTemplate namedJdbcTemplate,
+            String sql, MapSqlParameterSource params) {
+        long start = System.nanoTime();
+        int rowCount = namedJdbcTemplate.update(getQuery(sql), params);
+        long elapsed = System.nanoTime() - start;
+        String countKey = String.format(ROW_COUNT_KEY, table);
+        String elapsedKey = String.format(ELAPSED_KEY, table);
+        context.putLong(countKey, context.getLong(countKey, 0L) + rowCount);
+        context.putLong(elapsedKey, context.getLong(elapsedKey, 0L) + elapsed);
+        LOG.debug("Deleted {} rows from the {}{} table ({} rows/s)", rowCount, tablePrefix, table,
+                rowsPerSecond(rowCount, elapsed));
+        return rowCount;
+    }
+
+    private void report(ExecutionContext context) {
+        for (String table : TABLES) {
+            long rowCount = context.getLong(String.format(ROW_COUNT_KEY, table), 0L);
+            long elapsed = context.getLong(String.format(ELAPSED_KEY, table), 0L);
+            LOG.info("Deleted rows number from the {}{} table: {} ({} rows/s)", tablePrefix, table, rowCount,
+                    rowsPerSecond(rowCount, elapsed));
+        }
+    }
+
+    private static long rowsPerSecond(long rowCount, long elapsedNanos) {
+        return elapsedNanos == 0 ? 0 : rowCount * 1_000_000_000L / elapsedNanos;
+    }
+
     protected String getQuery(String base) {
         return StringUtils.replace(base, "%PREFIX%", tablePrefix);
     }
@@ -110,6 +270,23 @@ public class RemoveSpringBatchHistoryTasklet implements Tasklet, InitializingBea
         this.historicRetentionMonth = historicRetentionMonth;
     }
 
+    /**
+     * @param batchSize number of job executions purged per transaction (0, the default, purges
+     *            everything in a single transaction)
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @param archiveDirectory directory where the purged rows are archived, by month, before being
+     *            deleted (batched purge only)
+     * @see BatchHistoryArchiver
+     */
+    public void setArchiveDirectory(File archiveDirectory) {
+        this.archiveDirectory = archiveDirectory;
+    }
+
     public void setJdbcTemplate(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
@@ -117,6 +294,7 @@ public class RemoveSpringBatchHistoryTasklet implements Tasklet, InitializingBea
     @Override
     public void afterPropertiesSet() throws Exception {
         Assert.notNull(jdbcTemplate, "The jdbcTemplate must not be null");
+        Assert.isTrue(archiveDirectory == null || batchSize > 0, "The archive mode needs a batch size");
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,114 @@
+package fr.training.springbatch.tools.validation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+/**
+ * {@link ItemWriter} of {@link ValidationResult}s : the valid items are written
+ * to the delegate, the invalid ones (with their error codes) to the reject
+ * writer, in the same chunk transaction.
+ *
+ * Both writers are opened, updated and closed with the step when they are
+ * {@link ItemStream}s. The write count of the step includes the rejected items
+ * (see {@link ValidationErrorCounter#REJECT_COUNT}). The results are counted,
+ * before being written, by the optional {@link ValidationErrorCounter}.
+ *
+ * @param <T> the item type
+ */
+public class RejectRoutingItemWriter<T> implements ItemStreamWriter<ValidationResult<T>>, InitializingBean {
+
+	private ItemWriter<? super T> delegate;
+
+	private ItemWriter<? super ValidationResult<T>> rejectWriter;
+
+	private ValidationErrorCounter errorCounter;
+
+	@Override
+	public void write(final List<? extends ValidationResult<T>> results) throws Exception {
+		final List<T> items = new ArrayList<T>(results.size());
+		final List<ValidationResult<T>> rejects = new ArrayList<ValidationResult<T>>();
+		for (final ValidationResult<T> result : results) {
+			if (errorCounter != null) {
+				errorCounter.count(result.getErrorCodes());
+			}
+			if (result.isValid()) {
+				items.add(result.getItem());
+			} else {
+				rejects.add(result);
+			}
+		}
+		if (!items.isEmpty()) {
+			delegate.write(items);
+		}
+		if (!rejects.isEmpty()) {
+			rejectWriter.write(rejects);
+		}
+	}
+
+	@Override
+	public void open(final ExecutionContext executionContext) throws ItemStreamException {
+		if (delegate instanceof ItemStream) {
+			((ItemStream) delegate).open(executionContext);
+		}
+		if (rejectWriter instanceof ItemStream) {
+			((ItemStream) rejectWriter).open(executionContext);
+		}
+	}
+
+	@Override
+	public void update(final ExecutionContext executionContext) throws ItemStreamException {
+		if (delegate instanceof ItemStream) {
+			((ItemStream) delegate).update(executionContext);
+		}
+		if (rejectWriter instanceof ItemStream) {
+			((ItemStream) rejectWriter).update(executionContext);
+		}
+	}
+
+	@Override
+	public void close() throws ItemStreamException {
+		if (delegate instanceof ItemStream) {
+			((ItemStream) delegate).close();
+		}
+		if (rejectWriter instanceof ItemStream) {
+			((ItemStream) rejectWriter).close();
+		}
+	}
+
+	/**
+	 * @param delegate the writer of the valid items
+	 */
+	public void setDelegate(final ItemWriter<? super T> delegate) {
+		this.delegate = delegate;
+	}
+
+	/**
+	 * @param rejectWriter the writer of the invalid items
+	 */
+	public void setRejectWriter(final ItemWriter<? super ValidationResult<T>> rejectWriter) {
+		this.rejectWriter = rejectWriter;
+	}
+
+	/**
+	 * @param errorCounter the counter of the validation results, registered as a
+	 *                     listener and a stream of the step
+	 */
+	public void setErrorCounter(final ValidationErrorCounter errorCounter) {
+		this.errorCounter = errorCounter;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(delegate, "The delegate must be set");
+		Assert.notNull(rejectWriter, "The rejectWriter must be set");
+	}
+
+}
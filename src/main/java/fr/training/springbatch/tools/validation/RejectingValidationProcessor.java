@@ -0,0 +1,74 @@
+package fr.training.springbatch.tools.validation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.validator.ValidatingItemProcessor;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.Errors;
+import org.springframework.validation.ObjectError;
+import org.springframework.validation.Validator;
+
+/**
+ * {@link ItemProcessor} validating each item with a Spring {@link Validator}
+ * and returning it with the codes of the broken rules, instead of throwing an
+ * exception as the {@link ValidatingItemProcessor} : the invalid items are
+ * routed to a reject output by a {@link RejectRoutingItemWriter}.
+ *
+ * With {@link ValidationRules}, the items are checked against the bitmask of
+ * the compiled rules, and the error codes are built for the rejects only.
+ *
+ * The processor is stateless and thread-safe (as long as the validator is),
+ * so it can be run by the workers of an AsyncItemProcessor. The results are
+ * counted when written (see {@link RejectRoutingItemWriter}), so that a chunk
+ * rolled back is not counted.
+ *
+ * @param <T> the item type
+ */
+public class RejectingValidationProcessor<T> implements ItemProcessor<T, ValidationResult<T>>, InitializingBean {
+
+	private Validator validator;
+
+	private ValidationRules<T> rules;
+
+	@Override
+	public ValidationResult<T> process(final T item) throws Exception {
+		if (rules != null) {
+			final long violations = rules.check(item);
+			final List<String> errorCodes = violations == 0L ? Collections.<String>emptyList()
+					: rules.getErrorCodes(violations);
+			return new ValidationResult<T>(item, errorCodes);
+		}
+
+		final Errors errors = new BeanPropertyBindingResult(item, "item");
+		validator.validate(item, errors);
+
+		List<String> errorCodes = Collections.emptyList();
+		if (errors.hasErrors()) {
+			errorCodes = new ArrayList<String>(errors.getErrorCount());
+			for (final ObjectError error : errors.getAllErrors()) {
+				errorCodes.add(error.getCode());
+			}
+		}
+		return new ValidationResult<T>(item, errorCodes);
+	}
+
+	/**
+	 * @param validator the validator of the items
+	 */
+	@SuppressWarnings("unchecked")
+	public void setValidator(final Validator validator) {
+		this.validator = validator;
+		rules = validator instanceof ValidationRules ? (ValidationRules<T>) validator : null;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(validator, "The validator must be set");
+	}
+
+}
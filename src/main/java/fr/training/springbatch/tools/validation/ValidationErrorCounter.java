@@ -0,0 +1,208 @@
+package fr.training.springbatch.tools.validation;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.validator.ValidationException;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+/**
+ * Validation counts of a step, and error rate threshold.
+ *
+ * The validation results are counted when they are written (by a
+ * {@link RejectRoutingItemWriter}), in the counts of the current chunk : they
+ * are added to the counts of the step once the chunk is committed, and dropped
+ * when it is rolled back. The counts of the step are saved in the step
+ * execution context with each chunk (the counter is an {@link ItemStream}), so
+ * a restarted step goes on with them. At the end of the step, the rejects are
+ * reported by error code (in the log and the step execution context).
+ *
+ * The step is aborted as soon as the rate of rejected items exceeds
+ * {@link #setMaxErrorRate(double)}, once {@link #setMinItemCount(long)} items
+ * have been validated (a few rejects at the beginning of a file are not
+ * enough to give up).
+ *
+ * The counts are plain longs rather than striped counters ({@code LongAdder}) :
+ * they are only updated by the thread writing the chunk, the validation workers
+ * do not count.
+ */
+public class ValidationErrorCounter implements ItemStream, ChunkListener, StepExecutionListener {
+
+	private static final Logger logger = LoggerFactory.getLogger(ValidationErrorCounter.class);
+
+	/** Key of the number of rejected items in the step execution context */
+	public static final String REJECT_COUNT = "rejectCount";
+
+	/** Key of the number of validated items in the step execution context */
+	public static final String ITEM_COUNT = "validatedCount";
+
+	/** Prefix of the rejected items count by error code in the context */
+	private static final String ERROR_COUNT_PREFIX = "rejectCount.";
+
+	private static final long DEFAULT_MIN_ITEM_COUNT = 100L;
+
+	private final Counts step = new Counts();
+
+	private final Counts chunk = new Counts();
+
+	private double maxErrorRate = 1.0;
+
+	private long minItemCount = DEFAULT_MIN_ITEM_COUNT;
+
+	/** Validation counts of the step or of a chunk */
+	private static class Counts {
+
+		private long itemCount;
+
+		private long rejectCount;
+
+		private final Map<String, Long> errorCounts = new TreeMap<String, Long>();
+
+		void add(final Counts counts) {
+			itemCount += counts.itemCount;
+			rejectCount += counts.rejectCount;
+			counts.errorCounts.forEach((code, count) -> errorCounts.merge(code, count, Long::sum));
+		}
+
+		void clear() {
+			itemCount = 0;
+			rejectCount = 0;
+			errorCounts.clear();
+		}
+	}
+
+	/**
+	 * Count a validated item of the current chunk.
+	 *
+	 * @param errorCodes the rules broken by the item, empty if valid
+	 * @throws ValidationException if the error rate exceeds the threshold
+	 */
+	public void count(final List<String> errorCodes) {
+		chunk.itemCount++;
+		if (errorCodes.isEmpty()) {
+			return;
+		}
+		chunk.rejectCount++;
+		for (final String errorCode : errorCodes) {
+			chunk.errorCounts.merge(errorCode, 1L, Long::sum);
+		}
+		if (maxErrorRate < 1.0) {
+			final long items = getItemCount();
+			if (items >= minItemCount && getRejectCount() > maxErrorRate * items) {
+				throw new ValidationException("Error rate over " + maxErrorRate + " : " + this);
+			}
+		}
+	}
+
+	/**
+	 * @return the rejected items count by error code, current chunk included
+	 */
+	public Map<String, Long> getErrorCounts() {
+		final Counts counts = new Counts();
+		counts.add(step);
+		counts.add(chunk);
+		return counts.errorCounts;
+	}
+
+	public long getRejectCount() {
+		return step.rejectCount + chunk.rejectCount;
+	}
+
+	public long getItemCount() {
+		return step.itemCount + chunk.itemCount;
+	}
+
+	@Override
+	public void open(final ExecutionContext executionContext) throws ItemStreamException {
+		step.clear();
+		chunk.clear();
+		step.itemCount = executionContext.getLong(ITEM_COUNT, 0L);
+		step.rejectCount = executionContext.getLong(REJECT_COUNT, 0L);
+		for (final Map.Entry<String, Object> entry : executionContext.entrySet()) {
+			if (entry.getKey().startsWith(ERROR_COUNT_PREFIX)) {
+				step.errorCounts.put(entry.getKey().substring(ERROR_COUNT_PREFIX.length()), (Long) entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Save the counts with the chunk being committed.
+	 */
+	@Override
+	public void update(final ExecutionContext executionContext) throws ItemStreamException {
+		executionContext.putLong(ITEM_COUNT, getItemCount());
+		executionContext.putLong(REJECT_COUNT, getRejectCount());
+		getErrorCounts().forEach((code, count) -> executionContext.putLong(ERROR_COUNT_PREFIX + code, count));
+	}
+
+	@Override
+	public void close() throws ItemStreamException {
+		// nothing to release
+	}
+
+	@Override
+	public void beforeChunk(final ChunkContext context) {
+		chunk.clear();
+	}
+
+	@Override
+	public void afterChunk(final ChunkContext context) {
+		step.add(chunk);
+		chunk.clear();
+	}
+
+	@Override
+	public void afterChunkError(final ChunkContext context) {
+		chunk.clear();
+	}
+
+	@Override
+	public void beforeStep(final StepExecution stepExecution) {
+		// counts restored by open
+	}
+
+	@Nullable
+	@Override
+	public ExitStatus afterStep(final StepExecution stepExecution) {
+		update(stepExecution.getExecutionContext());
+		if (getRejectCount() > 0) {
+			logger.warn("{} : {}", stepExecution.getStepName(), this);
+		}
+		return null;
+	}
+
+	/**
+	 * @param maxErrorRate the rate of rejected items (0 to 1) over which the
+	 *                     step is aborted (default 1, never)
+	 */
+	public void setMaxErrorRate(final double maxErrorRate) {
+		Assert.isTrue(maxErrorRate >= 0 && maxErrorRate <= 1, "maxErrorRate must be between 0 and 1");
+		this.maxErrorRate = maxErrorRate;
+	}
+
+	/**
+	 * @param minItemCount the number of items to validate before checking the
+	 *                     error rate (default 100)
+	 */
+	public void setMinItemCount(final long minItemCount) {
+		this.minItemCount = minItemCount;
+	}
+
+	@Override
+	public String toString() {
+		return getRejectCount() + " rejected of " + getItemCount() + " items " + getErrorCounts();
+	}
+
+}
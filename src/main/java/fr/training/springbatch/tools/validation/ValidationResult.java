@@ -0,0 +1,39 @@
+package fr.training.springbatch.tools.validation;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An item and the codes of the validation rules it breaks (none when valid).
+ *
+ * @param <T> the item type
+ */
+public class ValidationResult<T> {
+
+	private final T item;
+
+	private final List<String> errorCodes;
+
+	public ValidationResult(final T item, final List<String> errorCodes) {
+		this.item = item;
+		this.errorCodes = errorCodes == null ? Collections.<String>emptyList() : errorCodes;
+	}
+
+	public T getItem() {
+		return item;
+	}
+
+	public List<String> getErrorCodes() {
+		return errorCodes;
+	}
+
+	public boolean isValid() {
+		return errorCodes.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "ValidationResult [item=" + item + ", errorCodes=" + errorCodes + "]";
+	}
+
+}
@@ -0,0 +1,138 @@
+package fr.training.springbatch.tools.validation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.validation.Errors;
+import org.springframework.validation.Validator;
+
+/**
+ * Validation rules declared once and compiled into a flat array of predicates.
+ *
+ * Each rule is declared with the field and the error code to report, and a
+ * supplier of the predicate detecting a violation. The suppliers are called
+ * when the rules are compiled, at the start of each step (or on first use) :
+ * the constants a rule depends on, such as the current date, are captured
+ * there instead of being computed for every item.
+ *
+ * {@link #check(Object)} returns the violated rules as a bitmask (bit i for
+ * the i-th declared rule, 64 rules at most) without allocating anything ; the
+ * error codes and the Spring {@link Errors} are built from the mask for the
+ * rejected items only. The rules are also a plain Spring {@link Validator}.
+ *
+ * @param <T> the validated item type
+ */
+public class ValidationRules<T> implements Validator, StepExecutionListener {
+
+	private static final int MAX_RULES = Long.SIZE;
+
+	private final Class<T> type;
+
+	private final List<String> fields = new ArrayList<String>();
+
+	private final List<String> codes = new ArrayList<String>();
+
+	private final List<Supplier<Predicate<T>>> declarations = new ArrayList<Supplier<Predicate<T>>>();
+
+	private volatile Predicate<T>[] compiled;
+
+	public ValidationRules(final Class<T> type) {
+		this.type = type;
+	}
+
+	/**
+	 * Declare a rule.
+	 *
+	 * @param field     the field rejected by the rule
+	 * @param code      the error code of the rule
+	 * @param violation called once per compilation, returns the predicate
+	 *                  detecting the items breaking the rule
+	 * @return this, to declare the next rule
+	 */
+	public ValidationRules<T> rule(final String field, final String code,
+			final Supplier<Predicate<T>> violation) {
+		Assert.state(declarations.size() < MAX_RULES, "No more than " + MAX_RULES + " rules");
+		fields.add(field);
+		codes.add(code);
+		declarations.add(violation);
+		compiled = null;
+		return this;
+	}
+
+	/**
+	 * Compile the rules : the predicates are obtained from their declarations.
+	 */
+	public void compile() {
+		@SuppressWarnings("unchecked")
+		final Predicate<T>[] predicates = new Predicate[declarations.size()];
+		for (int i = 0; i < predicates.length; i++) {
+			predicates[i] = declarations.get(i).get();
+		}
+		compiled = predicates;
+	}
+
+	/**
+	 * @return the bitmask of the rules broken by the item, 0 if it is valid
+	 */
+	public long check(final T item) {
+		Predicate<T>[] predicates = compiled;
+		if (predicates == null) {
+			compile();
+			predicates = compiled;
+		}
+		long violations = 0L;
+		for (int i = 0; i < predicates.length; i++) {
+			if (predicates[i].test(item)) {
+				violations |= 1L << i;
+			}
+		}
+		return violations;
+	}
+
+	/**
+	 * @return the error codes of the rules of the mask, in declaration order
+	 */
+	public List<String> getErrorCodes(final long violations) {
+		final List<String> errorCodes = new ArrayList<String>(Long.bitCount(violations));
+		for (int i = 0; i < codes.size(); i++) {
+			if ((violations & 1L << i) != 0) {
+				errorCodes.add(codes.get(i));
+			}
+		}
+		return errorCodes;
+	}
+
+	@Override
+	public boolean supports(final Class<?> clazz) {
+		return type.isAssignableFrom(clazz);
+	}
+
+	@Override
+	public void validate(final Object target, final Errors errors) {
+		final long violations = check(type.cast(target));
+		for (int i = 0; violations != 0 && i < codes.size(); i++) {
+			if ((violations & 1L << i) != 0) {
+				errors.rejectValue(fields.get(i), codes.get(i));
+			}
+		}
+	}
+
+	@Override
+	public void beforeStep(final StepExecution stepExecution) {
+		compile();
+	}
+
+	@Nullable
+	@Override
+	public ExitStatus afterStep(final StepExecution stepExecution) {
+		return null;
+	}
+
+}
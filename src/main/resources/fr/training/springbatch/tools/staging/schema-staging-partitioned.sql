@@ -0,0 +1,16 @@
+-- Partitioned staging table (PostgreSQL 11+, application.cleanup-step.partitioned: true) :
+-- one partition per job, created by the staging step and dropped by the cleanup step
+
+CREATE SEQUENCE IF NOT EXISTS batch_staging_seq;
+
+CREATE TABLE IF NOT EXISTS batch_staging
+  (
+	id BIGINT  NOT NULL,
+	job_id BIGINT NOT NULL,
+	value BYTEA NOT NULL,
+	processed CHAR(1) NOT NULL,
+	PRIMARY KEY (id, job_id)
+  ) PARTITION BY LIST (job_id);
+
+-- inherited by each partition
+CREATE INDEX IF NOT EXISTS batch_staging_job_idx ON batch_staging (job_id, processed, id);
@@ -0,0 +1,14 @@
+-- Staging table of the process indicator pattern (see StagingSchemaInitializer)
+
+CREATE SEQUENCE IF NOT EXISTS batch_staging_seq;
+
+CREATE TABLE IF NOT EXISTS batch_staging
+  (
+	id BIGINT  NOT NULL PRIMARY KEY ,
+	job_id BIGINT NOT NULL,
+	value BYTEA NOT NULL,
+	processed CHAR(1) NOT NULL
+  );
+
+-- keys of a job still to be processed, in order, without reading the table
+CREATE INDEX IF NOT EXISTS batch_staging_job_idx ON batch_staging (job_id, processed, id);
@@ -18,22 +18,15 @@ DROP TABLE IF EXISTS transaction;
 
 CREATE TABLE transaction
   (
+     id               BIGSERIAL NOT NULL,
      customer_number  VARCHAR(3) NOT NULL,
      number           VARCHAR(8) NOT NULL,
      amount           numeric,
-     transaction_date DATE
+     transaction_date DATE,
+     PRIMARY KEY (id)
   );
 
-DROP SEQUENCE IF EXISTS batch_staging_seq ;
-
-CREATE SEQUENCE batch_staging_seq;
-
-DROP TABLE  IF EXISTS batch_staging ;
-
-CREATE TABLE batch_staging
-  (
-	id BIGINT  NOT NULL PRIMARY KEY ,
-	job_id BIGINT NOT NULL,
-	value BYTEA NOT NULL,
-	processed CHAR(1) NOT NULL
-  );
+-- covering index of the readers sorted by customer : the rows are streamed in
+-- index order, without sort nor table access (rebuilt after the bulk loads by
+-- AbstractJobConfiguration.transactionIndexListener : keep both in sync)
+CREATE INDEX transaction_customer_idx ON transaction (customer_number, number, id, transaction_date, amount);
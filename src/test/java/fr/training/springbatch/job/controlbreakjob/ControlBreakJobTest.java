@@ -2,6 +2,15 @@ package fr.training.springbatch.job.controlbreakjob;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.zip.GZIPOutputStream;
+
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.batch.core.BatchStatus;
@@ -16,8 +25,10 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.StreamUtils;
 
 import fr.training.springbatch.job.BatchTestConfiguration;
+import fr.training.springbatch.tools.compress.CompressedResource;
 
 @ActiveProfiles("test")
 @RunWith(SpringRunner.class)
@@ -30,6 +41,10 @@ public class ControlBreakJobTest {
 
 	private static final String TRANSACTION_FILE = "src/main/resources/csv/transaction.csv";
 
+	private static final String COMPRESSED_OUTPUT_FILE = "target/output/outputfile.csv.gz";
+
+	private static final String COMPRESSED_TRANSACTION_FILE = "target/output/transaction.csv.gz";
+
 	private static final String EXPECTED_FILE = "src/test/resources/datas/transaction-sum-expected.csv";
 
 	@Autowired
@@ -52,4 +67,28 @@ public class ControlBreakJobTest {
 				new FileSystemResource(OUTPUT_FILE));
 	}
 
+	@Test
+	public void controlBreakStep_should_read_and_write_gzip_files() throws Exception {
+		// Given
+		final File compressedTransactionFile = new File(COMPRESSED_TRANSACTION_FILE);
+		compressedTransactionFile.getParentFile().mkdirs();
+		try (OutputStream out = new GZIPOutputStream(new FileOutputStream(compressedTransactionFile))) {
+			Files.copy(Paths.get(TRANSACTION_FILE), out);
+		}
+		final JobParameters jobParameters = new JobParametersBuilder(testUtils.getUniqueJobParameters()) //
+				.addString("transaction-file", COMPRESSED_TRANSACTION_FILE) //
+				.addString("output-file", COMPRESSED_OUTPUT_FILE) //
+				.toJobParameters();
+		// When
+		final JobExecution jobExecution = testUtils.launchStep("controlbreak-step", jobParameters);
+
+		// Then
+		assertThat(jobExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+
+		try (InputStream in = CompressedResource.forPath(COMPRESSED_OUTPUT_FILE).getInputStream()) {
+			assertThat(StreamUtils.copyToString(in, StandardCharsets.UTF_8))
+					.isEqualTo(new String(Files.readAllBytes(Paths.get(EXPECTED_FILE)), StandardCharsets.UTF_8));
+		}
+	}
+
 }
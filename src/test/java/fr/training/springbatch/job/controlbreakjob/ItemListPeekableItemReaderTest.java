@@ -0,0 +1,125 @@
+package fr.training.springbatch.job.controlbreakjob;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.file.mapping.PassThroughLineMapper;
+import org.springframework.core.io.ByteArrayResource;
+
+public class ItemListPeekableItemReaderTest {
+
+	/** Groups of 1 to 5 lines : the key is the first letter */
+	private static final String LINES = "a1\na2\nb1\nc1\nc2\nc3\nc4\nc5\nd1\ne1\ne2\nf1\nf2\nf3\ng1\nh1\nh2\n";
+
+	private static final int BUFFER_SIZE = 3;
+
+	/** Number of lines read by the delegate */
+	private int delegateReads;
+
+	private ItemListPeekableItemReader<String> reader() {
+		// counts the lines read (not the lines skipped by the restart)
+		final FlatFileItemReader<String> counting = new FlatFileItemReader<String>() {
+
+			@Override
+			protected String doRead() throws Exception {
+				final String line = super.doRead();
+				if (line != null) {
+					delegateReads++;
+				}
+				return line;
+			}
+		};
+		counting.setName("lines");
+		counting.setResource(new ByteArrayResource(LINES.getBytes()));
+		counting.setLineMapper(new PassThroughLineMapper());
+
+		final ItemListPeekableItemReader<String> reader = new ItemListPeekableItemReader<String>();
+		reader.setDelegate(counting);
+		reader.setBreakKeyStrategy((item1, item2) -> item1.charAt(0) == item2.charAt(0));
+		reader.setBufferSize(BUFFER_SIZE);
+		return reader;
+	}
+
+	private static List<List<String>> readAll(final ItemListPeekableItemReader<String> reader) throws Exception {
+		final List<List<String>> groups = new ArrayList<List<String>>();
+		List<String> group;
+		while ((group = reader.read()) != null) {
+			groups.add(new ArrayList<String>(group));
+		}
+		return groups;
+	}
+
+	@Test
+	public void read_should_group_the_lines_by_key() throws Exception {
+		final ItemListPeekableItemReader<String> reader = reader();
+		reader.open(new ExecutionContext());
+
+		final List<List<String>> groups = readAll(reader);
+		reader.close();
+
+		assertThat(groups).hasSize(8);
+		assertThat(groups.get(2)).containsExactly("c1", "c2", "c3", "c4", "c5");
+		assertThat(groups.get(7)).containsExactly("h1", "h2");
+	}
+
+	@Test
+	public void read_should_extract_the_key_of_each_line_once() throws Exception {
+		// Given
+		final AtomicInteger extractions = new AtomicInteger();
+		final ItemListPeekableItemReader<String> reader = reader();
+		reader.setBreakKeyStrategy(KeyedBreakStrategy.by(item -> {
+			extractions.incrementAndGet();
+			return item.charAt(0);
+		}));
+		reader.open(new ExecutionContext());
+
+		// When
+		final List<List<String>> groups = readAll(reader);
+		reader.close();
+
+		// Then
+		assertThat(groups).hasSize(8);
+		assertThat(groups.get(2)).containsExactly("c1", "c2", "c3", "c4", "c5");
+		assertThat(extractions.get()).isEqualTo(delegateReads);
+	}
+
+	@Test
+	public void open_should_resume_from_the_delegate_state_after_each_group() throws Exception {
+		final ItemListPeekableItemReader<String> expectedReader = reader();
+		expectedReader.open(new ExecutionContext());
+		final List<List<String>> expected = readAll(expectedReader);
+		expectedReader.close();
+
+		for (int groupCount = 1; groupCount < expected.size(); groupCount++) {
+			// Given : a failure after some groups
+			final ExecutionContext executionContext = new ExecutionContext();
+			final ItemListPeekableItemReader<String> failed = reader();
+			failed.open(executionContext);
+			for (int i = 0; i < groupCount; i++) {
+				failed.read();
+			}
+			failed.update(executionContext);
+			failed.close();
+
+			// When
+			delegateReads = 0;
+			final ItemListPeekableItemReader<String> restarted = reader();
+			restarted.open(executionContext);
+			final List<List<String>> groups = readAll(restarted);
+			restarted.close();
+
+			// Then : the next groups, the delegate resuming less than a block and a
+			// group before
+			assertThat(groups).isEqualTo(expected.subList(groupCount, expected.size()));
+			final int remaining = groups.stream().mapToInt(List::size).sum();
+			assertThat(delegateReads - remaining).isLessThan(BUFFER_SIZE + 5);
+		}
+	}
+
+}
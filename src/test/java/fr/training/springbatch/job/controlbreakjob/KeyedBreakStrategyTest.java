@@ -0,0 +1,62 @@
+package fr.training.springbatch.job.controlbreakjob;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class KeyedBreakStrategyTest {
+
+	/** Mutable item, as reused by some readers */
+	private static final class Item {
+
+		private String customer;
+
+		private String month;
+
+		Item set(final String customer, final String month) {
+			this.customer = customer;
+			this.month = month;
+			return this;
+		}
+	}
+
+	private final KeyedBreakStrategy<Item, String> strategy = KeyedBreakStrategy.<Item, String>by(i -> i.customer)
+			.thenBy(i -> i.month);
+
+	@Test
+	public void breakLevel_should_compare_the_keys_of_each_level() {
+		assertThat(strategy.breakLevel(new Item().set("001", "01"), new Item().set("002", "01"))).isEqualTo(0);
+		assertThat(strategy.breakLevel(new Item().set("001", "01"), new Item().set("001", "02"))).isEqualTo(1);
+		assertThat(strategy.breakLevel(new Item().set("001", "01"), new Item().set(new String("001"), "01")))
+		.isEqualTo(2);
+		assertThat(strategy.atDepth(1).isSameGroup(new Item().set("001", "01"), new Item().set("001", "02")))
+		.isTrue();
+	}
+
+	@Test
+	public void breakLevel_should_compare_the_extracted_keys_of_each_level() {
+		final KeyedBreakStrategy.Keys keys = strategy.keysOf(new Item().set("001", "01"));
+
+		assertThat(strategy.breakLevel(keys, strategy.keysOf(new Item().set("002", "01")))).isEqualTo(0);
+		assertThat(strategy.breakLevel(keys, strategy.keysOf(new Item().set("001", "02")))).isEqualTo(1);
+		assertThat(strategy.isSameGroup(keys, strategy.keysOf(new Item().set(new String("001"), "01")))).isTrue();
+		assertThat(strategy.isSameGroup(keys, strategy.keysOf(new Item().set("001", null)))).isFalse();
+		assertThat(strategy.atDepth(1).keysOf(new Item().set("001", "01")).get(0)).isEqualTo("001");
+	}
+
+	@Test
+	public void breakLevel_should_use_the_current_keys_of_a_reused_item() {
+		final Item previous = new Item().set("001", "01");
+		final Item next = new Item().set("001", "01");
+		assertThat(strategy.isSameGroup(previous, next)).isTrue();
+
+		// When : the reader reuses the instances
+		next.set("002", "01");
+
+		// Then
+		assertThat(strategy.breakLevel(previous, next)).isEqualTo(0);
+		previous.set("002", "01");
+		assertThat(strategy.isSameGroup(previous, next)).isTrue();
+	}
+
+}
@@ -0,0 +1,95 @@
+package fr.training.springbatch.job.controlbreakjob;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.item.UnexpectedInputException;
+import org.springframework.batch.test.AssertFile;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.batch.test.context.SpringBatchTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import fr.training.springbatch.job.BatchTestConfiguration;
+
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+@SpringBatchTest
+@SpringBootTest(classes = { BatchTestConfiguration.class,
+		MultiLevelControlBreakJobConfig.class }, properties = "spring.batch.job.enabled=false")
+public class MultiLevelControlBreakJobTest {
+
+	private static final String OUTPUT_FILE = "target/output/multilevel-outputfile.csv";
+
+	private static final String TRANSACTION_FILE = "src/main/resources/csv/transaction.csv";
+
+	private static final String EXPECTED_FILE = "src/test/resources/datas/transaction-subtotal-expected.csv";
+
+	/** Customer totals of the {@link ControlBreakJobConfig} */
+	private static final String EXPECTED_CUSTOMER_FILE = "src/test/resources/datas/transaction-sum-expected.csv";
+
+	private static final String UNSORTED_FILE = "target/output/multilevel-unsorted-transaction.csv";
+
+	@Autowired
+	private JobLauncherTestUtils testUtils;
+
+	@Test
+	public void multiLevelControlBreakJob_should_produce_one_subtotal_per_group() throws Exception {
+		// Given
+		final JobParameters jobParameters = new JobParametersBuilder(testUtils.getUniqueJobParameters()) //
+				.addString("transaction-file", TRANSACTION_FILE) //
+				.addString("output-file", OUTPUT_FILE) //
+				.toJobParameters();
+		// When
+		final JobExecution jobExecution = testUtils.launchJob(jobParameters);
+
+		// Then
+		assertThat(jobExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+
+		// the transactions are not sorted by date within a customer
+		AssertFile.assertFileEquals(new FileSystemResource(EXPECTED_FILE), new FileSystemResource(OUTPUT_FILE));
+
+		// customer level lines have an empty period
+		final List<String> customerSubtotals = Files.readAllLines(Paths.get(OUTPUT_FILE)).stream() //
+				.filter(line -> line.contains(";;")) //
+				.map(line -> line.replace(";;", ";")) //
+				.collect(Collectors.toList());
+		assertThat(customerSubtotals).isEqualTo(Files.readAllLines(Paths.get(EXPECTED_CUSTOMER_FILE)));
+	}
+
+	@Test
+	public void multiLevelControlBreakJob_should_reject_customers_out_of_order() throws Exception {
+		// Given : the second customer before the first one
+		final List<String> lines = Files.readAllLines(Paths.get(TRANSACTION_FILE));
+		Files.createDirectories(Paths.get(UNSORTED_FILE).getParent());
+		Files.write(Paths.get(UNSORTED_FILE), Arrays.asList(lines.get(0), lines.get(2), lines.get(1)));
+
+		final JobParameters jobParameters = new JobParametersBuilder(testUtils.getUniqueJobParameters()) //
+				.addString("transaction-file", UNSORTED_FILE) //
+				.addString("output-file", OUTPUT_FILE + ".unsorted") //
+				.toJobParameters();
+		// When
+		final JobExecution jobExecution = testUtils.launchJob(jobParameters);
+
+		// Then
+		assertThat(jobExecution.getStatus()).isEqualTo(BatchStatus.FAILED);
+		assertThat(jobExecution.getAllFailureExceptions()).hasSize(1);
+		assertThat(jobExecution.getAllFailureExceptions().get(0)).isInstanceOf(UnexpectedInputException.class)
+		.hasMessageContaining("001 after 002");
+	}
+
+}
@@ -0,0 +1,171 @@
+package fr.training.springbatch.job.controlbreakjob;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.file.mapping.PassThroughLineMapper;
+import org.springframework.core.io.ByteArrayResource;
+
+public class MultiLevelControlBreakReaderTest {
+
+	/** Two levels : the letter then the digit */
+	private static final String LINES = "a1\na1\na2\nb1\nb2\nb2\n";
+
+	/** The same lines, sorted on the letter only */
+	private static final String UNSORTED_LINES = "a2\na1\na1\nb2\nb1\nb2\n";
+
+	private static final int LINE_COUNT = 6;
+
+	private final AtomicInteger extractions = new AtomicInteger();
+
+	/** Number of lines read by the delegate */
+	private int delegateReads;
+
+	private FlatFileItemReader<String> lines(final String content) {
+		// counts the lines read (not the lines skipped by the restart)
+		final FlatFileItemReader<String> lines = new FlatFileItemReader<String>() {
+
+			@Override
+			protected String doRead() throws Exception {
+				final String line = super.doRead();
+				if (line != null) {
+					delegateReads++;
+				}
+				return line;
+			}
+		};
+		lines.setName("lines");
+		lines.setResource(new ByteArrayResource(content.getBytes()));
+		lines.setLineMapper(new PassThroughLineMapper());
+		return lines;
+	}
+
+	private MultiLevelControlBreakReader<String> reader() {
+		return reader(lines(LINES));
+	}
+
+	/**
+	 * Lines sorted on the letter only, grouped by letter then sorted by digit
+	 */
+	private MultiLevelControlBreakReader<String> sortingReader() {
+		final ItemListPeekableItemReader<String> groupReader = new ItemListPeekableItemReader<String>();
+		groupReader.setDelegate(lines(UNSORTED_LINES));
+		groupReader.setBreakKeyStrategy(KeyedBreakStrategy.by(item -> item.charAt(0)));
+		groupReader.setBufferSize(2);
+
+		final GroupSortingItemReader<String> sortedReader = new GroupSortingItemReader<String>();
+		sortedReader.setDelegate(groupReader);
+		sortedReader.setComparator(Comparator.naturalOrder());
+		return reader(sortedReader);
+	}
+
+	private MultiLevelControlBreakReader<String> reader(final ItemStreamReader<String> delegate) {
+		final MultiLevelControlBreakReader<String> reader = new MultiLevelControlBreakReader<String>();
+		reader.setDelegate(delegate);
+		reader.setBreakStrategy(KeyedBreakStrategy.<String, Character>by(item -> {
+			extractions.incrementAndGet();
+			return item.charAt(0);
+		}).thenBy(item -> {
+			extractions.incrementAndGet();
+			return item.charAt(1);
+		}));
+		return reader;
+	}
+
+	private static List<String> readAll(final MultiLevelControlBreakReader<String> reader) throws Exception {
+		final List<String> events = new ArrayList<String>();
+		ControlBreakEvent<String> event;
+		while ((event = reader.read()) != null) {
+			events.add(event.getType() + " " + event.getLevel() + " "
+					+ (event.getType() == ControlBreakEvent.Type.ITEM ? event.getItem() : event.getKey()));
+		}
+		return events;
+	}
+
+	@Test
+	public void read_should_emit_the_groups_of_every_level() throws Exception {
+		// Given
+		final MultiLevelControlBreakReader<String> reader = reader();
+		reader.open(new ExecutionContext());
+
+		// When
+		final List<String> events = readAll(reader);
+		reader.close();
+
+		// Then
+		assertThat(events).containsExactly("OPEN 0 a", "OPEN 1 1", "ITEM 2 a1", "ITEM 2 a1", "CLOSE 1 1",
+				"OPEN 1 2", "ITEM 2 a2", "CLOSE 1 2", "CLOSE 0 a", //
+				"OPEN 0 b", "OPEN 1 1", "ITEM 2 b1", "CLOSE 1 1", "OPEN 1 2", "ITEM 2 b2", "ITEM 2 b2", "CLOSE 1 2",
+				"CLOSE 0 b");
+	}
+
+	@Test
+	public void read_should_extract_the_keys_of_each_item_once() throws Exception {
+		// Given
+		final MultiLevelControlBreakReader<String> reader = reader();
+		reader.open(new ExecutionContext());
+
+		// When
+		readAll(reader);
+		reader.close();
+
+		// Then : one key per level and per item
+		assertThat(extractions.get()).isEqualTo(2 * LINE_COUNT);
+	}
+
+	@Test
+	public void open_should_resume_from_the_delegate_state_after_each_event() throws Exception {
+		assertRestartAfterEachEvent(this::reader, 2);
+	}
+
+	@Test
+	public void open_should_resume_the_sorted_groups_after_each_event() throws Exception {
+		// the groups of the last transition (2 groups of 3 lines), read again to
+		// be sorted
+		assertRestartAfterEachEvent(this::sortingReader, 2 * 3);
+	}
+
+	private void assertRestartAfterEachEvent(final Supplier<MultiLevelControlBreakReader<String>> readers,
+			final int maxReadAgain) throws Exception {
+		final MultiLevelControlBreakReader<String> expectedReader = readers.get();
+		expectedReader.open(new ExecutionContext());
+		final List<String> expected = readAll(expectedReader);
+		expectedReader.close();
+
+		for (int eventCount = 1; eventCount < expected.size(); eventCount++) {
+			// Given : a failure after some events
+			delegateReads = 0;
+			final ExecutionContext executionContext = new ExecutionContext();
+			final MultiLevelControlBreakReader<String> failed = readers.get();
+			failed.open(executionContext);
+			for (int i = 0; i < eventCount; i++) {
+				failed.read();
+			}
+			failed.update(executionContext);
+			failed.close();
+			final int failedReads = delegateReads;
+
+			// When
+			delegateReads = 0;
+			final MultiLevelControlBreakReader<String> restarted = readers.get();
+			restarted.open(executionContext);
+			final List<String> events = readAll(restarted);
+			restarted.close();
+
+			// Then : the next events, only the lines of the last transition (or
+			// of the group being sorted) being read again
+			assertThat(events).isEqualTo(expected.subList(eventCount, expected.size()));
+			assertThat(failedReads + delegateReads).isLessThanOrEqualTo(LINE_COUNT + maxReadAgain);
+		}
+	}
+
+}
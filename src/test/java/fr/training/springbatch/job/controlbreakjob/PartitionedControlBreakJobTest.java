@@ -0,0 +1,56 @@
+package fr.training.springbatch.job.controlbreakjob;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.test.AssertFile;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.batch.test.context.SpringBatchTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import fr.training.springbatch.job.BatchTestConfiguration;
+
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+@SpringBatchTest
+@SpringBootTest(classes = { BatchTestConfiguration.class,
+		PartitionedControlBreakJobConfig.class }, properties = "spring.batch.job.enabled=false")
+public class PartitionedControlBreakJobTest {
+
+	private static final String OUTPUT_FILE = "target/output/partitioned-outputfile.csv";
+
+	private static final String TRANSACTION_FILE = "src/main/resources/csv/transaction.csv";
+
+	private static final String EXPECTED_FILE = "src/test/resources/datas/transaction-sum-expected.csv";
+
+	@Autowired
+	private JobLauncherTestUtils testUtils;
+
+	@Test
+	public void partitionedControlBreakJob_should_produce_same_file_as_control_break() throws Exception {
+		// Given
+		final JobParameters jobParameters = new JobParametersBuilder(testUtils.getUniqueJobParameters()) //
+				.addString("transaction-file", TRANSACTION_FILE) //
+				.addString("output-file", OUTPUT_FILE) //
+				.toJobParameters();
+		// When
+		final JobExecution jobExec = testUtils.launchJob(jobParameters);
+
+		// Then
+		assertThat(jobExec.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+		assertThat(jobExec.getStepExecutions()).hasSize(4 + 2); // 4 partitions + manager + merge
+
+		AssertFile.assertFileEquals(new FileSystemResource(EXPECTED_FILE), //
+				new FileSystemResource(OUTPUT_FILE));
+	}
+
+}
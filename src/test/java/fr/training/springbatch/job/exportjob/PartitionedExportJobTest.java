@@ -0,0 +1,68 @@
+package fr.training.springbatch.job.exportjob;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.test.AssertFile;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.batch.test.context.SpringBatchTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import fr.training.springbatch.job.BatchTestConfiguration;
+
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+@SpringBatchTest
+@SpringBootTest(classes = { BatchTestConfiguration.class,
+		PartitionedExportJobConfig.class }, properties = "spring.batch.job.enabled=false")
+public class PartitionedExportJobTest {
+
+	private static final String EXPECTED_FILE = "src/test/resources/datas/export-expected.csv";
+	private static final String OUTPUT_DIR = "target/output";
+	private static final String OUTPUT_FILE = OUTPUT_DIR + "/partitioned-export-null.csv";
+
+	/** Part file left by a previous run with more partitions */
+	private static final String STALE_PART_FILE = OUTPUT_FILE + ".part-00009";
+
+	private static final int TRANSACTION_COUNT = 310;
+
+	@Autowired
+	private JobLauncherTestUtils testUtils;
+
+	@Test
+	public void partitionedExportJob_should_produce_same_file_as_simple_export() throws Exception {
+		// Given
+		Files.createDirectories(Paths.get(OUTPUT_DIR));
+		Files.write(Paths.get(STALE_PART_FILE), Collections.singletonList("999;99999999;2019-01-01;0.0"));
+		final JobParameters jobParameters = new JobParametersBuilder(testUtils.getUniqueJobParameters()) //
+				.addString("output-dir", OUTPUT_DIR) //
+				.toJobParameters();
+		// When
+		final JobExecution jobExec = testUtils.launchJob(jobParameters);
+
+		// Then
+		assertThat(jobExec.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+		assertThat(jobExec.getStepExecutions()).hasSize(4 + 2); // 4 partitions + manager + merge
+
+		AssertFile.assertFileEquals(new FileSystemResource(EXPECTED_FILE), //
+				new FileSystemResource(OUTPUT_FILE));
+		final StepExecution mergeStep = jobExec.getStepExecutions().stream()
+				.filter(step -> "merge-step".equals(step.getStepName())).findFirst().get();
+		assertThat(mergeStep.getWriteCount()).isEqualTo(TRANSACTION_COUNT);
+	}
+
+}
@@ -0,0 +1,78 @@
+package fr.training.springbatch.job.exportjob;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.database.JdbcPagingItemReader;
+import org.springframework.batch.test.context.SpringBatchTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import fr.training.springbatch.app.dto.Transaction;
+import fr.training.springbatch.job.BatchTestConfiguration;
+
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+@SpringBatchTest
+@SpringBootTest(classes = { BatchTestConfiguration.class, SimpleExportJobConfig.class }, properties = {
+		"spring.batch.job.enabled=false", "application.simple-export-step.pagesize=1" })
+public class SimpleExportReaderTest {
+
+	private static final String NUMBER = "NULLDATE";
+
+	@Autowired
+	private JdbcPagingItemReader<Transaction> simpleExportReader;
+
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	public void setDataSource(final DataSource dataSource) {
+		jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	@Test
+	public void simpleExportReader_should_read_the_transactions_without_date_one_per_page() throws Exception {
+		// Given : transactions sharing a customer and a number, with and without
+		// date
+		final String insert = "INSERT INTO TRANSACTION (CUSTOMER_NUMBER, NUMBER, TRANSACTION_DATE, AMOUNT) "
+				+ "VALUES ('001', '" + NUMBER + "', %s, 1.0)";
+		jdbcTemplate.update(String.format(insert, "NULL"));
+		jdbcTemplate.update(String.format(insert, "DATE '2019-09-12'"));
+		jdbcTemplate.update(String.format(insert, "NULL"));
+		try {
+			// When : a page of 1 row, each query starting after the key of the
+			// previous row
+			final List<Transaction> transactions = new ArrayList<Transaction>();
+			simpleExportReader.open(new ExecutionContext());
+			try {
+				Transaction transaction;
+				while ((transaction = simpleExportReader.read()) != null) {
+					transactions.add(transaction);
+				}
+			} finally {
+				simpleExportReader.close();
+			}
+
+			// Then
+			assertThat(transactions)
+					.hasSize(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM TRANSACTION", Integer.class));
+			assertThat(transactions).filteredOn(transaction -> NUMBER.equals(transaction.getNumber()))
+					.extracting(Transaction::getTransactionDate).containsExactly(null,
+							LocalDate.of(2019, 9, 12), null);
+		} finally {
+			jdbcTemplate.update("DELETE FROM TRANSACTION WHERE NUMBER = ?", NUMBER);
+		}
+	}
+
+}
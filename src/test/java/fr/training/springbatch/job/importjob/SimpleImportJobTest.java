@@ -2,6 +2,11 @@ package fr.training.springbatch.job.importjob;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import javax.sql.DataSource;
+
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.batch.core.BatchStatus;
@@ -12,8 +17,10 @@ import org.springframework.batch.test.JobLauncherTestUtils;
 import org.springframework.batch.test.context.SpringBatchTest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.jdbc.JdbcTestUtils;
 
 import fr.training.springbatch.job.BatchTestConfiguration;
 
@@ -27,15 +34,31 @@ public class SimpleImportJobTest {
 	@Autowired
 	private JobLauncherTestUtils testUtils;
 
+	@Autowired
+	private DataSource dataSource;
+
 	@Test
 	public void launch_SimpleImportJob_nominal_should_success() throws Exception {
 		// Given
 		final JobParameters jobParameters = new JobParametersBuilder(testUtils.getUniqueJobParameters())
-				.addString("input-file", "src/main/resources/csv/transaction.csv").toJobParameters();
+				.addString("input-file", "src/main/resources/csv/transaction.csv")
+				.addString("duplicate-file", "target/output/import-duplicate.csv").toJobParameters();
 		// When
 		final JobExecution jobExec = testUtils.launchJob(jobParameters);
 		// Then
 		assertThat(jobExec.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+		// the index dropped during the import has been built again
+		assertThat(new JdbcTemplate(dataSource).queryForObject(
+				"SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME = 'TRANSACTION_CUSTOMER_IDX'",
+				Integer.class)).isGreaterThan(0);
+		// the second occurrences of 4 transaction numbers are not imported
+		assertThat(JdbcTestUtils.countRowsInTable(new JdbcTemplate(dataSource), "TRANSACTION")).isEqualTo(306);
+		assertThat(Files.readAllLines(Paths.get("target/output/import-duplicate.csv"))).containsExactly(
+				"customer#;transaction#;date;amount", //
+				"107;17878402;2019-09-27;-59.77", //
+				"128;17878425;2019-01-26;54.38", //
+				"138;17878418;2019-11-20;24.23", //
+				"152;17878459;2019-01-26;-51.78");
 	}
 
 }
@@ -0,0 +1,62 @@
+package fr.training.springbatch.job.importjob;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import javax.sql.DataSource;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.batch.test.context.SpringBatchTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.jdbc.JdbcTestUtils;
+
+import fr.training.springbatch.job.BatchTestConfiguration;
+
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+@SpringBatchTest
+@SpringBootTest(classes = { BatchTestConfiguration.class,
+		SimpleImportJobConfig.class }, properties = { "spring.batch.job.enabled=false",
+				"application.simple-import-step.verify-duplicates=true",
+				"application.simple-import-step.rebuild-index=false" })
+public class VerifiedDuplicatesImportJobTest {
+
+	@Autowired
+	private JobLauncherTestUtils testUtils;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Test
+	public void launch_SimpleImportJob_with_verification_should_reject_the_true_duplicates() throws Exception {
+		// Given
+		final JobParameters jobParameters = new JobParametersBuilder(testUtils.getUniqueJobParameters())
+				.addString("input-file", "src/main/resources/csv/transaction.csv")
+				.addString("duplicate-file", "target/output/verified-import-duplicate.csv").toJobParameters();
+		// When
+		final JobExecution jobExec = testUtils.launchJob(jobParameters);
+		// Then
+		assertThat(jobExec.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+		// the suspected duplicates are checked in the table : the same 4 are rejected
+		assertThat(JdbcTestUtils.countRowsInTable(new JdbcTemplate(dataSource), "TRANSACTION")).isEqualTo(306);
+		assertThat(Files.readAllLines(Paths.get("target/output/verified-import-duplicate.csv"))).containsExactly(
+				"customer#;transaction#;date;amount", //
+				"107;17878402;2019-09-27;-59.77", //
+				"128;17878425;2019-01-26;54.38", //
+				"138;17878418;2019-11-20;24.23", //
+				"152;17878459;2019-01-26;-51.78");
+	}
+
+}
@@ -0,0 +1,82 @@
+package fr.training.springbatch.job.purgejob;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.batch.test.context.SpringBatchTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.FileSystemUtils;
+
+import fr.training.springbatch.job.BatchTestConfiguration;
+
+/**
+ * Purge without archive directory : the history is only deleted.
+ */
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+@SpringBatchTest
+@SpringBootTest(classes = { BatchTestConfiguration.class, PurgeHistoryJob.class }, properties = {
+		"spring.batch.job.enabled=false", "application.purgehistorystep.archive-directory=" })
+public class DeleteOnlyPurgeHistoryJobTest {
+
+	private static final int OLD_EXECUTIONS = 5;
+
+	private static final String ARCHIVE_DIRECTORY = "target/output/history";
+
+	@Autowired
+	private JobLauncherTestUtils testUtils;
+
+	@Autowired
+	private JobRepository jobRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	public void purgeHistoryJob_should_remove_old_executions_by_batch() throws Exception {
+		// Given : old executions of a job, with a step and execution contexts
+		FileSystemUtils.deleteRecursively(new File(ARCHIVE_DIRECTORY));
+		for (int i = 0; i < OLD_EXECUTIONS; i++) {
+			final JobExecution jobExecution = jobRepository.createJobExecution("old-job",
+					new JobParametersBuilder().addLong("index", (long) i).toJobParameters());
+			final StepExecution stepExecution = jobExecution.createStepExecution("old-step");
+			jobRepository.add(stepExecution);
+			jobRepository.updateExecutionContext(stepExecution);
+			jobRepository.updateExecutionContext(jobExecution);
+		}
+		jdbcTemplate.update("UPDATE BATCH_JOB_EXECUTION SET CREATE_TIME = ? WHERE JOB_INSTANCE_ID IN "
+				+ "(SELECT JOB_INSTANCE_ID FROM BATCH_JOB_INSTANCE WHERE JOB_NAME = 'old-job')",
+				Timestamp.valueOf(LocalDateTime.now().minusYears(1)));
+
+		// When
+		final JobExecution jobExecution = testUtils.launchJob(testUtils.getUniqueJobParameters());
+
+		// Then
+		assertThat(jobExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+		assertThat(jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM BATCH_JOB_INSTANCE WHERE JOB_NAME = 'old-job'", Integer.class)).isZero();
+		assertThat(jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM BATCH_STEP_EXECUTION WHERE STEP_NAME = 'old-step'", Integer.class)).isZero();
+		final StepExecution purgeStep = jobExecution.getStepExecutions().iterator().next();
+		// 5 executions by batch of 2 : 3 purge transactions and a last empty one
+		assertThat(purgeStep.getCommitCount()).isEqualTo(4);
+		assertThat(purgeStep.getExecutionContext().getLong("purge.JOB_EXECUTION.count")).isEqualTo(OLD_EXECUTIONS);
+		// and nothing is archived
+		assertThat(new File(ARCHIVE_DIRECTORY)).doesNotExist();
+	}
+}
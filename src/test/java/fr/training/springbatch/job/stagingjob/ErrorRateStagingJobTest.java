@@ -0,0 +1,50 @@
+package fr.training.springbatch.job.stagingjob;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.batch.test.context.SpringBatchTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import fr.training.springbatch.job.BatchTestConfiguration;
+
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+@SpringBatchTest
+@SpringBootTest(classes = { BatchTestConfiguration.class, StagingJobConfig.class }, properties = {
+		"spring.batch.job.enabled=false", "application.staging-step.max-error-rate=0.1",
+		"application.staging-step.min-item-count=10" })
+public class ErrorRateStagingJobTest {
+
+	@Autowired
+	private JobLauncherTestUtils jobLauncherTestUtils;
+
+	@Test
+	public void stagingjob_should_fail_when_the_error_rate_exceeds_the_threshold() throws Exception {
+		final JobParameters jobParameters = new JobParametersBuilder(jobLauncherTestUtils.getUniqueJobParameters())
+				.addString("input-file", "src/test/resources/datas/transaction-invalid.csv").toJobParameters();
+
+		final JobExecution execution = jobLauncherTestUtils.launchJob(jobParameters);
+
+		// 2 rejects out of 15 records : over 10%
+		assertThat(execution.getStatus()).isEqualTo(BatchStatus.FAILED);
+		final Map<String, StepExecution> steps = new HashMap<String, StepExecution>();
+		execution.getStepExecutions().forEach(step -> steps.put(step.getStepName(), step));
+		assertThat(steps.get("staging-step").getStatus()).isEqualTo(BatchStatus.FAILED);
+		assertThat(steps).doesNotContainKey("loading-step");
+	}
+
+}
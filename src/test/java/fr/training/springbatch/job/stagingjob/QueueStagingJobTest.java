@@ -0,0 +1,68 @@
+package fr.training.springbatch.job.stagingjob;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.batch.test.context.SpringBatchTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.jdbc.JdbcTestUtils;
+
+import fr.training.springbatch.job.BatchTestConfiguration;
+import fr.training.springbatch.tools.dedup.DuplicateFilterItemWriter;
+
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+@SpringBatchTest
+@SpringBootTest(classes = { BatchTestConfiguration.class, StagingJobConfig.class }, properties = {
+		"spring.batch.job.enabled=false", "application.loading-step.queue=true" })
+public class QueueStagingJobTest {
+
+	@Autowired
+	private JobLauncherTestUtils jobLauncherTestUtils;
+
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	public void setDataSource(final DataSource dataSource) {
+		jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	@Test
+	public void stagingjob_should_claim_each_staging_row_once() throws Exception {
+		final int before = JdbcTestUtils.countRowsInTable(jdbcTemplate, "BATCH_STAGING");
+
+		final JobParameters jobParameters = new JobParametersBuilder(jobLauncherTestUtils.getUniqueJobParameters())
+				.addString("input-file", "src/main/resources/csv/transaction.csv").toJobParameters();
+
+		final JobExecution execution = jobLauncherTestUtils.launchJob(jobParameters);
+
+		assertThat(execution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+		final Map<String, StepExecution> steps = new HashMap<String, StepExecution>();
+		execution.getStepExecutions().forEach(step -> steps.put(step.getStepName(), step));
+		final StepExecution stagingStep = steps.get("staging-step");
+		final int staged = stagingStep.getWriteCount()
+				- (int) stagingStep.getExecutionContext().getLong(DuplicateFilterItemWriter.DUPLICATE_COUNT);
+		assertThat(steps.get("loading-step").getReadCount()).isEqualTo(staged);
+		assertThat(steps.get("loading-step").getWriteCount()).isEqualTo(staged);
+		// no row left IN_PROGRESS : all of them have been marked as DONE
+		assertThat(steps.get("cleanup-step").getWriteCount()).isEqualTo(staged);
+		assertThat(JdbcTestUtils.countRowsInTable(jdbcTemplate, "BATCH_STAGING")).isEqualTo(before);
+	}
+
+}
@@ -2,6 +2,11 @@ package fr.training.springbatch.job.stagingjob;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
 import javax.sql.DataSource;
 
 import org.junit.Test;
@@ -10,6 +15,7 @@ import org.springframework.batch.core.BatchStatus;
 import org.springframework.batch.core.JobExecution;
 import org.springframework.batch.core.JobParameters;
 import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
 import org.springframework.batch.test.JobLauncherTestUtils;
 import org.springframework.batch.test.context.SpringBatchTest;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,6 +26,8 @@ import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.jdbc.JdbcTestUtils;
 
 import fr.training.springbatch.job.BatchTestConfiguration;
+import fr.training.springbatch.tools.dedup.DuplicateFilterItemWriter;
+import fr.training.springbatch.tools.validation.ValidationErrorCounter;
 
 @ActiveProfiles("test")
 @RunWith(SpringRunner.class)
@@ -47,9 +55,41 @@ public class StagingJobTest {
 
 		final JobExecution execution = jobLauncherTestUtils.launchJob(jobParameters);
 
-		final int after = JdbcTestUtils.countRowsInTable(jdbcTemplate, "BATCH_STAGING");
 		assertThat(execution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
-		assertThat(execution.getStepExecutions().iterator().next().getReadCount()).isEqualTo(after - before);
+		final Map<String, StepExecution> steps = new HashMap<String, StepExecution>();
+		execution.getStepExecutions().forEach(step -> steps.put(step.getStepName(), step));
+		// 4 transaction numbers appear twice in the file : the duplicates are rejected
+		assertThat(steps.get("staging-step").getExecutionContext().getLong(DuplicateFilterItemWriter.DUPLICATE_COUNT))
+				.isEqualTo(4);
+		final int staged = steps.get("staging-step").getWriteCount() - 4; // duplicates not staged
+		assertThat(steps.get("loading-step").getReadCount()).isEqualTo(staged);
+		// the staging rows of the job have been removed
+		assertThat(steps.get("cleanup-step").getWriteCount()).isEqualTo(staged);
+		assertThat(JdbcTestUtils.countRowsInTable(jdbcTemplate, "BATCH_STAGING")).isEqualTo(before);
+	}
+
+	@Test
+	public void stagingjob_should_write_invalid_records_to_the_reject_file() throws Exception {
+		final JobParameters jobParameters = new JobParametersBuilder(jobLauncherTestUtils.getUniqueJobParameters())
+				.addString("input-file", "src/test/resources/datas/transaction-invalid.csv")
+				.addString("reject-file", "target/output/staging-reject.csv").toJobParameters();
+
+		final JobExecution execution = jobLauncherTestUtils.launchJob(jobParameters);
+
+		assertThat(execution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+		final Map<String, StepExecution> steps = new HashMap<String, StepExecution>();
+		execution.getStepExecutions().forEach(step -> steps.put(step.getStepName(), step));
+		final StepExecution stagingStep = steps.get("staging-step");
+		assertThat(stagingStep.getExecutionContext().getLong(ValidationErrorCounter.REJECT_COUNT)).isEqualTo(3);
+		assertThat(stagingStep.getExecutionContext().getLong(DuplicateFilterItemWriter.DUPLICATE_COUNT)).isEqualTo(1);
+		// only the valid and unique records are staged then loaded
+		assertThat(steps.get("loading-step").getReadCount()).isEqualTo(17);
+		assertThat(Files.readAllLines(Paths.get("target/output/staging-reject.csv"))).containsExactly(
+				"customer#;transaction#;date;amount;errors", //
+				"014;17878426;2019-10-15;12.0;duplicate", //
+				"011;1787840;2019-05-19;-99.15;number_length", //
+				"012;17878422;2099-08-29;7.44;transactionDate_future", //
+				"013;178784460;2099-05-25;-7.36;number_length,transactionDate_future");
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,66 @@
+package fr.training.springbatch.job.stagingjob;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.batch.test.context.SpringBatchTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import fr.training.springbatch.job.BatchTestConfiguration;
+import fr.training.springbatch.tools.dedup.DuplicateFilterItemWriter;
+import fr.training.springbatch.tools.validation.ValidationErrorCounter;
+
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+@SpringBatchTest
+@SpringBootTest(classes = { BatchTestConfiguration.class, StagingJobConfig.class }, properties = {
+		"spring.batch.job.enabled=false", "application.staging-step.workers=0" })
+public class SynchronousStagingJobTest {
+
+	@Autowired
+	private JobLauncherTestUtils jobLauncherTestUtils;
+
+	@Autowired
+	private ConfigurableListableBeanFactory beanFactory;
+
+	@Test
+	public void stagingjob_without_workers_should_write_invalid_records_to_the_reject_file() throws Exception {
+		final JobParameters jobParameters = new JobParametersBuilder(jobLauncherTestUtils.getUniqueJobParameters())
+				.addString("input-file", "src/test/resources/datas/transaction-invalid.csv")
+				.addString("reject-file", "target/output/synchronous-staging-reject.csv").toJobParameters();
+
+		final JobExecution execution = jobLauncherTestUtils.launchJob(jobParameters);
+
+		assertThat(execution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+		assertThat(beanFactory.containsSingleton("validationTaskExecutor")).isFalse();
+		final Map<String, StepExecution> steps = new HashMap<String, StepExecution>();
+		execution.getStepExecutions().forEach(step -> steps.put(step.getStepName(), step));
+		final StepExecution stagingStep = steps.get("staging-step");
+		assertThat(stagingStep.getExecutionContext().getLong(ValidationErrorCounter.REJECT_COUNT)).isEqualTo(3);
+		assertThat(stagingStep.getExecutionContext().getLong(DuplicateFilterItemWriter.DUPLICATE_COUNT)).isEqualTo(1);
+		assertThat(steps.get("loading-step").getReadCount()).isEqualTo(17);
+		assertThat(Files.readAllLines(Paths.get("target/output/synchronous-staging-reject.csv"))).containsExactly(
+				"customer#;transaction#;date;amount;errors", //
+				"014;17878426;2019-10-15;12.0;duplicate", //
+				"011;1787840;2019-05-19;-99.15;number_length", //
+				"012;17878422;2099-08-29;7.44;transactionDate_future", //
+				"013;178784460;2099-05-25;-7.36;number_length,transactionDate_future");
+	}
+
+}
@@ -0,0 +1,75 @@
+package fr.training.springbatch.job.synchrojob;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.test.AssertFile;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.batch.test.context.SpringBatchTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import fr.training.springbatch.job.BatchTestConfiguration;
+
+@ActiveProfiles("test")
+@RunWith(SpringRunner.class)
+@SpringBatchTest
+@SpringBootTest(classes = { BatchTestConfiguration.class, File2FileSynchroJobConfig.class }, properties = {
+		"spring.batch.job.enabled=false", "application.file2filesynchro-step.compact-details=true" })
+public class CompactFile2FileSynchroJobTest {
+
+	private static final String OUTPUT_FILE = "target/output/compact-outputfile.csv";
+
+	private static final String DETAIL_FILE = "target/output/compact-detailfile.csv";
+
+	/** All the transactions of the file belong to a customer */
+	private static final int DETAIL_COUNT = 310;
+
+	private static final String CUSTOMER_FILE = "src/main/resources/csv/customer.csv";
+
+	private static final String TRANSACTION_FILE = "src/main/resources/csv/transaction.csv";
+
+	private static final String EXPECTED_FILE = "src/test/resources/datas/customer-expected.csv";
+
+	@Autowired
+	private JobLauncherTestUtils testUtils;
+
+	@Test
+	public void file2FileSynchroStep_with_compact_details_should_produce_expected_files() throws Exception {
+		// Given
+		final JobParameters jobParameters = new JobParametersBuilder(testUtils.getUniqueJobParameters()) //
+				.addString("customer-file", CUSTOMER_FILE) //
+				.addString("transaction-file", TRANSACTION_FILE) //
+				.addString("output-file", OUTPUT_FILE) //
+				.addString("detail-file", DETAIL_FILE) //
+				.toJobParameters();
+		// When
+		final JobExecution jobExecution = testUtils.launchStep("file2filesynchro-step", jobParameters);
+
+		// Then
+		assertThat(jobExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+
+		AssertFile.assertFileEquals(new FileSystemResource(EXPECTED_FILE), //
+				new FileSystemResource(OUTPUT_FILE));
+
+		final List<String> lines = Files.readAllLines(Paths.get(DETAIL_FILE));
+		assertThat(lines).startsWith("001,C,Susan,Aurand", //
+				"001,A,2897 Southside Lane,Los Angeles,90046,CA", //
+				"001,T,17878406,09/12/2019,97.4", //
+				"002,C,Regina,Vasquez");
+		assertThat(lines.stream().filter(line -> line.contains(",T,"))).hasSize(DETAIL_COUNT);
+	}
+
+}
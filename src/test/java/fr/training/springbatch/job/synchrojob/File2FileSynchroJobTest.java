@@ -2,6 +2,10 @@ package fr.training.springbatch.job.synchrojob;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.batch.core.BatchStatus;
@@ -28,6 +32,11 @@ public class File2FileSynchroJobTest {
 
 	private static final String OUTPUT_FILE = "target/output/outputfile.csv";
 
+	private static final String DETAIL_FILE = "target/output/detailfile.csv";
+
+	/** All the transactions of the file belong to a customer */
+	private static final int DETAIL_COUNT = 310;
+
 	private static final String CUSTOMER_FILE = "src/main/resources/csv/customer.csv";
 
 	private static final String TRANSACTION_FILE = "src/main/resources/csv/transaction.csv";
@@ -55,4 +64,26 @@ public class File2FileSynchroJobTest {
 				new FileSystemResource(OUTPUT_FILE));
 	}
 
+	@Test
+	public void file2FileSynchroStep_should_write_the_transactions_to_the_detail_file() throws Exception {
+		// Given
+		final JobParameters jobParameters = new JobParametersBuilder(testUtils.getUniqueJobParameters()) //
+				.addString("customer-file", CUSTOMER_FILE) //
+				.addString("transaction-file", TRANSACTION_FILE) //
+				.addString("output-file", OUTPUT_FILE) //
+				.addString("detail-file", DETAIL_FILE) //
+				.toJobParameters();
+		// When
+		final JobExecution jobExecution = testUtils.launchStep("file2filesynchro-step", jobParameters);
+
+		// Then
+		assertThat(jobExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+		final List<String> lines = Files.readAllLines(Paths.get(DETAIL_FILE));
+		assertThat(lines).startsWith("001,C,Susan,Aurand", //
+				"001,A,2897 Southside Lane,Los Angeles,90046,CA", //
+				"001,T,17878406,09/12/2019,97.4", //
+				"002,C,Regina,Vasquez");
+		assertThat(lines.stream().filter(line -> line.contains(",T,"))).hasSize(DETAIL_COUNT);
+	}
+
 }
@@ -2,39 +2,67 @@ package fr.training.springbatch.job.synchrojob;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.batch.core.BatchStatus;
 import org.springframework.batch.core.JobExecution;
 import org.springframework.batch.core.JobParameters;
 import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.database.JdbcPagingItemReader;
 import org.springframework.batch.test.AssertFile;
 import org.springframework.batch.test.JobLauncherTestUtils;
 import org.springframework.batch.test.context.SpringBatchTest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.io.FileSystemResource;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import fr.training.springbatch.app.dto.Transaction;
 import fr.training.springbatch.job.BatchTestConfiguration;
 
 @ActiveProfiles("test")
 @RunWith(SpringRunner.class)
 @SpringBatchTest
 @SpringBootTest(classes = { BatchTestConfiguration.class,
-		File2TableSynchroJobConfig.class }, properties = "spring.batch.job.enabled=false")
+		File2TableSynchroJobConfig.class }, properties = { "spring.batch.job.enabled=false",
+				"application.file2tablesynchro-step.pagesize=" + File2TableSynchroJobTest.PAGE_SIZE })
 public class File2TableSynchroJobTest {
 
+	static final int PAGE_SIZE = 2;
+
 	private static final String OUTPUT_FILE = "target/output/outputfile.csv";
 
 	private static final String CUSTOMER_FILE = "src/main/resources/csv/customer.csv";
 
+	private static final String CUSTOMER_SUBSET_FILE = "src/test/resources/datas/customer-subset.csv";
+
+	private static final String REJECT_FILE = "target/output/orphan-transactions.csv";
+
 	private static final String EXPECTED_FILE = "src/test/resources/datas/customer-expected.csv";
 
 	@Autowired
 	private JobLauncherTestUtils testUtils;
 
+	@Autowired
+	private JdbcPagingItemReader<Transaction> transactionReader;
+
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	public void setDataSource(final DataSource dataSource) {
+		jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
 	@Test
 	public void file2DBSynchroStep_should_produce_expected_file() throws Exception {
 		// Given
@@ -51,4 +79,79 @@ public class File2TableSynchroJobTest {
 		AssertFile.assertFileEquals(new FileSystemResource(EXPECTED_FILE), //
 				new FileSystemResource(OUTPUT_FILE));
 	}
+
+	@Test
+	public void file2DBSynchroStep_without_customer_file_should_be_pushed_down() throws Exception {
+		// Given
+		final JobParameters jobParameters = new JobParametersBuilder(testUtils.getUniqueJobParameters()) //
+				.addString("output-file", OUTPUT_FILE) //
+				.toJobParameters();
+		// When
+		final JobExecution jobExecution = testUtils.launchStep("file2tablesynchro-step", jobParameters);
+
+		// Then
+		assertThat(jobExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+
+		AssertFile.assertFileEquals(new FileSystemResource(EXPECTED_FILE), //
+				new FileSystemResource(OUTPUT_FILE));
+	}
+
+	@Test
+	public void file2DBSynchroStep_should_reject_orphan_transactions() throws Exception {
+		// Given : customers 011 to 020 and 031 to 200 are missing from the file
+		final JobParameters jobParameters = new JobParametersBuilder(testUtils.getUniqueJobParameters()) //
+				.addString("customer-file", CUSTOMER_SUBSET_FILE) //
+				.addString("output-file", OUTPUT_FILE) //
+				.addString("reject-file", REJECT_FILE) //
+				.toJobParameters();
+		// When
+		final JobExecution jobExecution = testUtils.launchStep("file2tablesynchro-step", jobParameters);
+
+		// Then
+		assertThat(jobExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+		assertThat(Files.lines(Paths.get(OUTPUT_FILE)).count()).isEqualTo(20);
+		final List<String> orphans = Files.readAllLines(Paths.get(REJECT_FILE));
+		assertThat(orphans).hasSize(287);
+		assertThat(orphans).allSatisfy(line -> {
+			final int customer = Integer.parseInt(line.substring(0, line.indexOf(';')));
+			assertThat(customer > 10 && customer < 21 || customer > 30).isTrue();
+		});
+	}
+
+	@Test
+	public void transactionReader_should_not_skip_rows_sharing_a_key_on_restart() throws Exception {
+		// Given : a copy of the last transaction of the first page (same customer
+		// and number), which is then the first transaction of the second page
+		jdbcTemplate.update("INSERT INTO TRANSACTION (CUSTOMER_NUMBER, NUMBER, TRANSACTION_DATE, AMOUNT) "
+				+ "SELECT CUSTOMER_NUMBER, NUMBER, TRANSACTION_DATE, AMOUNT FROM TRANSACTION "
+				+ "ORDER BY CUSTOMER_NUMBER, NUMBER, ID LIMIT 1 OFFSET " + (PAGE_SIZE - 1));
+		try {
+			// When : the reader stops after the first page and is restarted
+			final ExecutionContext executionContext = new ExecutionContext();
+			final List<String> transactions = read(executionContext, PAGE_SIZE);
+			transactions.addAll(read(executionContext, Integer.MAX_VALUE));
+
+			// Then
+			assertThat(transactions).hasSize(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM TRANSACTION", Integer.class));
+			assertThat(transactions.get(PAGE_SIZE)).isEqualTo(transactions.get(PAGE_SIZE - 1));
+		} finally {
+			jdbcTemplate.update("DELETE FROM TRANSACTION WHERE ID = (SELECT MAX(ID) FROM TRANSACTION)");
+		}
+	}
+
+	private List<String> read(final ExecutionContext executionContext, final int count) throws Exception {
+		final List<String> transactions = new ArrayList<String>();
+		transactionReader.open(executionContext);
+		try {
+			Transaction transaction;
+			while (transactions.size() < count && (transaction = transactionReader.read()) != null) {
+				transactions.add(transaction.toString());
+			}
+			transactionReader.update(executionContext);
+		} finally {
+			transactionReader.close();
+		}
+		return transactions;
+	}
+
 }
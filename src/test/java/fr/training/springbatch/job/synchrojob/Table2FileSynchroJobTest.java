@@ -52,4 +52,20 @@ public class Table2FileSynchroJobTest {
 				new FileSystemResource(OUTPUT_FILE));
 	}
 
+	@Test
+	public void db2FileSynchroStep_without_transaction_file_should_be_pushed_down() throws Exception {
+		// Given
+		final JobParameters jobParameters = new JobParametersBuilder(testUtils.getUniqueJobParameters()) //
+				.addString("output-file", OUTPUT_FILE) //
+				.toJobParameters();
+		// When
+		final JobExecution jobExecution = testUtils.launchStep("table2filesynchro-step", jobParameters);
+
+		// Then
+		assertThat(jobExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+
+		AssertFile.assertFileEquals(new FileSystemResource(EXPECTED_FILE), //
+				new FileSystemResource(OUTPUT_FILE));
+	}
+
 }
@@ -0,0 +1,96 @@
+package fr.training.springbatch.job.synchrojob.component;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.io.FileSystemResource;
+
+import fr.training.springbatch.app.dto.Customer;
+import fr.training.springbatch.app.dto.Transaction;
+import fr.training.springbatch.app.dto.TransactionGroup;
+
+public class MultiLineCustomerItemWriterTest {
+
+	private static final File OUTPUT_FILE = new File("target/output/multiline-customer-writer.csv");
+
+	private static String write(final MultiLineCustomerItemWriter writer, final Customer customer) throws Exception {
+		writer.open(new ExecutionContext());
+		try {
+			writer.write(Arrays.asList(customer));
+		} finally {
+			writer.close();
+		}
+		return new String(Files.readAllBytes(OUTPUT_FILE.toPath()), StandardCharsets.UTF_8);
+	}
+
+	private static MultiLineCustomerItemWriter writer() {
+		final MultiLineCustomerItemWriter writer = new MultiLineCustomerItemWriter();
+		writer.setResource(new FileSystemResource(OUTPUT_FILE));
+		writer.setLineSeparator("\n");
+		return writer;
+	}
+
+	private static Transaction transaction(final String number, final LocalDate date, final Double amount) {
+		final Transaction transaction = new Transaction();
+		transaction.setCustomerNumber("001");
+		transaction.setNumber(number);
+		transaction.setTransactionDate(date);
+		transaction.setAmount(amount);
+		return transaction;
+	}
+
+	@Test
+	public void write_should_encode_a_surrogate_pair_split_by_the_buffer() throws Exception {
+		// Given : a buffer of 8 chars, "001,C,a" followed by a surrogate pair
+		// split by the end of the buffer
+		final MultiLineCustomerItemWriter writer = writer();
+		writer.setBufferSize(8);
+		final Customer customer = new Customer("001", "a\uD83D\uDE00b", "Doe", "1 rue de Paris", "Paris", "IDF",
+				"75001");
+		customer.setTransactions(Arrays.asList(transaction("17878406", LocalDate.of(2019, 9, 12), 97.4)));
+
+		// When
+		final String content = write(writer, customer);
+
+		// Then
+		assertThat(content).isEqualTo( //
+				"001,C,a\uD83D\uDE00b,Doe\n" //
+				+ "001,A,1 rue de Paris,Paris,75001,IDF\n" //
+				+ "001,T,17878406,09/12/2019,97.4\n");
+	}
+
+	@Test
+	public void write_should_render_the_null_fields_of_a_group_as_those_of_a_list() throws Exception {
+		// Given : transactions with null fields, as a list and as a compact group
+		final List<Transaction> transactions = Arrays.asList( //
+				transaction("17878406", LocalDate.of(2019, 9, 12), 97.4), //
+				transaction(null, null, null), //
+				transaction("", LocalDate.of(2019, 9, 13), 0.0));
+		final Customer listCustomer = new Customer("001", "John", "Doe", "1 rue de Paris", "Paris", "IDF", "75001");
+		listCustomer.setTransactions(transactions);
+		final Customer groupCustomer = new Customer(listCustomer);
+		final TransactionGroup group = new TransactionGroup("001");
+		transactions.forEach(group::add);
+		groupCustomer.setTransactionGroup(group);
+
+		// When
+		final String listContent = write(writer(), listCustomer);
+		final String groupContent = write(writer(), groupCustomer);
+
+		// Then
+		assertThat(groupContent).isEqualTo(listContent).endsWith( //
+				"001,T,17878406,09/12/2019,97.4\n" //
+				+ "001,T,null,,\n" //
+				+ "001,T,,09/13/2019,0.0\n");
+		assertThat(group.getBalance()).isEqualTo(97.4);
+	}
+
+}
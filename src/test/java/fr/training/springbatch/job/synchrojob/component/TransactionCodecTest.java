@@ -0,0 +1,51 @@
+package fr.training.springbatch.job.synchrojob.component;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.time.LocalDate;
+
+import org.junit.Test;
+
+import fr.training.springbatch.app.dto.Transaction;
+
+public class TransactionCodecTest {
+
+	private final TransactionCodec codec = new TransactionCodec();
+
+	private Transaction roundTrip(final Transaction transaction) throws Exception {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		codec.write(transaction, new DataOutputStream(bytes));
+		return codec.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+	}
+
+	@Test
+	public void read_should_decode_the_written_transaction() throws Exception {
+		final Transaction transaction = new Transaction();
+		transaction.setCustomerNumber("001");
+		transaction.setNumber("17878406");
+		transaction.setTransactionDate(LocalDate.of(2019, 9, 12));
+		transaction.setAmount(97.4);
+
+		final Transaction decoded = roundTrip(transaction);
+
+		assertThat(decoded).isEqualToComparingFieldByField(transaction);
+	}
+
+	@Test
+	public void read_should_keep_the_null_fields() throws Exception {
+		final Transaction transaction = new Transaction();
+		transaction.setNumber("17878406");
+
+		final Transaction decoded = roundTrip(transaction);
+
+		assertThat(decoded.getCustomerNumber()).isNull();
+		assertThat(decoded.getNumber()).isEqualTo("17878406");
+		assertThat(decoded.getTransactionDate()).isNull();
+		assertThat(decoded.getAmount()).isNull();
+	}
+
+}
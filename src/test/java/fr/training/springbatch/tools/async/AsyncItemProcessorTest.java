@@ -0,0 +1,83 @@
+package fr.training.springbatch.tools.async;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+public class AsyncItemProcessorTest {
+
+	private static final int ITEM_COUNT = 8;
+
+	private ThreadPoolTaskExecutor workers;
+
+	private final List<Integer> written = new ArrayList<Integer>();
+
+	private final AsyncItemWriter<Integer> writer = new AsyncItemWriter<Integer>();
+
+	@Before
+	public void setUp() {
+		workers = AsyncStepSupport.workers(4, "test_worker");
+		workers.initialize();
+		writer.setDelegate(items -> written.addAll(items));
+	}
+
+	@After
+	public void tearDown() {
+		workers.shutdown();
+	}
+
+	private AsyncItemProcessor<Integer, Integer> processor() {
+		final AsyncItemProcessor<Integer, Integer> processor = new AsyncItemProcessor<Integer, Integer>();
+		processor.setTaskExecutor(workers);
+		processor.setDelegate(item -> {
+			// the first items are the slowest
+			Thread.sleep(10L * (ITEM_COUNT - item));
+			if (item == 5) {
+				throw new IllegalArgumentException("Invalid item " + item);
+			}
+			return item % 3 == 0 ? null : item * 10;
+		});
+		return processor;
+	}
+
+	private List<Future<Integer>> process(final AsyncItemProcessor<Integer, Integer> processor, final int from,
+			final int to) throws Exception {
+		final List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+		for (int item = from; item < to; item++) {
+			futures.add(processor.process(item));
+		}
+		return futures;
+	}
+
+	@Test(timeout = 5000)
+	public void write_should_keep_the_reading_order_and_filter_the_null_results() throws Exception {
+		// Given
+		final List<Future<Integer>> futures = process(processor(), 0, 5);
+
+		// When
+		writer.write(futures);
+
+		// Then : 0 and 3 are filtered
+		assertThat(written).containsExactly(10, 20, 40);
+	}
+
+	@Test(timeout = 5000)
+	public void write_should_rethrow_the_failure_of_the_processing() throws Exception {
+		// Given
+		final List<Future<Integer>> futures = process(processor(), 4, ITEM_COUNT);
+
+		// When / Then : nothing of the chunk is written
+		assertThatThrownBy(() -> writer.write(futures)).isInstanceOf(IllegalArgumentException.class)
+		.hasMessage("Invalid item 5");
+		assertThat(written).isEmpty();
+	}
+
+}
@@ -0,0 +1,142 @@
+package fr.training.springbatch.tools.compress;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.file.transform.PassThroughLineAggregator;
+import org.springframework.batch.support.transaction.ResourcelessTransactionManager;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StreamUtils;
+
+public class CompressedFlatFileItemWriterTest {
+
+	private static final File OUTPUT_FILE = new File("target/output/compressed-writer.csv.gz");
+
+	private final TransactionTemplate transactionTemplate = new TransactionTemplate(
+			new ResourcelessTransactionManager());
+
+	private static CompressedFlatFileItemWriter<String> writer(final boolean saveState) {
+		final CompressedFlatFileItemWriter<String> writer = new CompressedFlatFileItemWriterBuilder<String>() //
+				.name("writer") //
+				.resource(new FileSystemResource(OUTPUT_FILE)) //
+				.lineAggregator(new PassThroughLineAggregator<String>()) //
+				.headerCallback(header -> header.write("header")) //
+				.saveState(saveState) //
+				.build();
+		writer.setLineSeparator("\n");
+		// blocks of a few lines, compressed while the next ones are formatted
+		writer.setBlockSize(4);
+		return writer;
+	}
+
+	/**
+	 * Write a chunk and save the state of the writer in a transaction, as a
+	 * chunk oriented step does.
+	 */
+	private void writeChunk(final CompressedFlatFileItemWriter<String> writer, final ExecutionContext context,
+			final boolean rollback, final String... items) {
+		transactionTemplate.execute(status -> {
+			try {
+				writer.write(Arrays.asList(items));
+			} catch (final Exception e) {
+				throw new IllegalStateException(e.getMessage(), e);
+			}
+			writer.update(context);
+			if (rollback) {
+				status.setRollbackOnly();
+			}
+			return null;
+		});
+	}
+
+	private static List<String> readLines() throws IOException {
+		try (InputStream in = CompressionCodec.GZIP.decompress(new FileInputStream(OUTPUT_FILE))) {
+			return Arrays.asList(StreamUtils.copyToString(in, StandardCharsets.UTF_8).split("\n"));
+		}
+	}
+
+	@Test
+	public void write_should_truncate_a_rolled_back_chunk() throws Exception {
+		// Given
+		final CompressedFlatFileItemWriter<String> writer = writer(true);
+		final ExecutionContext context = new ExecutionContext();
+		writer.open(context);
+		writeChunk(writer, context, false, "a1", "a2", "a3");
+
+		// When
+		writeChunk(writer, context, true, "b1", "b2", "b3");
+		writeChunk(writer, context, false, "c1");
+		writer.close();
+
+		// Then
+		assertThat(readLines()).containsExactly("header", "a1", "a2", "a3", "c1");
+	}
+
+	@Test
+	public void open_should_truncate_the_file_to_the_restart_position() throws Exception {
+		// Given : a failed execution, whose state was last saved after the first
+		// chunk
+		final CompressedFlatFileItemWriter<String> writer = writer(true);
+		final ExecutionContext context = new ExecutionContext();
+		writer.open(context);
+		writeChunk(writer, context, false, "a1", "a2", "a3");
+		final ExecutionContext savedContext = new ExecutionContext(context);
+		writeChunk(writer, context, false, "b1", "b2");
+		writer.close();
+		final long failedSize = OUTPUT_FILE.length();
+
+		// When
+		final CompressedFlatFileItemWriter<String> restarted = writer(true);
+		restarted.open(savedContext);
+		assertThat(OUTPUT_FILE.length()).isLessThan(failedSize);
+		writeChunk(restarted, savedContext, false, "b1", "b2", "b3");
+		restarted.close();
+
+		// Then : the header is not written again
+		assertThat(readLines()).containsExactly("header", "a1", "a2", "a3", "b1", "b2", "b3");
+	}
+
+	@Test
+	public void write_should_compress_the_chunks_in_a_single_member_without_state() throws Exception {
+		// Given
+		final CompressedFlatFileItemWriter<String> writer = writer(false);
+		final ExecutionContext context = new ExecutionContext();
+		writer.open(context);
+
+		// When
+		writeChunk(writer, context, false, "a1", "a2", "a3");
+		writeChunk(writer, context, false, "b1", "b2", "b3");
+		writer.close();
+
+		// Then : the header member and the data member
+		assertThat(readLines()).containsExactly("header", "a1", "a2", "a3", "b1", "b2", "b3");
+		assertThat(context.isEmpty()).isTrue();
+		assertThat(countMembers(Files.readAllBytes(OUTPUT_FILE.toPath()))).isEqualTo(2);
+	}
+
+	/**
+	 * Count the GZIP members by their header magic (good enough for this
+	 * compressible data).
+	 */
+	private static int countMembers(final byte[] bytes) {
+		int count = 0;
+		for (int i = 0; i < bytes.length - 2; i++) {
+			if (bytes[i] == (byte) 0x1f && bytes[i + 1] == (byte) 0x8b && bytes[i + 2] == 8) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+}
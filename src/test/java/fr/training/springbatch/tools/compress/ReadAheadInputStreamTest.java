@@ -0,0 +1,87 @@
+package fr.training.springbatch.tools.compress;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+public class ReadAheadInputStreamTest {
+
+	private static final byte[] DATA = "0123456789abcdefghijklmnopqrstuvwxyz".getBytes();
+
+	/**
+	 * Source returning the data then failing with the given exception.
+	 */
+	private static InputStream failingSource(final RuntimeException runtimeFailure) {
+		return new InputStream() {
+
+			private final InputStream data = new ByteArrayInputStream(DATA);
+
+			@Override
+			public int read() throws IOException {
+				final int b = data.read();
+				if (b >= 0) {
+					return b;
+				}
+				if (runtimeFailure != null) {
+					throw runtimeFailure;
+				}
+				throw new IOException("Corrupted source");
+			}
+		};
+	}
+
+	private static byte[] readUntilFailure(final InputStream in, final ByteArrayOutputStream read) throws IOException {
+		int b;
+		while ((b = in.read()) >= 0) {
+			read.write(b);
+		}
+		return read.toByteArray();
+	}
+
+	@Test(timeout = 5000)
+	public void read_should_rethrow_the_IOException_of_the_source_after_the_blocks_read() throws Exception {
+		// Given : the queue is full when the source fails
+		final ByteArrayOutputStream read = new ByteArrayOutputStream();
+		try (InputStream in = new ReadAheadInputStream(failingSource(null), 4, 1, "test-read-ahead")) {
+			Thread.sleep(100);
+
+			// When / Then
+			assertThatThrownBy(() -> readUntilFailure(in, read)).isInstanceOf(IOException.class)
+			.hasMessage("Corrupted source");
+			assertThat(read.toByteArray()).isEqualTo(DATA);
+			assertThatThrownBy(() -> in.read()).isInstanceOf(IOException.class);
+		}
+	}
+
+	@Test(timeout = 5000)
+	public void read_should_rethrow_a_RuntimeException_of_the_source_as_an_IOException() throws Exception {
+		final IllegalStateException failure = new IllegalStateException("Bug in the codec");
+		final ByteArrayOutputStream read = new ByteArrayOutputStream();
+		try (InputStream in = new ReadAheadInputStream(failingSource(failure), 4, 1, "test-read-ahead")) {
+
+			assertThatThrownBy(() -> readUntilFailure(in, read)).isInstanceOf(IOException.class).hasCause(failure);
+			assertThat(read.toByteArray()).isEqualTo(DATA);
+		}
+	}
+
+	@Test(timeout = 5000)
+	public void read_should_return_the_whole_source() throws Exception {
+		try (InputStream in = new ReadAheadInputStream(new ByteArrayInputStream(DATA), 4, 2, "test-read-ahead")) {
+			final byte[] buffer = new byte[DATA.length + 10];
+			int count = 0;
+			int read;
+			while ((read = in.read(buffer, count, buffer.length - count)) > 0) {
+				count += read;
+			}
+			assertThat(count).isEqualTo(DATA.length);
+			assertThat(new String(buffer, 0, count)).isEqualTo(new String(DATA));
+		}
+	}
+
+}
@@ -0,0 +1,76 @@
+package fr.training.springbatch.tools.dedup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.support.transaction.ResourcelessTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class DuplicateFilterItemWriterTest {
+
+	private final List<String> written = new ArrayList<String>();
+
+	private final List<String> rejected = new ArrayList<String>();
+
+	private final DuplicateFilterItemWriter<String> writer = new DuplicateFilterItemWriter<String>();
+
+	private final TransactionTemplate transactionTemplate = new TransactionTemplate(
+			new ResourcelessTransactionManager());
+
+	/** Fails the next write of the delegate */
+	private boolean failing;
+
+	@Before
+	public void setUp() throws Exception {
+		writer.setDelegate(items -> {
+			if (failing) {
+				failing = false;
+				throw new IllegalStateException("Delegate failure");
+			}
+			written.addAll(items);
+		});
+		writer.setRejectWriter(items -> rejected.addAll(items));
+		writer.setKeyExtractor(item -> item);
+		writer.afterPropertiesSet();
+		writer.beforeStep(new StepExecution("step", null));
+		writer.open(new ExecutionContext());
+	}
+
+	private void writeChunk(final String... items) {
+		transactionTemplate.execute(status -> {
+			try {
+				writer.write(Arrays.asList(items));
+			} catch (final Exception e) {
+				throw new IllegalStateException(e.getMessage(), e);
+			}
+			return null;
+		});
+	}
+
+	@Test
+	public void write_should_forget_the_keys_of_a_rolled_back_chunk() {
+		// Given
+		writeChunk("a", "b");
+		failing = true;
+		assertThatThrownBy(() -> writeChunk("c", "d", "a")).hasMessage("Delegate failure");
+
+		// When : the chunk is retried
+		writeChunk("c", "d", "a");
+
+		// Then
+		assertThat(written).containsExactly("a", "b", "c", "d");
+		assertThat(rejected).containsExactly("a");
+		final ExecutionContext executionContext = new ExecutionContext();
+		writer.update(executionContext);
+		assertThat(executionContext.getLong(DuplicateFilterItemWriter.DUPLICATE_COUNT)).isEqualTo(1);
+	}
+
+}
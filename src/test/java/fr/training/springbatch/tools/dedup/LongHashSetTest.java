@@ -0,0 +1,94 @@
+package fr.training.springbatch.tools.dedup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.Test;
+
+public class LongHashSetTest {
+
+	/**
+	 * @return a hash whose slot is home in a table of 16 slots (inverse of the
+	 *         murmur3 finalizer spreading the hashes)
+	 */
+	private static long hashInSlot(final int home, final int rank) {
+		long h = (long) rank << 4 | home;
+		h ^= h >>> 33;
+		h *= 0x9cb4b2f8129337dbL;
+		h ^= h >>> 33;
+		h *= 0x4f74430c22a54005L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	@Test
+	public void add_should_grow_the_table_and_keep_the_hashes() {
+		// Given
+		final LongHashSet set = new LongHashSet(0);
+		assertThat(set.capacity()).isEqualTo(16);
+
+		// When
+		for (long i = 1; i <= 1000; i++) {
+			assertThat(set.add(LongHashSet.hash("key" + i))).isTrue();
+		}
+
+		// Then
+		assertThat(set.size()).isEqualTo(1000);
+		assertThat(set.capacity()).isEqualTo(2048);
+		for (long i = 1; i <= 1000; i++) {
+			assertThat(set.add(LongHashSet.hash("key" + i))).isFalse();
+		}
+		assertThat(set.contains(LongHashSet.hash("key0"))).isFalse();
+	}
+
+	@Test
+	public void add_should_fail_over_the_max_capacity() {
+		final LongHashSet set = new LongHashSet(0);
+		set.setMaxCapacity(16);
+		for (int i = 0; i < 12; i++) {
+			set.add(LongHashSet.hash("key" + i));
+		}
+
+		assertThatThrownBy(() -> set.add(LongHashSet.hash("key12"))).isInstanceOf(IllegalStateException.class)
+		.hasMessageStartingWith("LongHashSet full");
+	}
+
+	@Test
+	public void remove_should_keep_the_colliding_hashes_reachable() {
+		// Given : a cluster of 4 hashes of slot 15 (wrapping to slots 0 to 2) and a
+		// hash of slot 1, stored after them
+		final LongHashSet set = new LongHashSet(0);
+		for (int rank = 0; rank < 4; rank++) {
+			assertThat(set.add(hashInSlot(15, rank))).isTrue();
+		}
+		set.add(hashInSlot(1, 0));
+
+		// When
+		assertThat(set.remove(hashInSlot(15, 1))).isTrue();
+		assertThat(set.remove(hashInSlot(15, 1))).isFalse();
+
+		// Then
+		assertThat(set.size()).isEqualTo(4);
+		assertThat(set.contains(hashInSlot(15, 0))).isTrue();
+		assertThat(set.contains(hashInSlot(15, 1))).isFalse();
+		assertThat(set.contains(hashInSlot(15, 2))).isTrue();
+		assertThat(set.contains(hashInSlot(15, 3))).isTrue();
+		assertThat(set.contains(hashInSlot(1, 0))).isTrue();
+		assertThat(set.add(hashInSlot(15, 1))).isTrue();
+	}
+
+	@Test
+	public void add_should_store_the_hash_0() {
+		final LongHashSet set = new LongHashSet(10);
+
+		assertThat(set.contains(0L)).isFalse();
+		assertThat(set.add(0L)).isTrue();
+		assertThat(set.add(0L)).isFalse();
+		assertThat(set.contains(0L)).isTrue();
+		// stored as 1
+		assertThat(set.add(1L)).isFalse();
+		assertThat(set.remove(0L)).isTrue();
+		assertThat(set.size()).isZero();
+	}
+
+}
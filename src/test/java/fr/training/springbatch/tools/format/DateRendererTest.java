@@ -0,0 +1,83 @@
+package fr.training.springbatch.tools.format;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+import org.junit.Test;
+
+public class DateRendererTest {
+
+	private static final DateTimeFormatter EXPECTED = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+
+	private static void assertRendered(final LocalDate date) {
+		final String expected = EXPECTED.format(date);
+
+		assertThat(DateRenderer.format(date)).isEqualTo(expected);
+		assertThat(DateRenderer.appendTo(date, new StringBuilder("x")).toString()).isEqualTo("x" + expected);
+		final char[] buffer = new char[expected.length() + 3];
+		final int end = DateRenderer.render(date, buffer, 3);
+		assertThat(end).isEqualTo(buffer.length);
+		assertThat(new String(buffer, 3, expected.length())).isEqualTo(expected);
+	}
+
+	@Test
+	public void format_should_render_the_two_digits_values() {
+		assertThat(DateRenderer.format(LocalDate.of(2019, 11, 28))).isEqualTo("11/28/2019");
+		assertRendered(LocalDate.of(2019, 11, 28));
+	}
+
+	@Test
+	public void format_should_pad_the_single_digit_day_and_month() {
+		assertThat(DateRenderer.format(LocalDate.of(2019, 1, 9))).isEqualTo("01/09/2019");
+		assertRendered(LocalDate.of(2019, 1, 9));
+		assertRendered(LocalDate.of(2000, 9, 1));
+	}
+
+	@Test
+	public void format_should_render_every_day_of_a_leap_year() {
+		for (LocalDate date = LocalDate.of(2020, 1, 1); date.getYear() == 2020; date = date.plusDays(1)) {
+			assertRendered(date);
+		}
+	}
+
+	@Test
+	public void format_should_render_the_dates_around_the_epoch() {
+		assertThat(DateRenderer.format(LocalDate.ofEpochDay(0))).isEqualTo("01/01/1970");
+		assertThat(DateRenderer.format(LocalDate.ofEpochDay(-1))).isEqualTo("12/31/1969");
+		assertRendered(LocalDate.ofEpochDay(0));
+		assertRendered(LocalDate.ofEpochDay(-1));
+		assertRendered(LocalDate.ofEpochDay(1));
+	}
+
+	@Test
+	public void format_should_pad_the_years_on_4_digits() {
+		assertThat(DateRenderer.format(LocalDate.of(0, 1, 1))).isEqualTo("01/01/0000");
+		assertThat(DateRenderer.format(LocalDate.of(7, 3, 4))).isEqualTo("03/04/0007");
+		assertThat(DateRenderer.format(LocalDate.of(9999, 12, 31))).isEqualTo("12/31/9999");
+		assertRendered(LocalDate.of(99, 6, 15));
+		assertRendered(LocalDate.of(999, 6, 15));
+	}
+
+	@Test
+	public void format_should_fall_back_to_the_formatter_outside_years_0_to_9999() {
+		// Given : years that do not fit on 4 digits
+		final LocalDate[] dates = { LocalDate.of(10000, 1, 1), LocalDate.of(-1, 12, 31),
+				LocalDate.of(-10000, 5, 6), LocalDate.MAX, LocalDate.MIN };
+
+		for (final LocalDate date : dates) {
+			// Then : same rendering as the DateTimeFormatter, longer than LENGTH
+			// when the year has more than 4 digits
+			assertRendered(date);
+		}
+		assertThat(DateRenderer.format(LocalDate.of(10000, 1, 1))).hasSizeGreaterThan(DateRenderer.LENGTH);
+	}
+
+	@Test
+	public void format_should_return_null_for_a_null_date() {
+		assertThat(DateRenderer.format(null)).isNull();
+		assertThat(DateRenderer.appendTo(null, new StringBuilder("x")).toString()).isEqualTo("x");
+	}
+
+}
@@ -0,0 +1,119 @@
+package fr.training.springbatch.tools.staging;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Time of the key retrieval query of the {@link StagingItemReader} according to
+ * the size of the BATCH_STAGING table, with and without the
+ * (JOB_ID, PROCESSED, ID) index created by {@link StagingSchemaInitializer}.
+ *
+ * The table is filled with the rows of previous jobs (half of them already
+ * processed) among which the {@value #KEYS} rows of the job whose keys are
+ * retrieved : the result is the same for each size, only the time to find it
+ * changes. Ignored by the build : run it on demand (in-memory H2 database),
+ * optionally with the comma separated table sizes in the
+ * {@value #SIZES_PROPERTY} system property.
+ */
+public class StagingKeyRetrievalBenchmarkTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(StagingKeyRetrievalBenchmarkTest.class);
+
+	private static final String SIZES_PROPERTY = "staging.benchmark.sizes";
+
+	private static final int JOBS = 20;
+
+	private static final int KEYS = 1000;
+
+	private static final long JOB_ID = JOBS;
+
+	private static final int RUNS = 7;
+
+	private static final String SELECT_KEYS = "SELECT ID FROM BATCH_STAGING WHERE JOB_ID=? AND PROCESSED=? ORDER BY ID";
+
+	@Ignore("Benchmark, run on demand")
+	@Test
+	public void keyRetrieval_time_by_table_size() throws Exception {
+		final List<Integer> sizes = new ArrayList<Integer>();
+		for (final String size : System.getProperty(SIZES_PROPERTY, "").split(",")) {
+			if (!size.trim().isEmpty()) {
+				sizes.add(Integer.valueOf(size.trim()));
+			}
+		}
+		if (sizes.isEmpty()) {
+			sizes.addAll(Arrays.asList(10_000, 100_000, 1_000_000));
+		}
+
+		// no reuse of the result of the previous run
+		final SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+				"jdbc:h2:mem:staging-benchmark;DB_CLOSE_DELAY=-1;OPTIMIZE_REUSE_RESULTS=0", "sa", "", true);
+		final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		final StagingSchemaInitializer initializer = new StagingSchemaInitializer();
+		initializer.setDataSource(dataSource);
+		initializer.afterPropertiesSet();
+
+		logger.info(String.format("%10s %8s %14s %14s", "rows", "keys", "scan (ms)", "index (ms)"));
+		for (final int size : sizes) {
+			fill(jdbcTemplate, size);
+
+			jdbcTemplate.execute("DROP INDEX batch_staging_job_idx");
+			final double scan = time(jdbcTemplate);
+			jdbcTemplate.execute("CREATE INDEX batch_staging_job_idx ON batch_staging (job_id, processed, id)");
+			final double index = time(jdbcTemplate);
+
+			final int keys = jdbcTemplate.queryForList(SELECT_KEYS, Long.class, JOB_ID, StagingItemWriter.NEW).size();
+			logger.info(String.format("%10d %8d %14.2f %14.2f", size, keys, scan, index));
+		}
+		dataSource.destroy();
+	}
+
+	/**
+	 * Insert the rows of the jobs, interleaved as with concurrent jobs.
+	 */
+	private static void fill(final JdbcTemplate jdbcTemplate, final int size) {
+		jdbcTemplate.execute("TRUNCATE TABLE batch_staging");
+		final byte[] value = new byte[64];
+		final int step = Math.max(1, size / KEYS);
+		final List<Object[]> batch = new ArrayList<Object[]>(10_000);
+		for (int id = 0; id < size; id++) {
+			if (id % step == 0 && id / step < KEYS) {
+				batch.add(new Object[] { id, JOB_ID, value, StagingItemWriter.NEW });
+			} else {
+				final String processed = id % 2 == 0 ? StagingItemWriter.DONE : StagingItemWriter.NEW;
+				batch.add(new Object[] { id, id % JOBS, value, processed });
+			}
+			if (batch.size() == 10_000 || id == size - 1) {
+				jdbcTemplate.batchUpdate("INSERT INTO batch_staging (id, job_id, value, processed) VALUES (?, ?, ?, ?)",
+						batch);
+				batch.clear();
+			}
+		}
+		jdbcTemplate.execute("ANALYZE");
+	}
+
+	/**
+	 * @return the median time in milliseconds of the key retrieval of the job
+	 */
+	private static double time(final JdbcTemplate jdbcTemplate) {
+		final List<Long> times = new ArrayList<Long>();
+		for (int i = 0; i < RUNS + 2; i++) {
+			final long start = System.nanoTime();
+			jdbcTemplate.queryForList(SELECT_KEYS, Long.class, JOB_ID, StagingItemWriter.NEW);
+			if (i >= 2) { // warm up
+				times.add(System.nanoTime() - start);
+			}
+		}
+		Collections.sort(times);
+		return times.get(times.size() / 2) / 1_000_000d;
+	}
+
+}
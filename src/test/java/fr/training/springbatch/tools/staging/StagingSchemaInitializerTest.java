@@ -0,0 +1,63 @@
+package fr.training.springbatch.tools.staging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+public class StagingSchemaInitializerTest {
+
+	private static final String TABLE_WITHOUT_INDEX = "CREATE TABLE batch_staging (id BIGINT NOT NULL PRIMARY KEY, "
+			+ "job_id BIGINT NOT NULL, value BYTEA NOT NULL, processed CHAR(1) NOT NULL);";
+
+	private final SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+			"jdbc:h2:mem:staging-schema;DB_CLOSE_DELAY=-1", "sa", "", true);
+
+	private final StagingSchemaInitializer initializer = new StagingSchemaInitializer();
+
+	@After
+	public void tearDown() {
+		new JdbcTemplate(dataSource).execute("DROP ALL OBJECTS");
+		dataSource.destroy();
+	}
+
+	@Test
+	public void afterPropertiesSet_should_create_the_indexed_table() throws Exception {
+		// Given
+		initializer.setDataSource(dataSource);
+
+		// When
+		initializer.afterPropertiesSet();
+
+		// Then
+		assertThat(new JdbcTemplate(dataSource).queryForObject("SELECT COUNT(*) FROM batch_staging", Integer.class))
+		.isZero();
+	}
+
+	@Test
+	public void afterPropertiesSet_should_fail_when_the_managed_table_has_no_index() throws Exception {
+		// Given : the schema is managed outside of the application, without the index
+		new JdbcTemplate(dataSource).execute(TABLE_WITHOUT_INDEX);
+		initializer.setDataSource(dataSource);
+		initializer.setInitializeSchema(false);
+
+		// When / Then
+		assertThatThrownBy(() -> initializer.afterPropertiesSet()).isInstanceOf(IllegalStateException.class)
+		.hasMessageStartingWith("Table BATCH_STAGING has no index on [JOB_ID, PROCESSED, ID]");
+	}
+
+	@Test
+	public void afterPropertiesSet_should_fail_when_the_script_does_not_create_the_index() throws Exception {
+		// Given
+		initializer.setDataSource(dataSource);
+		initializer.setScript(new ByteArrayResource(TABLE_WITHOUT_INDEX.getBytes()));
+
+		// When / Then
+		assertThatThrownBy(() -> initializer.afterPropertiesSet()).isInstanceOf(IllegalStateException.class);
+	}
+
+}
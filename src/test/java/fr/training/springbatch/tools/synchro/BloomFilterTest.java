@@ -0,0 +1,76 @@
+package fr.training.springbatch.tools.synchro;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.Test;
+
+public class BloomFilterTest {
+
+	private static final int INSERTIONS = 10_000;
+
+	private static final int CHECKS = 100_000;
+
+	@Test
+	public void mightContain_should_never_miss_a_key_put() {
+		// Given
+		final BloomFilter filter = new BloomFilter(INSERTIONS);
+
+		// When
+		for (int i = 0; i < INSERTIONS; i++) {
+			filter.put(String.format("%08d", i));
+		}
+
+		// Then
+		for (int i = 0; i < INSERTIONS; i++) {
+			assertThat(filter.mightContain(String.format("%08d", i))).isTrue();
+		}
+		assertThat(filter.getInsertions()).isEqualTo(INSERTIONS);
+	}
+
+	@Test
+	public void mightContain_should_stay_close_to_the_false_positive_probability() {
+		// Given : a filter filled up to its expected insertions
+		final double fpp = 0.01;
+		final BloomFilter filter = new BloomFilter(INSERTIONS, fpp);
+		for (int i = 0; i < INSERTIONS; i++) {
+			filter.put(String.format("%08d", i));
+		}
+
+		// When : keys never put
+		int falsePositives = 0;
+		for (int i = INSERTIONS; i < INSERTIONS + CHECKS; i++) {
+			if (filter.mightContain(String.format("%08d", i))) {
+				falsePositives++;
+			}
+		}
+
+		// Then
+		assertThat((double) falsePositives / CHECKS).isLessThan(2 * fpp);
+		assertThat(filter.getHashCount()).isEqualTo(7);
+	}
+
+	@Test
+	public void constructor_should_build_a_usable_filter_without_expected_insertions() {
+		// Given
+		final BloomFilter filter = new BloomFilter(0);
+
+		// Then : an empty filter contains nothing
+		assertThat(filter.getBitCount()).isEqualTo(64);
+		assertThat(filter.mightContain("001")).isFalse();
+
+		// When
+		filter.put("001");
+
+		// Then
+		assertThat(filter.mightContain("001")).isTrue();
+		assertThat(filter.mightContain("002")).isFalse();
+	}
+
+	@Test
+	public void constructor_should_reject_an_invalid_false_positive_probability() {
+		assertThatThrownBy(() -> new BloomFilter(10, 0)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new BloomFilter(10, 1)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+}
@@ -0,0 +1,128 @@
+package fr.training.springbatch.tools.synchro;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemReader;
+import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.file.mapping.PassThroughLineMapper;
+import org.springframework.batch.item.support.ListItemReader;
+import org.springframework.core.io.ByteArrayResource;
+
+public class ItemAccumulatorTest {
+
+	private static final ItemCodec<String> CODEC = new ItemCodec<String>() {
+
+		@Override
+		public void write(final String item, final DataOutput out) throws IOException {
+			out.writeUTF(item);
+		}
+
+		@Override
+		public String read(final DataInput in) throws IOException {
+			return in.readUTF();
+		}
+	};
+
+	/** Accumulator of lines whose key is the first letter */
+	private static class LineAccumulator extends ItemAccumulator<String, String> {
+
+		LineAccumulator(final ItemReader<String> reader) {
+			super(reader);
+		}
+
+		@Override
+		public String getKey(final String item) {
+			return item.substring(0, 1);
+		}
+	}
+
+	private static final String LINES = "a1\na2\nb1\nc1\nc2\nc3\nd1\ne1\ne2\n";
+
+	/** Number of lines read (the lines skipped by a restart excluded) */
+	private int lineReads;
+
+	/**
+	 * @param failOn the line (1 based) whose reading fails (0 for none)
+	 */
+	private FlatFileItemReader<String> lineReader(final int failOn) {
+		final FlatFileItemReader<String> reader = new FlatFileItemReader<String>() {
+
+			@Override
+			protected String doRead() throws Exception {
+				if (lineReads + 1 == failOn) {
+					throw new IllegalStateException("Unreadable line " + failOn);
+				}
+				final String line = super.doRead();
+				if (line != null) {
+					lineReads++;
+				}
+				return line;
+			}
+		};
+		reader.setName("lines");
+		reader.setResource(new ByteArrayResource(LINES.getBytes()));
+		reader.setLineMapper(new PassThroughLineMapper());
+		return reader;
+	}
+
+	@Test
+	public void open_should_resume_from_the_reader_state_after_a_failure() throws Exception {
+		// Given : groups a and b are committed, the reading of group d fails
+		final ExecutionContext executionContext = new ExecutionContext();
+		final LineAccumulator failed = new LineAccumulator(lineReader(8));
+		failed.open(executionContext);
+		assertThat(failed.readNextItems("a")).containsExactly("a1", "a2");
+		assertThat(failed.readNextItems("b")).containsExactly("b1");
+		failed.update(executionContext);
+		assertThat(failed.readNextItems("c")).containsExactly("c1", "c2", "c3");
+		assertThatThrownBy(() -> failed.readNextItems("d")).hasMessage("Unreadable line 8");
+		failed.close();
+
+		// When
+		lineReads = 0;
+		final LineAccumulator restarted = new LineAccumulator(lineReader(0));
+		restarted.open(executionContext);
+		final List<String> items = new ArrayList<String>();
+		for (final String key : Arrays.asList("c", "d", "e")) {
+			items.addAll(restarted.readNextItems(key));
+		}
+		restarted.close();
+
+		// Then : the reading resumes at group c, the committed lines are not read
+		// again
+		assertThat(items).containsExactly("c1", "c2", "c3", "d1", "e1", "e2");
+		assertThat(lineReads).isEqualTo(items.size());
+	}
+
+	@Test
+	public void readNextItems_should_not_return_a_group_released_by_an_update() throws Exception {
+		// Given
+		final LineAccumulator accumulator = new LineAccumulator(
+				new ListItemReader<String>(Arrays.asList("a1", "a2", "a3", "a4", "b1")));
+		accumulator.setItemCodec(CODEC);
+		accumulator.setSpillThreshold(1);
+		final ExecutionContext executionContext = new ExecutionContext();
+		accumulator.open(executionContext);
+
+		assertThat(new ArrayList<String>(accumulator.readNextItems("a"))).containsExactly("a1", "a2", "a3", "a4");
+
+		// When : the chunk is committed, the spilled group is released
+		accumulator.update(executionContext);
+
+		// Then
+		assertThat(accumulator.readNextItems("a")).isEmpty();
+		assertThat(accumulator.readNextItems("b")).containsExactly("b1");
+		accumulator.close();
+	}
+
+}
@@ -0,0 +1,106 @@
+package fr.training.springbatch.tools.synchro;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SpillableListTest {
+
+	private static final int THRESHOLD = 3;
+
+	/** Window smaller than a few records : it is moved while reading */
+	private static final int WINDOW_SIZE = 32;
+
+	private static final int SIZE = 50;
+
+	private static final ItemCodec<String> CODEC = new ItemCodec<String>() {
+
+		@Override
+		public void write(final String item, final DataOutput out) throws IOException {
+			out.writeUTF(item);
+		}
+
+		@Override
+		public String read(final DataInput in) throws IOException {
+			return in.readUTF();
+		}
+	};
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private SpillableList<String> list() throws IOException {
+		final SpillableList<String> list = new SpillableList<String>(CODEC, THRESHOLD, folder.getRoot(),
+				WINDOW_SIZE);
+		for (int i = 0; i < SIZE; i++) {
+			list.add("item-" + i);
+		}
+		return list;
+	}
+
+	@Test
+	public void iterator_should_read_the_spilled_items_through_a_moving_window() throws Exception {
+		try (SpillableList<String> list = list()) {
+			assertThat(list).hasSize(SIZE);
+			assertThat(list.getSpilledCount()).isEqualTo(SIZE - THRESHOLD);
+
+			final List<String> items = new ArrayList<String>(list);
+			assertThat(items).hasSize(SIZE);
+			for (int i = 0; i < SIZE; i++) {
+				assertThat(items.get(i)).isEqualTo("item-" + i);
+			}
+			// read again, the window being at the end of the file
+			assertThat(list.iterator().next()).isEqualTo("item-0");
+			assertThat(list).last().isEqualTo("item-" + (SIZE - 1));
+		}
+	}
+
+	@Test
+	public void get_should_read_backwards() throws Exception {
+		try (SpillableList<String> list = list()) {
+			for (int i = SIZE - 1; i >= 0; i--) {
+				assertThat(list.get(i)).isEqualTo("item-" + i);
+			}
+			assertThat(list.get(THRESHOLD + 1)).isEqualTo("item-" + (THRESHOLD + 1));
+			assertThat(list.get(SIZE - 2)).isEqualTo("item-" + (SIZE - 2));
+			assertThatThrownBy(() -> list.get(SIZE)).isInstanceOf(IndexOutOfBoundsException.class);
+		}
+	}
+
+	@Test
+	public void add_after_the_heap_items_should_interleave_with_reads() throws Exception {
+		try (SpillableList<String> list = list()) {
+			assertThat(list.get(SIZE - 1)).isEqualTo("item-" + (SIZE - 1));
+			list.add("last");
+			assertThat(list.get(SIZE)).isEqualTo("last");
+		}
+	}
+
+	@Test
+	public void close_should_delete_the_spill_file() throws Exception {
+		final SpillableList<String> list = list();
+		list.get(SIZE - 1);
+		final File[] files = folder.getRoot().listFiles();
+		assertThat(files).hasSize(1);
+
+		list.close();
+
+		assertThat(files[0]).doesNotExist();
+		assertThat(list.get(0)).isEqualTo("item-0");
+		assertThatThrownBy(() -> list.get(THRESHOLD)).isInstanceOf(IllegalStateException.class)
+		.hasMessage("The list is closed");
+		assertThatThrownBy(() -> list.add("more")).isInstanceOf(IllegalStateException.class);
+		list.close();
+	}
+
+}
@@ -0,0 +1,83 @@
+package fr.training.springbatch.tools.validation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.validator.ValidationException;
+
+public class ValidationErrorCounterTest {
+
+	private final ValidationErrorCounter counter = new ValidationErrorCounter();
+
+	@Test
+	public void afterChunkError_should_drop_the_counts_of_the_rolled_back_chunk() {
+		// Given : a committed chunk
+		counter.open(new ExecutionContext());
+		counter.beforeChunk(null);
+		counter.count(Collections.<String>emptyList());
+		counter.count(Arrays.asList("number_length"));
+		counter.afterChunk(null);
+
+		// When : the next chunk is rolled back, then retried
+		counter.beforeChunk(null);
+		counter.count(Arrays.asList("number_length", "transactionDate_future"));
+		counter.afterChunkError(null);
+		counter.beforeChunk(null);
+		counter.count(Arrays.asList("number_length", "transactionDate_future"));
+		counter.afterChunk(null);
+
+		// Then : the retried items are counted once
+		assertThat(counter.getItemCount()).isEqualTo(3);
+		assertThat(counter.getRejectCount()).isEqualTo(2);
+		assertThat(counter.getErrorCounts()).containsEntry("number_length", 2L)
+		.containsEntry("transactionDate_future", 1L);
+	}
+
+	@Test
+	public void open_should_restore_the_counts_saved_with_the_last_commit() {
+		// Given
+		final ExecutionContext executionContext = new ExecutionContext();
+		counter.open(executionContext);
+		counter.beforeChunk(null);
+		counter.count(Arrays.asList("number_length"));
+		counter.count(Collections.<String>emptyList());
+		counter.update(executionContext);
+		counter.afterChunk(null);
+		counter.beforeChunk(null);
+		counter.count(Arrays.asList("number_length"));
+		counter.afterChunkError(null);
+
+		// When
+		final ValidationErrorCounter restarted = new ValidationErrorCounter();
+		restarted.open(executionContext);
+
+		// Then
+		assertThat(restarted.getItemCount()).isEqualTo(2);
+		assertThat(restarted.getRejectCount()).isEqualTo(1);
+		assertThat(restarted.getErrorCounts()).containsOnly(entry("number_length", 1L));
+	}
+
+	@Test
+	public void count_should_fail_when_the_error_rate_exceeds_the_threshold() {
+		// Given
+		counter.setMaxErrorRate(0.1);
+		counter.setMinItemCount(10);
+		counter.open(new ExecutionContext());
+		counter.beforeChunk(null);
+		for (int i = 0; i < 9; i++) {
+			counter.count(Collections.<String>emptyList());
+		}
+
+		// When / Then : 1 reject out of 10 items is tolerated, not 2 out of 11
+		counter.count(Arrays.asList("number_length"));
+		assertThatThrownBy(() -> counter.count(Arrays.asList("number_length")))
+		.isInstanceOf(ValidationException.class);
+	}
+
+}
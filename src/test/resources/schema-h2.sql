@@ -18,21 +18,12 @@ DROP TABLE IF EXISTS transaction;
 
 CREATE TABLE transaction
   (
+     id               BIGINT AUTO_INCREMENT NOT NULL,
      customer_number  VARCHAR(3) NOT NULL,
      number           VARCHAR(8) NOT NULL,
      amount           DOUBLE,
-     transaction_date DATE
+     transaction_date DATE,
+     PRIMARY KEY (id)
   );
 
-DROP SEQUENCE batch_staging_seq IF EXISTS;
-
-CREATE SEQUENCE batch_staging_seq START WITH 0;
-
-DROP TABLE batch_staging IF EXISTS;
-
-CREATE TABLE batch_staging  (
-	id BIGINT IDENTITY NOT NULL PRIMARY KEY ,
-	job_id BIGINT NOT NULL,
-	value LONGVARBINARY NOT NULL,
-	processed CHAR(1) NOT NULL
-) ;
\ No newline at end of file
+CREATE INDEX transaction_customer_idx ON transaction (customer_number, number, id, transaction_date, amount);